@@ -0,0 +1,85 @@
+/*
+ * @(#)Allocation.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reports the number of bytes allocated by the current thread, for
+ * JVMs that support measuring it.
+ */
+class Allocation
+{
+  private static final ThreadMXBean threadBean =
+    ManagementFactory.getThreadMXBean();
+
+  private Allocation()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Returns the total number of bytes allocated so far by the
+   * current thread.
+   * @return The number of bytes, or -1, if the JVM does not support
+   *    measuring allocation.
+   */
+  static long getAllocatedBytes()
+  {
+    if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    final com.sun.management.ThreadMXBean bean =
+      (com.sun.management.ThreadMXBean)threadBean;
+    if (!bean.isThreadAllocatedMemorySupported() ||
+        !bean.isThreadAllocatedMemoryEnabled()) {
+      return -1;
+    }
+    return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Returns the number of bytes allocated per operation since the
+   * specified allocation count, formatted for a report.
+   * @param startBytes The allocation count when the measurement
+   *    started, as returned by getAllocatedBytes().
+   * @param operations The number of operations performed since.
+   * @return The bytes per operation, or "n/a", if the JVM does not
+   *    support measuring allocation.
+   */
+  static String perOperation(final long startBytes, final long operations)
+  {
+    final long stopBytes = getAllocatedBytes();
+    if ((startBytes < 0) || (stopBytes < 0)) {
+      return "n/a";
+    }
+    return String.format("%.1f B", (double)(stopBytes - startBytes) /
+                         operations);
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -0,0 +1,119 @@
+/*
+ * @(#)DataNodeUpdateCheck.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.bench;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.tree.TreeNode;
+
+import org.soundpaint.sysexedit.devices.DB50XG;
+import org.soundpaint.sysexedit.gui.JValue;
+import org.soundpaint.sysexedit.model.DataNode;
+
+/**
+ * Checks bulk updates of the data nodes of the DB50XG map, as done
+ * e.g. when importing a bulk dump.  Sets the value of all data nodes
+ * and reports the time taken and the number of editors created
+ * thereby.  Then restores the values, opens the editors of all data
+ * nodes and reports the number of editors whose selection does not
+ * match the value of their data node.
+ *
+ * Since data nodes do not expose whether they have created their
+ * editor yet, this check counts created editors by reading the
+ * private field "editor" of class DataNode via reflection.
+ */
+public class DataNodeUpdateCheck
+{
+  private DataNodeUpdateCheck()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  private static void collectDataNodes(final TreeNode node,
+                                       final List<DataNode> dataNodes)
+  {
+    if (node instanceof DataNode) {
+      dataNodes.add((DataNode)node);
+      return;
+    }
+    for (int i = 0; i < node.getChildCount(); i++) {
+      collectDataNodes(node.getChildAt(i), dataNodes);
+    }
+  }
+
+  private static int countEditors(final List<DataNode> dataNodes)
+    throws ReflectiveOperationException
+  {
+    final Field editorField = DataNode.class.getDeclaredField("editor");
+    editorField.setAccessible(true);
+    int editorCount = 0;
+    for (final DataNode dataNode : dataNodes) {
+      if (editorField.get(dataNode) != null) {
+        editorCount++;
+      }
+    }
+    return editorCount;
+  }
+
+  public static void main(final String argv[])
+    throws ReflectiveOperationException
+  {
+    System.setProperty("java.awt.headless", "true");
+    final List<DataNode> dataNodes = new ArrayList<DataNode>();
+    collectDataNodes(new DB50XG().buildMap(), dataNodes);
+
+    final int[] values = new int[dataNodes.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = dataNodes.get(i).getNumericalValue();
+    }
+    final long startTime = System.nanoTime();
+    for (int i = 0; i < values.length; i++) {
+      dataNodes.get(i).setNumericalValue(values[i] ^ 0x1);
+    }
+    final long stopTime = System.nanoTime();
+    System.out.printf("set %d data nodes: %.1f ms, %d editors created%n",
+                      dataNodes.size(), (stopTime - startTime) / 1.0e6,
+                      countEditors(dataNodes));
+
+    // restore values, since toggled values may be out of range
+    for (int i = 0; i < values.length; i++) {
+      dataNodes.get(i).setNumericalValue(values[i]);
+    }
+    int mismatchCount = 0;
+    for (final DataNode dataNode : dataNodes) {
+      final JValue selectedValue = dataNode.openEditor().getSelectedValue();
+      if ((selectedValue == null) ||
+          (selectedValue.getSystemValue() != dataNode.getNumericalValue())) {
+        mismatchCount++;
+      }
+    }
+    System.out.println("opened " + dataNodes.size() + " editors: " +
+                       mismatchCount + " mismatches");
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -0,0 +1,114 @@
+/*
+ * @(#)DisplayValueBenchmark.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.bench;
+
+import org.soundpaint.sysexedit.model.BitMaskRenderer;
+import org.soundpaint.sysexedit.model.IntegerRenderer;
+import org.soundpaint.sysexedit.model.SparseType;
+
+/**
+ * Benchmarks getDisplayValue() of sparse types with typical
+ * renderers, as called for every visible row on every repaint of
+ * the tree.  Also prints a fingerprint over the display values of
+ * values 0..299 of each type, for comparing display values across
+ * versions.
+ */
+public class DisplayValueBenchmark
+{
+  private static final int ROUNDS = 30;
+  private static final int REPEATS = 2000;
+  private static final int VALUES = 128;
+  private static final int FINGERPRINT_VALUES = 300;
+
+  private static long sink;
+
+  private DisplayValueBenchmark()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  private static void run(final SparseType type)
+  {
+    for (int repeat = 0; repeat < REPEATS; repeat++) {
+      for (int value = 0; value < VALUES; value++) {
+        sink += type.getDisplayValue(value).length();
+      }
+    }
+  }
+
+  /**
+   * Runs the benchmark for a hexadecimal IntegerRenderer over 128
+   * values, an IntegerRenderer with display offset -64, a
+   * BitMaskRenderer over 256 values and a plain IntegerRenderer over
+   * 16384 values.  Reports time and allocation per getDisplayValue()
+   * call over values 0..127, as measured in the last of 30 rounds.
+   */
+  public static void main(final String argv[])
+  {
+    final String[] names = new String[] {
+      "hex IntegerRenderer, 128 values",
+      "offset IntegerRenderer, 128 values",
+      "BitMaskRenderer, 256 values",
+      "IntegerRenderer, 16384 values"
+    };
+    final SparseType[] types = new SparseType[] {
+      new SparseType(SparseType.GENERIC_ICON_KEY, 0, 127,
+                     new IntegerRenderer(16, true, "0x", "h", (byte)6)),
+      new SparseType().addValueRange(0, 127, -64, new IntegerRenderer()),
+      new SparseType(SparseType.GENERIC_ICON_KEY, 0, 255,
+                     new BitMaskRenderer()),
+      new SparseType(SparseType.GENERIC_ICON_KEY, 0, 16383,
+                     new IntegerRenderer())
+    };
+    long fingerprint = 0;
+    for (final SparseType type : types) {
+      for (int value = 0; value < FINGERPRINT_VALUES; value++) {
+        final String displayValue = type.getDisplayValue(value);
+        fingerprint = 31 * fingerprint +
+          (displayValue != null ? displayValue.hashCode() : 0);
+      }
+    }
+    System.out.println("fingerprint=" + fingerprint);
+    final long operations = (long)REPEATS * VALUES;
+    final String[] reports = new String[types.length];
+    for (int round = 0; round < ROUNDS; round++) {
+      for (int i = 0; i < types.length; i++) {
+        final long startBytes = Allocation.getAllocatedBytes();
+        final long startTime = System.nanoTime();
+        run(types[i]);
+        reports[i] =
+          String.format("%.1f ns/op, ",
+                        (double)(System.nanoTime() - startTime) / operations) +
+          Allocation.perOperation(startBytes, operations) + "/op";
+      }
+    }
+    for (int i = 0; i < types.length; i++) {
+      System.out.println(names[i] + ": " + reports[i]);
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
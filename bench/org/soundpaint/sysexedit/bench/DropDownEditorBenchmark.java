@@ -0,0 +1,93 @@
+/*
+ * @(#)DropDownEditorBenchmark.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.bench;
+
+import org.soundpaint.sysexedit.model.DropDownEditor;
+import org.soundpaint.sysexedit.model.IntegerRenderer;
+import org.soundpaint.sysexedit.model.SparseType;
+import org.soundpaint.sysexedit.model.Value;
+import org.soundpaint.sysexedit.model.ValueImpl;
+
+/**
+ * Benchmarks creating drop-down editors whose selectable values are
+ * shared among all editors of the same value, with the default
+ * value selected in the middle of the domain.
+ */
+public class DropDownEditorBenchmark
+{
+  private static final int ROUNDS = 5;
+  private static final int EDITORS = 100;
+
+  private DropDownEditorBenchmark()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Creates drop-down editors for the specified value in the same
+   * way as ValueImpl.createEditor() does for small domains, and
+   * checks the selection of each one.
+   * @return The average time per editor in milliseconds.
+   */
+  private static double run(final Value value)
+  {
+    final long startTime = System.nanoTime();
+    for (int i = 0; i < EDITORS; i++) {
+      final DropDownEditor editor = new DropDownEditor();
+      editor.setSelectableValues(value.getSelectableValues());
+      editor.setSelectionByNumericalValue(value.getDefaultValue());
+      if (editor.getSelectedValue().getSystemValue() !=
+          value.getDefaultValue()) {
+        throw new IllegalStateException("wrong selection: " +
+                                        editor.getSelectedValue());
+      }
+    }
+    return (System.nanoTime() - startTime) / 1.0e6 / EDITORS;
+  }
+
+  /**
+   * Reports the time per drop-down editor for domains of 128 and
+   * 16384 values, as measured in the last of 5 rounds.
+   */
+  public static void main(final String argv[])
+  {
+    System.setProperty("java.awt.headless", "true");
+    for (final int size : new int[] { 128, 16384 }) {
+      final Value value =
+        new ValueImpl(new SparseType(SparseType.GENERIC_ICON_KEY,
+                                     0, size - 1,
+                                     IntegerRenderer.DEFAULT_RENDERER),
+                      size / 2);
+      double time = 0.0;
+      for (int round = 0; round < ROUNDS; round++) {
+        time = run(value);
+      }
+      System.out.printf("%d values: %.2f ms per editor%n", size, time);
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
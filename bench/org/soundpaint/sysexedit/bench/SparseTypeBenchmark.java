@@ -0,0 +1,228 @@
+/*
+ * @(#)SparseTypeBenchmark.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.bench;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import org.soundpaint.sysexedit.model.IntegerRenderer;
+import org.soundpaint.sysexedit.model.SparseType;
+import org.soundpaint.sysexedit.model.ValueRange;
+
+/**
+ * Benchmarks succ() and pred() of sparse types, i.e. the lookup of
+ * the value range of a numerical value, against a lookup via
+ * TreeSet.floor() over a containment-ordered TreeSet of value
+ * ranges, as sparse types did before they switched to binary search
+ * over primitive bounds.  Both lookups are first checked to agree.
+ */
+public class SparseTypeBenchmark
+{
+  private static final int ROUNDS = 20;
+  private static final int REPEATS = 200;
+  private static final int VALUES = 512;
+  private static final int CHECKED_VALUES = 600;
+
+  private static long sink;
+
+  private SparseTypeBenchmark()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Value range lookup via TreeSet.floor(), which allocates a probe
+   * value range on every call.
+   */
+  private static class TreeSetLookup
+  {
+    private static final Comparator<ValueRange> containmentComparator =
+      new Comparator<ValueRange>() {
+        public int compare(final ValueRange r1, final ValueRange r2)
+        {
+          if ((r1.getLowerBound() <= r2.getLowerBound()) &&
+              (r1.getUpperBound() >= r2.getUpperBound())) {
+            return 0;
+          }
+          if ((r2.getLowerBound() <= r1.getLowerBound()) &&
+              (r2.getUpperBound() >= r1.getUpperBound())) {
+            return 0;
+          }
+          if (r1.getUpperBound() <= r2.getLowerBound()) {
+            return -1;
+          }
+          if (r2.getUpperBound() <= r1.getLowerBound()) {
+            return +1;
+          }
+          throw new ClassCastException("r1 / r2 overlap");
+        }
+      };
+
+    private final TreeSet<ValueRange> valueRanges;
+    private final TreeSet<ValueRange> valueRangesByNumericalValue;
+
+    private TreeSetLookup()
+    {
+      valueRanges = new TreeSet<ValueRange>();
+      valueRangesByNumericalValue =
+        new TreeSet<ValueRange>(containmentComparator);
+    }
+
+    private void add(final ValueRange valueRange)
+    {
+      valueRanges.add(valueRange);
+      valueRangesByNumericalValue.add(valueRange);
+    }
+
+    private ValueRange getValueRange(final int numericalValue)
+    {
+      final ValueRange valueRange =
+        new ValueRange(numericalValue, numericalValue,
+                       IntegerRenderer.DEFAULT_RENDERER);
+      final ValueRange floor = valueRangesByNumericalValue.floor(valueRange);
+      if (floor != null) {
+        return floor;
+      }
+      return valueRangesByNumericalValue.ceiling(valueRange);
+    }
+
+    private Integer succ(final int numericalValue)
+    {
+      final ValueRange valueRange = getValueRange(numericalValue);
+      if (valueRange == null)
+        return null;
+      if (numericalValue < valueRange.getUpperBound())
+        return numericalValue + 1;
+      final ValueRange nextValueRange = valueRanges.higher(valueRange);
+      if (nextValueRange == null)
+        return null;
+      return (int)nextValueRange.getLowerBound();
+    }
+
+    private Integer pred(final int numericalValue)
+    {
+      final ValueRange valueRange = getValueRange(numericalValue);
+      if (valueRange == null)
+        return null;
+      if (numericalValue > valueRange.getLowerBound())
+        return numericalValue - 1;
+      final ValueRange previousValueRange = valueRanges.lower(valueRange);
+      if (previousValueRange == null)
+        return null;
+      return (int)previousValueRange.getUpperBound();
+    }
+  }
+
+  private static void accumulate(final Integer value)
+  {
+    if (value != null) {
+      sink += value;
+    }
+  }
+
+  private static void runPrimitive(final SparseType type)
+  {
+    for (int repeat = 0; repeat < REPEATS; repeat++) {
+      for (int value = 0; value < VALUES; value++) {
+        accumulate(type.succ(value));
+        accumulate(type.pred(value));
+      }
+    }
+  }
+
+  private static void runTreeSet(final TreeSetLookup reference)
+  {
+    for (int repeat = 0; repeat < REPEATS; repeat++) {
+      for (int value = 0; value < VALUES; value++) {
+        accumulate(reference.succ(value));
+        accumulate(reference.pred(value));
+      }
+    }
+  }
+
+  private static void benchmark(final String name, final SparseType type,
+                                final TreeSetLookup reference)
+  {
+    int mismatches = 0;
+    for (int value = 0; value < CHECKED_VALUES; value++) {
+      if (!Objects.equals(type.succ(value), reference.succ(value)) ||
+          !Objects.equals(type.pred(value), reference.pred(value))) {
+        mismatches++;
+      }
+    }
+    final long operations = (long)REPEATS * VALUES;
+    String treeSetReport = null;
+    String primitiveReport = null;
+    for (int round = 0; round < ROUNDS; round++) {
+      long startBytes = Allocation.getAllocatedBytes();
+      long startTime = System.nanoTime();
+      runTreeSet(reference);
+      treeSetReport =
+        String.format("%.1f ns/op, ", (double)(System.nanoTime() - startTime) /
+                      operations) +
+        Allocation.perOperation(startBytes, operations) + "/op";
+      startBytes = Allocation.getAllocatedBytes();
+      startTime = System.nanoTime();
+      runPrimitive(type);
+      primitiveReport =
+        String.format("%.1f ns/op, ", (double)(System.nanoTime() - startTime) /
+                      operations) +
+        Allocation.perOperation(startBytes, operations) + "/op";
+    }
+    System.out.println(name + ": mismatches=" + mismatches);
+    System.out.println("  TreeSet:   " + treeSetReport);
+    System.out.println("  primitive: " + primitiveReport);
+  }
+
+  /**
+   * Runs the benchmark for a sparse type with a single value range
+   * 0..127 and for a sparse type with 32 value ranges of 10 values
+   * each.  Reports time and allocation per succ()/pred() pair over
+   * values 0..511, as measured in the last of 20 rounds.
+   */
+  public static void main(final String argv[])
+  {
+    final SparseType single =
+      new SparseType(SparseType.GENERIC_ICON_KEY, 0, 127,
+                     IntegerRenderer.DEFAULT_RENDERER);
+    final TreeSetLookup singleReference = new TreeSetLookup();
+    singleReference.add(new ValueRange(0, 127,
+                                       IntegerRenderer.DEFAULT_RENDERER));
+    final SparseType multiple = new SparseType();
+    final TreeSetLookup multipleReference = new TreeSetLookup();
+    for (int i = 0; i < 32; i++) {
+      multiple.addValueRange(16 * i, 16 * i + 9,
+                             IntegerRenderer.DEFAULT_RENDERER);
+      multipleReference.add(new ValueRange(16 * i, 16 * i + 9,
+                                           IntegerRenderer.DEFAULT_RENDERER));
+    }
+    benchmark("single range 0..127", single, singleReference);
+    benchmark("32 ranges", multiple, multipleReference);
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
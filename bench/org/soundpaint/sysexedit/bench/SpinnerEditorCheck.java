@@ -0,0 +1,112 @@
+/*
+ * @(#)SpinnerEditorCheck.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.bench;
+
+import org.soundpaint.sysexedit.gui.JValue;
+import org.soundpaint.sysexedit.model.IntegerRenderer;
+import org.soundpaint.sysexedit.model.SparseType;
+import org.soundpaint.sysexedit.model.SpinnerEditor;
+import org.soundpaint.sysexedit.model.Value;
+import org.soundpaint.sysexedit.model.ValueImpl;
+
+/**
+ * Checks the choice of editor by domain size, measures the time for
+ * creating a spinner editor for a domain of 65536 values in two
+ * ranges, and checks spinner navigation across the range gap, at
+ * both ends and from outside the domain.  Each step throws an
+ * exception if its result is unexpected.
+ */
+public class SpinnerEditorCheck
+{
+  private static final int ROUNDS = 5;
+  private static final int EDITORS = 1000;
+
+  private SpinnerEditorCheck()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  private static void check(final String what, final JValue value,
+                            final Integer expected)
+  {
+    final Integer actual = value != null ? value.getSystemValue() : null;
+    if ((actual != null) ? !actual.equals(expected) : expected != null) {
+      throw new IllegalStateException(what + ": expected " + expected +
+                                      ", but got " + actual);
+    }
+    System.out.println(what + ": " + actual);
+  }
+
+  /**
+   * Runs the check.  The second value range is displayed with an
+   * offset of 20000, such that display strings are unique over the
+   * whole domain and committing a display string selects exactly one
+   * value.  The time per spinner editor is reported as measured in
+   * the last of 5 rounds.
+   */
+  public static void main(final String argv[])
+  {
+    System.setProperty("java.awt.headless", "true");
+    final SparseType sparseType =
+      new SparseType().
+      addValueRange(0, 9999, IntegerRenderer.DEFAULT_RENDERER).
+      addValueRange(20000, 75535, 20000, IntegerRenderer.DEFAULT_RENDERER);
+    final Value large = new ValueImpl(sparseType, 8000);
+    final Value small =
+      new ValueImpl(new SparseType(SparseType.GENERIC_ICON_KEY, 0, 127,
+                                   IntegerRenderer.DEFAULT_RENDERER), 64);
+    System.out.println("values: " + sparseType.getValueCount() + ", editor: " +
+                       large.createEditor().getClass().getSimpleName() +
+                       "; 128 values, editor: " +
+                       small.createEditor().getClass().getSimpleName());
+    double time = 0.0;
+    for (int round = 0; round < ROUNDS; round++) {
+      final long startTime = System.nanoTime();
+      for (int i = 0; i < EDITORS; i++) {
+        large.createEditor();
+      }
+      time = (System.nanoTime() - startTime) / 1.0e6 / EDITORS;
+    }
+    System.out.printf("%.3f ms per editor%n", time);
+
+    final SpinnerEditor editor = (SpinnerEditor)large.createEditor();
+    check("default", editor.getSelectedValue(), 8000);
+    editor.setSelectionByNumericalValue(9999);
+    check("next of 9999", (JValue)editor.getNextValue(), 20000);
+    check("previous of 20000", (JValue)editor.getPreviousValue(), 9999);
+    editor.setSelectionByNumericalValue(0);
+    check("previous of 0", (JValue)editor.getPreviousValue(), null);
+    editor.setSelectionByNumericalValue(75535);
+    check("next of 75535", (JValue)editor.getNextValue(), null);
+    editor.setSelectionByNumericalValue(15000);
+    check("selection of 15000", editor.getSelectedValue(), null);
+    check("next of no selection", (JValue)editor.getNextValue(), 0);
+    editor.getModel().setValue("20000");
+    check("commit of \"20000\"", editor.getSelectedValue(), 20000);
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
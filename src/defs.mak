@@ -29,6 +29,13 @@ SRC_DIR = $(SYSEXEDIT_HOME)/src
 # (run 'make classes' to generate)
 BUILD_DIR = $(SYSEXEDIT_HOME)/build
 
+# benchmark and check harnesses root directory; not part of the
+# application (run 'make bench' to compile)
+BENCH_SRC_DIR = $(SYSEXEDIT_HOME)/bench
+
+# compiled benchmark and check harness class files root directory
+BENCH_BUILD_DIR = $(SYSEXEDIT_HOME)/build-bench
+
 # binary target directory; contains archive file with the compiled classes
 # (run 'make jar' to generate)
 JAR_DIR = $(SYSEXEDIT_HOME)/jar
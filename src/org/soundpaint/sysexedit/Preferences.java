@@ -20,8 +20,11 @@
 
 package org.soundpaint.sysexedit;
 
+import java.io.File;
 import java.util.prefs.BackingStoreException;
 
+import org.soundpaint.sysexedit.model.PatchLibrary;
+
 public class Preferences
 {
   private final static String PATH_MIDI_INPUT_CONNECTION =
@@ -30,6 +33,8 @@ public class Preferences
     "midi/outputConnection";
   private final static String PATH_APPEARANCE_SHOW_TOOL_TIPS =
     "appearance/showToolTips";
+  private final static String PATH_LIBRARY_PATCH_LIBRARY_DIRECTORY =
+    "library/patchLibraryDirectory";
 
   private static Preferences defaultPreferences;
 
@@ -78,6 +83,18 @@ public class Preferences
     prefs.putBoolean(PATH_APPEARANCE_SHOW_TOOL_TIPS, showToolTips);
   }
 
+  public String getLibraryPatchLibraryDirectory()
+  {
+    return prefs.get(PATH_LIBRARY_PATCH_LIBRARY_DIRECTORY,
+                     System.getProperty("user.home") + File.separator +
+                     PatchLibrary.DEFAULT_DIRECTORY);
+  }
+
+  public void setLibraryPatchLibraryDirectory(final String directory)
+  {
+    prefs.put(PATH_LIBRARY_PATCH_LIBRARY_DIRECTORY, directory);
+  }
+
   public void flush() throws BackingStoreException
   {
     prefs.flush();
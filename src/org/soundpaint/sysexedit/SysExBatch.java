@@ -0,0 +1,289 @@
+/*
+ * @(#)SysExBatch.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.soundpaint.sysexedit.model.CollisionStrategy;
+import org.soundpaint.sysexedit.model.Device;
+import org.soundpaint.sysexedit.model.MapSnapshot;
+import org.soundpaint.sysexedit.model.SmfSysExStream;
+import org.soundpaint.sysexedit.model.SysExExport;
+import org.soundpaint.sysexedit.model.SysExImport;
+import org.soundpaint.sysexedit.parser.ParseException;
+
+/**
+ * Command line entry for processing SysEx data without any GUI, e.g.
+ * within build pipelines.  Loads a device model, builds its map,
+ * applies the specified input files in order, and finally writes
+ * the resulting values as bulk dump or snapshot.
+ *
+ * Input files may be snapshot files, Standard MIDI Files or files of
+ * raw SysEx messages; the format is detected from the contents of
+ * each file.  Unlike SysExEdit, this class neither is an applet nor
+ * touches the tree component of the map, such that no GUI toolkit is
+ * ever initialized.
+ */
+public class SysExBatch
+{
+  private static final String DEFAULT_DEVICE = "db50xg";
+
+  private static final int EXIT_OK = 0;
+  private static final int EXIT_USAGE = 1;
+  private static final int EXIT_ERROR = 2;
+
+  private String deviceName;
+  private CollisionStrategy strategy;
+  private int deviceId;
+  private boolean changesOnly;
+  private File syxOutput;
+  private File snapshotOutput;
+  private final List<File> inputs;
+
+  private SysExBatch()
+  {
+    deviceName = DEFAULT_DEVICE;
+    strategy = CollisionStrategy.OVERWRITE;
+    deviceId = -1;
+    changesOnly = false;
+    syxOutput = null;
+    snapshotOutput = null;
+    inputs = new ArrayList<File>();
+  }
+
+  private static void printHelp(final PrintStream out)
+  {
+    out.println("Usage: org.soundpaint.sysexedit.SysExBatch [options] " +
+                "[input file...]");
+    out.println();
+    out.println("Applies the input files in order to the map of the " +
+                "device model.");
+    out.println("Input files may be snapshot files (." +
+                MapSnapshot.FILE_EXTENSION + "), Standard MIDI Files");
+    out.println("or files of raw SysEx messages.");
+    out.println();
+    out.println("Options:");
+    out.println("  -device <model>  device model: name of a built-in " +
+                "device description,");
+    out.println("                   path of a device description file, " +
+                "or device class name");
+    out.println("                   (default: " + DEFAULT_DEVICE + ")");
+    out.println("  -keep            keep non-default values on collision " +
+                "(default: overwrite)");
+    out.println("  -id <n>          MIDI device ID for bulk dumps " +
+                "(default: device model's default)");
+    out.println("  -changes         dump only values that differ from the " +
+                "device");
+    out.println("  -syx <file>      write bulk dump as raw SysEx messages");
+    out.println("  -snapshot <file> write snapshot file");
+    out.println("  -help            print this message");
+    out.println();
+    out.println("Exit status codes:");
+    out.println("Exit 0 : ok");
+    out.println("Exit 1 : invalid command line");
+    out.println("Exit 2 : error");
+  }
+
+  private static class UsageException extends Exception
+  {
+    private static final long serialVersionUID = -5003414232950843262L;
+
+    private UsageException(final String message)
+    {
+      super(message);
+    }
+  }
+
+  private static String getOptionValue(final String[] argv, final int argc)
+    throws UsageException
+  {
+    if (argc + 1 >= argv.length) {
+      throw new UsageException("missing value for option " + argv[argc]);
+    }
+    return argv[argc + 1];
+  }
+
+  /**
+   * Parses the command line.
+   * @return False, if only help has been requested.
+   */
+  private boolean parseArgv(final String[] argv) throws UsageException
+  {
+    int argc = 0;
+    while ((argc < argv.length) && argv[argc].startsWith("-")) {
+      final String option = argv[argc];
+      if (option.equals("-help") || option.equals("-?")) {
+        return false;
+      } else if (option.equals("-device")) {
+        deviceName = getOptionValue(argv, argc++);
+      } else if (option.equals("-keep")) {
+        strategy = CollisionStrategy.KEEP_NON_DEFAULT;
+      } else if (option.equals("-id")) {
+        final String value = getOptionValue(argv, argc++);
+        try {
+          deviceId = Integer.decode(value);
+        } catch (final NumberFormatException e) {
+          throw new UsageException("invalid device ID: " + value);
+        }
+        if ((deviceId < 0x00) || (deviceId > 0x7f)) {
+          throw new UsageException("device ID out of range: " + value);
+        }
+      } else if (option.equals("-changes")) {
+        changesOnly = true;
+      } else if (option.equals("-syx")) {
+        syxOutput = new File(getOptionValue(argv, argc++));
+      } else if (option.equals("-snapshot")) {
+        snapshotOutput = new File(getOptionValue(argv, argc++));
+      } else {
+        throw new UsageException("unknown option: " + option);
+      }
+      argc++;
+    }
+    for (; argc < argv.length; argc++) {
+      inputs.add(new File(argv[argc]));
+    }
+    return true;
+  }
+
+  /**
+   * Creates the device model.  An existing file is taken as device
+   * description, a qualified name as device class, and anything else
+   * as the name of a built-in device description.
+   */
+  private Device createDevice() throws ParseException
+  {
+    final File file = new File(deviceName);
+    if (file.isFile()) {
+      try {
+        return org.soundpaint.sysexedit.parser.Device.
+          create(file.toURI().toURL());
+      } catch (final IOException e) {
+        throw new ParseException("invalid device description path: " +
+                                 deviceName, e);
+      }
+    }
+    if (deviceName.indexOf('.') >= 0) {
+      try {
+        return Class.forName(deviceName).asSubclass(Device.class).
+          getDeclaredConstructor().newInstance();
+      } catch (final ReflectiveOperationException | ClassCastException e) {
+        throw new ParseException("failed loading device class " +
+                                 deviceName + ": " + e, e);
+      }
+    }
+    return org.soundpaint.sysexedit.parser.Device.create(deviceName);
+  }
+
+  private void importFile(final Device device, final File file)
+    throws IOException
+  {
+    if (!file.isFile()) {
+      throw new IOException("no such file: " + file);
+    }
+    if (MapSnapshot.isSnapshot(file)) {
+      MapSnapshot.read(device, file);
+      return;
+    }
+    final InputStream in =
+      SmfSysExStream.isStandardMidiFile(file) ?
+      new SmfSysExStream(file, device.getManufacturerId(), 0,
+                         SmfSysExStream.END_OF_FILE) :
+      new BufferedInputStream(new FileInputStream(file));
+    try {
+      SysExImport.importSysEx(device, in, strategy);
+    } finally {
+      in.close();
+    }
+  }
+
+  private void run() throws IOException, ParseException
+  {
+    final Device device = createDevice();
+    System.err.println("[device model: " + device.getName() + "]");
+    device.buildMap();
+    for (final File input : inputs) {
+      System.err.println("[importing " + input + "]");
+      importFile(device, input);
+    }
+    if (syxOutput != null) {
+      final byte id =
+        (byte)(deviceId >= 0 ?
+               deviceId : device.getDeviceIdType().getDefaultValue());
+      final int messageCount;
+      try (final OutputStream out =
+           new BufferedOutputStream(new FileOutputStream(syxOutput))) {
+        messageCount = SysExExport.exportSysEx(device, id, changesOnly, out);
+      }
+      System.err.println("[wrote " + messageCount + " SysEx messages to " +
+                         syxOutput + "]");
+    }
+    if (snapshotOutput != null) {
+      MapSnapshot.write(device, snapshotOutput);
+      System.err.println("[wrote snapshot " + snapshotOutput + "]");
+    }
+  }
+
+  /**
+   * Runs the batch processing as specified by the command line.
+   *
+   * @param argv The argument list as passed from the command line.
+   *    Use option `-help' for details on options available.
+   */
+  public static void main(final String[] argv)
+  {
+    System.setProperty("java.awt.headless", "true");
+    final SysExBatch batch = new SysExBatch();
+    try {
+      if (!batch.parseArgv(argv)) {
+        printHelp(System.out);
+        System.exit(EXIT_OK);
+      }
+    } catch (final UsageException e) {
+      System.err.println(e.getMessage());
+      printHelp(System.err);
+      System.exit(EXIT_USAGE);
+    }
+    try {
+      batch.run();
+    } catch (final IOException | ParseException e) {
+      System.err.println("error: " + e.getMessage());
+      System.exit(EXIT_ERROR);
+    }
+    System.exit(EXIT_OK);
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
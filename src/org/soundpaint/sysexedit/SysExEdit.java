@@ -43,6 +43,7 @@ import javax.swing.UIDefaults;
 
 import org.soundpaint.sysexedit.gui.EditorFrame;
 import org.soundpaint.sysexedit.gui.FramesManager;
+import org.soundpaint.sysexedit.model.PatchLibrary;
 
 /**
  * This is the main entry of the SysExEdit utility.
@@ -85,6 +86,7 @@ public class SysExEdit extends Applet implements FramesManager
   private static int argCopyright = 0;  /* dto. */
 
   private final Preferences preferences;
+  private PatchLibrary patchLibrary;
   private final Hashtable<Frame, Integer> frames; // frames and their unique IDs
   private boolean inAnApplet = false; // true, if run as an applet
 
@@ -230,6 +232,7 @@ public class SysExEdit extends Applet implements FramesManager
   {
     preferences = Preferences.getDefault();
     frames = new Hashtable<Frame, Integer>();
+    patchLibrary = null;
   }
 
   private static UIManager.LookAndFeelInfo[] lookAndFeelInfo;
@@ -419,6 +422,20 @@ public class SysExEdit extends Applet implements FramesManager
       ((EditorFrame)enumeration.nextElement()).tryClose();
   }
 
+  /**
+   * Returns the patch library that is shared by all frames, opening
+   * it upon first request.
+   */
+  public synchronized PatchLibrary getPatchLibrary() throws IOException
+  {
+    if (patchLibrary == null) {
+      patchLibrary =
+        new PatchLibrary(new File(preferences.
+                                  getLibraryPatchLibraryDirectory()));
+    }
+    return patchLibrary;
+  }
+
   /**
    * Loads all of the internal icons. This should be called only once
    * at startup, e.g. when this class is instantiated for the first time.
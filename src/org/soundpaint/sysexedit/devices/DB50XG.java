@@ -22,18 +22,25 @@ package org.soundpaint.sysexedit.devices;
 
 import java.io.InputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import javax.swing.ImageIcon;
 import javax.swing.UIManager;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.TreeNode;
 
 import org.soundpaint.sysexedit.model.AbstractDevice;
+import org.soundpaint.sysexedit.model.AddressIndex;
 import org.soundpaint.sysexedit.model.AddressRepresentation;
 import org.soundpaint.sysexedit.model.DataNode;
+import org.soundpaint.sysexedit.model.DumpPlan;
 import org.soundpaint.sysexedit.model.EnumRenderer;
 import org.soundpaint.sysexedit.model.FolderNode;
+import org.soundpaint.sysexedit.model.FolderTemplate;
 import org.soundpaint.sysexedit.model.IntegerRenderer;
 import org.soundpaint.sysexedit.model.MapNode;
+import org.soundpaint.sysexedit.model.PacketFormat;
 import org.soundpaint.sysexedit.model.SparseType;
+import org.soundpaint.sysexedit.model.TransmitPacing;
 import org.soundpaint.sysexedit.model.Value;
 import org.soundpaint.sysexedit.model.ValueImpl;
 import org.soundpaint.sysexedit.model.ValueRangeRenderer;
@@ -46,6 +53,50 @@ public class DB50XG extends AbstractDevice
   private static final String DEVICE_NAME = "MU50 / DB50XG";
   private static final byte MANUFACTURER_ID = 0x43;
   private static final byte MODEL_ID = 0x4c;
+
+  /**
+   * Maximum number of data bytes per bulk dump message that the
+   * device reliably accepts.
+   */
+  private static final int MAX_BULK_DUMP_BYTE_COUNT = 0x80;
+
+  private static final PacketFormat.HeaderItem[] HEADER_ITEMS =
+    new PacketFormat.HeaderItem[] {
+    PacketFormat.HeaderItem.MANUFACTURER_ID,
+    PacketFormat.HeaderItem.DEVICE_ID,
+    PacketFormat.HeaderItem.MODEL_ID
+  };
+
+  /**
+   * Format of bulk dump messages received from the device: F0 43 0n
+   * 4C bh bl hi mid lo data… sum F7.  Any device number n is
+   * accepted, such that dumps recorded from a device with a
+   * different device ID can be imported as well.
+   */
+  private static final PacketFormat BULK_DUMP_FORMAT =
+    new PacketFormat(HEADER_ITEMS, new int[] { 0, 0x00, 0 }, 7, 2, 3,
+                     PacketFormat.Checksum.YAMAHA, MAX_BULK_DUMP_BYTE_COUNT);
+
+  /**
+   * Format of parameter change messages received from the device:
+   * F0 43 1n 4C hi mid lo data… F7.  Any device number n is accepted.
+   */
+  private static final PacketFormat PARAMETER_CHANGE_FORMAT =
+    new PacketFormat(HEADER_ITEMS, new int[] { 0, 0x10, 0 }, 7, 0, 3,
+                     PacketFormat.Checksum.NONE, MAX_BULK_DUMP_BYTE_COUNT);
+
+  /**
+   * Pause in milliseconds that the device needs after each bulk dump
+   * message for processing the received data.
+   */
+  private static final int BULK_DUMP_MESSAGE_GAP = 50;
+
+  private static final TransmitPacing TRANSMIT_PACING =
+    new TransmitPacing(TransmitPacing.MIDI_WIRE_BYTES_PER_SECOND,
+                       BULK_DUMP_MESSAGE_GAP);
+
+  /** Size of the chunks in which bulk read input is consumed. */
+  private static final int BULK_READ_BUFFER_SIZE = 0x400;
   private static final String ENTERED_BY =
     "Jürgen Reuter, Copyright © 1998, 2018";
 
@@ -977,6 +1028,23 @@ public class DB50XG extends AbstractDevice
     return AddressRepresentation.TRIPLE_7_BITS;
   }
 
+  /**
+   * Returns the maximum number of memory bits per bulk dump message.
+   */
+  public long getMaxBulkDumpBitSize()
+  {
+    return 7 * MAX_BULK_DUMP_BYTE_COUNT;
+  }
+
+  /**
+   * Returns the transmit pacing that gives the device enough time
+   * for processing each bulk dump message.
+   */
+  public TransmitPacing getTransmitPacing()
+  {
+    return TRANSMIT_PACING;
+  }
+
   /**
    * Converts a DB50XG memory address into a the corresponding index
    * of a bit vector.
@@ -985,7 +1053,7 @@ public class DB50XG extends AbstractDevice
    * @param lo The DB50XG address low component value.
    * @return The corresponding index in a vector of bits.
    */
-  private long addr2index(final int hi, final int mid, final int lo)
+  private static long addr2index(final int hi, final int mid, final int lo)
   {
     return
       7 * ((((long)(hi & 0x7f)) << 14) | ((mid & 0x7f) << 7) | (lo & 0x7f));
@@ -1659,42 +1727,42 @@ public class DB50XG extends AbstractDevice
     return nodeEffect;
   }
 
-  private void buildPartControl(final FolderNode node,
-                                final String displayPrefix,
-                                final int defaultPModDepth)
+  private static void buildPartControl(final FolderTemplate template,
+                                       final String displayPrefix,
+                                       final int defaultPModDepth)
   {
     final Value pitchControl =
       new ValueImpl(typeTranspose, displayPrefix + " Pitch Control", 0x40);
     pitchControl.setBitSize(7);
-    node.add(new DataNode(pitchControl));
+    template.add(pitchControl);
 
     final Value filterControl =
       new ValueImpl(typeFilterControl, displayPrefix + " Filter Control", 0x40);
     filterControl.setBitSize(7);
-    node.add(new DataNode(filterControl));
+    template.add(filterControl);
 
     final Value amplitudeControl =
       new ValueImpl(typeSigned7Bit, displayPrefix + " Amplitude Control", 0x40);
     amplitudeControl.setBitSize(7);
-    node.add(new DataNode(amplitudeControl));
+    template.add(amplitudeControl);
 
     final Value lfoPModDepth =
       new ValueImpl(typeNonNegative7Bit, displayPrefix + " LFO PMod Depth",
                     defaultPModDepth);
     lfoPModDepth.setBitSize(7);
-    node.add(new DataNode(lfoPModDepth));
+    template.add(lfoPModDepth);
 
     final Value lfoFModDepth =
       new ValueImpl("internal-mod-fm", typeNonNegative7Bit,
                     displayPrefix + " LFO FMod Depth", 0x00);
     lfoFModDepth.setBitSize(7);
-    node.add(new DataNode(lfoFModDepth));
+    template.add(lfoFModDepth);
 
     final Value lfoAModDepth =
       new ValueImpl("internal-mod-am", typeNonNegative7Bit,
                     displayPrefix + " LFO AMod Depth", 0x00);
     lfoAModDepth.setBitSize(7);
-    node.add(new DataNode(lfoAModDepth));
+    template.add(lfoAModDepth);
   }
 
   private static final SparseType typeElementReserve =
@@ -1718,389 +1786,418 @@ public class DB50XG extends AbstractDevice
     new SparseType("internal-control").
     addValueRange(0x0, 0x3, rendererPartMode);
 
-  private FolderNode buildFolderNodeMultiPartN(final int n)
+  /**
+   * Creates the structure shared by all multi parts.  Defaults that
+   * differ among the parts are set per part.
+   * @see #buildFolderNodeMultiPartN
+   */
+  private static FolderTemplate createTemplateMultiPart()
   {
-    final FolderNode nodeMultiPartN =
-      new FolderNode("Multi Part " + (n + 1), addr2index(0x08, n, 0x00));
+    final FolderTemplate template = new FolderTemplate();
 
     final Value elementReserve =
       new ValueImpl(typeElementReserve, "Element Reserve",
-                    n == 9 ? 0x00 : 0x02);
+                    0x02);
     elementReserve.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(elementReserve));
+    template.add(elementReserve);
 
     final Value bankSelectMsb =
       new ValueImpl(typeNonNegative7Bit, "Bank Select MSB",
-                    n == 9 ? 0x7f : 0x00);
+                    0x00);
     bankSelectMsb.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(bankSelectMsb));
+    template.add(bankSelectMsb);
 
     final Value bankSelectLsb =
       new ValueImpl(typeNonNegative7Bit, "Bank Select LSB", 0x00);
     bankSelectLsb.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(bankSelectLsb));
+    template.add(bankSelectLsb);
 
     final Value programNumber =
       new ValueImpl(typeProgramNumber, "Program Number", 0x00);
     programNumber.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(programNumber));
+    template.add(programNumber);
 
     final Value rcvChannel =
-      new ValueImpl(typeRcvChannel, "Rcv Channel", n);
+      new ValueImpl(typeRcvChannel, "Rcv Channel", 0x00);
     rcvChannel.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvChannel));
+    template.add(rcvChannel);
 
     final Value monoPolyMode =
       new ValueImpl(typeMonoPolyMode, "Mono / Poly Mode", 0x1);
     monoPolyMode.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(monoPolyMode));
+    template.add(monoPolyMode);
 
     final Value keyOnAssign =
       new ValueImpl(typeKeyOnAssign, "Same Not Number Key on Assign",
-                    n == 9 ? 0x2 : 0x0);
+                    0x0);
     keyOnAssign.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(keyOnAssign));
+    template.add(keyOnAssign);
 
     final Value partMode =
-      new ValueImpl(typePartMode, "Part Mode", n == 9 ? 0x2 : 0x0);
+      new ValueImpl(typePartMode, "Part Mode", 0x0);
     partMode.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(partMode));
+    template.add(partMode);
 
     final Value noteShift = new ValueImpl(typeTranspose, "Note Shift", 0x40);
     noteShift.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(noteShift));
+    template.add(noteShift);
 
     final Value detune = new ValueImpl(typeDetune, "Detune", 0x0400);
     detune.setBitSize(14);
-    nodeMultiPartN.add(new DataNode(detune));
+    template.add(detune);
 
     final Value volume = new ValueImpl(typeVolume, "Volume", 0x64);
     volume.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(volume));
+    template.add(volume);
 
     final Value velocitySenseDepth =
       new ValueImpl(typeNonNegative7Bit, "Velocity Sense Depth", 0x40);
     velocitySenseDepth.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(velocitySenseDepth));
+    template.add(velocitySenseDepth);
 
     final Value velocitySenseOffset =
       new ValueImpl(typeNonNegative7Bit, "Velocity Sense Offset", 0x40);
     velocitySenseOffset.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(velocitySenseOffset));
+    template.add(velocitySenseOffset);
 
     final Value pan = new ValueImpl(typePanExtended, "Pan", 0x40);
     pan.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(pan));
+    template.add(pan);
 
     final Value noteLimitLow =
       new ValueImpl("internal-limit-bottom", typeNote, "Note Limit Low", 0x00);
     noteLimitLow.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(noteLimitLow));
+    template.add(noteLimitLow);
 
     final Value noteLimitHigh =
       new ValueImpl("internal-limit-top", typeNote, "Note Limit High", 0x7f);
     noteLimitHigh.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(noteLimitHigh));
+    template.add(noteLimitHigh);
 
     final Value dryLevel = new ValueImpl(typeVolume, "Dry Level", 0x7f);
     dryLevel.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(dryLevel));
+    template.add(dryLevel);
 
     final Value chorusSend = new ValueImpl(typeVolume, "Chorus Send", 0x00);
     chorusSend.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(chorusSend));
+    template.add(chorusSend);
 
     final Value reverbSend = new ValueImpl(typeVolume, "Reverb Send", 0x28);
     reverbSend.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(reverbSend));
+    template.add(reverbSend);
 
     final Value variationSend =
       new ValueImpl(typeVolume, "Variation Send", 0x00);
     variationSend.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(variationSend));
+    template.add(variationSend);
 
     final Value vibratoRate =
       new ValueImpl(typeSigned7Bit, "Vibrato Rate", 0x40);
     vibratoRate.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(vibratoRate));
+    template.add(vibratoRate);
 
     final Value vibratoDepth =
       new ValueImpl(typeSigned7Bit, "Vibrato Depth", 0x40);
     vibratoDepth.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(vibratoDepth));
+    template.add(vibratoDepth);
 
     final Value vibratoDelay =
       new ValueImpl(typeSigned7Bit, "Vibrato Delay", 0x40);
     vibratoDelay.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(vibratoDelay));
+    template.add(vibratoDelay);
 
     final Value filterCutoffFrequency =
       new ValueImpl("internal-tune", typeSigned7Bit,
                     "Filter Cutoff Frequency", 0x40);
     filterCutoffFrequency.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(filterCutoffFrequency));
+    template.add(filterCutoffFrequency);
 
     final Value filterResonance =
       new ValueImpl(typeSigned7Bit, "Filter Resonance", 0x40);
     filterResonance.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(filterResonance));
+    template.add(filterResonance);
 
     final Value egAttackTime =
       new ValueImpl("internal-time", typeSigned7Bit, "EG Attack Time", 0x40);
     egAttackTime.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(egAttackTime));
+    template.add(egAttackTime);
 
     final Value egDecayTime =
       new ValueImpl("internal-time", typeSigned7Bit, "EG Decay Time", 0x40);
     egDecayTime.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(egDecayTime));
+    template.add(egDecayTime);
 
     final Value egReleaseTime =
       new ValueImpl("internal-time", typeSigned7Bit, "EG Release Time", 0x40);
     egReleaseTime.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(egReleaseTime));
+    template.add(egReleaseTime);
 
-    buildPartControl(nodeMultiPartN, "MW", 0x0a);
+    buildPartControl(template, "MW", 0x0a);
 
     final Value bendPitchControl =
       new ValueImpl(typeTranspose, "Bend Pitch Control", 0x42);
     bendPitchControl.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(bendPitchControl));
+    template.add(bendPitchControl);
 
     final Value bendFilterControl =
       new ValueImpl(typeFilterControl, "Bend Filter Control", 0x40);
     bendFilterControl.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(bendFilterControl));
+    template.add(bendFilterControl);
 
     final Value bendAmplitudeControl =
       new ValueImpl(typeSigned7Bit, "Bend Amplitude Control", 0x40);
     bendAmplitudeControl.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(bendAmplitudeControl));
+    template.add(bendAmplitudeControl);
 
     final Value bendLfoPModDepth =
       new ValueImpl(typeBendLfoModDepth, "Bend LFO PMod Depth", 0x40);
     bendLfoPModDepth.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(bendLfoPModDepth));
+    template.add(bendLfoPModDepth);
 
     final Value bendLfoFModDepth =
       new ValueImpl("internal-mod-fm", typeBendLfoModDepth,
                     "Bend LFO FMod Depth", 0x40);
     bendLfoFModDepth.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(bendLfoFModDepth));
+    template.add(bendLfoFModDepth);
 
     final Value bendLfoAModDepth =
       new ValueImpl("internal-mod-am", typeBendLfoModDepth,
                     "Bend LFO AMod Depth", 0x40);
     bendLfoAModDepth.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(bendLfoAModDepth));
+    template.add(bendLfoAModDepth);
 
     final Value rcvPitchBend =
       new ValueImpl(typeSwitch, "Rcv Pitch Bend", 0x1);
     rcvPitchBend.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvPitchBend, addr2index(0x08, n, 0x30)));
+    template.add(rcvPitchBend, addr2index(0x00, 0x00, 0x30));
 
     final Value rcvChAfterTouch =
       new ValueImpl(typeSwitch, "Rcv Ch After Touch (CAT)", 0x1);
     rcvChAfterTouch.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvChAfterTouch));
+    template.add(rcvChAfterTouch);
 
     final Value rcvProgramChange =
       new ValueImpl(typeSwitch, "Rcv Program Change", 0x1);
     rcvProgramChange.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvProgramChange));
+    template.add(rcvProgramChange);
 
     final Value rcvControlChange =
       new ValueImpl(typeSwitch, "Rcv Control Change", 0x1);
     rcvControlChange.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvControlChange));
+    template.add(rcvControlChange);
 
     final Value rcvPolyAfterTouch =
       new ValueImpl(typeSwitch, "Rcv Poly After Touch (PAT)", 0x1);
     rcvPolyAfterTouch.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvChAfterTouch));
+    template.add(rcvPolyAfterTouch);
 
     final Value rcvNoteMessage =
       new ValueImpl(typeSwitch, "Rcv Note Message", 0x1);
     rcvNoteMessage.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvNoteMessage));
+    template.add(rcvNoteMessage);
 
     final Value rcvRpn = new ValueImpl(typeSwitch, "Rcv RPN", 0x1);
     rcvRpn.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvRpn));
+    template.add(rcvRpn);
 
     final Value rcvNrpn = new ValueImpl(typeSwitch, "Rcv NRPN", 0x1);
     rcvNrpn.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvNrpn));
+    template.add(rcvNrpn);
 
     final Value rcvModulation =
       new ValueImpl(typeSwitch, "Rcv Modulation", 0x1);
     rcvModulation.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvModulation));
+    template.add(rcvModulation);
 
     final Value rcvVolume = new ValueImpl(typeSwitch, "Rcv Volume", 0x1);
     rcvVolume.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvVolume));
+    template.add(rcvVolume);
 
     final Value rcvPan = new ValueImpl(typeSwitch, "Rcv Pan", 0x1);
     rcvPan.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvPan));
+    template.add(rcvPan);
 
     final Value rcvExpression =
       new ValueImpl(typeSwitch, "Rcv Expression", 0x1);
     rcvExpression.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvExpression));
+    template.add(rcvExpression);
 
     final Value rcvHold1 = new ValueImpl(typeSwitch, "Rcv Hold1", 0x1);
     rcvHold1.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvHold1));
+    template.add(rcvHold1);
 
     final Value rcvPortamento =
       new ValueImpl(typeSwitch, "Rcv Portamento", 0x1);
     rcvPortamento.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvPortamento));
+    template.add(rcvPortamento);
 
     final Value rcvSostenuto = new ValueImpl(typeSwitch, "Rcv Sostenuto", 0x1);
     rcvSostenuto.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvSostenuto));
+    template.add(rcvSostenuto);
 
     final Value rcvSoftPedal = new ValueImpl(typeSwitch, "Rcv Soft Pedal", 0x1);
     rcvSoftPedal.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvSoftPedal));
+    template.add(rcvSoftPedal);
 
     final Value rcvBankSelect =
       new ValueImpl(typeSwitch, "Rcv Bank Select", 0x1);
     rcvBankSelect.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(rcvBankSelect));
+    template.add(rcvBankSelect);
 
     final Value scaleTuningC =
       new ValueImpl("internal-tune-c", typeScaleTuning, "Scale Tuning C", 0x40);
     scaleTuningC.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningC));
+    template.add(scaleTuningC);
 
     final Value scaleTuningCSharp =
       new ValueImpl("internal-tune-c-sharp", typeScaleTuning,
                     "Scale Tuning C#", 0x40);
     scaleTuningCSharp.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningCSharp));
+    template.add(scaleTuningCSharp);
 
     final Value scaleTuningD =
       new ValueImpl("internal-tune-d", typeScaleTuning, "Scale Tuning D", 0x40);
     scaleTuningD.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningD));
+    template.add(scaleTuningD);
 
     final Value scaleTuningDSharp =
       new ValueImpl("internal-tune-d-sharp", typeScaleTuning,
                     "Scale Tuning D#", 0x40);
     scaleTuningDSharp.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningDSharp));
+    template.add(scaleTuningDSharp);
 
     final Value scaleTuningE =
       new ValueImpl("internal-tune-e", typeScaleTuning, "Scale Tuning E", 0x40);
     scaleTuningE.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningE));
+    template.add(scaleTuningE);
 
     final Value scaleTuningF =
       new ValueImpl("internal-tune-f", typeScaleTuning, "Scale Tuning F", 0x40);
     scaleTuningF.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningF));
+    template.add(scaleTuningF);
 
     final Value scaleTuningFSharp =
       new ValueImpl("internal-tune-f-sharp", typeScaleTuning,
                     "Scale Tuning F#", 0x40);
     scaleTuningFSharp.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningFSharp));
+    template.add(scaleTuningFSharp);
 
     final Value scaleTuningG =
       new ValueImpl("internal-tune-g", typeScaleTuning, "Scale Tuning G", 0x40);
     scaleTuningG.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningG));
+    template.add(scaleTuningG);
 
     final Value scaleTuningGSharp =
       new ValueImpl("internal-tune-g-sharp", typeScaleTuning,
                     "Scale Tuning G#", 0x40);
     scaleTuningGSharp.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningGSharp));
+    template.add(scaleTuningGSharp);
 
     final Value scaleTuningA =
       new ValueImpl("internal-tune-a", typeScaleTuning, "Scale Tuning A", 0x40);
     scaleTuningA.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningA));
+    template.add(scaleTuningA);
 
     final Value scaleTuningASharp =
       new ValueImpl("internal-tune-a-sharp", typeScaleTuning,
                     "Scale Tuning A#", 0x40);
     scaleTuningASharp.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningASharp));
+    template.add(scaleTuningASharp);
 
     final Value scaleTuningB =
       new ValueImpl("internal-tune-b", typeScaleTuning, "Scale Tuning B", 0x40);
     scaleTuningB.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(scaleTuningB));
+    template.add(scaleTuningB);
 
-    buildPartControl(nodeMultiPartN, "CAT", 0x00);
+    buildPartControl(template, "CAT", 0x00);
 
-    buildPartControl(nodeMultiPartN, "PAT", 0x00);
+    buildPartControl(template, "PAT", 0x00);
 
     final Value ac1ControllerNumber =
       new ValueImpl(typeControllerNumber, "AC1 Controller Number", 0x10);
     ac1ControllerNumber.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(ac1ControllerNumber));
-    buildPartControl(nodeMultiPartN, "AC1", 0x00);
+    template.add(ac1ControllerNumber);
+    buildPartControl(template, "AC1", 0x00);
 
     final Value ac2ControllerNumber =
       new ValueImpl(typeControllerNumber, "AC2 Controller Number", 0x11);
     ac2ControllerNumber.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(ac2ControllerNumber));
-    buildPartControl(nodeMultiPartN, "AC2", 0x00);
+    template.add(ac2ControllerNumber);
+    buildPartControl(template, "AC2", 0x00);
 
     final Value portamentoSwitch =
       new ValueImpl(typeSwitch, "Portamento Switch", 0x0);
     portamentoSwitch.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(portamentoSwitch));
+    template.add(portamentoSwitch);
 
     final Value portamentoTime =
       new ValueImpl("internal-time", typeNonNegative7Bit,
                     "Portamento Time", 0x00);
     portamentoTime.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(portamentoTime));
+    template.add(portamentoTime);
 
     final Value pitchEgInitialLevel =
       new ValueImpl("internal-volume", typeSigned7Bit,
                     "Pitch EG Initial Level", 0x40);
     pitchEgInitialLevel.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(pitchEgInitialLevel));
+    template.add(pitchEgInitialLevel);
 
     final Value pitchEgAttackTime =
       new ValueImpl("internal-time", typeSigned7Bit,
                     "Pitch EG Attack Time", 0x40);
     pitchEgAttackTime.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(pitchEgAttackTime));
+    template.add(pitchEgAttackTime);
 
     final Value pitchEgReleaseLevel =
       new ValueImpl("internal-volume", typeSigned7Bit,
                     "Pitch EG Release Level", 0x40);
     pitchEgReleaseLevel.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(pitchEgReleaseLevel));
+    template.add(pitchEgReleaseLevel);
 
     final Value pitchEgReleaseTime =
       new ValueImpl("internal-time",typeSigned7Bit,
                     "Pitch EG Release Time", 0x40);
     pitchEgReleaseTime.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(pitchEgReleaseTime));
+    template.add(pitchEgReleaseTime);
 
     final Value velocityLimitLow =
       new ValueImpl("internal-limit-bottom", typePositive7Bit,
                     "Velocity Limit Low", 0x01);
     velocityLimitLow.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(velocityLimitLow));
+    template.add(velocityLimitLow);
 
     final Value velocityLimitHigh =
       new ValueImpl("internal-limit-top", typePositive7Bit,
                     "Velocity Limit High", 0x7f);
     velocityLimitHigh.setBitSize(7);
-    nodeMultiPartN.add(new DataNode(velocityLimitHigh));
+    template.add(velocityLimitHigh);
+
+    return template;
+  }
+
+  private static FolderTemplate templateMultiPart;
+
+  private static synchronized FolderTemplate getTemplateMultiPart()
+  {
+    if (templateMultiPart == null) {
+      templateMultiPart = createTemplateMultiPart();
+    }
+    return templateMultiPart;
+  }
 
-    return nodeMultiPartN;
+  private FolderNode buildFolderNodeMultiPartN(final int n)
+  {
+    final FolderTemplate template = getTemplateMultiPart();
+    final int[] values = template.createValues();
+    values[template.indexOf("Rcv Channel")] = n;
+    if (n == 9) {
+      values[template.indexOf("Element Reserve")] = 0x00;
+      values[template.indexOf("Bank Select MSB")] = 0x7f;
+      values[template.indexOf("Same Not Number Key on Assign")] = 0x2;
+      values[template.indexOf("Part Mode")] = 0x2;
+    }
+    return template.createFolderNode("Multi Part " + (n + 1),
+                                     addr2index(0x08, n, 0x00), values);
   }
 
   private FolderNode buildFolderNodeMultiPart()
@@ -2122,85 +2219,108 @@ public class DB50XG extends AbstractDevice
     new SparseType("internal-control").
     addValueRange(0x00, 0x01, rendererKeyAssign);
 
-  private FolderNode buildFolderNodeDrumSetupNoteNR(final int n, final int r)
+  /**
+   * Creates the structure shared by all drum setup notes.  Defaults
+   * that differ among the notes are set per note.
+   * @see #buildFolderNodeDrumSetupNoteNR
+   */
+  private static FolderTemplate createTemplateDrumSetupNote()
   {
-    final FolderNode nodeDrumSetupNoteR =
-      new FolderNode("Drum Setup Note " + r, addr2index(0x30 + n, r, 0x00));
+    final FolderTemplate template = new FolderTemplate();
 
     final Value pitchCoarse =
       new ValueImpl("internal-transpose", typeSigned7Bit, "Pitch Coarse", 0x40);
     pitchCoarse.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(pitchCoarse));
+    template.add(pitchCoarse);
 
     final Value pitchFine = new ValueImpl(typeScaleTuning, "Pitch Fine", 0x40);
     pitchFine.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(pitchFine));
+    template.add(pitchFine);
 
     final Value level = new ValueImpl(typeVolume, "Level", 0x40);
     level.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(level));
+    template.add(level);
 
     final Value alternativeGroup =
-      new ValueImpl(typeAlternativeGroup, "Alternative Group", n);
+      new ValueImpl(typeAlternativeGroup, "Alternative Group", 0x00);
     alternativeGroup.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(alternativeGroup));
+    template.add(alternativeGroup);
 
     final Value pan = new ValueImpl(typePanExtended, "Pan", 0x40);
     pan.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(pan));
+    template.add(pan);
 
     final Value reverbSend = new ValueImpl(typeVolume, "Reverb Send", 0x40);
     reverbSend.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(reverbSend));
+    template.add(reverbSend);
 
     final Value chorusSend = new ValueImpl(typeVolume, "Chorus Send", 0x40);
     chorusSend.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(chorusSend));
+    template.add(chorusSend);
 
     final Value variationSend =
       new ValueImpl(typeVolume, "Variation Send", 0x7f);
     variationSend.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(variationSend));
+    template.add(variationSend);
 
     final Value keyAssign = new ValueImpl(typeKeyAssign, "Key Assign", 0x0);
     keyAssign.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(keyAssign));
+    template.add(keyAssign);
 
     final Value rcvNoteOff = new ValueImpl(typeSwitch, "Rcv Note Off", 0x0);
     rcvNoteOff.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(rcvNoteOff));
+    template.add(rcvNoteOff);
 
     final Value rcvNoteOn = new ValueImpl(typeSwitch, "Rcv Note On", 0x0);
     rcvNoteOn.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(rcvNoteOn));
+    template.add(rcvNoteOn);
 
     final Value filterCutoffFrequency =
       new ValueImpl("internal-tune", typeSigned7Bit,
                     "Filter Cutoff Frequency", 0x40);
     filterCutoffFrequency.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(filterCutoffFrequency));
+    template.add(filterCutoffFrequency);
 
     final Value filterResonance =
       new ValueImpl(typeSigned7Bit, "Filter Resonance", 0x40);
     filterResonance.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(filterResonance));
+    template.add(filterResonance);
 
     final Value egAttackRate =
       new ValueImpl(typeSigned7Bit, "EG Attack Rate", 0x40);
     egAttackRate.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(egAttackRate));
+    template.add(egAttackRate);
 
     final Value egDecay1Rate =
       new ValueImpl(typeSigned7Bit, "EG Decay1 Rate", 0x40);
     egDecay1Rate.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(egDecay1Rate));
+    template.add(egDecay1Rate);
 
     final Value egDecay2Rate =
       new ValueImpl(typeSigned7Bit, "EG Decay2 Rate", 0x40);
     egDecay2Rate.setBitSize(7);
-    nodeDrumSetupNoteR.add(new DataNode(egDecay2Rate));
+    template.add(egDecay2Rate);
+
+    return template;
+  }
+
+  private static FolderTemplate templateDrumSetupNote;
 
-    return nodeDrumSetupNoteR;
+  private static synchronized FolderTemplate getTemplateDrumSetupNote()
+  {
+    if (templateDrumSetupNote == null) {
+      templateDrumSetupNote = createTemplateDrumSetupNote();
+    }
+    return templateDrumSetupNote;
+  }
+
+  private FolderNode buildFolderNodeDrumSetupNoteNR(final int n, final int r)
+  {
+    final FolderTemplate template = getTemplateDrumSetupNote();
+    final int[] values = template.createValues();
+    values[template.indexOf("Alternative Group")] = n;
+    return template.createFolderNode("Drum Setup Note " + r,
+                                     addr2index(0x30 + n, r, 0x00), values);
   }
 
   private FolderNode buildFolderNodeDrumSetupN(final int n)
@@ -2243,7 +2363,10 @@ public class DB50XG extends AbstractDevice
     private long pos;
     private int extrapos;
     private int checkSum;
-    private DataNode dataNode;
+    private final AddressIndex addressIndex;
+    private final DumpPlan dumpPlan;
+    private int planPos;
+    private final byte[] singleByte;
 
     private BulkStream()
     {
@@ -2272,7 +2395,20 @@ public class DB50XG extends AbstractDevice
       this.end = end;
       extrapos = -8;
       checkSum = 0x00;
-      dataNode = root.locate(pos);
+      final TreeNode mapRoot = root.getRoot();
+      final AddressIndex rootAddressIndex =
+        mapRoot instanceof MapRoot ?
+        ((MapRoot)mapRoot).getAddressIndex() :
+        null;
+      addressIndex =
+        rootAddressIndex != null ? rootAddressIndex : new AddressIndex(root);
+      final DumpPlan devicePlan = getDumpPlan();
+      dumpPlan =
+        (devicePlan != null) && devicePlan.isApplicableTo(addressIndex) ?
+        devicePlan :
+        new DumpPlan(addressIndex, 7);
+      planPos = dumpPlan.indexOf(start);
+      singleByte = new byte[1];
     }
 
     private int nextHeaderByte()
@@ -2330,14 +2466,25 @@ public class DB50XG extends AbstractDevice
 
     private int nextBulkDumpByte()
     {
-      dataNode = dataNode.locate(pos);
-      // TODO: Fix performance: dataNode.getData() will call
-      // dataNode.locate() once again, although we already know the
-      // node.
-      final Integer data[] = dataNode.getData(pos, 7);
-      checkSum = (checkSum + data[0]) & 0x7f;
+      dumpPlan.encode(addressIndex, planPos, singleByte, 0, 1);
+      final int data = singleByte[0];
+      checkSum = (checkSum + data) & 0x7f;
+      planPos++;
       pos += 7;
-      return data[0];
+      return data;
+    }
+
+    private int nextBulkDumpBytes(final byte[] b, final int off,
+                                  final int len)
+    {
+      final int count = (int)Math.min(len, (end - pos + 6) / 7);
+      dumpPlan.encode(addressIndex, planPos, b, off, count);
+      for (int i = 0; i < count; i++) {
+        checkSum = (checkSum + b[off + i]) & 0x7f;
+      }
+      planPos += count;
+      pos += 7 * count;
+      return count;
     }
 
     public int read() throws IOException
@@ -2353,6 +2500,48 @@ public class DB50XG extends AbstractDevice
         else
           return -1; // EOF
     }
+
+    /**
+     * Reads up to len bytes of the bulk dump into the specified
+     * buffer.  Other than the generic implementation of the super
+     * class, this method encodes the bytes directly into the buffer,
+     * without any per-byte method dispatch through read().
+     */
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+      throws IOException
+    {
+      if (b == null)
+        throw new NullPointerException("b");
+      if ((off < 0) || (len < 0) || (len > b.length - off))
+        throw new IndexOutOfBoundsException();
+      if (len == 0)
+        return 0;
+      int count = 0;
+      while ((count < len) && (extrapos < 0) && (pos < end)) {
+        b[off + count++] = (byte)nextHeaderByte();
+      }
+      if ((count < len) && (pos < end)) {
+        count += nextBulkDumpBytes(b, off + count, len - count);
+      }
+      if ((count < len) && (pos >= end) && (extrapos < 1)) {
+        b[off + count++] = (byte)nextTailByte();
+      }
+      return count > 0 ? count : -1;
+    }
+
+    /**
+     * Returns the exact number of bytes that remain to be read until
+     * the end of this bulk dump.
+     */
+    @Override
+    public int available()
+    {
+      final int headerBytes = extrapos < 0 ? -extrapos : 0;
+      final int dataBytes = pos < end ? (int)((end - pos + 6) / 7) : 0;
+      final int tailBytes = extrapos < 1 ? 1 : 0;
+      return headerBytes + dataBytes + tailBytes;
+    }
   }
 
   public InputStream bulkDump(final byte deviceId, final MapNode root,
@@ -2367,14 +2556,79 @@ public class DB50XG extends AbstractDevice
   }
 
   /**
-   * Given an InputStream that represents a sequence of bulk dumped MIDI
-   * bytes from the MIDI device, this method interprets the MIDI data and
-   * updates the memory map accordingly.
+   * Recognizes bulk dump messages (F0 43 0n 4C bh bl hi mid lo …)
+   * and parameter change messages (F0 43 1n 4C hi mid lo …).
+   */
+  @Override
+  public long getBulkDumpAddress(final ByteBuffer message)
+  {
+    final long address =
+      BULK_DUMP_FORMAT.getBitAddress(message, MANUFACTURER_ID, MODEL_ID);
+    if (address >= 0) {
+      return address;
+    }
+    return PARAMETER_CHANGE_FORMAT.getBitAddress(message,
+                                                 MANUFACTURER_ID, MODEL_ID);
+  }
+
+  /**
+   * Given an InputStream that represents a sequence of SysEx messages
+   * from the MIDI device, this method interprets the MIDI data and
+   * updates the memory map accordingly.  Bulk dump and parameter
+   * change messages are decoded according to their packet formats.
+   * The stream is consumed in chunks of constant size, such that
+   * streams of any length can be read.
    * @param in The InputStream of MIDI bytes to be interpreted.
+   * @exception IOException If the map has not yet been built, if
+   *    reading from the stream fails or if any of the messages turns
+   *    out to be corrupt.  Corrupt messages are not applied to the
+   *    map.
    */
-  public void bulkRead(final InputStream in)
+  public void bulkRead(final InputStream in) throws IOException
   {
-    // TODO
+    if ((root == null) || (getDumpPlan() == null)) {
+      throw new IOException("map not yet built");
+    }
+    final PacketFormat.Decoder[] decoders = new PacketFormat.Decoder[] {
+      BULK_DUMP_FORMAT.createDecoder(MANUFACTURER_ID, MODEL_ID,
+                                     root.getAddressIndex(), getDumpPlan(),
+                                     root.getSyncState()),
+      PARAMETER_CHANGE_FORMAT.createDecoder(MANUFACTURER_ID, MODEL_ID,
+                                            root.getAddressIndex(),
+                                            getDumpPlan(),
+                                            root.getSyncState())
+    };
+    final byte[] buffer = new byte[BULK_READ_BUFFER_SIZE];
+    root.beginChanges();
+    try {
+      int count;
+      while ((count = in.read(buffer)) >= 0) {
+        for (final PacketFormat.Decoder decoder : decoders) {
+          decoder.write(buffer, 0, count);
+        }
+      }
+      for (final PacketFormat.Decoder decoder : decoders) {
+        decoder.close();
+      }
+    } finally {
+      root.commitChanges();
+    }
+    int messageCount = 0;
+    int errorCount = 0;
+    String lastError = null;
+    for (final PacketFormat.Decoder decoder : decoders) {
+      messageCount += decoder.getMessageCount();
+      errorCount += decoder.getErrorCount();
+      if (decoder.getLastError() != null) {
+        lastError = decoder.getLastError();
+      }
+    }
+    if (errorCount > 0) {
+      throw new IOException(errorCount + " of " +
+                            (messageCount + errorCount) +
+                            " SysEx messages corrupt; last error: " +
+                            lastError);
+    }
   }
 
   /**
@@ -0,0 +1,59 @@
+/*
+ * @(#)BulkDumpProgressListener.java 1.00 18/07/21
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.gui;
+
+/**
+ * Interface for listening to the progress of a bulk dump that is
+ * running in the background.  All methods are called on the event
+ * dispatch thread.
+ */
+public interface BulkDumpProgressListener
+{
+  /**
+   * This method is called when a bulk dump starts.
+   * @param messageCount The total number of messages to be sent.
+   */
+  void bulkDumpStarted(final int messageCount);
+
+  /**
+   * This method is called whenever another message has been sent.
+   * @param messagesSent The number of messages sent so far.
+   * @param bytesSent The number of bytes sent so far.
+   * @param bytesPerSecond The average throughput so far.
+   */
+  void bulkDumpProgress(final int messagesSent, final long bytesSent,
+                        final double bytesPerSecond);
+
+  /**
+   * This method is called when a bulk dump has been completed,
+   * cancelled or aborted due to an error.
+   * @param cancelled True, if the dump has been cancelled by the
+   * user.
+   */
+  void bulkDumpFinished(final boolean cancelled);
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
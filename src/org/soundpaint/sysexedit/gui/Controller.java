@@ -27,6 +27,7 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
@@ -39,11 +40,17 @@ import javax.swing.tree.TreePath;
 
 import org.soundpaint.sysexedit.SysExEdit;
 import org.soundpaint.sysexedit.model.Device;
+import org.soundpaint.sysexedit.model.MapSnapshot;
+import org.soundpaint.sysexedit.model.SmfSysExStream;
+import org.soundpaint.sysexedit.model.SysExLibrary;
+import org.soundpaint.sysexedit.model.SysExImport;
 
 public class Controller
 {
   private static final String MSG_DISCARD_UNSAVED_DATA =
     "Data is modified and will be lost.  Continue anyway?";
+  private static final String MSG_OVERWRITE_FILE =
+    "File %s already exists.  Overwrite it?";
 
   private final FramesManager manager;
   private final Editor editor;
@@ -52,6 +59,8 @@ public class Controller
   private final Frame frame;
   private final MidiOptionsDialog midiOptionsDialog;
   private final DeviceIdDialog deviceIdDialog;
+  private final MessageIntervalTimeDialog messageIntervalTimeDialog;
+  private final LoadOptionsDialog loadOptionsDialog;
 
   private Controller()
   {
@@ -71,6 +80,9 @@ public class Controller
     this.frame = frame;
     midiOptionsDialog = new MidiOptionsDialog(frame, documentMetaData);
     deviceIdDialog = new DeviceIdDialog(frame, this, documentMetaData);
+    messageIntervalTimeDialog =
+      new MessageIntervalTimeDialog(frame, documentMetaData);
+    loadOptionsDialog = new LoadOptionsDialog(frame, documentMetaData);
   }
 
   private abstract class GuardedItemListener implements ItemListener
@@ -165,11 +177,20 @@ public class Controller
     };
 
   private static JFileChooser newChooser(final File defaultFile)
+  {
+    return newChooser(defaultFile,
+                      new String[] {"mid", "midi", "sysex",
+                                    MapSnapshot.FILE_EXTENSION},
+                      "MIDI SysEx and snapshot files");
+  }
+
+  private static JFileChooser newChooser(final File defaultFile,
+                                         final String[] extensions,
+                                         final String description)
   {
     final JFileChooser chooser = new JFileChooser();
     final ExtensionFileFilter filter =
-      new ExtensionFileFilter(new String[] {"mid", "midi", "sysex"},
-                              "MIDI SysEx files");
+      new ExtensionFileFilter(extensions, description);
     chooser.addChoosableFileFilter(filter);
     chooser.setFileFilter(filter);
     if (defaultFile != null)
@@ -182,24 +203,67 @@ public class Controller
       private File defaultLoadFile = null; // default load dialog file
 
       public void unguardedActionPerformed(final ActionEvent event)
+        throws IOException
       {
         final JFileChooser chooser = newChooser(defaultLoadFile);
         final int returnVal = chooser.showOpenDialog(frame);
         if (returnVal == JFileChooser.APPROVE_OPTION) {
           defaultLoadFile = new File(chooser.getCurrentDirectory(),
                                      chooser.getSelectedFile().getName());
-          // TODO:
-          //load(defaultLoadFile);
-          //documentMetaData.setHasUnsavedData(false);
+          load(defaultLoadFile);
         }
       }
     };
 
+  /**
+   * Loads the SysEx messages of the specified file into the map.  The
+   * file may be either a Standard MIDI File, from which only the
+   * SysEx messages of the current device model within the chosen
+   * locators are extracted, or a library of raw SysEx messages, from
+   * which the user may pick individual messages.  A snapshot file
+   * previously saved by this application replaces all values of the
+   * map.
+   */
+  private void load(final File file) throws IOException
+  {
+    if (MapSnapshot.isSnapshot(file)) {
+      MapSnapshot.read(documentMetaData.getDevice(), file);
+      documentMetaData.setDocumentFile(file);
+      documentMetaData.setHasUnsavedData(false);
+      return;
+    }
+    final SysExLibrary library =
+      SmfSysExStream.isStandardMidiFile(file) ? null : new SysExLibrary(file);
+    if (!loadOptionsDialog.showDialog(file, library)) {
+      return; // operation aborted by user
+    }
+    final Device device = documentMetaData.getDevice();
+    final InputStream in =
+      library == null ?
+      new SmfSysExStream(file, device.getManufacturerId(),
+                         loadOptionsDialog.getStartTick(),
+                         loadOptionsDialog.getEndTick()) :
+      library.createInputStream(loadOptionsDialog.getSelectedMessages());
+    documentMetaData.setHasUnsavedData(true);
+    try {
+      SysExImport.importSysEx(device, in,
+                              loadOptionsDialog.getCollisionStrategy());
+    } finally {
+      in.close();
+    }
+  }
+
   private final ActionListener saveListener = new GuardedActionListener()
     {
       public void unguardedActionPerformed(final ActionEvent event)
+        throws IOException
       {
-        // TODO
+        final File documentFile = documentMetaData.getDocumentFile();
+        if (documentFile != null) {
+          save(documentFile);
+        } else {
+          saveAsListener.actionPerformed(event);
+        }
       }
     };
 
@@ -208,19 +272,46 @@ public class Controller
       private File defaultSaveFile = null; // default save dialog file
 
       public void unguardedActionPerformed(final ActionEvent event)
+        throws IOException
       {
-        final JFileChooser chooser = newChooser(defaultSaveFile);
+        final JFileChooser chooser =
+          newChooser(defaultSaveFile != null ?
+                     defaultSaveFile : documentMetaData.getDocumentFile(),
+                     new String[] {MapSnapshot.FILE_EXTENSION},
+                     "SysExEdit snapshot files");
         final int returnVal = chooser.showSaveDialog(frame);
         if (returnVal == JFileChooser.APPROVE_OPTION) {
-          defaultSaveFile = new File(chooser.getCurrentDirectory(),
-                                     chooser.getSelectedFile().getName());
-          // TODO
-          //saveAs(defaultSaveFile);
-          //documentMetaData.setHasUnsavedData(false);
+          String name = chooser.getSelectedFile().getName();
+          if (name.indexOf('.') < 0) {
+            name += "." + MapSnapshot.FILE_EXTENSION;
+          }
+          final File file = new File(chooser.getCurrentDirectory(), name);
+          if (file.exists() &&
+              (JOptionPane.showConfirmDialog(frame,
+                                             String.format(MSG_OVERWRITE_FILE,
+                                                           file.getName()),
+                                             "Confirm Overwrite",
+                                             JOptionPane.YES_NO_OPTION) !=
+               JOptionPane.YES_OPTION)) {
+            return;
+          }
+          defaultSaveFile = file;
+          save(file);
         }
       }
     };
 
+  /**
+   * Saves a snapshot of all values of the map into the specified
+   * file, which henceforth is the document's file.
+   */
+  private void save(final File file) throws IOException
+  {
+    MapSnapshot.write(documentMetaData.getDevice(), file);
+    documentMetaData.setDocumentFile(file);
+    documentMetaData.setHasUnsavedData(false);
+  }
+
   private final ActionListener closeListener = new GuardedActionListener()
     {
       public void unguardedActionPerformed(final ActionEvent event)
@@ -256,6 +347,22 @@ public class Controller
       }
     };
 
+  private final ActionListener dumpChangesListener = new GuardedActionListener()
+    {
+      public void unguardedActionPerformed(final ActionEvent event)
+      {
+        editor.bulkDumpChanges();
+      }
+    };
+
+  private final ActionListener cancelBulkDumpListener = new GuardedActionListener()
+    {
+      public void unguardedActionPerformed(final ActionEvent event)
+      {
+        editor.cancelBulkDump();
+      }
+    };
+
   private final ActionListener exitListener = new GuardedActionListener()
     {
       public void unguardedActionPerformed(final ActionEvent event)
@@ -452,7 +559,7 @@ public class Controller
     {
       public void unguardedActionPerformed(final ActionEvent event)
       {
-        // TODO
+        messageIntervalTimeDialog.showDialog();
       }
     };
 
@@ -465,6 +572,15 @@ public class Controller
       }
     };
 
+  private final ItemListener liveEditListener = new GuardedItemListener()
+    {
+      public void unguardedItemStateChanged(final ItemEvent event,
+                                            final boolean selected)
+      {
+        editor.setLiveEditEnabled(selected);
+      }
+    };
+
   private final ItemListener toolTipsListener = new GuardedItemListener()
     {
       public void unguardedItemStateChanged(final ItemEvent event,
@@ -538,6 +654,15 @@ public class Controller
       }
     };
 
+  private final ActionListener patchLibraryListener =
+    new GuardedActionListener()
+    {
+      public void unguardedActionPerformed(final ActionEvent event)
+      {
+        editor.showPatchLibraryDialog();
+      }
+    };
+
   private final ActionListener licenseListener = new GuardedActionListener()
     {
       public void unguardedActionPerformed(final ActionEvent event)
@@ -612,6 +737,16 @@ public class Controller
     return bulkDumpListener;
   }
 
+  public ActionListener getDumpChangesListener()
+  {
+    return dumpChangesListener;
+  }
+
+  public ActionListener getCancelBulkDumpListener()
+  {
+    return cancelBulkDumpListener;
+  }
+
   public ActionListener getExitListener()
   {
     return exitListener;
@@ -732,6 +867,11 @@ public class Controller
     return displayAddressesListener;
   }
 
+  public ItemListener getLiveEditListener()
+  {
+    return liveEditListener;
+  }
+
   public ItemListener getToolTipsListener()
   {
     return toolTipsListener;
@@ -762,6 +902,11 @@ public class Controller
     return aboutDeviceModelListener;
   }
 
+  public ActionListener getPatchLibraryListener()
+  {
+    return patchLibraryListener;
+  }
+
   public ActionListener getLicenseListener()
   {
     return licenseListener;
@@ -22,6 +22,7 @@ package org.soundpaint.sysexedit.gui;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import javax.sound.midi.MidiDevice;
 import javax.swing.event.TreeSelectionEvent;
@@ -31,6 +32,7 @@ import javax.swing.tree.TreePath;
 
 import org.soundpaint.sysexedit.model.Value;
 import org.soundpaint.sysexedit.model.Device;
+import org.soundpaint.sysexedit.model.TransmitPacing;
 
 public class DocumentMetaData implements TreeSelectionListener
 {
@@ -40,8 +42,15 @@ public class DocumentMetaData implements TreeSelectionListener
     {
     };
 
+  /**
+   * Default time window in milliseconds for coalescing live edits.
+   */
+  public static final int DEFAULT_LIVE_EDIT_WINDOW = 40;
+
   private final List<DocumentMetaDataChangeListener> metaDataChangeListeners;
   private final List<MapSelectionChangeListener> selectionChangeListeners;
+  private final HashMap<MidiDevice.Info, TransmitPacing> transmitPacings;
+  private int liveEditWindow;
   private boolean hasUnsavedData;
   private int selectionCount;
   private Device device;
@@ -49,6 +58,7 @@ public class DocumentMetaData implements TreeSelectionListener
   private MidiDevice.Info midiInput;
   private MidiDevice.Info midiOutput;
   private File dumpMidiFile;
+  private File documentFile;
   private SelectionMultiplicity lastSelectionMultiplicity;
 
   public DocumentMetaData(final Device device)
@@ -56,6 +66,8 @@ public class DocumentMetaData implements TreeSelectionListener
     setDevice(device);
     metaDataChangeListeners = new ArrayList<DocumentMetaDataChangeListener>();
     selectionChangeListeners = new ArrayList<MapSelectionChangeListener>();
+    transmitPacings = new HashMap<MidiDevice.Info, TransmitPacing>();
+    liveEditWindow = DEFAULT_LIVE_EDIT_WINDOW;
     hasUnsavedData = false;
     selectionCount = 0;
     lastSelectionMultiplicity = SelectionMultiplicity.NONE;
@@ -146,6 +158,58 @@ public class DocumentMetaData implements TreeSelectionListener
     this.midiOutput = midiOutput;
   }
 
+  /**
+   * Returns the transmit pacing for the specified MIDI output.  If
+   * the user has not configured any pacing for this output, the
+   * default pacing of the device model applies.
+   */
+  public TransmitPacing getTransmitPacing(final MidiDevice.Info midiOutput)
+  {
+    final TransmitPacing transmitPacing = transmitPacings.get(midiOutput);
+    if (transmitPacing != null) {
+      return transmitPacing;
+    }
+    return getDefaultTransmitPacing();
+  }
+
+  public TransmitPacing getDefaultTransmitPacing()
+  {
+    return
+      device != null ? device.getTransmitPacing() : TransmitPacing.MIDI_WIRE;
+  }
+
+  /**
+   * Configures the transmit pacing for the specified MIDI output.
+   * @param transmitPacing The pacing to apply, or null for reverting
+   * to the default pacing of the device model.
+   */
+  public void setTransmitPacing(final MidiDevice.Info midiOutput,
+                                final TransmitPacing transmitPacing)
+  {
+    if (transmitPacing != null) {
+      transmitPacings.put(midiOutput, transmitPacing);
+    } else {
+      transmitPacings.remove(midiOutput);
+    }
+  }
+
+  /**
+   * Returns the time window in milliseconds within which subsequent
+   * live edits of the same value are coalesced into a single message.
+   */
+  public int getLiveEditWindow()
+  {
+    return liveEditWindow;
+  }
+
+  public void setLiveEditWindow(final int liveEditWindow)
+  {
+    if (liveEditWindow < 0) {
+      throw new IllegalArgumentException("liveEditWindow < 0");
+    }
+    this.liveEditWindow = liveEditWindow;
+  }
+
   public File getDumpMidiFile()
   {
     return dumpMidiFile;
@@ -156,6 +220,22 @@ public class DocumentMetaData implements TreeSelectionListener
     this.dumpMidiFile = dumpMidiFile;
   }
 
+  /**
+   * Returns the snapshot file that this document has most recently
+   * been saved to or loaded from.
+   * @return The document file, or null, if the document has not yet
+   *    been saved.
+   */
+  public File getDocumentFile()
+  {
+    return documentFile;
+  }
+
+  public void setDocumentFile(final File documentFile)
+  {
+    this.documentFile = documentFile;
+  }
+
   private void selectionChanged(final SelectionMultiplicity multiplicity)
   {
     for (final MapSelectionChangeListener listener : selectionChangeListeners) {
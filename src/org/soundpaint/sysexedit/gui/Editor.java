@@ -29,8 +29,12 @@ public interface Editor
 
   void setAddressInfoEnabled(final boolean enabled);
 
+  void setLiveEditEnabled(final boolean enabled);
+
   void showAboutDeviceModelDialog();
 
+  void showPatchLibraryDialog();
+
   void incrementSelected();
 
   void decrementSelected();
@@ -43,6 +47,10 @@ public interface Editor
 
   void bulkDumpSelected();
 
+  void bulkDumpChanges();
+
+  void cancelBulkDump();
+
   void selectAll();
 
   void selectNone();
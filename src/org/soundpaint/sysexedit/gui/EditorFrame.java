@@ -32,6 +32,7 @@ import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URL;
@@ -51,9 +52,12 @@ import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 
 import org.soundpaint.sysexedit.SysExEdit;
+import org.soundpaint.sysexedit.model.AbstractDevice;
 import org.soundpaint.sysexedit.model.Value;
 import org.soundpaint.sysexedit.model.DataNode;
 import org.soundpaint.sysexedit.model.Device;
+import org.soundpaint.sysexedit.model.FolderNode;
+import org.soundpaint.sysexedit.model.PatchLibrary;
 import org.soundpaint.sysexedit.parser.ParseException;
 
 /**
@@ -101,6 +105,8 @@ public class EditorFrame extends JFrame
   private final DocumentMetaData documentMetaData;
   private DefaultTreeModel mapModel = null;
   private TreeSelectionDumpListener treeSelectionDumpListener = null;
+  private LiveEditSender liveEditSender = null;
+  private PatchLibraryDialog patchLibraryDialog = null;
 
   private EditorFrame()
   {
@@ -187,6 +193,13 @@ public class EditorFrame extends JFrame
     map.updateUI();
   }
 
+  public void setLiveEditEnabled(final boolean enabled)
+  {
+    if (liveEditSender != null) {
+      liveEditSender.setEnabled(enabled);
+    }
+  }
+
   private void initGUI()
   {
     JButton button;
@@ -205,7 +218,8 @@ public class EditorFrame extends JFrame
     final JPanel panel_map = new JPanel();
     getContentPane().add(panel_map, "Center");
     final Device device = documentMetaData.getDevice();
-    map = device.getMap();
+    map = new Map(documentMetaData, mapContextMenu,
+                  device.getAddressRepresentation());
     setAddressInfoEnabled(false);
     map.setModel(mapModel);
     map.setShowsRootHandles(true);
@@ -214,6 +228,14 @@ public class EditorFrame extends JFrame
     treeSelectionDumpListener =
       new TreeSelectionDumpListener(device, map, documentMetaData, this);
     map.addKeyListener(treeSelectionDumpListener);
+    treeSelectionDumpListener.addProgressListener(statusLine);
+    liveEditSender = new LiveEditSender(device, documentMetaData, this);
+    final Object root = map.getModel().getRoot();
+    if (root instanceof AbstractDevice.MapRoot) {
+      ((AbstractDevice.MapRoot)root).addDataNodeChangeListener(liveEditSender);
+    }
+    statusLine.
+      addCancelBulkDumpListener(controller.getCancelBulkDumpListener());
     map.getModel().addTreeModelListener(controller.getTreeModelListener());
     final JScrollPane scrollpane_map = new JScrollPane();
     scrollpane_map.setPreferredSize(new Dimension(450, 450));
@@ -417,6 +439,16 @@ public class EditorFrame extends JFrame
     treeSelectionDumpListener.dumpSelection();
   }
 
+  public void bulkDumpChanges()
+  {
+    treeSelectionDumpListener.dumpChanges();
+  }
+
+  public void cancelBulkDump()
+  {
+    treeSelectionDumpListener.cancelDump();
+  }
+
   /**
    * Returns an array of all available map def classes.
    */
@@ -543,13 +575,17 @@ public class EditorFrame extends JFrame
                                     JOptionPane.INFORMATION_MESSAGE);
       return;
     }
-    final TreeNode root = device.buildMap(documentMetaData, mapContextMenu);
+    final TreeNode root = device.buildMap();
 
     if (mapModel != null) // no need to re-create mapModel, if already
                           // existing
       mapModel.setRoot(root);
     else
       mapModel = new DefaultTreeModel(root);
+    if (root instanceof AbstractDevice.MapRoot) {
+      ((AbstractDevice.MapRoot)root).
+        addChangeTransactionListener(new TreeModelUpdater(mapModel));
+    }
     documentMetaData.setDevice(device);
     return;
   }
@@ -561,6 +597,34 @@ public class EditorFrame extends JFrame
     aboutDeviceModelDialog.showDialog(this, documentMetaData.getDevice());
   }
 
+  public void showPatchLibraryDialog()
+  {
+    final TreePath path = map.getSelectionPath();
+    if ((path == null) ||
+        !(path.getLastPathComponent() instanceof FolderNode)) {
+      // no folder to store or to apply patches to
+      return;
+    }
+    final FolderNode folder = (FolderNode)path.getLastPathComponent();
+    final PatchLibrary library;
+    try {
+      library = manager.getPatchLibrary();
+    } catch (final IOException e) {
+      JOptionPane.showMessageDialog(this,
+                                    "Failed opening patch library: " +
+                                    e.getMessage(),
+                                    ERROR, JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    if (patchLibraryDialog == null) {
+      patchLibraryDialog = new PatchLibraryDialog(this);
+    }
+    if (patchLibraryDialog.showDialog(library, documentMetaData.getDevice(),
+                                      folder)) {
+      documentMetaData.setHasUnsavedData(true);
+    }
+  }
+
   public void tryClose()
   {
     if ((!documentMetaData.getHasUnsavedData()) ||
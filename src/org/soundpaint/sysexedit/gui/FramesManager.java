@@ -21,6 +21,9 @@
 package org.soundpaint.sysexedit.gui;
 
 import java.awt.Frame;
+import java.io.IOException;
+
+import org.soundpaint.sysexedit.model.PatchLibrary;
 
 /**
  * A class that implements this interface manages a set of bundled frames.
@@ -88,6 +91,14 @@ public interface FramesManager
    * abort the operation.
    */
   void tryExit();
+
+  /**
+   * Returns the patch library that is shared by all frames.  The
+   * library is opened upon first request.
+   * @return The patch library.
+   * @exception IOException If opening the library fails.
+   */
+  PatchLibrary getPatchLibrary() throws IOException;
 }
 
 /*
@@ -78,6 +78,25 @@ public class JValue
     return valueType.getDisplayValue(systemValue);
   }
 
+  /**
+   * Two JValue objects are equal, if they have the same value type
+   * and system value, such that selectable values may be created on
+   * demand rather than kept as unique objects.
+   */
+  public boolean equals(final Object obj)
+  {
+    if (!(obj instanceof JValue)) {
+      return false;
+    }
+    final JValue other = (JValue)obj;
+    return (valueType == other.valueType) && (systemValue == other.systemValue);
+  }
+
+  public int hashCode()
+  {
+    return 31 * System.identityHashCode(valueType) + systemValue;
+  }
+
   public String toString()
   {
     return getDisplayValue();
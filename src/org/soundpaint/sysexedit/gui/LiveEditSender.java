@@ -0,0 +1,280 @@
+/*
+ * @(#)LiveEditSender.java 1.00 18/07/23
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.gui;
+
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiMessage;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.tree.TreeNode;
+
+import org.soundpaint.sysexedit.model.AbstractDevice;
+import org.soundpaint.sysexedit.model.DataNode;
+import org.soundpaint.sysexedit.model.DataNodeChangeListener;
+import org.soundpaint.sysexedit.model.Device;
+import org.soundpaint.sysexedit.model.SyncState;
+
+/**
+ * Sends each value edited by the user immediately to the MIDI output,
+ * as a small bulk dump that covers just the edited data node.
+ *
+ * Rapid changes are coalesced per address: all values that are
+ * edited within the configured live edit window are collected, and
+ * only the latest value of each data node is sent when the window
+ * expires.  If the messages of the previous window are still waiting
+ * for transmission, the window is extended rather than queueing
+ * further messages behind them, such that the device never lags
+ * behind with stale values when the user drags fast through a range
+ * of values.
+ *
+ * Values are only sent to MIDI devices, not to a dump MIDI file, and
+ * only while live edit is enabled.  Values changed in bulk, e.g. by
+ * loading a file, are not sent.  Values that are not sent remain
+ * marked as changed in the sync state, such that they will be
+ * included in the next dump of changes.
+ *
+ * All methods except for dataNodeChanged() must be called on the
+ * event dispatch thread.
+ */
+public class LiveEditSender implements DataNodeChangeListener
+{
+  private static final String MSG_LIVE_EDIT_FAILED =
+    "Live edit failed: %s";
+
+  private final Device device;
+  private final DocumentMetaData documentMetaData;
+  private final Frame frame;
+  private final Timer timer;
+
+  /** Data nodes edited within the current window, keyed by address. */
+  private final LinkedHashMap<Long, DataNode> pending;
+
+  /** Data nodes sent with the most recent window. */
+  private final List<DataNode> inFlight;
+
+  private boolean enabled;
+  private TransmitScheduler.PacedReceiver receiver;
+  private MidiDevice.Info receiverOutput;
+
+  private LiveEditSender()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  public LiveEditSender(final Device device,
+                        final DocumentMetaData documentMetaData,
+                        final Frame frame)
+  {
+    if (device == null) {
+      throw new NullPointerException("device");
+    }
+    if (documentMetaData == null) {
+      throw new NullPointerException("documentMetaData");
+    }
+    this.device = device;
+    this.documentMetaData = documentMetaData;
+    this.frame = frame;
+    timer = new Timer(0, new ActionListener()
+      {
+        public void actionPerformed(final ActionEvent event)
+        {
+          flush();
+        }
+      });
+    timer.setRepeats(false);
+    pending = new LinkedHashMap<Long, DataNode>();
+    inFlight = new ArrayList<DataNode>();
+    enabled = false;
+    receiver = null;
+    receiverOutput = null;
+  }
+
+  public boolean isEnabled()
+  {
+    return enabled;
+  }
+
+  /**
+   * Enables or disables live edit.  When disabled, all values not
+   * yet sent are discarded and the MIDI output is released.
+   */
+  public void setEnabled(final boolean enabled)
+  {
+    this.enabled = enabled;
+    if (!enabled) {
+      timer.stop();
+      pending.clear();
+      closeReceiver();
+    }
+  }
+
+  public void dataNodeChanged(final DataNode node)
+  {
+    if (!SwingUtilities.isEventDispatchThread() || isBulkChange()) {
+      // not edited by the user, e.g. loaded from a file => left to
+      // the next dump of changes rather than streamed value by value
+      return;
+    }
+    if (!enabled) {
+      return;
+    }
+    pending.put(node.getAddress(), node);
+    if (!timer.isRunning()) {
+      timer.setInitialDelay(documentMetaData.getLiveEditWindow());
+      timer.start();
+    }
+  }
+
+  /**
+   * Returns true, if the current change is part of a change
+   * transaction, such as importing a file, rather than a single edit
+   * by the user.
+   */
+  private boolean isBulkChange()
+  {
+    final TreeNode root = device.getMapRoot();
+    return
+      (root instanceof AbstractDevice.MapRoot) &&
+      ((AbstractDevice.MapRoot)root).isChanging();
+  }
+
+  private void closeReceiver()
+  {
+    if (receiver != null) {
+      receiver.close();
+      receiver = null;
+      receiverOutput = null;
+    }
+    inFlight.clear();
+  }
+
+  /**
+   * Checks the result of the previous window, if it has been
+   * completely delivered.  If delivery failed, the values of the
+   * previous window are marked as changed again, and the receiver
+   * is released, such that it will be re-opened with the next
+   * window.
+   */
+  private void checkPreviousDelivery(final SyncState syncState)
+    throws InterruptedException
+  {
+    if (receiver.awaitDelivery()) {
+      inFlight.clear();
+      return;
+    }
+    // error already reported by scheduler
+    if (syncState != null) {
+      for (final DataNode node : inFlight) {
+        syncState.markChanged(node);
+      }
+    }
+    closeReceiver();
+  }
+
+  private void flush()
+  {
+    if (!enabled || pending.isEmpty()) {
+      return;
+    }
+    final MidiDevice.Info output = documentMetaData.getMidiOutput();
+    if ((output == null) ||
+        (output == MidiOptionsDialog.pleaseSelect) ||
+        (output == DocumentMetaData.dumpMidiFileDeviceInfo)) {
+      // no MIDI device to edit live
+      pending.clear();
+      closeReceiver();
+      return;
+    }
+    if ((receiver != null) && (output != receiverOutput)) {
+      closeReceiver();
+    }
+    if ((receiver != null) && !receiver.isIdle()) {
+      // previous window still in transit => keep coalescing
+      timer.setInitialDelay(documentMetaData.getLiveEditWindow());
+      timer.start();
+      return;
+    }
+    final SyncState syncState = device.getSyncState();
+    try {
+      if (receiver != null) {
+        checkPreviousDelivery(syncState);
+      }
+      if (receiver == null) {
+        receiver =
+          TreeSelectionDumpListener.getReceiverForDevice(output,
+                                                         documentMetaData,
+                                                         frame);
+        receiverOutput = output;
+      }
+      final byte deviceId =
+        (byte)(documentMetaData.getMidiDeviceId().getSystemValue());
+      for (final DataNode node : pending.values()) {
+        if ((syncState != null) && !syncState.isChanged(node)) {
+          continue; // e.g. reverted to the value last sent
+        }
+        final long start = node.getAddress();
+        final long stopBefore = start + node.getBitSize();
+        if (syncState != null) {
+          syncState.markSynced(start, stopBefore);
+        }
+        final MidiMessage message;
+        try {
+          message = TreeSelectionDumpListener.
+            createMidiMessage(device, deviceId, start, stopBefore);
+        } catch (final IOException e) {
+          if (syncState != null) {
+            syncState.markChanged(node);
+          }
+          throw e;
+        }
+        receiver.send(message, -1); // time stamp assigned by scheduler
+        inFlight.add(node);
+      }
+    } catch (final IOException e) {
+      closeReceiver();
+      JOptionPane.showMessageDialog(frame,
+                                    String.format(MSG_LIVE_EDIT_FAILED,
+                                                  e.getMessage()),
+                                    "Live Edit Failed",
+                                    JOptionPane.ERROR_MESSAGE);
+    } catch (final InterruptedException e) {
+      // does not happen, since receiver is idle
+      Thread.currentThread().interrupt();
+    } finally {
+      pending.clear();
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
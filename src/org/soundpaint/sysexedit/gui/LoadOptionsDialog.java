@@ -0,0 +1,380 @@
+/*
+ * @(#)LoadOptionsDialog.java 1.00 18/07/24
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.gui;
+
+import java.awt.Container;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.GroupLayout;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.ListSelectionModel;
+import javax.swing.SpinnerNumberModel;
+
+import org.soundpaint.sysexedit.model.AddressRepresentation;
+import org.soundpaint.sysexedit.model.CollisionStrategy;
+import org.soundpaint.sysexedit.model.Device;
+import org.soundpaint.sysexedit.model.SmfSysExStream;
+import org.soundpaint.sysexedit.model.SysExLibrary;
+
+/**
+ * This class implements a dialog for choosing how to load SysEx data
+ * from a file into the map, i.e. the start and end locators for
+ * Standard MIDI Files, the messages to load from SysEx libraries, and
+ * the strategy for resolving collisions with values already present
+ * in the map.
+ */
+public class LoadOptionsDialog extends Dialog
+{
+  private static final long serialVersionUID = 2783526010985126717L;
+
+  private final JLabel fileLabel;
+  private final SpinnerNumberModel startTickModel;
+  private final JSpinner startTickSP;
+  private final JCheckBox untilEndCB;
+  private final SpinnerNumberModel endTickModel;
+  private final JSpinner endTickSP;
+  private final JList<String> messagesLI;
+  private final JLabel messagesLabel;
+  private final JComboBox<CollisionStrategy> collisionStrategyCB;
+  private final DocumentMetaData documentMetaData;
+  private int[] messageIndices;
+  private boolean approved;
+
+  /**
+   * Creates a blocking dialog for choosing load options.
+   * @param owner The frame that shall own this dialog.
+   * @param documentMetaData The document meta data that holds the
+   * device model to load the file for.
+   */
+  public LoadOptionsDialog(final Frame owner,
+                           final DocumentMetaData documentMetaData)
+  {
+    super(owner, "Load", true);
+    if (documentMetaData == null) {
+      throw new NullPointerException("documentMetaData");
+    }
+    this.documentMetaData = documentMetaData;
+    final Container contentPane = getContentPane();
+    contentPane.setLayout(new BoxLayout(contentPane, BoxLayout.Y_AXIS));
+
+    fileLabel = new JLabel();
+    startTickModel =
+      new SpinnerNumberModel(Long.valueOf(0), Long.valueOf(0),
+                             Long.valueOf(Integer.MAX_VALUE), Long.valueOf(1));
+    startTickSP = new JSpinner(startTickModel);
+    startTickSP.setToolTipText("ignore SysEx messages before this tick");
+    untilEndCB = new JCheckBox("Until End of File");
+    untilEndCB.setMnemonic('u');
+    untilEndCB.setToolTipText("load SysEx messages up to the end of the file");
+    untilEndCB.addItemListener(new UntilEndListener());
+    endTickModel =
+      new SpinnerNumberModel(Long.valueOf(0), Long.valueOf(0),
+                             Long.valueOf(Integer.MAX_VALUE), Long.valueOf(1));
+    endTickSP = new JSpinner(endTickModel);
+    endTickSP.setToolTipText("ignore SysEx messages at or after this tick");
+    messagesLI = new JList<String>();
+    messagesLI.
+      setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+    messagesLI.setVisibleRowCount(8);
+    messagesLI.setToolTipText("SysEx messages of the file that apply to " +
+                              "the device model");
+    messagesLabel = new JLabel();
+    collisionStrategyCB =
+      new JComboBox<CollisionStrategy>(CollisionStrategy.values());
+    collisionStrategyCB.setToolTipText("which values to keep when the " +
+                                       "file contains values for them");
+    contentPane.add(new LocatorPane());
+    contentPane.add(new MessagesPane());
+    contentPane.add(new CollisionPane());
+    contentPane.add(Box.createVerticalGlue());
+    contentPane.add(new ButtonRow());
+    untilEndCB.setSelected(true);
+  }
+
+  private class LocatorPane extends JPanel
+  {
+    private static final long serialVersionUID = 5318957542082466541L;
+
+    private LocatorPane()
+    {
+      setBorder(BorderFactory.createTitledBorder("Locators"));
+
+      final JLabel labelFile = new JLabel("File");
+      labelFile.setLabelFor(fileLabel);
+      final JLabel startTickLabel = new JLabel("Start Tick");
+      startTickLabel.setLabelFor(startTickSP);
+      final JLabel endTickLabel = new JLabel("End Tick");
+      endTickLabel.setLabelFor(endTickSP);
+
+      final GroupLayout layout = new GroupLayout(this);
+      setLayout(layout);
+      layout.setAutoCreateGaps(true);
+      layout.setAutoCreateContainerGaps(true);
+
+      final GroupLayout.SequentialGroup columns =
+        layout.createSequentialGroup();
+      final GroupLayout.ParallelGroup labelColumn =
+        layout.createParallelGroup(GroupLayout.Alignment.TRAILING);
+      labelColumn.addComponent(labelFile);
+      labelColumn.addComponent(startTickLabel);
+      labelColumn.addComponent(endTickLabel);
+      columns.addGroup(labelColumn);
+      final GroupLayout.ParallelGroup valueColumn =
+        layout.createParallelGroup(GroupLayout.Alignment.LEADING);
+      valueColumn.addComponent(fileLabel);
+      valueColumn.addComponent(startTickSP);
+      valueColumn.addComponent(untilEndCB);
+      valueColumn.addComponent(endTickSP);
+      columns.addGroup(valueColumn);
+      layout.setHorizontalGroup(columns);
+
+      final GroupLayout.SequentialGroup rows =
+        layout.createSequentialGroup();
+      final GroupLayout.ParallelGroup fileRow =
+        layout.createParallelGroup(GroupLayout.Alignment.CENTER);
+      fileRow.addComponent(labelFile);
+      fileRow.addComponent(fileLabel);
+      rows.addGroup(fileRow);
+      final GroupLayout.ParallelGroup startTickRow =
+        layout.createParallelGroup(GroupLayout.Alignment.CENTER);
+      startTickRow.addComponent(startTickLabel);
+      startTickRow.addComponent(startTickSP);
+      rows.addGroup(startTickRow);
+      rows.addComponent(untilEndCB);
+      final GroupLayout.ParallelGroup endTickRow =
+        layout.createParallelGroup(GroupLayout.Alignment.CENTER);
+      endTickRow.addComponent(endTickLabel);
+      endTickRow.addComponent(endTickSP);
+      rows.addGroup(endTickRow);
+      layout.setVerticalGroup(rows);
+    }
+  }
+
+  private class MessagesPane extends JPanel
+  {
+    private static final long serialVersionUID = -7414906040925452125L;
+
+    private MessagesPane()
+    {
+      setBorder(BorderFactory.createTitledBorder("Messages"));
+      setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+      add(messagesLabel);
+      add(new JScrollPane(messagesLI));
+    }
+  }
+
+  private class CollisionPane extends JPanel
+  {
+    private static final long serialVersionUID = -3090216640339539215L;
+
+    private CollisionPane()
+    {
+      setBorder(BorderFactory.createTitledBorder("Collisions"));
+
+      final JLabel collisionStrategyLabel = new JLabel("Existing Values");
+      collisionStrategyLabel.setLabelFor(collisionStrategyCB);
+
+      final GroupLayout layout = new GroupLayout(this);
+      setLayout(layout);
+      layout.setAutoCreateGaps(true);
+      layout.setAutoCreateContainerGaps(true);
+
+      final GroupLayout.SequentialGroup columns =
+        layout.createSequentialGroup();
+      columns.addComponent(collisionStrategyLabel);
+      columns.addComponent(collisionStrategyCB);
+      layout.setHorizontalGroup(columns);
+
+      final GroupLayout.ParallelGroup rows =
+        layout.createParallelGroup(GroupLayout.Alignment.CENTER);
+      rows.addComponent(collisionStrategyLabel);
+      rows.addComponent(collisionStrategyCB);
+      layout.setVerticalGroup(rows);
+    }
+  }
+
+  private class UntilEndListener implements ItemListener
+  {
+    public void itemStateChanged(final ItemEvent event)
+    {
+      final boolean untilEnd = event.getStateChange() == ItemEvent.SELECTED;
+      endTickSP.setEnabled(!untilEnd);
+    }
+  }
+
+  private class ButtonRow extends JPanel
+  {
+    private static final long serialVersionUID = -6049779826478981322L;
+
+    public ButtonRow()
+    {
+      setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
+      setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+      final JButton buttonCancel = new JButton("Cancel");
+      buttonCancel.setMnemonic('c');
+      buttonCancel.setToolTipText("do not load the file");
+      buttonCancel.addActionListener(new ButtonCancelListener());
+      add(buttonCancel);
+      add(Box.createHorizontalGlue());
+      final JButton buttonOk = new JButton("Load");
+      buttonOk.setMnemonic('l');
+      buttonOk.setToolTipText("load the file with these options");
+      buttonOk.addActionListener(new ButtonOkListener());
+      add(buttonOk);
+    }
+  }
+
+  private class ButtonCancelListener implements ActionListener
+  {
+    public void actionPerformed(final ActionEvent e)
+    {
+      setVisible(false);
+    }
+  }
+
+  private class ButtonOkListener implements ActionListener
+  {
+    public void actionPerformed(final ActionEvent e)
+    {
+      approved = true;
+      setVisible(false);
+    }
+  }
+
+  public long getStartTick()
+  {
+    return startTickModel.getNumber().longValue();
+  }
+
+  /**
+   * Returns the end locator, or SmfSysExStream.END_OF_FILE, if all
+   * messages up to the end of the file are to be loaded.
+   */
+  public long getEndTick()
+  {
+    if (untilEndCB.isSelected()) {
+      return SmfSysExStream.END_OF_FILE;
+    }
+    return Math.max(endTickModel.getNumber().longValue(), getStartTick());
+  }
+
+  /**
+   * Returns the indices of the selected messages of the SysEx
+   * library, in order of appearance in the file.
+   */
+  public int[] getSelectedMessages()
+  {
+    final int[] selection = messagesLI.getSelectedIndices();
+    final int[] indices = new int[selection.length];
+    for (int i = 0; i < selection.length; i++) {
+      indices[i] = messageIndices[selection[i]];
+    }
+    return indices;
+  }
+
+  public CollisionStrategy getCollisionStrategy()
+  {
+    return (CollisionStrategy)collisionStrategyCB.getSelectedItem();
+  }
+
+  /**
+   * Lists all messages of the library that apply to the device
+   * model.
+   */
+  private void loadMessages(final SysExLibrary library)
+  {
+    final List<String> entries = new ArrayList<String>();
+    final List<Integer> indices = new ArrayList<Integer>();
+    if (library != null) {
+      final Device device = documentMetaData.getDevice();
+      final AddressRepresentation addressRepresentation =
+        device.getAddressRepresentation();
+      for (int i = 0; i < library.getMessageCount(); i++) {
+        final long address = library.getAddress(i, device);
+        if (address >= 0) {
+          entries.add("#" + (i + 1) + ": " +
+                      addressRepresentation.getDisplayAddress(address) +
+                      " (" + library.getLength(i) + " bytes)");
+          indices.add(i);
+        }
+      }
+      messagesLabel.setText(indices.size() + " of " +
+                            library.getMessageCount() +
+                            " messages apply to " + device.getName());
+    } else {
+      messagesLabel.setText("all messages within locators");
+    }
+    messageIndices = new int[indices.size()];
+    for (int i = 0; i < messageIndices.length; i++) {
+      messageIndices[i] = indices.get(i);
+    }
+    messagesLI.setListData(entries.toArray(new String[entries.size()]));
+    messagesLI.setEnabled(library != null);
+    if (!entries.isEmpty()) {
+      messagesLI.setSelectionInterval(0, entries.size() - 1);
+    }
+  }
+
+  /**
+   * Shows the dialog and blocks until the user closes it.
+   * @param file The file to be loaded.
+   * @param library The file as SysEx library, or null, if the file is
+   *    a Standard MIDI File, such that locators apply instead.
+   * @return True, if the user has approved loading the file.
+   */
+  public boolean showDialog(final File file, final SysExLibrary library)
+  {
+    final boolean isStandardMidiFile = library == null;
+    fileLabel.setText(file.getName());
+    loadMessages(library);
+    startTickSP.setEnabled(isStandardMidiFile);
+    untilEndCB.setEnabled(isStandardMidiFile);
+    endTickSP.setEnabled(isStandardMidiFile && !untilEndCB.isSelected());
+    approved = false;
+    pack();
+    setMinimumSize(getPreferredSize());
+    setVisible(true);
+    return approved;
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -22,11 +22,18 @@ package org.soundpaint.sysexedit.gui;
 
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
+import java.util.Collections;
 import java.util.EventObject;
+import java.util.Set;
+import java.util.WeakHashMap;
 import javax.swing.AbstractCellEditor;
 import javax.swing.Icon;
 import javax.swing.JTree;
+import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 import javax.swing.event.TreeSelectionListener;
 import javax.swing.tree.DefaultTreeCellRenderer;
@@ -259,6 +266,36 @@ public class Map extends JTree
      */
     private Component lastRequestedEditor;
 
+    /**
+     * The editors that already stop editing when the user presses
+     * the enter key.  Since each data node keeps its editor, the
+     * same editor is requested each time the node is edited.
+     */
+    private final Set<Component> enterKeyEditors =
+      Collections.newSetFromMap(new WeakHashMap<Component, Boolean>());
+
+    /**
+     * Stops editing when the user presses the enter key.  Since the
+     * data node that owns the editor has added its own key listener
+     * before, it has already scheduled taking over the new value when
+     * this listener schedules to stop editing.
+     */
+    private final KeyListener enterKeyListener = new KeyAdapter()
+      {
+        public void keyTyped(final KeyEvent e)
+        {
+          if (e.getKeyChar() == '\n') {
+            SwingUtilities.invokeLater(new Runnable()
+              {
+                public void run()
+                {
+                  stopEditing();
+                }
+              });
+          }
+        }
+      };
+
     public Object getCellEditorValue()
     {
       final Editor editor = (Editor)lastRequestedEditor;
@@ -294,7 +331,10 @@ public class Map extends JTree
         throw new RuntimeException("tree value is not a map node");
       }
       final DataNode node = (DataNode)value;
-      final Component editor = (Component)(node.getEditor());
+      final Component editor = (Component)(node.openEditor());
+      if (enterKeyEditors.add(editor)) {
+        editor.addKeyListener(enterKeyListener);
+      }
       lastRequestedEditor = editor;
       return editor;
     }
@@ -34,6 +34,7 @@ public class MapContextMenu extends JPopupMenu
   private final JMenuItem menuItemDecValue;
   private final JMenuItem menuItemResetValue;
   private final JMenuItem menuItemBulkDump;
+  private final JMenuItem menuItemPatchLibrary;
 
   public MapContextMenu(final Controller ctrl)
   {
@@ -57,13 +58,19 @@ public class MapContextMenu extends JPopupMenu
     menuItemBulkDump = new JMenuItem("Bulk Dump Selection");
     menuItemBulkDump.addActionListener(ctrl.getBulkDumpListener());
     add(menuItemBulkDump);
+    addSeparator();
+    menuItemPatchLibrary = new JMenuItem("Patch Library…");
+    menuItemPatchLibrary.addActionListener(ctrl.getPatchLibraryListener());
+    add(menuItemPatchLibrary);
     singleLeafSelectedChanged(false);
     menuItemBulkDump.setEnabled(false);
+    menuItemPatchLibrary.setEnabled(false);
   }
 
   public void selectionChanged(final SelectionMultiplicity multiplicity)
   {
-    // ignore
+    menuItemPatchLibrary.
+      setEnabled(multiplicity == SelectionMultiplicity.SINGLE_PARENT);
   }
 
   public void singleLeafSelectedChanged(final boolean hasSingleLeafSelected)
@@ -142,6 +142,11 @@ public class MenuBar extends JMenuBar
       add(itemDump);
       itemDump.setEnabled(false);
 
+      final JMenuItem itemDumpChanges = new JMenuItem("Dump Changes");
+      itemDumpChanges.setMnemonic('g');
+      itemDumpChanges.addActionListener(ctrl.getDumpChangesListener());
+      add(itemDumpChanges);
+
       addSeparator();
 
       final JMenuItem itemExit = new JMenuItem("Exit");
@@ -317,7 +322,13 @@ public class MenuBar extends JMenuBar
       itemMsgIntervalTime.setMnemonic('i');
       itemMsgIntervalTime.addActionListener(ctrl.getMsgIntervalTimeListener());
       add(itemMsgIntervalTime);
-      itemMsgIntervalTime.setEnabled(false); // TODO
+
+      final JCheckBoxMenuItem itemLiveEdit =
+        new JCheckBoxMenuItem("Live Edit");
+      itemLiveEdit.setMnemonic('e');
+      itemLiveEdit.addItemListener(ctrl.getLiveEditListener());
+      itemLiveEdit.setSelected(false);
+      add(itemLiveEdit);
 
       final JCheckBoxMenuItem itemDisplayAddresses =
         new JCheckBoxMenuItem("Display Addresses");
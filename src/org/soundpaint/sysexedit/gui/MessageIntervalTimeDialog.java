@@ -0,0 +1,309 @@
+/*
+ * @(#)MessageIntervalTimeDialog.java 1.00 18/07/20
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.gui;
+
+import java.awt.Container;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+import javax.sound.midi.MidiDevice;
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.GroupLayout;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+
+import org.soundpaint.sysexedit.model.TransmitPacing;
+
+/**
+ * This class implements a dialog for configuring the transmit pacing
+ * of the currently selected MIDI output, i.e. the maximum number of
+ * bytes per second and the interval time between subsequent
+ * messages, as well as the time window for coalescing live edits.
+ */
+public class MessageIntervalTimeDialog extends Dialog
+{
+  private static final long serialVersionUID = -3470167591863350425L;
+
+  private static final int MAX_BYTES_PER_SECOND = 1000000;
+  private static final int MAX_MESSAGE_GAP = 10000;
+  private static final int MAX_LIVE_EDIT_WINDOW = 1000;
+
+  private final DocumentMetaData documentMetaData;
+  private final JLabel midiOutputLabel;
+  private final JCheckBox useDefaultCB;
+  private final SpinnerNumberModel bytesPerSecondModel;
+  private final JSpinner bytesPerSecondSP;
+  private final SpinnerNumberModel messageGapModel;
+  private final JSpinner messageGapSP;
+  private final SpinnerNumberModel liveEditWindowModel;
+  private final JSpinner liveEditWindowSP;
+  private MidiDevice.Info midiOutput;
+
+  /**
+   * Creates a blocking dialog for editing the transmit pacing.
+   * @param owner The frame that shall own this dialog.
+   * @param documentMetaData The document meta data that holds the
+   * transmit pacing.
+   */
+  public MessageIntervalTimeDialog(final Frame owner,
+                                   final DocumentMetaData documentMetaData)
+  {
+    super(owner, "Message Interval Time", true);
+    if (documentMetaData == null) {
+      throw new NullPointerException("documentMetaData");
+    }
+    this.documentMetaData = documentMetaData;
+    final Container contentPane = getContentPane();
+    contentPane.setLayout(new BoxLayout(contentPane, BoxLayout.Y_AXIS));
+
+    midiOutputLabel = new JLabel();
+    useDefaultCB = new JCheckBox("Use Default of Device Model");
+    useDefaultCB.setMnemonic('u');
+    useDefaultCB.setToolTipText("pace messages as recommended for the " +
+                                "device model");
+    useDefaultCB.addItemListener(new UseDefaultListener());
+    bytesPerSecondModel =
+      new SpinnerNumberModel(0, 0, MAX_BYTES_PER_SECOND, 100);
+    bytesPerSecondSP = new JSpinner(bytesPerSecondModel);
+    bytesPerSecondSP.setToolTipText("maximum number of bytes per second " +
+                                    "(0 = unlimited)");
+    messageGapModel = new SpinnerNumberModel(0, 0, MAX_MESSAGE_GAP, 10);
+    messageGapSP = new JSpinner(messageGapModel);
+    messageGapSP.setToolTipText("pause in milliseconds after each message");
+    liveEditWindowModel =
+      new SpinnerNumberModel(DocumentMetaData.DEFAULT_LIVE_EDIT_WINDOW, 0,
+                             MAX_LIVE_EDIT_WINDOW, 10);
+    liveEditWindowSP = new JSpinner(liveEditWindowModel);
+    liveEditWindowSP.setToolTipText("time in milliseconds within which " +
+                                    "edits of the same value are sent " +
+                                    "only once");
+    contentPane.add(new PacingPane());
+    contentPane.add(new LiveEditPane());
+    contentPane.add(Box.createVerticalGlue());
+    contentPane.add(new ButtonRow());
+  }
+
+  private class PacingPane extends JPanel
+  {
+    private static final long serialVersionUID = 4942285186209843312L;
+
+    private PacingPane()
+    {
+      setBorder(BorderFactory.createTitledBorder("Transmit Pacing"));
+
+      final JLabel outputLabel = new JLabel("MIDI Output Connection");
+      outputLabel.setLabelFor(midiOutputLabel);
+      final JLabel bytesPerSecondLabel = new JLabel("Bytes per Second");
+      bytesPerSecondLabel.setLabelFor(bytesPerSecondSP);
+      final JLabel messageGapLabel = new JLabel("Message Gap [ms]");
+      messageGapLabel.setLabelFor(messageGapSP);
+
+      final GroupLayout layout = new GroupLayout(this);
+      setLayout(layout);
+      layout.setAutoCreateGaps(true);
+      layout.setAutoCreateContainerGaps(true);
+
+      final GroupLayout.SequentialGroup columns =
+        layout.createSequentialGroup();
+      final GroupLayout.ParallelGroup labelColumn =
+        layout.createParallelGroup(GroupLayout.Alignment.TRAILING);
+      labelColumn.addComponent(outputLabel);
+      labelColumn.addComponent(bytesPerSecondLabel);
+      labelColumn.addComponent(messageGapLabel);
+      columns.addGroup(labelColumn);
+      final GroupLayout.ParallelGroup valueColumn =
+        layout.createParallelGroup(GroupLayout.Alignment.LEADING);
+      valueColumn.addComponent(midiOutputLabel);
+      valueColumn.addComponent(useDefaultCB);
+      valueColumn.addComponent(bytesPerSecondSP);
+      valueColumn.addComponent(messageGapSP);
+      columns.addGroup(valueColumn);
+      layout.setHorizontalGroup(columns);
+
+      final GroupLayout.SequentialGroup rows =
+        layout.createSequentialGroup();
+      final GroupLayout.ParallelGroup outputRow =
+        layout.createParallelGroup(GroupLayout.Alignment.CENTER);
+      outputRow.addComponent(outputLabel);
+      outputRow.addComponent(midiOutputLabel);
+      rows.addGroup(outputRow);
+      rows.addComponent(useDefaultCB);
+      final GroupLayout.ParallelGroup bytesPerSecondRow =
+        layout.createParallelGroup(GroupLayout.Alignment.CENTER);
+      bytesPerSecondRow.addComponent(bytesPerSecondLabel);
+      bytesPerSecondRow.addComponent(bytesPerSecondSP);
+      rows.addGroup(bytesPerSecondRow);
+      final GroupLayout.ParallelGroup messageGapRow =
+        layout.createParallelGroup(GroupLayout.Alignment.CENTER);
+      messageGapRow.addComponent(messageGapLabel);
+      messageGapRow.addComponent(messageGapSP);
+      rows.addGroup(messageGapRow);
+      layout.setVerticalGroup(rows);
+    }
+  }
+
+  private class LiveEditPane extends JPanel
+  {
+    private static final long serialVersionUID = -1826079462018852270L;
+
+    private LiveEditPane()
+    {
+      setBorder(BorderFactory.createTitledBorder("Live Edit"));
+
+      final JLabel liveEditWindowLabel = new JLabel("Coalescing Window [ms]");
+      liveEditWindowLabel.setLabelFor(liveEditWindowSP);
+
+      final GroupLayout layout = new GroupLayout(this);
+      setLayout(layout);
+      layout.setAutoCreateGaps(true);
+      layout.setAutoCreateContainerGaps(true);
+
+      final GroupLayout.SequentialGroup columns =
+        layout.createSequentialGroup();
+      columns.addComponent(liveEditWindowLabel);
+      columns.addComponent(liveEditWindowSP);
+      layout.setHorizontalGroup(columns);
+
+      final GroupLayout.ParallelGroup rows =
+        layout.createParallelGroup(GroupLayout.Alignment.CENTER);
+      rows.addComponent(liveEditWindowLabel);
+      rows.addComponent(liveEditWindowSP);
+      layout.setVerticalGroup(rows);
+    }
+  }
+
+  private class UseDefaultListener implements ItemListener
+  {
+    public void itemStateChanged(final ItemEvent event)
+    {
+      final boolean useDefault = event.getStateChange() == ItemEvent.SELECTED;
+      if (useDefault) {
+        setPacing(documentMetaData.getDefaultTransmitPacing());
+      }
+      bytesPerSecondSP.setEnabled(!useDefault);
+      messageGapSP.setEnabled(!useDefault);
+    }
+  }
+
+  private class ButtonRow extends JPanel
+  {
+    private static final long serialVersionUID = 6206364850453436781L;
+
+    public ButtonRow()
+    {
+      setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
+      setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+      final JButton buttonCancel = new JButton("Discard");
+      buttonCancel.setMnemonic('d');
+      buttonCancel.setToolTipText("discard any changed options");
+      buttonCancel.addActionListener(new ButtonCancelListener());
+      add(buttonCancel);
+      add(Box.createHorizontalGlue());
+      final JButton buttonOk = new JButton("Apply");
+      buttonOk.setMnemonic('a');
+      buttonOk.setToolTipText("apply any changed options");
+      buttonOk.addActionListener(new ButtonOkListener());
+      add(buttonOk);
+    }
+  }
+
+  private class ButtonCancelListener implements ActionListener
+  {
+    public void actionPerformed(final ActionEvent e)
+    {
+      setVisible(false);
+    }
+  }
+
+  private class ButtonOkListener implements ActionListener
+  {
+    public void actionPerformed(final ActionEvent e)
+    {
+      saveInputFields();
+      setVisible(false);
+    }
+  }
+
+  private void setPacing(final TransmitPacing pacing)
+  {
+    bytesPerSecondModel.setValue(pacing.getBytesPerSecond());
+    messageGapModel.setValue(pacing.getMessageGap());
+  }
+
+  private void saveInputFields()
+  {
+    final TransmitPacing pacing;
+    if (useDefaultCB.isSelected()) {
+      pacing = null;
+    } else {
+      pacing =
+        new TransmitPacing(bytesPerSecondModel.getNumber().intValue(),
+                           messageGapModel.getNumber().intValue());
+    }
+    documentMetaData.setTransmitPacing(midiOutput, pacing);
+    documentMetaData.
+      setLiveEditWindow(liveEditWindowModel.getNumber().intValue());
+  }
+
+  private void loadInputFields()
+  {
+    midiOutput = documentMetaData.getMidiOutput();
+    if ((midiOutput == null) ||
+        (midiOutput == MidiOptionsDialog.pleaseSelect)) {
+      midiOutput = MidiOptionsDialog.pleaseSelect;
+      midiOutputLabel.setText("none");
+    } else {
+      midiOutputLabel.setText(midiOutput.getName());
+    }
+    final TransmitPacing pacing =
+      documentMetaData.getTransmitPacing(midiOutput);
+    final boolean useDefault =
+      pacing.equals(documentMetaData.getDefaultTransmitPacing());
+    setPacing(pacing);
+    useDefaultCB.setSelected(useDefault);
+    bytesPerSecondSP.setEnabled(!useDefault);
+    messageGapSP.setEnabled(!useDefault);
+    liveEditWindowModel.setValue(documentMetaData.getLiveEditWindow());
+    pack();
+    setMinimumSize(getPreferredSize());
+  }
+
+  public void showDialog()
+  {
+    loadInputFields();
+    setVisible(true);
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -35,6 +35,15 @@ public class MidiFileReceiver implements Receiver
 {
   private static final int MIDI_FILE_TYPE_0 = 1;
 
+  /**
+   * Resolution of the MIDI file in ticks per SMPTE frame.  With 30
+   * frames per second, this results in a resolution of 1200 ticks
+   * per second, which is sufficient for reproducing the pacing of
+   * the messages.
+   */
+  private static final int TICKS_PER_FRAME = 40;
+  private static final long TICKS_PER_SECOND = 30 * TICKS_PER_FRAME;
+
   private final FileOutputStream out;
   private final Sequence sequence;
   private final Track track;
@@ -52,7 +61,7 @@ public class MidiFileReceiver implements Receiver
     }
     out = new FileOutputStream(midiFile);
     try {
-      sequence = new Sequence(Sequence.SMPTE_30, 1, 1);
+      sequence = new Sequence(Sequence.SMPTE_30, TICKS_PER_FRAME, 1);
     } catch (final InvalidMidiDataException e) {
       throw new IOException("failed creating MIDI sequence: " + e.getMessage(),
                             e);
@@ -81,12 +90,21 @@ public class MidiFileReceiver implements Receiver
     sequence.deleteTrack(track);
   }
 
+  /**
+   * Adds the message to the MIDI file.
+   * @param message The message to add.
+   * @param timeStamp The time stamp in microseconds, as specified for
+   * the Receiver interface, or -1 for putting the message at the
+   * start of the file.
+   */
   public void send(final MidiMessage message, final long timeStamp)
   {
     if (!open) {
       throw new UnsupportedOperationException("transmitter already closed");
     }
-    final MidiEvent event = new MidiEvent(message, timeStamp);
+    final long tick =
+      timeStamp >= 0 ? timeStamp * TICKS_PER_SECOND / 1000000 : 0;
+    final MidiEvent event = new MidiEvent(message, tick);
     track.add(event);
   }
 }
@@ -0,0 +1,326 @@
+/*
+ * @(#)PatchLibraryDialog.java 1.00 18/07/26
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.gui;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+import javax.swing.BorderFactory;
+import javax.swing.Box;
+import javax.swing.BoxLayout;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.GroupLayout;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+
+import org.soundpaint.sysexedit.model.Device;
+import org.soundpaint.sysexedit.model.FolderNode;
+import org.soundpaint.sysexedit.model.PatchLibrary;
+
+/**
+ * This class implements a dialog for storing the values of a folder
+ * of the map as patch into the patch library, and for applying
+ * patches of the library to a folder of the same structure.
+ */
+public class PatchLibraryDialog extends Dialog
+{
+  private static final long serialVersionUID = -1870396284591021946L;
+
+  private final JLabel folderLabel;
+  private final JLabel patchesLabel;
+  private final JList<PatchLibrary.Entry> patchesLI;
+  private final JTextField nameTF;
+  private final JButton buttonRemove;
+  private final JButton buttonApply;
+  private PatchLibrary library;
+  private Device device;
+  private FolderNode folder;
+  private boolean applied;
+
+  /**
+   * Creates a blocking dialog for the patch library.
+   * @param owner The frame that shall own this dialog.
+   */
+  public PatchLibraryDialog(final Frame owner)
+  {
+    super(owner, "Patch Library", true);
+    final Container contentPane = getContentPane();
+    contentPane.setLayout(new BoxLayout(contentPane, BoxLayout.Y_AXIS));
+
+    folderLabel = new JLabel();
+    patchesLabel = new JLabel();
+    patchesLI = new JList<PatchLibrary.Entry>();
+    patchesLI.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+    patchesLI.setVisibleRowCount(12);
+    patchesLI.setToolTipText("patches that fit the selected folder");
+    patchesLI.setCellRenderer(new EntryRenderer());
+    nameTF = new JTextField(24);
+    nameTF.setToolTipText("name of the patch to store; " +
+                          "replaces any patch of the same name");
+    buttonRemove = new JButton("Remove");
+    buttonApply = new JButton("Apply");
+    contentPane.add(new StorePane());
+    contentPane.add(new PatchesPane());
+    contentPane.add(Box.createVerticalGlue());
+    contentPane.add(new ButtonRow());
+  }
+
+  private static class EntryRenderer extends DefaultListCellRenderer
+  {
+    private static final long serialVersionUID = 4377250719484069287L;
+
+    private final DateFormat dateFormat =
+      DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
+
+    public Component getListCellRendererComponent(final JList<?> list,
+                                                  final Object value,
+                                                  final int index,
+                                                  final boolean isSelected,
+                                                  final boolean cellHasFocus)
+    {
+      final PatchLibrary.Entry entry = (PatchLibrary.Entry)value;
+      final String text =
+        entry.getName() + " (" + entry.getFolderLabel() + ", " +
+        dateFormat.format(new Date(entry.getCreationTime())) + ")";
+      return super.getListCellRendererComponent(list, text, index,
+                                                isSelected, cellHasFocus);
+    }
+  }
+
+  private class StorePane extends JPanel
+  {
+    private static final long serialVersionUID = 6904012795372351958L;
+
+    private StorePane()
+    {
+      setBorder(BorderFactory.createTitledBorder("Store"));
+
+      final JLabel labelFolder = new JLabel("Folder");
+      labelFolder.setLabelFor(folderLabel);
+      final JLabel labelName = new JLabel("Patch Name");
+      labelName.setLabelFor(nameTF);
+      final JButton buttonStore = new JButton("Store");
+      buttonStore.setMnemonic('s');
+      buttonStore.setToolTipText("store the values of the folder as patch");
+      buttonStore.addActionListener(new ButtonStoreListener());
+
+      final GroupLayout layout = new GroupLayout(this);
+      setLayout(layout);
+      layout.setAutoCreateGaps(true);
+      layout.setAutoCreateContainerGaps(true);
+
+      final GroupLayout.SequentialGroup columns =
+        layout.createSequentialGroup();
+      final GroupLayout.ParallelGroup labelColumn =
+        layout.createParallelGroup(GroupLayout.Alignment.TRAILING);
+      labelColumn.addComponent(labelFolder);
+      labelColumn.addComponent(labelName);
+      columns.addGroup(labelColumn);
+      final GroupLayout.ParallelGroup valueColumn =
+        layout.createParallelGroup(GroupLayout.Alignment.LEADING);
+      valueColumn.addComponent(folderLabel);
+      valueColumn.addComponent(nameTF);
+      columns.addGroup(valueColumn);
+      columns.addComponent(buttonStore);
+      layout.setHorizontalGroup(columns);
+
+      final GroupLayout.SequentialGroup rows =
+        layout.createSequentialGroup();
+      final GroupLayout.ParallelGroup folderRow =
+        layout.createParallelGroup(GroupLayout.Alignment.CENTER);
+      folderRow.addComponent(labelFolder);
+      folderRow.addComponent(folderLabel);
+      rows.addGroup(folderRow);
+      final GroupLayout.ParallelGroup nameRow =
+        layout.createParallelGroup(GroupLayout.Alignment.CENTER);
+      nameRow.addComponent(labelName);
+      nameRow.addComponent(nameTF);
+      nameRow.addComponent(buttonStore);
+      rows.addGroup(nameRow);
+      layout.setVerticalGroup(rows);
+    }
+  }
+
+  private class PatchesPane extends JPanel
+  {
+    private static final long serialVersionUID = -2541383919524633532L;
+
+    private PatchesPane()
+    {
+      setBorder(BorderFactory.createTitledBorder("Patches"));
+      setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
+      add(patchesLabel);
+      add(new JScrollPane(patchesLI));
+    }
+  }
+
+  private class ButtonRow extends JPanel
+  {
+    private static final long serialVersionUID = 1419870546211546382L;
+
+    public ButtonRow()
+    {
+      setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
+      setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+      buttonRemove.setMnemonic('r');
+      buttonRemove.setToolTipText("remove the selected patch from the " +
+                                  "library");
+      buttonRemove.addActionListener(new ButtonRemoveListener());
+      add(buttonRemove);
+      add(Box.createHorizontalGlue());
+      final JButton buttonClose = new JButton("Close");
+      buttonClose.setMnemonic('c');
+      buttonClose.setToolTipText("close the patch library");
+      buttonClose.addActionListener(new ButtonCloseListener());
+      add(buttonClose);
+      buttonApply.setMnemonic('a');
+      buttonApply.setToolTipText("overwrite the values of the folder with " +
+                                 "the selected patch");
+      buttonApply.addActionListener(new ButtonApplyListener());
+      add(buttonApply);
+    }
+  }
+
+  private void showError(final String action, final IOException e)
+  {
+    JOptionPane.showMessageDialog(this,
+                                  action + " failed: " + e.getMessage(),
+                                  "Patch Library Error",
+                                  JOptionPane.ERROR_MESSAGE);
+  }
+
+  private class ButtonStoreListener implements ActionListener
+  {
+    public void actionPerformed(final ActionEvent e)
+    {
+      final String name = nameTF.getText().trim();
+      if (name.isEmpty()) {
+        return;
+      }
+      try {
+        library.store(name, device, folder);
+      } catch (final IOException ex) {
+        showError("Storing patch", ex);
+      }
+      loadEntries();
+    }
+  }
+
+  private class ButtonRemoveListener implements ActionListener
+  {
+    public void actionPerformed(final ActionEvent e)
+    {
+      final PatchLibrary.Entry entry = patchesLI.getSelectedValue();
+      if (entry == null) {
+        return;
+      }
+      try {
+        library.remove(entry);
+      } catch (final IOException ex) {
+        showError("Removing patch", ex);
+      }
+      loadEntries();
+    }
+  }
+
+  private class ButtonCloseListener implements ActionListener
+  {
+    public void actionPerformed(final ActionEvent e)
+    {
+      setVisible(false);
+    }
+  }
+
+  private class ButtonApplyListener implements ActionListener
+  {
+    public void actionPerformed(final ActionEvent e)
+    {
+      final PatchLibrary.Entry entry = patchesLI.getSelectedValue();
+      if (entry == null) {
+        return;
+      }
+      try {
+        library.apply(entry, device, folder);
+        applied = true;
+        setVisible(false);
+      } catch (final IOException ex) {
+        showError("Applying patch", ex);
+      }
+    }
+  }
+
+  /**
+   * Lists all patches of the library that fit the folder.
+   */
+  private void loadEntries()
+  {
+    final List<PatchLibrary.Entry> entries =
+      library.getApplicableEntries(device, folder);
+    patchesLabel.setText(entries.size() + " of " +
+                         library.getEntries().size() +
+                         " patches fit " + folder.getLabel());
+    patchesLI.setListData(entries.toArray(new PatchLibrary.Entry[0]));
+    buttonRemove.setEnabled(!entries.isEmpty());
+    buttonApply.setEnabled(!entries.isEmpty());
+  }
+
+  /**
+   * Shows the dialog and blocks until the user closes it.
+   * @param library The patch library to use.
+   * @param device The device model of the folder.
+   * @param folder The folder to store or to apply patches to.
+   * @return True, if a patch has been applied to the folder.
+   */
+  public boolean showDialog(final PatchLibrary library, final Device device,
+                            final FolderNode folder)
+  {
+    this.library = library;
+    this.device = device;
+    this.folder = folder;
+    folderLabel.setText(folder.getLabel());
+    nameTF.setText(folder.getLabel());
+    loadEntries();
+    applied = false;
+    pack();
+    setMinimumSize(getPreferredSize());
+    setVisible(true);
+    return applied;
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -23,13 +23,16 @@ package org.soundpaint.sysexedit.gui;
 import java.awt.GridBagLayout;
 import java.awt.GridBagConstraints;
 import java.awt.Insets;
+import java.awt.event.ActionListener;
+import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 
 import org.soundpaint.sysexedit.model.Value;
 
-public class StatusLine extends JPanel implements DocumentMetaDataChangeListener
+public class StatusLine extends JPanel
+  implements DocumentMetaDataChangeListener, BulkDumpProgressListener
 {
   private static final long serialVersionUID = -8976328276884031182L;
 
@@ -37,7 +40,10 @@ public class StatusLine extends JPanel implements DocumentMetaDataChangeListener
   private final JLabel labelManId;
   private final JLabel labelModelId;
   private final JLabel labelDeviceId;
+  private final JLabel labelDumpProgress;
+  private final JButton buttonCancelDump;
   private final JCheckBox checkBoxModified;
+  private int dumpMessageCount;
 
   public StatusLine()
   {
@@ -78,6 +84,17 @@ public class StatusLine extends JPanel implements DocumentMetaDataChangeListener
     add(panelGlue);
     c.fill = GridBagConstraints.NONE;
     c.weightx = 0.0; c.weighty = 0.0;
+    labelDumpProgress = new JLabel();
+    labelDumpProgress.setToolTipText("Progress of the running bulk dump");
+    labelDumpProgress.setVisible(false);
+    gbl.setConstraints(labelDumpProgress, c);
+    add(labelDumpProgress);
+    buttonCancelDump = new JButton("Cancel");
+    buttonCancelDump.setToolTipText("Stops the running bulk dump after " +
+                                    "the current message");
+    buttonCancelDump.setVisible(false);
+    gbl.setConstraints(buttonCancelDump, c);
+    add(buttonCancelDump);
     checkBoxModified = new JCheckBox("Modified");
     checkBoxModified.setEnabled(false);
     checkBoxModified.setToolTipText("True, if the output window has been " +
@@ -86,6 +103,37 @@ public class StatusLine extends JPanel implements DocumentMetaDataChangeListener
     add(checkBoxModified);
   }
 
+  public void addCancelBulkDumpListener(final ActionListener listener)
+  {
+    buttonCancelDump.addActionListener(listener);
+  }
+
+  public void bulkDumpStarted(final int messageCount)
+  {
+    dumpMessageCount = messageCount;
+    labelDumpProgress.setText("Dump: 0/" + messageCount + " msgs");
+    labelDumpProgress.setVisible(true);
+    buttonCancelDump.setEnabled(true);
+    buttonCancelDump.setVisible(true);
+    revalidate();
+  }
+
+  public void bulkDumpProgress(final int messagesSent, final long bytesSent,
+                               final double bytesPerSecond)
+  {
+    labelDumpProgress.setText(String.format("Dump: %d/%d msgs, %d bytes, " +
+                                            "%.0f bytes/s",
+                                            messagesSent, dumpMessageCount,
+                                            bytesSent, bytesPerSecond));
+  }
+
+  public void bulkDumpFinished(final boolean cancelled)
+  {
+    labelDumpProgress.setVisible(false);
+    buttonCancelDump.setVisible(false);
+    revalidate();
+  }
+
   public void hasUnsavedDataChanged(final boolean hasUnsavedData)
   {
     checkBoxModified.setSelected(hasUnsavedData);
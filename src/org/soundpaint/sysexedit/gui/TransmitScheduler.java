@@ -0,0 +1,409 @@
+/*
+ * @(#)TransmitScheduler.java 1.00 18/07/20
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.gui;
+
+import java.awt.Frame;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import javax.sound.midi.MidiDevice;
+import javax.sound.midi.MidiMessage;
+import javax.sound.midi.Receiver;
+import javax.swing.SwingUtilities;
+
+import org.soundpaint.sysexedit.model.TransmitPacing;
+
+/**
+ * Paces MIDI messages that are sent to a MIDI output.  For each
+ * message, the scheduler computes the earliest point of time when
+ * the message may be sent without exceeding the transmit pacing,
+ * i.e. when the previous message has been fully transmitted and the
+ * configured gap after it has elapsed.  The message is stamped with
+ * that point of time and handed over to a dedicated timing thread
+ * that delivers it to the output when due.  Hence, the thread that
+ * sends messages (e.g. the event dispatch thread) never blocks.
+ *
+ * There is a single scheduler per MIDI output, such that pacing also
+ * holds for messages of subsequent dumps, even if they originate
+ * from different editor frames.
+ */
+public class TransmitScheduler
+{
+  private static final HashMap<MidiDevice.Info, TransmitScheduler>
+    schedulers = new HashMap<MidiDevice.Info, TransmitScheduler>();
+
+  /**
+   * Returns the scheduler for the specified MIDI output, creating it
+   * if it does not yet exist.
+   * @param outputInfo The MIDI output to be scheduled.
+   * @return The scheduler for the MIDI output.
+   */
+  public static synchronized TransmitScheduler
+    getScheduler(final MidiDevice.Info outputInfo)
+  {
+    if (outputInfo == null) {
+      throw new NullPointerException("outputInfo");
+    }
+    TransmitScheduler scheduler = schedulers.get(outputInfo);
+    if (scheduler == null) {
+      scheduler = new TransmitScheduler(outputInfo);
+      schedulers.put(outputInfo, scheduler);
+    }
+    return scheduler;
+  }
+
+  /**
+   * Creates a receiver that forwards each message immediately to the
+   * specified receiver, but stamps it with the point of time that it
+   * would be sent at when paced, starting with time 0.  This is
+   * useful for targets that do not operate in real time, such as
+   * MIDI files.
+   * @param target The receiver to forward messages to.
+   * @param pacing The pacing to apply for computing time stamps.
+   * @return A receiver that stamps messages according to the pacing.
+   */
+  public static PacedReceiver
+    createStampingReceiver(final Receiver target, final TransmitPacing pacing)
+  {
+    return new StampingReceiver(target, pacing);
+  }
+
+  /**
+   * A receiver that paces the messages sent to it.
+   */
+  public interface PacedReceiver extends Receiver
+  {
+    /**
+     * Blocks until all messages that have been sent to this receiver
+     * so far have been delivered to the target receiver (or dropped
+     * due to a previous delivery error).
+     * @return True, if all messages have been delivered successfully.
+     * @exception InterruptedException If the current thread has been
+     *    interrupted while waiting.
+     */
+    boolean awaitDelivery() throws InterruptedException;
+
+    /**
+     * Returns true, if all messages that have been sent to this
+     * receiver so far have been delivered to the target receiver (or
+     * dropped), such that a subsequent call of awaitDelivery() will
+     * not block.
+     * @return True, if no message is pending for delivery.
+     */
+    boolean isIdle();
+  }
+
+  private static class StampingReceiver implements PacedReceiver
+  {
+    private final Receiver target;
+    private final TransmitPacing pacing;
+    private long nextTimeStamp;
+
+    private StampingReceiver(final Receiver target,
+                             final TransmitPacing pacing)
+    {
+      if (target == null) {
+        throw new NullPointerException("target");
+      }
+      if (pacing == null) {
+        throw new NullPointerException("pacing");
+      }
+      this.target = target;
+      this.pacing = pacing;
+      nextTimeStamp = 0;
+    }
+
+    public void send(final MidiMessage message, final long timeStamp)
+    {
+      target.send(message, nextTimeStamp);
+      nextTimeStamp += pacing.getOccupationTime(message.getLength());
+    }
+
+    public boolean awaitDelivery()
+    {
+      // messages are delivered synchronously
+      return true;
+    }
+
+    public boolean isIdle()
+    {
+      return true;
+    }
+
+    public void close()
+    {
+      target.close();
+    }
+  }
+
+  /**
+   * A scheduled message, or, if message is null, a request for
+   * closing the target receiver after all previously scheduled
+   * messages have been delivered.
+   */
+  private static class Entry
+  {
+    private final ScheduledReceiver receiver;
+    private final MidiMessage message;
+    private final long dueTime;
+    private final long timeStamp;
+
+    private Entry(final ScheduledReceiver receiver, final MidiMessage message,
+                  final long dueTime, final long timeStamp)
+    {
+      this.receiver = receiver;
+      this.message = message;
+      this.dueTime = dueTime;
+      this.timeStamp = timeStamp;
+    }
+  }
+
+  private final MidiDevice.Info outputInfo;
+  private final ArrayDeque<Entry> queue;
+
+  /**
+   * The point of time (in terms of System.nanoTime()) when the
+   * output will be ready for the next message.
+   */
+  private long nextFreeTime;
+
+  private Thread timingThread;
+
+  private TransmitScheduler()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  private TransmitScheduler(final MidiDevice.Info outputInfo)
+  {
+    this.outputInfo = outputInfo;
+    queue = new ArrayDeque<Entry>();
+    nextFreeTime = System.nanoTime();
+    timingThread = null;
+  }
+
+  /**
+   * Creates a receiver that paces all messages sent to it before
+   * delivering them to the specified target receiver.  Closing the
+   * returned receiver does not block; instead, the target receiver
+   * will be closed by the timing thread as soon as all messages sent
+   * before have been delivered.
+   * @param target The receiver of the MIDI output.
+   * @param device The MIDI device that the target receiver belongs
+   *    to, or null, if unknown.  If the device supports time stamps,
+   *    delivered messages are stamped with the device time that they
+   *    are due at; otherwise, they are stamped with -1.
+   * @param pacing The pacing to apply.
+   * @param frame The frame to report transmit errors to.
+   * @return A receiver that paces messages.
+   */
+  public PacedReceiver createReceiver(final Receiver target,
+                                      final MidiDevice device,
+                                      final TransmitPacing pacing,
+                                      final Frame frame)
+  {
+    return new ScheduledReceiver(target, device, pacing, frame);
+  }
+
+  private class ScheduledReceiver implements PacedReceiver
+  {
+    private final Receiver target;
+    private final MidiDevice device;
+    private final TransmitPacing pacing;
+    private final Frame frame;
+
+    /**
+     * Set by the timing thread, if delivery of a message to the
+     * target receiver failed, such that all remaining messages will
+     * be dropped.
+     */
+    private volatile boolean failed;
+
+    /** Number of messages scheduled, guarded by the scheduler. */
+    private long scheduledCount;
+
+    /** Number of messages delivered, guarded by the scheduler. */
+    private long deliveredCount;
+
+    private ScheduledReceiver(final Receiver target, final MidiDevice device,
+                              final TransmitPacing pacing, final Frame frame)
+    {
+      if (target == null) {
+        throw new NullPointerException("target");
+      }
+      if (pacing == null) {
+        throw new NullPointerException("pacing");
+      }
+      this.target = target;
+      this.device = device;
+      this.pacing = pacing;
+      this.frame = frame;
+      failed = false;
+      scheduledCount = 0;
+      deliveredCount = 0;
+    }
+
+    public void send(final MidiMessage message, final long timeStamp)
+    {
+      schedule(this, message);
+    }
+
+    public boolean awaitDelivery() throws InterruptedException
+    {
+      synchronized(TransmitScheduler.this) {
+        while (deliveredCount < scheduledCount) {
+          TransmitScheduler.this.wait();
+        }
+      }
+      return !failed;
+    }
+
+    public boolean isIdle()
+    {
+      synchronized(TransmitScheduler.this) {
+        return deliveredCount == scheduledCount;
+      }
+    }
+
+    public void close()
+    {
+      schedule(this, null);
+    }
+  }
+
+  private synchronized void schedule(final ScheduledReceiver receiver,
+                                     final MidiMessage message)
+  {
+    final long now = System.nanoTime();
+    final long dueTime;
+    final long timeStamp;
+    if (message != null) {
+      dueTime = nextFreeTime - now > 0 ? nextFreeTime : now;
+      nextFreeTime =
+        dueTime +
+        1000L * receiver.pacing.getOccupationTime(message.getLength());
+      final long devicePosition =
+        receiver.device != null ?
+        receiver.device.getMicrosecondPosition() : -1;
+      timeStamp =
+        devicePosition >= 0 ? devicePosition + (dueTime - now) / 1000 : -1;
+      receiver.scheduledCount++;
+    } else {
+      dueTime = now;
+      timeStamp = -1;
+    }
+    queue.addLast(new Entry(receiver, message, dueTime, timeStamp));
+    if (timingThread == null) {
+      timingThread = new Thread(new Runnable()
+        {
+          public void run()
+          {
+            deliverEntries();
+          }
+        }, "MIDI transmit scheduler: " + outputInfo.getName());
+      timingThread.setDaemon(true);
+      timingThread.start();
+    }
+    notifyAll();
+  }
+
+  /**
+   * Waits until the head of the queue is due and removes it from the
+   * queue.
+   */
+  private synchronized Entry takeNextDueEntry() throws InterruptedException
+  {
+    while (true) {
+      final Entry entry = queue.peekFirst();
+      if (entry == null) {
+        wait();
+      } else {
+        final long delay = entry.dueTime - System.nanoTime();
+        if (delay <= 0) {
+          return queue.removeFirst();
+        }
+        wait(delay / 1000000, (int)(delay % 1000000));
+      }
+    }
+  }
+
+  private void deliverEntries()
+  {
+    try {
+      while (true) {
+        final Entry entry = takeNextDueEntry();
+        final ScheduledReceiver receiver = entry.receiver;
+        if (entry.message == null) {
+          closeTarget(receiver);
+        } else {
+          if (!receiver.failed) {
+            try {
+              receiver.target.send(entry.message, entry.timeStamp);
+            } catch (final RuntimeException e) {
+              receiver.failed = true;
+              reportError(receiver, e);
+            }
+          } else {
+            // drop message after previous error
+          }
+          messageDelivered(receiver);
+        }
+      }
+    } catch (final InterruptedException e) {
+      // terminate
+    }
+  }
+
+  private synchronized void messageDelivered(final ScheduledReceiver receiver)
+  {
+    receiver.deliveredCount++;
+    notifyAll();
+  }
+
+  private void closeTarget(final ScheduledReceiver receiver)
+  {
+    try {
+      receiver.target.close();
+    } catch (final RuntimeException e) {
+      if (!receiver.failed) {
+        reportError(receiver, e);
+      }
+    }
+  }
+
+  private void reportError(final ScheduledReceiver receiver,
+                           final RuntimeException e)
+  {
+    SwingUtilities.invokeLater(new Runnable()
+      {
+        public void run()
+        {
+          ExceptionPanel.showException(receiver.frame, e, false);
+        }
+      });
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -0,0 +1,99 @@
+/*
+ * @(#)TreeModelUpdater.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.gui;
+
+import javax.swing.SwingUtilities;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeNode;
+
+import org.soundpaint.sysexedit.model.ChangeTransactionListener;
+import org.soundpaint.sysexedit.model.DataNode;
+
+/**
+ * Publishes the committed change transactions of a map to the tree
+ * model that displays the map.  Since change transactions may be
+ * committed on any thread, the tree model is notified on the event
+ * dispatch thread, with one event per run of changed sibling nodes.
+ */
+public class TreeModelUpdater implements ChangeTransactionListener
+{
+  private final DefaultTreeModel model;
+
+  private TreeModelUpdater()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  public TreeModelUpdater(final DefaultTreeModel model)
+  {
+    if (model == null) {
+      throw new NullPointerException("model");
+    }
+    this.model = model;
+  }
+
+  public void changesCommitted(final DataNode[] nodes,
+                               final long startAddress,
+                               final long stopBeforeAddress)
+  {
+    if (SwingUtilities.isEventDispatchThread()) {
+      fireTreeChanges(nodes);
+    } else {
+      SwingUtilities.invokeLater(new Runnable()
+        {
+          public void run()
+          {
+            fireTreeChanges(nodes);
+          }
+        });
+    }
+  }
+
+  private void fireTreeChanges(final DataNode[] nodes)
+  {
+    if ((nodes.length == 0) || (model.getRoot() != nodes[0].getRoot())) {
+      // map has been replaced meanwhile
+      return;
+    }
+    int first = 0;
+    while (first < nodes.length) {
+      final TreeNode parent = nodes[first].getParent();
+      int last = first + 1;
+      while ((last < nodes.length) &&
+             (nodes[last].getParent() == parent)) {
+        last++;
+      }
+      final int[] childIndices = new int[last - first];
+      for (int i = first; i < last; i++) {
+        childIndices[i - first] = parent.getIndex(nodes[i]);
+      }
+      model.nodesChanged(parent, childIndices);
+      first = last;
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -21,6 +21,7 @@
 package org.soundpaint.sysexedit.gui;
 
 import java.awt.Frame;
+import java.awt.Toolkit;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.io.File;
@@ -29,7 +30,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MidiDevice;
 import javax.sound.midi.MidiMessage;
@@ -38,20 +43,48 @@ import javax.sound.midi.MidiUnavailableException;
 import javax.sound.midi.SysexMessage;
 import javax.sound.midi.Receiver;
 import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
 import javax.swing.tree.TreeNode;
 import javax.swing.tree.TreePath;
 
+import org.soundpaint.sysexedit.model.AbstractDevice;
+import org.soundpaint.sysexedit.model.AddressIndex;
 import org.soundpaint.sysexedit.model.Device;
+import org.soundpaint.sysexedit.model.DataNode;
+import org.soundpaint.sysexedit.model.DumpPlan;
+import org.soundpaint.sysexedit.model.LazyFolderNode;
 import org.soundpaint.sysexedit.model.MapNode;
+import org.soundpaint.sysexedit.model.SyncState;
+import org.soundpaint.sysexedit.model.TransmitPacing;
 
+/**
+ * Bulk dumps the selected nodes of the map.  Collecting the selected
+ * memory areas happens on the event dispatch thread, while encoding
+ * and transmitting the SysEx messages is performed by a background
+ * executor, such that the user interface remains responsive during
+ * large dumps.  At most one bulk dump is running at a time; it can be
+ * cancelled between any two messages.
+ *
+ * Dumps to a MIDI device update the sync state of the map, such that
+ * a subsequent dump of changes only needs to transmit those values
+ * that have been edited since.
+ */
 public class TreeSelectionDumpListener extends KeyAdapter
 {
+  /**
+   * The number of bits per byte of a bulk dump for devices without
+   * a dump plan, as conveyed by MIDI data bytes.
+   */
+  private static final int MIDI_DATA_BITS = 7;
+
   private static final String MSG_CONFIRM_OVERWRITE =
     "MIDI Dump file %s already exists.  Overwrite file?";
   private static final String MSG_NO_MIDI_OUTPUT_PORT =
     "No MIDI output port selected.  " +
     "Please select a MIDI output port under the " +
     "Options → MIDI Options… dialog.";
+  private static final String MSG_NO_CHANGES =
+    "All values are in sync with the MIDI device.  Nothing to dump.";
   private static final String MSG_NO_MIDI_OUTPUT_FILE =
     "No MIDI output file selected.  " +
     "Please select a MIDI output file under the " +
@@ -61,6 +94,20 @@ public class TreeSelectionDumpListener extends KeyAdapter
   private final Map map;
   private final DocumentMetaData documentMetaData;
   private final Frame frame;
+  private final ExecutorService executor;
+  private final List<BulkDumpProgressListener> progressListeners;
+
+  /**
+   * The currently running bulk dump, or null, if there is none.
+   * Accessed only on the event dispatch thread.
+   */
+  private DumpTask currentTask;
+
+  /**
+   * The contiguous bulk areas collected so far, each one not
+   * exceeding the maximum bulk dump size of the device.
+   */
+  private List<BulkArea> bulkAreas;
 
   /**
    * The first adress of the current contiguous bulk area.
@@ -86,9 +133,54 @@ public class TreeSelectionDumpListener extends KeyAdapter
     this.map = map;
     this.documentMetaData = documentMetaData;
     this.frame = frame;
+    executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+      {
+        public Thread newThread(final Runnable runnable)
+        {
+          final Thread thread = new Thread(runnable, "Bulk Dump");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    progressListeners = new ArrayList<BulkDumpProgressListener>();
+    currentTask = null;
     reset();
   }
 
+  public void addProgressListener(final BulkDumpProgressListener listener)
+  {
+    progressListeners.add(listener);
+  }
+
+  public void removeProgressListener(final BulkDumpProgressListener listener)
+  {
+    progressListeners.remove(listener);
+  }
+
+  private static class BulkArea
+  {
+    private final long start;
+    private final long stopBefore;
+
+    private BulkArea(final long start, final long stopBefore)
+    {
+      this.start = start;
+      this.stopBefore = stopBefore;
+    }
+  }
+
+  /**
+   * Returns the number of bits per byte of a bulk dump of the
+   * device, as compiled into its dump plan.
+   */
+  private int getBitsPerByte()
+  {
+    final DumpPlan dumpPlan =
+      device instanceof AbstractDevice ?
+      ((AbstractDevice)device).getDumpPlan() : null;
+    return dumpPlan != null ? dumpPlan.getBitsPerByte() : MIDI_DATA_BITS;
+  }
+
   /**
    * Initializes the save automaton.
    */
@@ -98,27 +190,43 @@ public class TreeSelectionDumpListener extends KeyAdapter
     bulkAreaStopBeforeAddress = -1;
   }
 
-  private MidiMessage createMidiMessage() throws IOException
+  /**
+   * Creates a single SysEx message that bulk dumps the specified
+   * contiguous area of memory.  The message is assembled in a single
+   * pass directly into a buffer that is pre-sized according to the
+   * number of bytes announced by the bulk dump stream.
+   */
+  static MidiMessage createMidiMessage(final Device device,
+                                       final byte deviceId,
+                                       final long start,
+                                       final long stopBefore)
+    throws IOException
   {
-    final byte deviceId =
-      (byte)(documentMetaData.getMidiDeviceId().getSystemValue());
-    final InputStream bulkDump =
-      device.bulkDump(deviceId,
-                      bulkAreaStartAddress, bulkAreaStopBeforeAddress);
-    final List<Byte> sysexData = new ArrayList<Byte>();
-    int data;
-    while ((data = bulkDump.read()) >= 0) {
-      sysexData.add((byte)data);
-    }
-    final int msgSize = sysexData.size() + 2;
-    final byte[] bytes = new byte[msgSize];
+    final InputStream bulkDump = device.bulkDump(deviceId, start, stopBefore);
+    if (bulkDump == null) {
+      throw new IOException("bulk dump not supported by device " +
+                            device.getName());
+    }
+    byte[] bytes = new byte[Math.max(bulkDump.available(), 16) + 2];
     bytes[0] = (byte)SysexMessage.SYSTEM_EXCLUSIVE;
-    for (int i = 0; i < msgSize - 2; i++) {
-      bytes[i + 1] = sysexData.get(i);
+    int msgSize = 1;
+    int count;
+    while ((count =
+            bulkDump.read(bytes, msgSize, bytes.length - 1 - msgSize)) > 0) {
+      msgSize += count;
+      if (msgSize == bytes.length - 1) {
+        // buffer full => check for more data beyond announced size
+        final int data = bulkDump.read();
+        if (data < 0) {
+          break;
+        }
+        bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+        bytes[msgSize++] = (byte)data;
+      }
     }
-    bytes[msgSize - 1] = (byte)SysexMessage.SPECIAL_SYSTEM_EXCLUSIVE;
+    bytes[msgSize++] = (byte)SysexMessage.SPECIAL_SYSTEM_EXCLUSIVE;
     try {
-      return new SysexMessage(bytes, bytes.length);
+      return new SysexMessage(bytes, msgSize);
     } catch (final InvalidMidiDataException e) {
       throw new IOException("failed creating SysEx message: " + e.getMessage(),
                             e);
@@ -126,15 +234,36 @@ public class TreeSelectionDumpListener extends KeyAdapter
   }
 
   /**
-   * Flushes the save automaton.
+   * Flushes the save automaton.  The current contiguous bulk area is
+   * split into as many bulk areas as needed for not exceeding the
+   * maximum bulk dump size of the device.  Bulk areas are split only
+   * at boundaries between data nodes that fall on byte boundaries,
+   * such that each data node is dumped within a single message.
    */
-  private void flushDump(final Receiver receiver) throws IOException
+  private void flushDump()
   {
     if (bulkAreaStartAddress < 0) {
       return; // nothing to flush
     }
-    final MidiMessage bulkDump = createMidiMessage();
-    receiver.send(bulkDump, -1);
+    final long maxBitSize = device.getMaxBulkDumpBitSize();
+    final TreeNode root = device.getMapRoot();
+    final AddressIndex addressIndex =
+      root instanceof AbstractDevice.MapRoot ?
+      ((AbstractDevice.MapRoot)root).getAddressIndex() : null;
+    long start = bulkAreaStartAddress;
+    while (start < bulkAreaStopBeforeAddress) {
+      final long stopBefore;
+      if (bulkAreaStopBeforeAddress - start <= maxBitSize) {
+        stopBefore = bulkAreaStopBeforeAddress;
+      } else if (addressIndex != null) {
+        stopBefore = addressIndex.getSplitAddress(start, start + maxBitSize,
+                                                  getBitsPerByte());
+      } else {
+        stopBefore = start + maxBitSize;
+      }
+      bulkAreas.add(new BulkArea(start, stopBefore));
+      start = stopBefore;
+    }
     reset();
   }
 
@@ -142,37 +271,91 @@ public class TreeSelectionDumpListener extends KeyAdapter
    * Notes down that the specified MapNode is to be saved; eventually
    * saves a bulk of collected MapNode objects.
    * @param node The MapNode to be saved eventually.
+   * @param syncState If not null, only those leaf nodes are saved
+   * that have changed according to this sync state.  Unchanged nodes
+   * interrupt contiguous bulk areas.
    */
-  private void addToDump(final Receiver receiver,
-                         final MapNode node) throws IOException
+  private void addToDump(final MapNode node, final SyncState syncState)
   {
+    if ((node instanceof LazyFolderNode) &&
+        !((LazyFolderNode)node).isMaterialized() &&
+        addVirtualToDump((LazyFolderNode)node, syncState)) {
+      return;
+    }
     if (node.getAllowsChildren()) {
       // non-leaf node => add children to dump
       for (int i = 0; i < node.getChildCount(); i++) {
         final TreeNode child = node.getChildAt(i);
-        addToDump(receiver, (MapNode)child);
+        addToDump((MapNode)child, syncState);
       }
       return;
     }
-    if (node.getAddress() == bulkAreaStopBeforeAddress) {
+    if ((syncState != null) &&
+        (node instanceof DataNode) &&
+        !syncState.isChanged((DataNode)node)) {
+      return; // in sync => skip
+    }
+    addToDump(node.getAddress(), node.getBitSize());
+  }
+
+  /**
+   * Notes down the data of a lazy folder that has not yet been
+   * materialized.  The data is taken from the address index, such
+   * that dumping a folder does not create its contents.
+   * @return False, if the map has no address index, such that the
+   *    contents of the folder need to be walked instead.
+   */
+  private boolean addVirtualToDump(final LazyFolderNode folder,
+                                   final SyncState syncState)
+  {
+    final TreeNode root = folder.getRoot();
+    final AddressIndex addressIndex =
+      root instanceof AbstractDevice.MapRoot ?
+      ((AbstractDevice.MapRoot)root).getAddressIndex() : null;
+    if (addressIndex == null) {
+      return false;
+    }
+    final long stopBefore = folder.getStopBeforeAddress();
+    for (int i = addressIndex.firstIndexAtOrAfter(folder.getAddress());
+         (i < addressIndex.size()) &&
+           (addressIndex.getAddress(i) < stopBefore);
+         i++) {
+      if ((syncState != null) && !syncState.isChanged(i)) {
+        continue; // in sync => skip
+      }
+      addToDump(addressIndex.getAddress(i), addressIndex.getBitSize(i));
+    }
+    return true;
+  }
+
+  /**
+   * Notes down the specified memory area to be saved; eventually
+   * saves a bulk of collected memory areas.
+   * @param address The start bit address of the area.
+   * @param bitSize The size of the area in bits.
+   */
+  private void addToDump(final long address, final int bitSize)
+  {
+    if (address == bulkAreaStopBeforeAddress) {
       // append to contiguous block & quit
-      bulkAreaStopBeforeAddress += node.getBitSize();
+      bulkAreaStopBeforeAddress += bitSize;
       return;
     }
     if (bulkAreaStopBeforeAddress >= 0) {
       // end of contiguous block; dump it
-      flushDump(receiver);
+      flushDump();
     }
     // start a new contiguous block
-    bulkAreaStartAddress = node.getAddress();
-    bulkAreaStopBeforeAddress = bulkAreaStartAddress + node.getBitSize();
+    bulkAreaStartAddress = address;
+    bulkAreaStopBeforeAddress = bulkAreaStartAddress + bitSize;
   }
 
   /**
    * @return A receiver for creating a dump MIDI file or null, if
    * the operation has been aborted by the user.
    */
-  private Receiver getReceiverForDumpMidiFile() throws IOException
+  private TransmitScheduler.PacedReceiver getReceiverForDumpMidiFile()
+    throws IOException
   {
     final File dumpMidiFile = documentMetaData.getDumpMidiFile();
     if ((dumpMidiFile == null) || (dumpMidiFile.toString().isEmpty())) {
@@ -194,14 +377,18 @@ public class TreeSelectionDumpListener extends KeyAdapter
       return null;
     }
     try {
-      return new MidiFileReceiver(dumpMidiFile);
+      final Receiver receiver = new MidiFileReceiver(dumpMidiFile);
+      final TransmitPacing pacing =
+        documentMetaData.
+        getTransmitPacing(DocumentMetaData.dumpMidiFileDeviceInfo);
+      return TransmitScheduler.createStampingReceiver(receiver, pacing);
     } catch (final IOException e) {
       throw new IOException("failed creating MIDI output file: " +
                             e.getMessage(), e);
     }
   }
 
-  private String getDeviceName(final MidiDevice device)
+  private static String getDeviceName(final MidiDevice device)
   {
     final MidiDevice.Info info = device.getDeviceInfo();
     final String name = info.getName();
@@ -211,7 +398,7 @@ public class TreeSelectionDumpListener extends KeyAdapter
   /**
    * @return A receiver for the specified MIDI device.
    */
-  private Receiver getReceiverForDevice(final MidiDevice device)
+  private static Receiver getReceiverForDevice(final MidiDevice device)
     throws IOException
   {
     if (!device.isOpen()) {
@@ -238,9 +425,11 @@ public class TreeSelectionDumpListener extends KeyAdapter
 
   /**
    * @return A receiver according to the configured MIDI options,
-   * or null, if the operation has been aborted by the user.
+   * or null, if the operation has been aborted by the user.  Messages
+   * sent to the receiver are paced according to the transmit pacing
+   * configured for the MIDI output.
    */
-  private Receiver getReceiver() throws IOException
+  private TransmitScheduler.PacedReceiver getReceiver() throws IOException
   {
     final MidiDevice.Info deviceInfo = documentMetaData.getMidiOutput();
     if ((deviceInfo == null) ||
@@ -251,6 +440,20 @@ public class TreeSelectionDumpListener extends KeyAdapter
     if (deviceInfo == DocumentMetaData.dumpMidiFileDeviceInfo) {
       return getReceiverForDumpMidiFile();
     }
+    return getReceiverForDevice(deviceInfo, documentMetaData, frame);
+  }
+
+  /**
+   * @return A receiver for the specified MIDI output device.
+   * Messages sent to the receiver are paced according to the transmit
+   * pacing configured for the MIDI output.
+   */
+  static TransmitScheduler.PacedReceiver
+    getReceiverForDevice(final MidiDevice.Info deviceInfo,
+                         final DocumentMetaData documentMetaData,
+                         final Frame frame)
+    throws IOException
+  {
     MidiDevice device = null;
     try {
       device = MidiSystem.getMidiDevice(deviceInfo);
@@ -258,43 +461,261 @@ public class TreeSelectionDumpListener extends KeyAdapter
       System.out.println("get MIDI device: " + e.getMessage());
     }
     System.out.println("device=" + device);
-    return getReceiverForDevice(device);
+    final Receiver receiver = getReceiverForDevice(device);
+    final TransmitPacing pacing =
+      documentMetaData.getTransmitPacing(deviceInfo);
+    final TransmitScheduler scheduler =
+      TransmitScheduler.getScheduler(deviceInfo);
+    return scheduler.createReceiver(receiver, device, pacing, frame);
   }
 
   /**
-   * Walks through the whole Map object and schedules the value of
+   * Walks through the whole Map object and collects the value of
    * each selected node for bulk dump.
    */
+  private List<BulkArea> collectSelection()
+  {
+    reset();
+    bulkAreas = new ArrayList<BulkArea>();
+    int index = map.getMinSelectionRow();
+    if (index >= 0) {
+      while (index <= map.getMaxSelectionRow()) {
+        if (map.isRowSelected(index)) {
+          final MapNode node =
+            (MapNode)map.getPathForRow(index).getLastPathComponent();
+          addToDump(node, null);
+        }
+        index++;
+      }
+      // final flush
+      flushDump();
+    }
+    final List<BulkArea> result = bulkAreas;
+    bulkAreas = null;
+    return result;
+  }
+
+  /**
+   * Walks through the whole Map object and collects the value of
+   * each node that has changed since last sync with the device.
+   */
+  private List<BulkArea> collectChanges(final SyncState syncState)
+  {
+    reset();
+    bulkAreas = new ArrayList<BulkArea>();
+    addToDump((MapNode)map.getModel().getRoot(), syncState);
+    flushDump();
+    final List<BulkArea> result = bulkAreas;
+    bulkAreas = null;
+    return result;
+  }
+
+  /**
+   * Starts a bulk dump of all selected nodes in the background.  If
+   * another bulk dump is still running, this method does nothing
+   * but beep.  Must be called on the event dispatch thread.
+   */
   public void dumpSelection()
   {
+    dump(false);
+  }
+
+  /**
+   * Starts a bulk dump of all nodes that have changed since they
+   * have been last dumped to or received from the MIDI device.
+   * Contiguous changed nodes are combined into as few messages as
+   * possible.  Must be called on the event dispatch thread.
+   */
+  public void dumpChanges()
+  {
+    dump(true);
+  }
+
+  private void dump(final boolean changesOnly)
+  {
+    if (currentTask != null) {
+      Toolkit.getDefaultToolkit().beep();
+      return;
+    }
+    final SyncState syncState = device.getSyncState();
+    final List<BulkArea> areas =
+      changesOnly && (syncState != null) ?
+      collectChanges(syncState) : collectSelection();
+    if (areas.isEmpty()) {
+      if (changesOnly) {
+        JOptionPane.showMessageDialog(frame,
+                                      MSG_NO_CHANGES,
+                                      "Dump Changes",
+                                      JOptionPane.INFORMATION_MESSAGE);
+      }
+      return;
+    }
     try {
-      final Receiver receiver = getReceiver();
+      final TransmitScheduler.PacedReceiver receiver = getReceiver();
       if (receiver == null) {
         return; // operation aborted by user
       }
+      final boolean dumpsToDevice =
+        documentMetaData.getMidiOutput() !=
+        DocumentMetaData.dumpMidiFileDeviceInfo;
+      final byte deviceId =
+        (byte)(documentMetaData.getMidiDeviceId().getSystemValue());
+      currentTask = new DumpTask(receiver, deviceId, areas,
+                                 dumpsToDevice ? syncState : null);
+      for (final BulkDumpProgressListener listener : progressListeners) {
+        listener.bulkDumpStarted(areas.size());
+      }
+      executor.execute(currentTask);
+    } catch (final IOException e) {
+      showDumpFailed(e);
+    }
+  }
+
+  /**
+   * Requests the currently running bulk dump, if any, to stop after
+   * the message currently being transmitted.  Must be called on the
+   * event dispatch thread.
+   */
+  public void cancelDump()
+  {
+    if (currentTask != null) {
+      currentTask.cancel();
+    }
+  }
+
+  private void showDumpFailed(final Throwable t)
+  {
+    JOptionPane.showMessageDialog(frame,
+                                  t.getMessage(),
+                                  "Bulk Dump Failed",
+                                  JOptionPane.ERROR_MESSAGE);
+  }
+
+  /**
+   * Encodes and transmits the collected bulk areas, one message at a
+   * time.  After each message, the task waits until the scheduler
+   * has delivered it to the MIDI output, such that progress reflects
+   * actual transmission and cancellation takes effect between two
+   * messages.
+   *
+   * Each area is marked as synced right before it is encoded rather
+   * than after delivery, such that edits that happen while the
+   * message is in transit are not lost from the sync state.  If
+   * delivery fails, the area is marked as changed again.
+   */
+  private class DumpTask implements Runnable
+  {
+    private final TransmitScheduler.PacedReceiver receiver;
+    private final byte deviceId;
+    private final List<BulkArea> areas;
+    private final SyncState syncState;
+    private volatile boolean cancelled;
+
+    private DumpTask(final TransmitScheduler.PacedReceiver receiver,
+                     final byte deviceId, final List<BulkArea> areas,
+                     final SyncState syncState)
+    {
+      this.receiver = receiver;
+      this.deviceId = deviceId;
+      this.areas = areas;
+      this.syncState = syncState;
+      cancelled = false;
+    }
+
+    private void cancel()
+    {
+      cancelled = true;
+    }
+
+    public void run()
+    {
+      Throwable error = null;
+      int messagesSent = 0;
+      long bytesSent = 0;
+      final long startTime = System.nanoTime();
       try {
-        reset();
-        int index = map.getMinSelectionRow();
-        if (index >= 0) {
-          while (index <= map.getMaxSelectionRow()) {
-            if (map.isRowSelected(index)) {
-              final MapNode node =
-                (MapNode)map.getPathForRow(index).getLastPathComponent();
-              addToDump(receiver, node);
+        for (final BulkArea area : areas) {
+          if (cancelled) {
+            break;
+          }
+          if (syncState != null) {
+            syncState.markSynced(area.start, area.stopBefore);
+          }
+          final MidiMessage bulkDump;
+          try {
+            bulkDump =
+              createMidiMessage(device, deviceId, area.start, area.stopBefore);
+            receiver.send(bulkDump, -1); // time stamp assigned by scheduler
+            if (!receiver.awaitDelivery()) {
+              // error already reported by scheduler
+              markChanged(area);
+              break;
             }
-            index++;
+          } catch (final IOException | InterruptedException e) {
+            markChanged(area);
+            throw e;
           }
-          // final flush
-          flushDump(receiver);
+          messagesSent++;
+          bytesSent += bulkDump.getLength();
+          final double elapsed = (System.nanoTime() - startTime) * 1.0e-9;
+          fireProgress(messagesSent, bytesSent,
+                       elapsed > 0.0 ? bytesSent / elapsed : 0.0);
         }
+      } catch (final IOException e) {
+        error = e;
+      } catch (final InterruptedException e) {
+        cancelled = true;
       } finally {
-        receiver.close();
+        try {
+          receiver.close();
+        } catch (final RuntimeException e) {
+          if (error == null) {
+            error = e;
+          }
+        }
+      }
+      fireFinished(error);
+    }
+
+    private void markChanged(final BulkArea area)
+    {
+      if (syncState != null) {
+        syncState.markChanged(area.start, area.stopBefore);
       }
-    } catch (final IOException e) {
-      JOptionPane.showMessageDialog(frame,
-                                    e.getMessage(),
-                                    "Bulk Dump Failed",
-                                    JOptionPane.ERROR_MESSAGE);
+    }
+
+    private void fireProgress(final int messagesSent, final long bytesSent,
+                              final double bytesPerSecond)
+    {
+      SwingUtilities.invokeLater(new Runnable()
+        {
+          public void run()
+          {
+            for (final BulkDumpProgressListener listener :
+                   progressListeners) {
+              listener.bulkDumpProgress(messagesSent, bytesSent,
+                                        bytesPerSecond);
+            }
+          }
+        });
+    }
+
+    private void fireFinished(final Throwable error)
+    {
+      SwingUtilities.invokeLater(new Runnable()
+        {
+          public void run()
+          {
+            currentTask = null;
+            for (final BulkDumpProgressListener listener :
+                   progressListeners) {
+              listener.bulkDumpFinished(cancelled);
+            }
+            if (error != null) {
+              showDumpFailed(error);
+            }
+          }
+        });
     }
   }
 
@@ -305,6 +726,9 @@ public class TreeSelectionDumpListener extends KeyAdapter
     case '\u0013': // Ctrl-S
       dumpSelection();
       break;
+    case '\u0004': // Ctrl-D
+      dumpChanges();
+      break;
     }
   }
 }
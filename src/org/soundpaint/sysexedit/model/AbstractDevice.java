@@ -21,12 +21,13 @@
 package org.soundpaint.sysexedit.model;
 
 import java.io.InputStream;
-import javax.swing.event.TreeSelectionListener;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.swing.tree.TreeNode;
 
-import org.soundpaint.sysexedit.gui.Map;
-import org.soundpaint.sysexedit.gui.MapContextMenu;
-
 /**
  * Abstract device implementation.  Handles root node.
  */
@@ -36,44 +37,430 @@ public abstract class AbstractDevice implements Device
   {
     private static final long serialVersionUID = 3044259528722489945L;
 
-    private Map map;
+    private final AddressRepresentation addressRepresentation;
+
+    /** Index of all data nodes, sorted by resolved address. */
+    private AddressIndex addressIndex;
+
+    /** Which data nodes have changed since last sync with device. */
+    private SyncState syncState;
+
+    /**
+     * Listeners for value changes.  Since values may also change
+     * when being received from the device on a MIDI input thread,
+     * the list must be safe for concurrent iteration.
+     */
+    private final List<DataNodeChangeListener> dataNodeChangeListeners;
+
+    /**
+     * Listeners for committed change transactions, e.g. the tree
+     * model of a GUI that displays this map.  Headless applications
+     * that register none thus never involve any GUI toolkit.
+     */
+    private final List<ChangeTransactionListener>
+      changeTransactionListeners;
+
+    /**
+     * The thread that performs the current change transaction, or
+     * null, if there is no change transaction in progress.  Only
+     * changed while holding the lock of this map root.
+     */
+    private volatile Thread transactionOwner;
+
+    /**
+     * Nesting depth of the current change transaction.  Only
+     * accessed by the transaction owner.
+     */
+    private int transactionDepth;
+
+    /**
+     * The positions in the address index of all data nodes that have
+     * changed within the current change transaction.  Only accessed
+     * by the transaction owner.
+     */
+    private BitSet transactionChanges;
+
+    /**
+     * The positions in the address index of all data nodes whose
+     * values have been silently restored within the current change
+     * transaction.  Only accessed by the transaction owner.
+     */
+    private BitSet transactionRestores;
 
     private MapRoot(final String deviceName,
-                    final TreeSelectionListener selectionListener,
-                    final MapContextMenu mapContextMenu,
                     final AddressRepresentation addressRepresentation)
     {
       super(deviceName);
-      map = new Map(selectionListener, mapContextMenu, addressRepresentation);
+      this.addressRepresentation = addressRepresentation;
+      dataNodeChangeListeners =
+        new CopyOnWriteArrayList<DataNodeChangeListener>();
+      changeTransactionListeners =
+        new CopyOnWriteArrayList<ChangeTransactionListener>();
+    }
+
+    /**
+     * Returns how addresses of this map are displayed to the user.
+     * @return The address representation of this map.
+     */
+    public AddressRepresentation getAddressRepresentation()
+    {
+      return addressRepresentation;
+    }
+
+    /**
+     * Returns the index of all data nodes of this map, sorted by
+     * their resolved address.
+     * @return The address index, or null, if addresses have not yet
+     *    been resolved.
+     */
+    public AddressIndex getAddressIndex()
+    {
+      return addressIndex;
+    }
+
+    /**
+     * Returns the sync state of the data nodes of this map.
+     * @return The sync state, or null, if addresses have not yet
+     *    been resolved.
+     */
+    public SyncState getSyncState()
+    {
+      return syncState;
+    }
+
+    public void
+      addDataNodeChangeListener(final DataNodeChangeListener listener)
+    {
+      dataNodeChangeListeners.add(listener);
+    }
+
+    public void
+      removeDataNodeChangeListener(final DataNodeChangeListener listener)
+    {
+      dataNodeChangeListeners.remove(listener);
+    }
+
+    public void
+      addChangeTransactionListener(final ChangeTransactionListener listener)
+    {
+      changeTransactionListeners.add(listener);
+    }
+
+    public void
+      removeChangeTransactionListener(final ChangeTransactionListener
+                                      listener)
+    {
+      changeTransactionListeners.remove(listener);
+    }
+
+    /**
+     * Called by data nodes of this map whenever their value has
+     * changed.  Marks the node as changed in the sync state and
+     * notifies all data node change listeners, unless the change is
+     * part of a change transaction of the calling thread.  In that
+     * case, the listeners are notified upon commit of the
+     * transaction.
+     */
+    void dataNodeChanged(final DataNode node)
+    {
+      if (syncState != null) {
+        syncState.markChanged(node);
+      }
+      if (transactionOwner == Thread.currentThread()) {
+        final int index = addressIndex != null ?
+          addressIndex.indexOf(node.getAddress()) : -1;
+        if (index >= 0) {
+          transactionChanges.set(index);
+          return;
+        }
+      }
+      fireDataNodeChanged(node);
+    }
+
+    /**
+     * Called by data nodes of this map whenever their value has been
+     * silently restored.  Within a change transaction of the calling
+     * thread, the change is recorded for being published upon commit
+     * to the tree model and the map change listeners, but not to the
+     * data node change listeners.  Otherwise, the change is not
+     * published at all.
+     */
+    void dataNodeRestored(final DataNode node)
+    {
+      if (transactionOwner == Thread.currentThread()) {
+        final int index = addressIndex != null ?
+          addressIndex.indexOf(node.getAddress()) : -1;
+        if (index >= 0) {
+          transactionRestores.set(index);
+        }
+      }
+    }
+
+    private void fireDataNodeChanged(final DataNode node)
+    {
+      for (final DataNodeChangeListener listener : dataNodeChangeListeners) {
+        listener.dataNodeChanged(node);
+      }
+    }
+
+    /**
+     * Returns true, if the calling thread is performing a change
+     * transaction on this map, including the notification of data
+     * node change listeners upon its commit.
+     * @return True, if within a change transaction.
+     */
+    public boolean isChanging()
+    {
+      return transactionOwner == Thread.currentThread();
+    }
+
+    /**
+     * Begins a change transaction, e.g. for importing a bulk dump.
+     * Until the matching commit, value changes of data nodes that are
+     * performed by the calling thread are recorded rather than
+     * published one by one.  The sync state is still updated
+     * immediately.  Change transactions may be nested; only the
+     * outermost commit publishes the changes.  If another thread is
+     * performing a change transaction on this map, waits until that
+     * transaction has been committed.
+     * @see #commitChanges
+     */
+    public void beginChanges()
+    {
+      final Thread thread = Thread.currentThread();
+      if (transactionOwner == thread) {
+        transactionDepth++;
+        return;
+      }
+      synchronized (this) {
+        boolean interrupted = false;
+        while (transactionOwner != null) {
+          try {
+            wait();
+          } catch (final InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        if (interrupted) {
+          thread.interrupt();
+        }
+        transactionChanges = new BitSet();
+        transactionRestores = new BitSet();
+        transactionDepth = 1;
+        transactionOwner = thread;
+      }
+    }
+
+    /**
+     * Commits the change transaction of the calling thread.  Unless
+     * nested, publishes all changes of the transaction: Each changed
+     * data node, except for silently restored ones, is notified to
+     * the data node change listeners once, in order of ascending
+     * address, on the calling thread.  While
+     * being notified, the listeners still see the transaction in
+     * progress via isChanging(), such that they can tell bulk changes
+     * from single edits; changes that the listeners make themselves
+     * are published along with the transaction.  Thereafter, the
+     * change transaction listeners are notified with all changed
+     * nodes, including silently restored ones, and the map change
+     * listeners of this map root with a single event that covers the
+     * address range of all changes, both on the calling thread.  It
+     * is up to the listeners to hand over to the event dispatch
+     * thread, if needed.  Should be invoked in a finally clause.
+     * @exception IllegalStateException If the calling thread does not
+     *    perform a change transaction.
+     * @see #beginChanges
+     */
+    public void commitChanges()
+    {
+      if (transactionOwner != Thread.currentThread()) {
+        throw new IllegalStateException("no change transaction in progress");
+      }
+      if (transactionDepth > 1) {
+        transactionDepth--;
+        return;
+      }
+      final BitSet published = new BitSet();
+      try {
+        while (!transactionChanges.isEmpty()) {
+          final BitSet changes = transactionChanges;
+          transactionChanges = new BitSet();
+          published.or(changes);
+          for (int index = changes.nextSetBit(0); index >= 0;
+               index = changes.nextSetBit(index + 1)) {
+            fireDataNodeChanged(addressIndex.getNode(index));
+          }
+        }
+        published.or(transactionRestores);
+      } finally {
+        synchronized (this) {
+          transactionChanges = null;
+          transactionRestores = null;
+          transactionDepth = 0;
+          transactionOwner = null;
+          notifyAll();
+        }
+      }
+      if (published.isEmpty()) {
+        return;
+      }
+      if (changeTransactionListeners.isEmpty() &&
+          !hasMapChangeListeners()) {
+        // nothing displayed or observed
+        return;
+      }
+      final DataNode[] nodes = new DataNode[published.cardinality()];
+      int count = 0;
+      for (int index = published.nextSetBit(0); index >= 0;
+           index = published.nextSetBit(index + 1)) {
+        nodes[count++] = addressIndex.getNode(index);
+      }
+      final long startAddress =
+        addressIndex.getAddress(published.nextSetBit(0));
+      final long stopBeforeAddress =
+        addressIndex.getStopBeforeAddress(published.length() - 1);
+      for (final ChangeTransactionListener listener :
+             changeTransactionListeners) {
+        listener.changesCommitted(nodes, startAddress, stopBeforeAddress);
+      }
+      fireMapChangeEvents(new MapChangeEvent(this, null, startAddress,
+                                             stopBeforeAddress));
     }
 
-    public Map getMap()
+    @Override
+    protected long resolveAddresses(final long nextAvailableAddress)
     {
-      return map;
+      addressIndex = null;
+      syncState = null;
+      final long result = super.resolveAddresses(nextAvailableAddress);
+      addressIndex = new AddressIndex(this);
+      syncState = new SyncState(addressIndex);
+      return result;
     }
   }
 
+  /**
+   * Dump plans shared among all maps of the same device model, keyed
+   * by model key.
+   */
+  private static final HashMap<String, DumpPlan> dumpPlans =
+    new HashMap<String, DumpPlan>();
+
   protected MapRoot root;
 
+  /** The dump plan of this device's map. */
+  private DumpPlan dumpPlan;
+
   /**
    * Creates a map that represents the device's internal memory.
    */
   public abstract void buildMap(final MapRoot root);
 
-  public TreeNode buildMap(final TreeSelectionListener selectionListener,
-                           final MapContextMenu mapContextMenu)
+  public TreeNode buildMap()
   {
-    root = new MapRoot(getName(), selectionListener, mapContextMenu,
-                       getAddressRepresentation());
+    root = new MapRoot(getName(), getAddressRepresentation());
     buildMap(root);
     root.resolveDfsLinkedNodes(null);
     root.resolveAddresses(0);
+    dumpPlan = lookupDumpPlan(getModelKey(), root.getAddressIndex(),
+                              getBitsPerByte());
     return root;
   }
 
-  public Map getMap()
+  /**
+   * Returns the dump plan for the specified model, compiling it only
+   * if there is not yet any applicable plan for this model.
+   */
+  private static synchronized DumpPlan
+    lookupDumpPlan(final String modelKey, final AddressIndex addressIndex,
+                   final int bitsPerByte)
+  {
+    final DumpPlan cachedPlan = dumpPlans.get(modelKey);
+    if ((cachedPlan != null) &&
+        (cachedPlan.getBitsPerByte() == bitsPerByte) &&
+        cachedPlan.isApplicableTo(addressIndex)) {
+      return cachedPlan;
+    }
+    final DumpPlan dumpPlan = new DumpPlan(addressIndex, bitsPerByte);
+    dumpPlans.put(modelKey, dumpPlan);
+    return dumpPlan;
+  }
+
+  /**
+   * Returns a key that identifies the device model.  All maps built
+   * by devices with equal model keys are expected to share the same
+   * structure.
+   * @return The model key of this device.
+   */
+  protected String getModelKey()
+  {
+    return getClass().getName() + ":" + getName() + ":" +
+      getManufacturerId() + ":" + getModelId();
+  }
+
+  /**
+   * Returns the number of bits per byte of a bulk dump.  For MIDI
+   * data bytes, this is 7.
+   * @return The number of bits per byte of a bulk dump.
+   */
+  protected int getBitsPerByte()
+  {
+    return 7;
+  }
+
+  /**
+   * Returns the precompiled dump plan of this device's map.
+   * @return The dump plan, or null, if the map has not yet been
+   *    built.
+   */
+  public DumpPlan getDumpPlan()
+  {
+    return dumpPlan;
+  }
+
+  public TreeNode getMapRoot()
+  {
+    return root;
+  }
+
+  /**
+   * Returns the maximum number of memory bits per bulk dump message.
+   * By default, the size of bulk dump messages is not limited.
+   * @return The maximum number of memory bits per bulk dump message.
+   */
+  public long getMaxBulkDumpBitSize()
+  {
+    return Long.MAX_VALUE;
+  }
+
+  /**
+   * Returns the sync state of this device's map.
+   * @return The sync state, or null, if the map has not yet been
+   *    built.
+   */
+  public SyncState getSyncState()
+  {
+    return root != null ? root.getSyncState() : null;
+  }
+
+  /**
+   * Returns how fast MIDI messages may be sent to the device.  By
+   * default, messages are paced at the speed of the MIDI wire.
+   * @return The transmit pacing for this device model.
+   */
+  public TransmitPacing getTransmitPacing()
+  {
+    return TransmitPacing.MIDI_WIRE;
+  }
+
+  /**
+   * By default, SysEx message headers are not understood, such that
+   * no message can be located by address.
+   * @return Always -1.
+   */
+  public long getBulkDumpAddress(final ByteBuffer message)
   {
-    return root.getMap();
+    return -1;
   }
 
   public InputStream bulkDump(final byte deviceId,
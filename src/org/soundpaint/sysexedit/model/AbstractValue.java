@@ -20,6 +20,7 @@
 
 package org.soundpaint.sysexedit.model;
 
+import java.io.Serializable;
 import javax.swing.Icon;
 import javax.swing.UIManager;
 
@@ -30,8 +31,10 @@ import javax.swing.UIManager;
  * represent just one memory location or cover a couple of memory
  * locations (up to 32 bits).
  */
-public abstract class AbstractValue implements Value
+public abstract class AbstractValue implements Value, Serializable
 {
+  private static final long serialVersionUID = -8592523800102697784L;
+
   /** If non-null, overrides associated sparse type's iconKey. */
   private final String iconKey;
 
@@ -50,6 +53,9 @@ public abstract class AbstractValue implements Value
   /** The data type of this value. */
   protected final SparseType sparseType;
 
+  /** The selectable values, created upon first access. */
+  private transient volatile SelectableValues selectableValues;
+
   private AbstractValue()
   {
     throw new UnsupportedOperationException("unsupported constructor");
@@ -143,6 +149,18 @@ public abstract class AbstractValue implements Value
     return defaultValue;
   }
 
+  public SelectableValues getSelectableValues()
+  {
+    SelectableValues selectableValues = this.selectableValues;
+    if (selectableValues == null) {
+      // selectable values are immutable; hence, if concurrently
+      // created more than once, any of them will do
+      selectableValues = new SelectableValues(this, getSparseType());
+      this.selectableValues = selectableValues;
+    }
+    return selectableValues;
+  }
+
   public Integer succ(final int numericalValue)
   {
     final SparseType sparseType = getSparseType();
@@ -0,0 +1,549 @@
+/*
+ * @(#)AddressIndex.java 1.00 18/07/14
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Flat index of all data nodes of a map, sorted by their resolved
+ * bit address.  Since address resolution assigns strictly
+ * increasing addresses in depth first search order, collecting the
+ * data nodes in depth first search order already yields a sorted
+ * sequence, such that any address can be located by binary search
+ * rather than by walking the tree.  The index must be rebuilt
+ * whenever addresses have been resolved anew.
+ *
+ * Data nodes within lazy folders that have not yet been
+ * materialized are indexed by their virtual layout.  For these
+ * positions, the index provides address, size and default value
+ * without creating any node; the data node itself is created, by
+ * materializing the enclosing lazy folder, only when being
+ * requested via getNode() or locate().
+ *
+ * @see LazyFolderNode
+ */
+public class AddressIndex
+{
+  /** Start bit address of each indexed data node. */
+  private final long[] startAddresses;
+
+  /** Bit address following the last bit of each indexed data node. */
+  private final long[] stopBeforeAddresses;
+
+  /** Default value of each indexed data node. */
+  private final int[] defaultValues;
+
+  /**
+   * The indexed data nodes, in order of increasing address, or null
+   * for data nodes that have not yet been materialized.
+   */
+  private final AtomicReferenceArray<DataNode> nodes;
+
+  /**
+   * Lazy folders that have not yet been materialized, keyed by the
+   * position of their first indexed data node.
+   */
+  private final TreeMap<Integer, LazyFolderNode> virtualFolders;
+
+  private AddressIndex()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Collects the data nodes of a subtree in depth first search
+   * order, including the data nodes of the virtual layouts of lazy
+   * folders.
+   */
+  private static class Collector implements LazyFolderNode.LayoutListener
+  {
+    private long[] startAddresses;
+    private int[] bitSizes;
+    private int[] defaultValues;
+    private DataNode[] nodes;
+    private int size;
+    private final TreeMap<Integer, LazyFolderNode> virtualFolders;
+
+    private Collector()
+    {
+      startAddresses = new long[16];
+      bitSizes = new int[16];
+      defaultValues = new int[16];
+      nodes = new DataNode[16];
+      size = 0;
+      virtualFolders = new TreeMap<Integer, LazyFolderNode>();
+    }
+
+    private void add(final long address, final int bitSize,
+                     final int defaultValue, final DataNode node)
+    {
+      if (size == nodes.length) {
+        final int capacity = 2 * size;
+        startAddresses = Arrays.copyOf(startAddresses, capacity);
+        bitSizes = Arrays.copyOf(bitSizes, capacity);
+        defaultValues = Arrays.copyOf(defaultValues, capacity);
+        nodes = Arrays.copyOf(nodes, capacity);
+      }
+      startAddresses[size] = address;
+      bitSizes[size] = bitSize;
+      defaultValues[size] = defaultValue;
+      nodes[size] = node;
+      size++;
+    }
+
+    public void dataLaidOut(final long address, final int bitSize,
+                            final int defaultValue)
+    {
+      if (bitSize > 0) {
+        add(address, bitSize, defaultValue, null);
+      }
+    }
+
+    private void collect(final MapNode node)
+    {
+      if (node instanceof DataNode) {
+        final DataNode dataNode = (DataNode)node;
+        if (dataNode.getBitSize() > 0) {
+          add(dataNode.getAddress(), dataNode.getBitSize(),
+              dataNode.getDefaultValue(), dataNode);
+        }
+        return;
+      }
+      if ((node instanceof LazyFolderNode) &&
+          !((LazyFolderNode)node).isMaterialized()) {
+        final LazyFolderNode folder = (LazyFolderNode)node;
+        final int first = size;
+        folder.layOutContents(folder.getAddress(), this);
+        if (size > first) {
+          virtualFolders.put(first, folder);
+        }
+        return;
+      }
+      for (int i = 0; i < node.getChildCount(); i++) {
+        collect((MapNode)node.getChildAt(i));
+      }
+    }
+  }
+
+  /**
+   * Creates an index of all data nodes in the subtree below the
+   * specified node.  Data nodes with a bit size of 0 do not cover
+   * any address and are therefore not indexed.  Lazy folders of the
+   * subtree are not materialized.
+   * @param root The root of the subtree to index.  All addresses in
+   *    the subtree must already have been resolved.
+   * @exception IllegalStateException If the addresses of the subtree
+   *    are unresolved or not strictly increasing in depth first
+   *    search order.
+   */
+  public AddressIndex(final MapNode root)
+  {
+    final Collector collector = new Collector();
+    collector.collect(root);
+    final int size = collector.size;
+    startAddresses = Arrays.copyOf(collector.startAddresses, size);
+    stopBeforeAddresses = new long[size];
+    defaultValues = Arrays.copyOf(collector.defaultValues, size);
+    nodes = new AtomicReferenceArray<DataNode>(Arrays.copyOf(collector.nodes,
+                                                             size));
+    virtualFolders = collector.virtualFolders;
+    long previousStopBeforeAddress = 0;
+    for (int i = 0; i < size; i++) {
+      final long address = startAddresses[i];
+      if (address < previousStopBeforeAddress) {
+        final DataNode node = nodes.get(i);
+        throw new IllegalStateException("unresolved or overlapping address " +
+                                        "for node " +
+                                        (node != null ? node : "#" + i));
+      }
+      stopBeforeAddresses[i] = address + collector.bitSizes[i];
+      previousStopBeforeAddress = stopBeforeAddresses[i];
+    }
+  }
+
+  /**
+   * Returns the number of indexed data nodes.
+   * @return The number of indexed data nodes.
+   */
+  public int size()
+  {
+    return startAddresses.length;
+  }
+
+  /**
+   * Returns the data node at the specified position of the index.
+   * If the data node has not yet been created, the enclosing lazy
+   * folders are materialized, from the outermost one inwards.
+   * @param index The position in the index, with 0 being the data
+   *    node with the lowest address.
+   * @return The data node at the specified position.
+   * @exception ArrayIndexOutOfBoundsException If index is out of
+   *    bounds.
+   * @exception IllegalStateException If materializing a lazy folder
+   *    does not create the data node, e.g. when called while the
+   *    same folder is being materialized.
+   */
+  public DataNode getNode(final int index)
+  {
+    DataNode node = nodes.get(index);
+    LazyFolderNode previousFolder = null;
+    while (node == null) {
+      final LazyFolderNode folder = getVirtualFolder(index);
+      if (folder != null) {
+        if (folder == previousFolder) {
+          // materialize() returned without updating this index
+          throw new IllegalStateException("failed materializing " +
+                                          "data node at position " +
+                                          index + " within " + folder);
+        }
+        folder.materialize();
+        previousFolder = folder;
+      }
+      node = nodes.get(index);
+    }
+    return node;
+  }
+
+  /**
+   * Returns the unmaterialized lazy folder that contains the data
+   * node at the specified position.
+   * @return The lazy folder, or null, if the data node has been
+   *    created meanwhile.
+   */
+  private synchronized LazyFolderNode getVirtualFolder(final int index)
+  {
+    if (nodes.get(index) != null) {
+      return null;
+    }
+    final Map.Entry<Integer, LazyFolderNode> entry =
+      virtualFolders.floorEntry(index);
+    if (entry == null) {
+      throw new IllegalStateException("no data node at position " + index);
+    }
+    return entry.getValue();
+  }
+
+  /**
+   * Called by a lazy folder of the indexed map after its contents
+   * have been created and their addresses have been resolved, for
+   * replacing the folder's virtual data nodes by the created ones.
+   */
+  synchronized void materialized(final LazyFolderNode folder)
+  {
+    final int first = firstIndexAtOrAfter(folder.getAddress());
+    if (virtualFolders.get(first) != folder) {
+      return; // folder does not contain any indexed data node
+    }
+    virtualFolders.remove(first);
+    fill(folder, first);
+  }
+
+  private int fill(final MapNode folder, int position)
+  {
+    for (int i = 0; i < folder.getChildCount(); i++) {
+      final MapNode child = (MapNode)folder.getChildAt(i);
+      if (child instanceof DataNode) {
+        if (child.getBitSize() > 0) {
+          if (child.getAddress() != startAddresses[position]) {
+            throw new IllegalStateException("address of node " + child +
+                                            " does not match index");
+          }
+          nodes.set(position++, (DataNode)child);
+        }
+      } else if ((child instanceof LazyFolderNode) &&
+                 !((LazyFolderNode)child).isMaterialized()) {
+        final LazyFolderNode childFolder = (LazyFolderNode)child;
+        final int stop =
+          firstIndexAtOrAfter(childFolder.getStopBeforeAddress());
+        if (stop > position) {
+          virtualFolders.put(position, childFolder);
+        }
+        position = stop;
+      } else {
+        position = fill(child, position);
+      }
+    }
+    return position;
+  }
+
+  /**
+   * Returns true, if the data node at the specified position has
+   * already been created.
+   * @param index The position in the index.
+   * @return True, if the data node exists.
+   */
+  public boolean isMaterialized(final int index)
+  {
+    return nodes.get(index) != null;
+  }
+
+  /**
+   * Returns the start bit address of the data node at the specified
+   * position, without creating the node.
+   * @param index The position in the index.
+   * @return The start bit address of the data node.
+   */
+  public long getAddress(final int index)
+  {
+    return startAddresses[index];
+  }
+
+  /**
+   * Returns the bit address following the last bit of the data node
+   * at the specified position, without creating the node.
+   * @param index The position in the index.
+   * @return The bit address following the data node.
+   */
+  public long getStopBeforeAddress(final int index)
+  {
+    return stopBeforeAddresses[index];
+  }
+
+  /**
+   * Returns the bit size of the data node at the specified position,
+   * without creating the node.
+   * @param index The position in the index.
+   * @return The bit size of the data node.
+   */
+  public int getBitSize(final int index)
+  {
+    return (int)(stopBeforeAddresses[index] - startAddresses[index]);
+  }
+
+  /**
+   * Returns the address at which to split a contiguous bulk area
+   * that exceeds the maximum size of a single bulk dump message,
+   * such that no data node is split across two messages.  This is
+   * the uppermost boundary between data nodes that falls on a byte
+   * boundary and lies above the start and at or below the maximum
+   * stop address of the message.
+   * @param start The start bit address of the message.
+   * @param maxStopBefore The bit address following the last bit
+   *    that the message may cover.
+   * @param bitsPerByte The number of bits per byte of a bulk dump.
+   * @return The bit address following the last bit of the message.
+   *    If there is no suitable boundary, e.g. since a single data
+   *    node exceeds the maximum size, maxStopBefore rounded down to
+   *    a byte boundary.
+   */
+  public long getSplitAddress(final long start, final long maxStopBefore,
+                              final int bitsPerByte)
+  {
+    final int index = firstIndexAtOrAfter(maxStopBefore);
+    if ((index < startAddresses.length) &&
+        (startAddresses[index] == maxStopBefore) &&
+        (maxStopBefore % bitsPerByte == 0)) {
+      return maxStopBefore;
+    }
+    for (int i = index - 1;
+         (i >= 0) && (stopBeforeAddresses[i] > start);
+         i--) {
+      if ((stopBeforeAddresses[i] <= maxStopBefore) &&
+          (stopBeforeAddresses[i] % bitsPerByte == 0)) {
+        return stopBeforeAddresses[i];
+      }
+      if ((startAddresses[i] > start) &&
+          (startAddresses[i] % bitsPerByte == 0)) {
+        return startAddresses[i];
+      }
+    }
+    final long byteBoundary = maxStopBefore - maxStopBefore % bitsPerByte;
+    return byteBoundary > start ? byteBoundary : maxStopBefore;
+  }
+
+  /**
+   * Returns the value of the data node at the specified position,
+   * without creating the node.  A data node that has not yet been
+   * created has its default value.
+   * @param index The position in the index.
+   * @return The numerical value of the data node.
+   */
+  public int getNumericalValue(final int index)
+  {
+    final DataNode node = nodes.get(index);
+    return node != null ? node.getNumericalValue() : defaultValues[index];
+  }
+
+  /**
+   * Returns the position of the first data node that starts at or
+   * after the specified address.
+   * @param address The bit address to search for.
+   * @return The position of the first data node at or after the
+   *    address, or size(), if there is no such node.
+   */
+  public int firstIndexAtOrAfter(final long address)
+  {
+    int low = 0;
+    int high = startAddresses.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (startAddresses[mid] < address) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the position of the data node that covers the specified
+   * address.
+   * @param address The bit address to be located.
+   * @return The position of the covering data node in this index,
+   *    or -1, if the address is not covered by any data node.
+   */
+  public int indexOf(final long address)
+  {
+    int low = 0;
+    int high = startAddresses.length - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      if (address < startAddresses[mid]) {
+        high = mid - 1;
+      } else if (address >= stopBeforeAddresses[mid]) {
+        low = mid + 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Locates the data node that covers the specified address.
+   * @param address The bit address to be located.
+   * @return The node that covers the specified address, or null, if
+   *    the address either can not be found in the map or is
+   *    inaccessible.
+   */
+  public DataNode locate(final long address)
+  {
+    final int index = indexOf(address);
+    return index >= 0 ? getNode(index) : null;
+  }
+
+  /**
+   * Creates a cursor for a sequential scan through the indexed data
+   * nodes.
+   * @return A new cursor, initially not positioned on any node.
+   */
+  public Cursor createCursor()
+  {
+    return new Cursor();
+  }
+
+  /**
+   * A cursor remembers the position of the most recently located
+   * data node.  For mostly linear access patterns such as bulk
+   * dumps, locating the next address thus usually costs O(1), while
+   * falling back to binary search for any other address.
+   */
+  public class Cursor
+  {
+    private int index;
+
+    private Cursor()
+    {
+      index = -1;
+    }
+
+    /**
+     * Locates the data node that covers the specified address,
+     * starting with the node at the current cursor position and its
+     * successor, and moves the cursor to that node.  If no node
+     * covers the address, the cursor position remains unchanged.
+     * @param address The bit address to be located.
+     * @return The node that covers the specified address, or null,
+     *    if the address either can not be found in the map or is
+     *    inaccessible.
+     */
+    public DataNode locate(final long address)
+    {
+      if (index >= 0) {
+        if ((address >= startAddresses[index]) &&
+            (address < stopBeforeAddresses[index])) {
+          return AddressIndex.this.getNode(index);
+        }
+        final int next = index + 1;
+        if ((next < startAddresses.length) &&
+            (address >= startAddresses[next]) &&
+            (address < stopBeforeAddresses[next])) {
+          index = next;
+          return AddressIndex.this.getNode(index);
+        }
+      }
+      final int found = indexOf(address);
+      if (found < 0) {
+        return null;
+      }
+      index = found;
+      return AddressIndex.this.getNode(index);
+    }
+
+    /**
+     * Returns the data node at the current cursor position.
+     * @return The data node at the current cursor position, or null,
+     *    if the cursor has not yet been positioned.
+     */
+    public DataNode getNode()
+    {
+      return index >= 0 ? AddressIndex.this.getNode(index) : null;
+    }
+
+    /**
+     * Returns true, if there is a data node following the current
+     * cursor position.
+     * @return True, if there is a data node following the current
+     *    cursor position.
+     */
+    public boolean hasNext()
+    {
+      return index + 1 < startAddresses.length;
+    }
+
+    /**
+     * Advances the cursor to the data node following the current
+     * cursor position.
+     * @return The data node following the current cursor position.
+     * @exception NoSuchElementException If there is no
+     *    following data node.
+     */
+    public DataNode next()
+    {
+      if (!hasNext()) {
+        throw new NoSuchElementException("no next data node");
+      }
+      return AddressIndex.this.getNode(++index);
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
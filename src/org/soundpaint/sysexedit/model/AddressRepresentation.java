@@ -20,6 +20,7 @@
 
 package org.soundpaint.sysexedit.model;
 
+import java.io.Serializable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,7 +28,7 @@ import java.util.regex.Pattern;
  * A class implements this interface to customize the literal
  * representation of addresses for a specific synthesizer.
  */
-public interface AddressRepresentation
+public interface AddressRepresentation extends Serializable
 {
   /**
    * Returns a string representation of the device's memory address
@@ -53,6 +54,8 @@ public interface AddressRepresentation
 
   static class Triple7Bits implements AddressRepresentation
   {
+    private static final long serialVersionUID = -4479567926730151753L;
+
     public String getDisplayAddress(final long bitAddress)
     {
       final long address = bitAddress / 7;
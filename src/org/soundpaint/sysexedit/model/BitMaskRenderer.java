@@ -25,6 +25,8 @@ package org.soundpaint.sysexedit.model;
  */
 public class BitMaskRenderer implements ValueRangeRenderer
 {
+  private static final long serialVersionUID = -925871344889442928L;
+
   private final int bitStringSize;
 
   /**
@@ -78,6 +80,31 @@ public class BitMaskRenderer implements ValueRangeRenderer
     return formatBitMask(numericalValue);
   }
 
+  /**
+   * Returns the numerical value that the specified bit mask
+   * represents.
+   * @param displayValue A bit mask as display value.
+   * @return The lowermost numerical value that is represented by the
+   * bit mask, or null, if displayValue is not a valid bit mask.
+   */
+  public Integer valueOfDisplayValue(final String displayValue)
+  {
+    if ((displayValue == null) ||
+        (displayValue.length() != bitStringSize + 1) ||
+        !displayValue.startsWith("%")) {
+      return null;
+    }
+    final int numericalValue;
+    try {
+      numericalValue = Integer.parseInt(displayValue.substring(1), 2);
+    } catch (final NumberFormatException e) {
+      return null;
+    }
+    return
+      displayValue.equals(getDisplayValue(numericalValue)) ?
+      numericalValue : null;
+  }
+
   /**
    * Returns a string representation of this object (e.g. for debugging).
    * @return A string representation of this object.
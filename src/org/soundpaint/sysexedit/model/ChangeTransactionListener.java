@@ -0,0 +1,52 @@
+/*
+ * @(#)ChangeTransactionListener.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+/**
+ * Interface for listening to committed change transactions of a map,
+ * e.g. for updating a view of the map once per bulk import rather
+ * than once per data node.
+ */
+public interface ChangeTransactionListener
+{
+  /**
+   * This method is called after the outermost commit of a change
+   * transaction that changed at least one data node.  It is called
+   * on the thread that committed the transaction, which may be the
+   * thread of a MIDI input or of a batch import rather than the
+   * event dispatch thread.
+   * @param nodes The changed data nodes, including silently restored
+   *    ones, in order of ascending address.
+   * @param startAddress The address of the first changed bit.
+   * @param stopBeforeAddress The address following the last changed
+   *    bit.
+   */
+  void changesCommitted(final DataNode[] nodes,
+                        final long startAddress,
+                        final long stopBeforeAddress);
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
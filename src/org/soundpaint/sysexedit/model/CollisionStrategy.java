@@ -0,0 +1,60 @@
+/*
+ * @(#)CollisionStrategy.java 1.00 18/07/24
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+/**
+ * Strategy for resolving collisions between values that are loaded
+ * from a file and values that are already present in the map.
+ * Collisions among values loaded from the same file are always
+ * resolved in favour of the latest message.
+ */
+public enum CollisionStrategy
+{
+  /**
+   * Loaded values replace the values of the map.
+   */
+  OVERWRITE("Overwrite All Values"),
+
+  /**
+   * Values that differ from their default value are kept; only
+   * values still at their default are replaced by loaded values.
+   */
+  KEEP_NON_DEFAULT("Keep Non-Default Values");
+
+  private final String displayName;
+
+  private CollisionStrategy(final String displayName)
+  {
+    this.displayName = displayName;
+  }
+
+  public String toString()
+  {
+    return displayName;
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
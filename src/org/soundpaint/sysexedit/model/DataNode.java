@@ -34,7 +34,6 @@ import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeNode;
 
 import org.soundpaint.sysexedit.gui.JValue;
-import org.soundpaint.sysexedit.gui.Map;
 
 public class DataNode extends MapNode implements ValueChangeListener
 {
@@ -46,11 +45,16 @@ public class DataNode extends MapNode implements ValueChangeListener
   /** The current value. */
   private int numericalValue;
 
+  /** The value to apply when resetting this node. */
+  private final int defaultValue;
+
   /**
    * The editor instance of the associated value type for this data
-   * node for entering a value.
+   * node for entering a value, or null, if this node has not yet
+   * been edited.  The editor is a view only; it does not hold the
+   * value of this node, but is synced with it whenever opened.
    */
-  private Editor editor;
+  private transient Editor editor;
 
   /**
    * Creates a data node with the specified value and no children
@@ -82,10 +86,36 @@ public class DataNode extends MapNode implements ValueChangeListener
    * @exception NullPointerException If value equals null.
    */
   public DataNode(final Value value, final long desiredAddress)
+  {
+    this(value, desiredAddress, getDefaultValue(value));
+  }
+
+  /**
+   * Creates a data node with the specified value and no children,
+   * whose default value differs from that of the Value object.  This
+   * allows for sharing Value objects among nodes that differ only in
+   * their defaults.
+   * @param value The underlying Value object.
+   * @param desiredAddress Desired absolute address for the associated
+   * node, or -1, if the address is to be determined automatically.
+   * @param defaultValue The default value of this node.
+   * @exception NullPointerException If value equals null.
+   * @see #DataNode(Value, long)
+   */
+  public DataNode(final Value value, final long desiredAddress,
+                  final int defaultValue)
   {
     super(getLabel(value), desiredAddress, false);
     this.value = value;
-    this.numericalValue = value.getDefaultValue();
+    this.defaultValue = defaultValue;
+    this.numericalValue = defaultValue;
+  }
+
+  private static int getDefaultValue(final Value value) {
+    if (value == null) {
+      throw new NullPointerException("value must not be null");
+    }
+    return value.getDefaultValue();
   }
 
   private static String getLabel(final Value value) {
@@ -110,12 +140,21 @@ public class DataNode extends MapNode implements ValueChangeListener
       model.nodeChanged(this); // note: this only works *within* a tree
   }
 
-  public Editor getEditor()
+  /**
+   * Returns the editor for entering a value of this node, with its
+   * selection set to the current value of this node.  The editor is
+   * created upon first call.  Since the editor is a Swing component,
+   * this method must be called only on the event dispatch thread,
+   * when the user actually starts editing this node.
+   * @return The editor.
+   */
+  public Editor openEditor()
   {
     if (editor == null) {
       editor = value.createEditor();
       ((Component)editor).addKeyListener(createKeyListener());
     }
+    editor.setSelectionByNumericalValue(numericalValue);
     return editor;
   }
 
@@ -133,17 +172,47 @@ public class DataNode extends MapNode implements ValueChangeListener
   /**
    * Sets the underlying numerical value of this Value object.  The
    * value is not bound to a specific value range of the associated
-   * sparse type; thus it even may be out of any value range.
+   * sparse type; thus it even may be out of any value range.  Any
+   * editor of this node is not touched; it picks up the value when
+   * being opened the next time.
    * @param numericalValue The underlying numerical value.
    * @exception IllegalArgumentException If value is not an instance
    *    of the class that holds the value represented by this class.
    * @see #reset
+   * @see #openEditor
    */
   public void setNumericalValue(final int numericalValue)
   {
     // TODO: Check numerical value against ranges of valid values?
-    this.numericalValue = numericalValue;
-    getEditor().setSelectionByNumericalValue(numericalValue);
+    if (numericalValue != this.numericalValue) {
+      this.numericalValue = numericalValue;
+      final TreeNode root = getRoot();
+      if (root instanceof AbstractDevice.MapRoot) {
+        ((AbstractDevice.MapRoot)root).dataNodeChanged(this);
+      }
+    }
+  }
+
+  /**
+   * Silently sets the underlying numerical value, as for restoring
+   * a complete map from a snapshot.  In contrast to
+   * setNumericalValue(), no data node change listeners are notified,
+   * and the sync state is not touched; the caller is responsible for
+   * updating the sync state.  Within a change transaction of the
+   * map, the change is still published to the tree model and the
+   * map change listeners upon commit.
+   * @param numericalValue The underlying numerical value.
+   * @see AbstractDevice.MapRoot#beginChanges
+   */
+  void restoreNumericalValue(final int numericalValue)
+  {
+    if (numericalValue != this.numericalValue) {
+      this.numericalValue = numericalValue;
+      final TreeNode root = getRoot();
+      if (root instanceof AbstractDevice.MapRoot) {
+        ((AbstractDevice.MapRoot)root).dataNodeRestored(this);
+      }
+    }
   }
 
   /**
@@ -214,7 +283,7 @@ public class DataNode extends MapNode implements ValueChangeListener
    */
   public int getDefaultValue()
   {
-    return value.getDefaultValue();
+    return defaultValue;
   }
 
   /**
@@ -282,7 +351,7 @@ public class DataNode extends MapNode implements ValueChangeListener
    */
   public void reset(final DefaultTreeModel model)
   {
-    setNumericalValue(value.getDefaultValue());
+    setNumericalValue(defaultValue);
     fireMapChangeEvents(model);
   }
 
@@ -317,7 +386,9 @@ public class DataNode extends MapNode implements ValueChangeListener
     if (size == 0) {
       return new Integer[0];
     }
-    final DataNode node = locate(address);
+    final DataNode node =
+      (address >= this.address) && (address < this.address + getBitSize()) ?
+      this : locate(address);
     if (node == null) {
       throw new IllegalArgumentException("address not accessible");
     }
@@ -326,6 +397,41 @@ public class DataNode extends MapNode implements ValueChangeListener
     return resultList.toArray(EMPTY_INTEGER_ARRAY);
   }
 
+  /**
+   * Returns up to 32 bits of this node's numerical value according to
+   * the given address and amount, without allocating any objects.
+   * The data, that is returned, may not go beyond this node.
+   * @param address The address of the data.  Must be covered by this
+   *    node.
+   * @param size The bit size of the data, in the range 0..32.
+   * @return The requested bits, right-aligned, with all upper bits
+   *    cleared.
+   * @exception IllegalArgumentException If size is out of range or
+   *    the address is not covered by this node.
+   * @exception IllegalStateException If the requested data goes
+   *    beyond this node.
+   */
+  public int getBits(final long address, final int size)
+  {
+    if ((size < 0) || (size > 32)) {
+      throw new IllegalArgumentException("size out of range: " + size);
+    }
+    final long addrOffs = address - this.address;
+    final int valueBitSize = value.getBitSize();
+    if ((addrOffs < 0) || (addrOffs >= valueBitSize)) {
+      throw new IllegalArgumentException("address not covered by node");
+    }
+    final int shiftSize = valueBitSize - size - (int)addrOffs;
+    if (shiftSize < 0) {
+      throw new IllegalStateException("Partial addresses nodes not yet fully supported");
+    }
+    if (size == 0) {
+      return 0;
+    }
+    final int dataValue = numericalValue >>> shiftSize;
+    return size < 32 ? dataValue & (0xffffffff >>> (32 - size)) : dataValue;
+  }
+
   /**
    * Returns a numerical representation of the value according to the
    * underlying bit layout.
@@ -399,7 +505,7 @@ public class DataNode extends MapNode implements ValueChangeListener
               {
                 public void run()
                 {
-                  final JValue newValue = getEditor().getSelectedValue();
+                  final JValue newValue = editor.getSelectedValue();
                   if (newValue != null) {
                     editingPathValueChanged(newValue.getSystemValue());
                   }
@@ -413,11 +519,9 @@ public class DataNode extends MapNode implements ValueChangeListener
 
   public void editingPathValueChanged(final int numericalValue)
   {
-    // Here, we actually update the map.
+    // Here, we actually update the map.  Stopping the tree's
+    // editing session is up to the tree component.
     setNumericalValue(numericalValue);
-    final TreeNode root = getRoot();
-    final Map map = ((AbstractDevice.MapRoot)root).getMap();
-    map.stopEditing();
   }
 
   @Override
@@ -0,0 +1,45 @@
+/*
+ * @(#)DataNodeChangeListener.java 1.00 18/07/23
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+/**
+ * Interface for listening to changes of the numerical value of any
+ * data node of a map.
+ */
+public interface DataNodeChangeListener
+{
+  /**
+   * This method is called whenever the numerical value of a data
+   * node has actually changed.  It is called on the thread that
+   * changed the value, which is usually the event dispatch thread
+   * when the user edits a value, but may also be the thread of a
+   * MIDI input when values are received from the device.
+   * @param node The data node whose value has changed.
+   */
+  void dataNodeChanged(final DataNode node);
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -21,11 +21,10 @@
 package org.soundpaint.sysexedit.model;
 
 import java.io.InputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import javax.swing.tree.TreeNode;
-import javax.swing.event.TreeSelectionListener;
 
-import org.soundpaint.sysexedit.gui.Map;
-import org.soundpaint.sysexedit.gui.MapContextMenu;
 import org.soundpaint.sysexedit.model.Value;
 
 /**
@@ -71,14 +70,17 @@ public interface Device
    * creates a <CODE>new MapNode(...)</CODE> as root node and then inserts
    * MapNode objects as children at will.
    */
-  TreeNode buildMap(final TreeSelectionListener selectionListener,
-                    final MapContextMenu mapContextMenu);
+  TreeNode buildMap();
 
   /**
-   * Returns the associated tree component.
-   * @return The associated tree component.
+   * Returns the root node of the map.  The map does not know about
+   * any tree component that displays it; a GUI creates its tree
+   * component itself and listens to the map's root node for changes,
+   * such that headless applications never involve any GUI toolkit.
+   * @return The root node of the map, or null, if the map has not
+   *    yet been built.
    */
-  Map getMap();
+  TreeNode getMapRoot();
 
   /**
    * Given a contiguous area of memory, returns a a stream of MIDI
@@ -94,13 +96,54 @@ public interface Device
   InputStream bulkDump(final byte deviceId,
                        final long start, final long end);
 
+  /**
+   * Returns the maximum size of a contiguous area of memory that the
+   * device accepts within a single bulk dump message.  Larger areas
+   * are split into multiple bulk dump messages.
+   * @return The maximum number of memory bits per bulk dump message.
+   */
+  long getMaxBulkDumpBitSize();
+
+  /**
+   * Returns how fast MIDI messages may be sent to the device without
+   * risking loss of data.  This is the default pacing for this
+   * device model; the user may override it for a specific MIDI
+   * output.
+   * @return The transmit pacing for this device model.
+   */
+  TransmitPacing getTransmitPacing();
+
+  /**
+   * Returns which values of the map have changed since they have
+   * been last dumped to or received from the device.
+   * @return The sync state of the map, or null, if the map has not
+   *    yet been built.
+   */
+  SyncState getSyncState();
+
   /**
    * Given an InputStream that represents a sequence of bulk dumped MIDI
    * bytes from the MIDI device, this method interprets the MIDI data and
    * updates the memory map accordingly.
    * @param in The InputStream of MIDI bytes to be interpreted.
+   * @exception IOException If reading from the stream fails or the
+   *    MIDI data turns out to be corrupt.
+   */
+  void bulkRead(final InputStream in) throws IOException;
+
+  /**
+   * Inspects the header of the specified SysEx message and returns
+   * the memory address that the message writes to, without decoding
+   * any data.  This way, messages of large SysEx libraries can be
+   * indexed by address.
+   * @param message The complete SysEx message, including the
+   *    surrounding status bytes F0 and F7, between the buffer's
+   *    position and limit.  The buffer's position is not modified.
+   * @return The bit address in the memory map where the data of the
+   *    message starts, or -1, if the message is not a bulk dump or
+   *    parameter change message for this device.
    */
-  void bulkRead(final InputStream in);
+  long getBulkDumpAddress(final ByteBuffer message);
 
   /**
    * Returns descriptive name of the device(s) (for headlines etc.)
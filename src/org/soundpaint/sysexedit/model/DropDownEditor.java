@@ -24,8 +24,8 @@ import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Vector;
-import javax.swing.DefaultComboBoxModel;
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
 import javax.swing.JComboBox;
 
 import org.soundpaint.sysexedit.gui.JValue;
@@ -35,42 +35,104 @@ public class DropDownEditor extends JComboBox<JValue>
 {
   private static final long serialVersionUID = 1620075446582652477L;
 
-  private DefaultComboBoxModel<JValue> model;
+  private SelectableValues values;
   private final List<ValueChangeListener> listeners;
 
+  /**
+   * Combo box model that holds nothing but the selection of a single
+   * drop-down editor, while delegating the list of values to
+   * selectable values shared among many editors.
+   */
+  private static class SelectionModel extends AbstractListModel<JValue>
+    implements ComboBoxModel<JValue>
+  {
+    private static final long serialVersionUID = -2386128713650240715L;
+
+    private final SelectableValues values;
+    private Object selectedItem;
+
+    private SelectionModel()
+    {
+      throw new UnsupportedOperationException("unsupported constructor");
+    }
+
+    private SelectionModel(final SelectableValues values)
+    {
+      this.values = values;
+      selectedItem = null;
+    }
+
+    public int getSize()
+    {
+      return values.getSize();
+    }
+
+    public JValue getElementAt(final int index)
+    {
+      return values.getElementAt(index);
+    }
+
+    public Object getSelectedItem()
+    {
+      return selectedItem;
+    }
+
+    public void setSelectedItem(final Object item)
+    {
+      if ((item != null) ? !item.equals(selectedItem) : selectedItem != null) {
+        selectedItem = item;
+        fireContentsChanged(this, -1, -1);
+      }
+    }
+  }
+
   public DropDownEditor()
   {
     listeners = new ArrayList<ValueChangeListener>();
     addItemListener(this);
   }
 
-  public void setSelectableValues(final Vector<JValue> values)
+  public void setSelectableValues(final SelectableValues values)
   {
-    model = new DefaultComboBoxModel<JValue>(values);
-    setModel(model);
+    this.values = values;
+    setModel(new SelectionModel(values));
   }
 
   public JValue getSelectedValue()
   {
-    return getItemAt(getSelectedIndex());
+    return (JValue)getSelectedItem();
+  }
+
+  /**
+   * Selects the specified item directly in the model.  Unlike
+   * JComboBox, does not linearly search all selectable values for an
+   * equal item, since selectable values are created on demand and
+   * know their positions.  The combo box is notified by the model.
+   */
+  @Override
+  public void setSelectedItem(final Object item)
+  {
+    if ((item != null) &&
+        (!(item instanceof JValue) || (values.indexOf((JValue)item) < 0))) {
+      return;
+    }
+    dataModel.setSelectedItem(item);
+  }
+
+  @Override
+  public int getSelectedIndex()
+  {
+    final Object item = dataModel.getSelectedItem();
+    return item instanceof JValue ? values.indexOf((JValue)item) : -1;
   }
 
   public void setSelectionByNumericalValue(final Integer numericalValue)
   {
-    if (model == null) {
+    if (values == null) {
       throw new NullPointerException("no model set on drop-down editor");
     }
-    int selectedIndex = -1;
-    if (numericalValue != null) {
-      for (int index = 0; index < model.getSize(); index++) {
-        final JValue value = model.getElementAt(index);
-        if (value.getSystemValue() == numericalValue) {
-          selectedIndex = index;
-          break;
-        }
-      }
-    }
-    setSelectedIndex(selectedIndex);
+    setSelectedIndex(numericalValue != null ?
+                     values.indexOf(numericalValue) : -1);
   }
 
   public void addValueChangeListener(final ValueChangeListener listener)
@@ -0,0 +1,308 @@
+/*
+ * @(#)DumpPlan.java 1.00 18/07/15
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+/**
+ * Immutable, precompiled description of how the data nodes of a map
+ * make up the bytes of a bulk dump.  For every byte of the address
+ * space that is covered by at least one data node, the plan holds a
+ * list of segments, each segment specifying a data node (by its
+ * position in the address index), the bits to extract from the
+ * node's numerical value, and where to put them in the byte.  With
+ * the plan compiled once after address resolution, encoding a dump
+ * boils down to a tight loop over primitive arrays, without
+ * re-deriving any offsets, shift sizes or masks.
+ *
+ * Since the plan refers to data nodes only by their position in the
+ * address index rather than by object reference, it depends solely
+ * on the structure of a map, but not on its values.  Hence, a single
+ * plan may be shared among all maps built from the same device
+ * model.
+ */
+public class DumpPlan
+{
+  /** The number of bits per byte, e.g. 7 for MIDI data bytes. */
+  private final int bitsPerByte;
+
+  /** The number of data nodes of the address index compiled from. */
+  private final int nodeCount;
+
+  /** The start address of the last data node compiled from. */
+  private final long lastNodeAddress;
+
+  /** Bit address of each covered byte, in increasing order. */
+  private final long[] byteAddresses;
+
+  /**
+   * For each covered byte, the index of its first segment; the
+   * segments of byte i are firstSegment[i]..firstSegment[i+1]-1.
+   */
+  private final int[] firstSegment;
+
+  /** Position of the contributing data node in the address index. */
+  private final int[] segmentNode;
+
+  /** Right shift to apply to the node's numerical value. */
+  private final byte[] segmentValueShift;
+
+  /** Mask to apply to the shifted numerical value. */
+  private final int[] segmentMask;
+
+  /** Left shift to move the masked bits into place within the byte. */
+  private final byte[] segmentByteShift;
+
+  private DumpPlan()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Compiles a dump plan for the specified address index.
+   * @param addressIndex The index of all data nodes of the map.
+   * @param bitsPerByte The number of bits per dump byte, in the range
+   *    1..8.
+   * @exception IllegalArgumentException If bitsPerByte is out of
+   *    range.
+   */
+  public DumpPlan(final AddressIndex addressIndex, final int bitsPerByte)
+  {
+    if ((bitsPerByte < 1) || (bitsPerByte > 8)) {
+      throw new IllegalArgumentException("bits per byte out of range: " +
+                                         bitsPerByte);
+    }
+    this.bitsPerByte = bitsPerByte;
+    nodeCount = addressIndex.size();
+    lastNodeAddress =
+      nodeCount > 0 ? addressIndex.getAddress(nodeCount - 1) : -1;
+
+    // first pass: count covered bytes and segments
+    int byteCount = 0;
+    int segmentCount = 0;
+    long lastByteAddress = -1;
+    for (int i = 0; i < nodeCount; i++) {
+      final long nodeStart = addressIndex.getAddress(i);
+      final long nodeStop = addressIndex.getStopBeforeAddress(i);
+      long byteAddress = nodeStart - nodeStart % bitsPerByte;
+      while (byteAddress < nodeStop) {
+        if (byteAddress != lastByteAddress) {
+          byteCount++;
+          lastByteAddress = byteAddress;
+        }
+        segmentCount++;
+        byteAddress += bitsPerByte;
+      }
+    }
+
+    byteAddresses = new long[byteCount];
+    firstSegment = new int[byteCount + 1];
+    segmentNode = new int[segmentCount];
+    segmentValueShift = new byte[segmentCount];
+    segmentMask = new int[segmentCount];
+    segmentByteShift = new byte[segmentCount];
+
+    // second pass: fill in segments
+    int byteIndex = -1;
+    int segmentIndex = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      final long nodeStart = addressIndex.getAddress(i);
+      final long nodeStop = addressIndex.getStopBeforeAddress(i);
+      long byteAddress = nodeStart - nodeStart % bitsPerByte;
+      while (byteAddress < nodeStop) {
+        if ((byteIndex < 0) || (byteAddresses[byteIndex] != byteAddress)) {
+          byteIndex++;
+          byteAddresses[byteIndex] = byteAddress;
+          firstSegment[byteIndex] = segmentIndex;
+        }
+        final long byteStop = byteAddress + bitsPerByte;
+        final long segmentStart = Math.max(byteAddress, nodeStart);
+        final long segmentStop = Math.min(byteStop, nodeStop);
+        final int segmentSize = (int)(segmentStop - segmentStart);
+        segmentNode[segmentIndex] = i;
+        segmentValueShift[segmentIndex] =
+          (byte)(nodeStop - segmentStop);
+        segmentMask[segmentIndex] = 0xffffffff >>> (32 - segmentSize);
+        segmentByteShift[segmentIndex] = (byte)(byteStop - segmentStop);
+        segmentIndex++;
+        byteAddress = byteStop;
+      }
+    }
+    firstSegment[byteCount] = segmentCount;
+  }
+
+  /**
+   * Returns the number of bits per dump byte.
+   * @return The number of bits per dump byte.
+   */
+  public int getBitsPerByte()
+  {
+    return bitsPerByte;
+  }
+
+  /**
+   * Returns the number of bytes covered by this plan.
+   * @return The number of bytes covered by this plan.
+   */
+  public int size()
+  {
+    return byteAddresses.length;
+  }
+
+  /**
+   * Checks if this plan has been compiled from an address index
+   * with the same structure as the specified one.  This is a cheap
+   * sanity check rather than a full comparison.
+   * @param addressIndex The address index to check against.
+   * @return True, if this plan is applicable to the address index.
+   */
+  public boolean isApplicableTo(final AddressIndex addressIndex)
+  {
+    final int size = addressIndex.size();
+    if (size != nodeCount) {
+      return false;
+    }
+    return
+      size > 0 ?
+      addressIndex.getAddress(size - 1) == lastNodeAddress :
+      true;
+  }
+
+  /**
+   * Returns the position of the byte that starts at the specified
+   * bit address.
+   * @param address The bit address of the byte.
+   * @return The position of the byte within this plan, or -1, if
+   *    there is no such byte, e.g. because the address is not
+   *    covered by any data node or not aligned to a byte boundary.
+   */
+  public int indexOf(final long address)
+  {
+    int low = 0;
+    int high = byteAddresses.length - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final long midAddress = byteAddresses[mid];
+      if (address < midAddress) {
+        high = mid - 1;
+      } else if (address > midAddress) {
+        low = mid + 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the bit address of the byte at the specified position.
+   * @param position The position of the byte within this plan.
+   * @return The bit address of the byte.
+   */
+  public long getByteAddress(final int position)
+  {
+    return byteAddresses[position];
+  }
+
+  /**
+   * Encodes a sequence of contiguous bytes into the specified buffer.
+   * @param addressIndex The address index of the map that holds the
+   *    values to encode.  It must have the same structure as the
+   *    index that this plan has been compiled from.
+   * @param position The position of the first byte to encode.
+   * @param buffer The buffer to write the encoded bytes into.
+   * @param offset The buffer offset of the first encoded byte.
+   * @param length The number of bytes to encode.
+   * @exception IllegalStateException If the specified sequence of
+   *    bytes contains an address gap, i.e. some address in the range
+   *    is not accessible.
+   */
+  public void encode(final AddressIndex addressIndex, final int position,
+                     final byte[] buffer, final int offset, final int length)
+  {
+    if ((position < 0) || (position + length > byteAddresses.length)) {
+      throw new IllegalStateException("address not accessible");
+    }
+    final long expectedLastAddress =
+      byteAddresses[position] + (long)(length - 1) * bitsPerByte;
+    if ((length > 0) &&
+        (byteAddresses[position + length - 1] != expectedLastAddress)) {
+      // since addresses are strictly increasing, a mismatch at the
+      // end implies a gap somewhere in between
+      throw new IllegalStateException("address not accessible");
+    }
+    for (int i = 0; i < length; i++) {
+      final int byteIndex = position + i;
+      int data = 0;
+      final int stop = firstSegment[byteIndex + 1];
+      for (int s = firstSegment[byteIndex]; s < stop; s++) {
+        final int value =
+          addressIndex.getNumericalValue(segmentNode[s]);
+        data |=
+          ((value >>> segmentValueShift[s]) & segmentMask[s]) <<
+          segmentByteShift[s];
+      }
+      buffer[offset + i] = (byte)data;
+    }
+  }
+
+  /**
+   * Decodes a single byte into the values of the data nodes that
+   * contribute to it.  This is the inverse operation of encoding:
+   * All bits of the affected data nodes that do not belong to the
+   * byte remain unchanged, except for any bits beyond a node's bit
+   * size, which are cleared.  Data nodes that have not yet been
+   * created are created only if their value actually changes.
+   * @param addressIndex The address index of the map that holds the
+   *    values to update.  It must have the same structure as the
+   *    index that this plan has been compiled from.
+   * @param position The position of the byte.
+   * @param data The byte to decode.
+   * @return True, if any value has been changed.
+   */
+  public boolean decode(final AddressIndex addressIndex, final int position,
+                        final int data)
+  {
+    boolean changed = false;
+    final int stop = firstSegment[position + 1];
+    for (int s = firstSegment[position]; s < stop; s++) {
+      final int nodeIndex = segmentNode[s];
+      final int oldValue = addressIndex.getNumericalValue(nodeIndex);
+      final int bitSize = addressIndex.getBitSize(nodeIndex);
+      final int nodeMask = bitSize < 32 ? (1 << bitSize) - 1 : 0xffffffff;
+      final int valueMask = segmentMask[s] << segmentValueShift[s];
+      final int newValue =
+        (oldValue & nodeMask & ~valueMask) |
+        (((data >>> segmentByteShift[s]) & segmentMask[s]) <<
+         segmentValueShift[s]);
+      if (newValue != oldValue) {
+        addressIndex.getNode(nodeIndex).setNumericalValue(newValue);
+        changed = true;
+      }
+    }
+    return changed;
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -20,13 +20,16 @@
 
 package org.soundpaint.sysexedit.model;
 
-import java.util.Vector;
-
 import org.soundpaint.sysexedit.gui.JValue;
 
 public interface Editor
 {
-  void setSelectableValues(final Vector<JValue> values);
+  /**
+   * Sets the values to select from.
+   * @param values The selectable values, possibly shared with other
+   * editors.  The editor keeps its selection by itself.
+   */
+  void setSelectableValues(final SelectableValues values);
 
   void setSelectedIndex(final int selectedIndex);
 
@@ -26,6 +26,8 @@ package org.soundpaint.sysexedit.model;
  */
 public class EnumRenderer implements ValueRangeRenderer
 {
+  private static final long serialVersionUID = 4983130715669614355L;
+
   /**
    * An optional informal description of this EnumRenderer.  Useful
    * e.g. as tooltip in the GUI.
@@ -119,6 +121,26 @@ public class EnumRenderer implements ValueRangeRenderer
       return DISPLAY_VALUE_UNKNOWN;
   }
 
+  /**
+   * Returns the numerical value that this enumeration associates
+   * with the specified display value.
+   * @param displayValue The display value.
+   * @return The lowermost associated numerical value or
+   * <code>null</code>, if the specified display value is not part of
+   * this enumeration.
+   */
+  public Integer valueOfDisplayValue(final String displayValue)
+  {
+    if (displayValue == null)
+      return null;
+    for (int numericalValue = 0; numericalValue < displayValues.length;
+         numericalValue++) {
+      if (displayValue.equals(displayValues[numericalValue]))
+        return numericalValue;
+    }
+    return null;
+  }
+
   /**
    * Returns a string representation of the display values array
    * (e.g. for debugging).
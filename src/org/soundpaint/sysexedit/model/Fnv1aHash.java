@@ -0,0 +1,63 @@
+/*
+ * @(#)Fnv1aHash.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+
+package org.soundpaint.sysexedit.model;
+
+/**
+ * 64 bit FNV-1a hash, as used for the structure fingerprints of
+ * snapshot files and patch libraries.  Since fingerprints are stored
+ * in files, the hash must never change.
+ */
+class Fnv1aHash
+{
+  /** The initial value of a hash. */
+  static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+
+  private static final long PRIME = 0x100000001b3L;
+
+  private Fnv1aHash()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Continues the specified hash with the eight bytes of the
+   * specified value, least significant byte first.
+   * @param hash The hash so far.
+   * @param value The value to add to the hash.
+   * @return The continued hash.
+   */
+  static long hash(long hash, final long value)
+  {
+    for (int i = 0; i < 8; i++) {
+      hash ^= (value >>> (8 * i)) & 0xff;
+      hash *= PRIME;
+    }
+    return hash;
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
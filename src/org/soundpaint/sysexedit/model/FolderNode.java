@@ -125,6 +125,11 @@ public class FolderNode extends MapNode
     return dfsLastDescendant;
   }
 
+  void setDfsLastDescendant(final MapNode dfsLastDescendant)
+  {
+    this.dfsLastDescendant = dfsLastDescendant;
+  }
+
   protected MapNode resolveDfsLastDescendant()
   {
     MapNode dfsLastDescendant = this;
@@ -0,0 +1,243 @@
+/*
+ * @(#)FolderTemplate.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The structure of a folder that appears many times in a map, such
+ * as the parts of a multi-timbral device.  All instances differ
+ * only in their values, while labels, types, bit sizes and the
+ * relative address layout are the same.  Therefore, the structure is
+ * kept once in a template that is shared among all instances, and
+ * each instance holds nothing but a slice of primitive values.
+ *
+ * A template is built by adding its entries in address order.  The
+ * values of the entries are shared among all instances and thus must
+ * not be modified once the template is in use.  As soon as the first
+ * instance has been created, the template is frozen.
+ *
+ * Instances are lazy folder nodes that create their data nodes only
+ * when being accessed.
+ *
+ * @see LazyFolderNode
+ */
+public class FolderTemplate implements Serializable
+{
+  private static final long serialVersionUID = 2461035118972641733L;
+
+  private Value[] values;
+
+  /**
+   * For each entry, the desired address relative to the desired
+   * address of the folder instance, or -1, if the entry immediately
+   * follows its predecessor.
+   */
+  private long[] relativeDesiredAddresses;
+
+  private int size;
+  private boolean frozen;
+
+  /**
+   * Creates an empty template.
+   */
+  public FolderTemplate()
+  {
+    values = new Value[16];
+    relativeDesiredAddresses = new long[16];
+    size = 0;
+    frozen = false;
+  }
+
+  /**
+   * Adds an entry that immediately follows the previous entry.
+   * @param value The value of the entry, shared among all instances.
+   * @return This template, for chaining.
+   * @exception IllegalStateException If the template is already in
+   *    use.
+   */
+  public FolderTemplate add(final Value value)
+  {
+    return add(value, -1);
+  }
+
+  /**
+   * Adds an entry.
+   * @param value The value of the entry, shared among all instances.
+   * @param relativeDesiredAddress If negative, the entry immediately
+   *    follows the previous entry.  Otherwise, the address of the
+   *    entry, relative to the desired address of the folder instance.
+   * @return This template, for chaining.
+   * @exception IllegalStateException If the template is already in
+   *    use.
+   */
+  public FolderTemplate add(final Value value,
+                            final long relativeDesiredAddress)
+  {
+    if (value == null) {
+      throw new NullPointerException("value");
+    }
+    if (frozen) {
+      throw new IllegalStateException("template already in use");
+    }
+    if (size == values.length) {
+      values = Arrays.copyOf(values, 2 * size);
+      relativeDesiredAddresses =
+        Arrays.copyOf(relativeDesiredAddresses, 2 * size);
+    }
+    values[size] = value;
+    relativeDesiredAddresses[size] = relativeDesiredAddress < 0 ? -1 :
+      relativeDesiredAddress;
+    size++;
+    return this;
+  }
+
+  /**
+   * Returns the number of entries of this template.
+   * @return The number of entries.
+   */
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns the position of the first entry with the specified label.
+   * @param label The label of the entry.
+   * @return The position of the entry.
+   * @exception IllegalArgumentException If there is no such entry.
+   */
+  public int indexOf(final String label)
+  {
+    for (int i = 0; i < size; i++) {
+      if (label.equals(values[i].getLabel())) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("no such entry: " + label);
+  }
+
+  /**
+   * Creates a new slice of values, initialized with the default value
+   * of each entry.  The slice may be modified for instance-specific
+   * defaults before creating the instance.
+   * @return A new slice of values.
+   */
+  public int[] createValues()
+  {
+    final int[] slice = new int[size];
+    for (int i = 0; i < size; i++) {
+      slice[i] = values[i].getDefaultValue();
+    }
+    return slice;
+  }
+
+  /**
+   * Creates a new instance of this template.  The template is frozen
+   * from now on.
+   * @param label The label of the folder instance.
+   * @param desiredAddress The desired address of the folder instance,
+   *    or -1, if not specified.
+   * @param slice The default values of the instance, as created by
+   *    createValues().
+   * @return The folder node of the instance.
+   * @exception IllegalArgumentException If the slice does not fit
+   *    the template, or if the template has entries with a relative
+   *    desired address, but no desired address is specified.
+   */
+  public FolderNode createFolderNode(final String label,
+                                     final long desiredAddress,
+                                     final int[] slice)
+  {
+    if (slice.length != size) {
+      throw new IllegalArgumentException("slice does not fit template");
+    }
+    if (desiredAddress < 0) {
+      for (int i = 0; i < size; i++) {
+        if (relativeDesiredAddresses[i] >= 0) {
+          throw new IllegalArgumentException("desired address required " +
+                                             "for relative addresses");
+        }
+      }
+    }
+    frozen = true;
+    return new Instance(this, label, desiredAddress, slice);
+  }
+
+  private long getDesiredAddress(final int index, final long baseAddress)
+  {
+    final long relativeDesiredAddress = relativeDesiredAddresses[index];
+    return relativeDesiredAddress >= 0 ?
+      baseAddress + relativeDesiredAddress : -1;
+  }
+
+  /**
+   * A folder instance, holding only the slice of its default values.
+   */
+  private static class Instance extends LazyFolderNode
+  {
+    private static final long serialVersionUID = -4185394702513987215L;
+
+    private final FolderTemplate template;
+    private final int[] slice;
+
+    private Instance(final FolderTemplate template, final String label,
+                     final long desiredAddress, final int[] slice)
+    {
+      super(null, label, desiredAddress);
+      this.template = template;
+      this.slice = slice;
+    }
+
+    protected long layOutContents(long address,
+                                  final LayoutListener listener)
+    {
+      for (int i = 0; i < template.size; i++) {
+        final Value value = template.values[i];
+        address =
+          resolveAddress(template.getDesiredAddress(i, getDesiredAddress()),
+                         address, value.getLabel());
+        if (listener != null) {
+          listener.dataLaidOut(address, value.getBitSize(), slice[i]);
+        }
+        address += value.getBitSize();
+      }
+      return address;
+    }
+
+    protected void createContents()
+    {
+      for (int i = 0; i < template.size; i++) {
+        add(new DataNode(template.values[i],
+                         template.getDesiredAddress(i, getDesiredAddress()),
+                         slice[i]));
+      }
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -26,6 +26,8 @@ package org.soundpaint.sysexedit.model;
  */
 public class IntegerRenderer implements ValueRangeRenderer
 {
+  private static final long serialVersionUID = -5254799204090653430L;
+
   private final int radix;
   private final boolean fillWithLeadingZeroes;
   private final String displayPrefix;
@@ -140,6 +142,39 @@ public class IntegerRenderer implements ValueRangeRenderer
     return displayPrefix + fill + sign + digits + displaySuffix;
   }
 
+  /**
+   * Returns the integer value that the specified String represents
+   * according to the specification of this IntegerRenderer.
+   */
+  public Integer valueOfDisplayValue(final String displayValue)
+  {
+    if ((displayValue == null) ||
+        (displayValue.length() <
+         displayPrefix.length() + displaySuffix.length()) ||
+        !displayValue.startsWith(displayPrefix) ||
+        !displayValue.endsWith(displaySuffix)) {
+      return null;
+    }
+    final char fillChar = fillWithLeadingZeroes ? '0' : ' ';
+    final int end = displayValue.length() - displaySuffix.length();
+    int start = displayPrefix.length();
+    while ((start < end - 1) && (displayValue.charAt(start) == fillChar)) {
+      start++;
+    }
+    final int numericalValue;
+    try {
+      numericalValue =
+        Integer.parseInt(displayValue.substring(start, end), radix);
+    } catch (final NumberFormatException e) {
+      return null;
+    }
+    // reject strings that parse, but differ from the rendered value,
+    // e.g. by superfluous leading zeroes or upper case digits
+    return
+      displayValue.equals(getDisplayValue(numericalValue)) ?
+      numericalValue : null;
+  }
+
   /**
    * Returns a string representation of this object (e.g. for debugging).
    * @return A string representation of this object.
@@ -0,0 +1,243 @@
+/*
+ * @(#)LazyFolderNode.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.util.Enumeration;
+import javax.swing.tree.TreeNode;
+
+/**
+ * A folder node whose contents are created not before they are
+ * actually needed.  Device models with highly multiplied folders,
+ * e.g. hundreds of voices with dozens of parameters each, otherwise
+ * spend most of their startup time and memory on creating nodes that
+ * the user never looks at.
+ *
+ * As long as the folder has not been materialized, it behaves as if
+ * it already had its contents with respect to address resolution:
+ * Its subclass lays out the contents virtually, i.e. it reports the
+ * address, size and default value of each data node that would be
+ * created, such that the address index can serve bulk dumps and
+ * snapshots with default values without creating any node.  The
+ * contents are created as soon as they are accessed as tree nodes,
+ * e.g. when the user expands the folder, or when any of its data
+ * nodes is addressed via the address index, e.g. for updating its
+ * value from a bulk dump.
+ */
+public abstract class LazyFolderNode extends FolderNode
+{
+  private static final long serialVersionUID = 1927146317395702265L;
+
+  /**
+   * Receives the data nodes of a virtual layout.
+   */
+  public interface LayoutListener
+  {
+    /**
+     * Invoked for each data node of the virtual layout, in order of
+     * increasing address.
+     * @param address The resolved address of the data node.
+     * @param bitSize The bit size of the data node.
+     * @param defaultValue The default value of the data node.
+     */
+    void dataLaidOut(final long address, final int bitSize,
+                     final int defaultValue);
+  }
+
+  /** True, if the contents have been completely created. */
+  private volatile boolean materialized;
+
+  /** True, while the contents are being created. */
+  private boolean materializing;
+
+  /**
+   * The address following the virtual contents, as resolved while
+   * not yet materialized.
+   */
+  private long stopBeforeAddress;
+
+  /**
+   * Creates a lazy folder node with the specified description, label
+   * and desired address.
+   * @param description An optional informal description of this
+   * FolderNode.  Useful e.g. as tooltip in the GUI.
+   * @param label The label of this node.
+   * @param desiredAddress If negative, automatically determine an
+   *    absolute address for this node.  If non-negative, request that
+   *    this node will appear at the specified absolute address in the
+   *    address space.
+   * @see FolderNode#FolderNode(String, String, long)
+   */
+  public LazyFolderNode(final String description, final String label,
+                        final long desiredAddress)
+  {
+    super(description, label, desiredAddress);
+    stopBeforeAddress = -1;
+  }
+
+  /**
+   * Lays out the contents of this folder virtually, applying the
+   * same rules as address resolution of the created contents would.
+   * @param address The address of the first content node, if not
+   *    requesting any desired address.
+   * @param listener If not null, the listener to report each data
+   *    node of the layout to.
+   * @return The next available address after the contents.
+   */
+  protected abstract long layOutContents(final long address,
+                                         final LayoutListener listener);
+
+  /**
+   * Creates the contents of this folder and adds them as children.
+   * Must create nodes that resolve to exactly the same layout as
+   * reported by layOutContents().
+   */
+  protected abstract void createContents();
+
+  /**
+   * Returns true, if the contents of this folder have already been
+   * created.
+   * @return True, if the contents have been created.
+   */
+  public boolean isMaterialized()
+  {
+    return materialized;
+  }
+
+  private boolean hasContents()
+  {
+    return materialized || materializing;
+  }
+
+  /**
+   * Returns the address following the contents of this folder.
+   * @return The next available address after the contents, or -1,
+   *    if addresses have not yet been resolved while not materialized.
+   */
+  public long getStopBeforeAddress()
+  {
+    return stopBeforeAddress;
+  }
+
+  /**
+   * Creates the contents of this folder, unless already done.  If
+   * addresses have already been resolved, the addresses of the
+   * contents are resolved, too, and any address index of the map is
+   * updated.  Materialization of all folders of a map is serialized
+   * by locking the map's root.
+   * @exception IllegalStateException If the contents do not resolve
+   *    to the virtual layout.
+   */
+  public void materialize()
+  {
+    if (materialized) {
+      return;
+    }
+    final TreeNode root = getRoot();
+    synchronized (root) {
+      if (hasContents()) {
+        return;
+      }
+      materializing = true;
+      try {
+        createContents();
+        if (address >= 0) {
+          final long contentsStopBeforeAddress =
+            super.resolveAddresses(address);
+          if (contentsStopBeforeAddress != stopBeforeAddress) {
+            throw new IllegalStateException("contents of " + this +
+                                            " do not match virtual layout");
+          }
+          resolveDfsSubtreeLinks();
+          if (root instanceof AbstractDevice.MapRoot) {
+            final AddressIndex addressIndex =
+              ((AbstractDevice.MapRoot)root).getAddressIndex();
+            if (addressIndex != null) {
+              addressIndex.materialized(this);
+            }
+          }
+        }
+        materialized = true;
+      } finally {
+        materializing = false;
+      }
+    }
+  }
+
+  @Override
+  protected long resolveAddresses(final long nextAvailableAddress)
+  {
+    if (hasContents()) {
+      return super.resolveAddresses(nextAvailableAddress);
+    }
+    address = resolveAddress(getDesiredAddress(), nextAvailableAddress, this);
+    stopBeforeAddress = layOutContents(address, null);
+    return stopBeforeAddress;
+  }
+
+  @Override
+  protected MapNode resolveDfsLastDescendant()
+  {
+    if (hasContents()) {
+      return super.resolveDfsLastDescendant();
+    }
+    setDfsLastDescendant(this);
+    return this;
+  }
+
+  @Override
+  public int getChildCount()
+  {
+    materialize();
+    return super.getChildCount();
+  }
+
+  @Override
+  public TreeNode getChildAt(final int index)
+  {
+    materialize();
+    return super.getChildAt(index);
+  }
+
+  @Override
+  public Enumeration<TreeNode> children()
+  {
+    materialize();
+    return super.children();
+  }
+
+  /**
+   * Unless materialized, a lazy folder is never considered a leaf,
+   * such that displaying the folder collapsed does not create its
+   * contents.
+   */
+  @Override
+  public boolean isLeaf()
+  {
+    return hasContents() ? super.isLeaf() : false;
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -25,13 +25,17 @@ import javax.swing.tree.DefaultTreeModel;
 
 /**
  * An object instance of this class represents an event that occurs
- * whenever the value of a MapNode changes.
+ * whenever the value of a MapNode changes.  When publishing the
+ * changes of a change transaction, a single event is fired by the map
+ * root that covers the address range of all changed nodes.
  */
 public class MapChangeEvent extends EventObject
 {
   private static final long serialVersionUID = 2435483410608666577L;
 
   private final DefaultTreeModel model;
+  private final long startAddress;
+  private final long stopBeforeAddress;
 
   /**
    * Creates a new MapChangeEvent object with the specified source.
@@ -41,9 +45,29 @@ public class MapChangeEvent extends EventObject
    */
   public MapChangeEvent(final MapNode source,
                         final DefaultTreeModel model)
+  {
+    this(source, model, -1, -1);
+  }
+
+  /**
+   * Creates a new MapChangeEvent object for changes within the
+   * specified address range.
+   * @param source The source node that triggers this event.
+   * @param model The tree model of the source node.
+   * @param startAddress The address of the first changed bit.
+   * @param stopBeforeAddress The address following the last changed
+   *    bit.
+   * @exception IllegalArgumentException If source equals null.
+   */
+  public MapChangeEvent(final MapNode source,
+                        final DefaultTreeModel model,
+                        final long startAddress,
+                        final long stopBeforeAddress)
   {
     super(source);
     this.model = model;
+    this.startAddress = startAddress;
+    this.stopBeforeAddress = stopBeforeAddress;
   }
 
   /**
@@ -54,6 +78,26 @@ public class MapChangeEvent extends EventObject
   {
     return model;
   }
+
+  /**
+   * Returns the start of the address range of this change.
+   * @return The address of the first changed bit, or -1, if this
+   *    event does not cover an address range.
+   */
+  public long getStartAddress()
+  {
+    return startAddress;
+  }
+
+  /**
+   * Returns the end of the address range of this change.
+   * @return The address following the last changed bit, or -1, if
+   *    this event does not cover an address range.
+   */
+  public long getStopBeforeAddress()
+  {
+    return stopBeforeAddress;
+  }
 }
 
 /*
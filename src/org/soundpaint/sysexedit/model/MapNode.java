@@ -27,8 +27,6 @@ import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeNode;
 
-import org.soundpaint.sysexedit.gui.Map;
-
 /**
  * This class is used to represent a node in the hierarchical
  * structure of the whole memory of a device.  A node may or may not
@@ -51,8 +49,11 @@ public abstract class MapNode extends DefaultMutableTreeNode
 {
   private static final long serialVersionUID = -1726377369359671649L;
 
-  /** Map change listeners. */
-  private final List<MapChangeListener> listeners;
+  /**
+   * Map change listeners, or null, if there are none.  Since most
+   * nodes never have any listener, the list is created on demand.
+   */
+  private List<MapChangeListener> listeners;
 
   /** The desired absolute address for the associated node. */
   private final long desiredAddress;
@@ -104,11 +105,11 @@ public abstract class MapNode extends DefaultMutableTreeNode
   public MapNode(final String label, final long desiredAddress,
                  final boolean allowsChildren)
   {
-    super(allowsChildren);
+    super(null, allowsChildren);
     this.label = label;
     this.desiredAddress = desiredAddress;
     address = -1; // resolve later
-    listeners = new ArrayList<MapChangeListener>();
+    listeners = null;
   }
 
   /**
@@ -127,7 +128,36 @@ public abstract class MapNode extends DefaultMutableTreeNode
    */
   protected void fireMapChangeEvents(final DefaultTreeModel model)
   {
-    final MapChangeEvent event = new MapChangeEvent(this, model);
+    if (listeners == null) {
+      return;
+    }
+    final TreeNode root = getRoot();
+    if ((root instanceof AbstractDevice.MapRoot) &&
+        ((AbstractDevice.MapRoot)root).isChanging()) {
+      // published at commit of the change transaction
+      return;
+    }
+    fireMapChangeEvents(new MapChangeEvent(this, model));
+  }
+
+  /**
+   * Returns true, if there is any map change listener on this node.
+   * @return True, if there are map change listeners.
+   */
+  protected boolean hasMapChangeListeners()
+  {
+    return (listeners != null) && !listeners.isEmpty();
+  }
+
+  /**
+   * Fires the specified map change event to all map change listeners.
+   * @param event The event to fire.
+   */
+  protected void fireMapChangeEvents(final MapChangeEvent event)
+  {
+    if (listeners == null) {
+      return;
+    }
     for (final MapChangeListener listener : listeners) {
       listener.mapChangePerformed(event);
     }
@@ -139,6 +169,9 @@ public abstract class MapNode extends DefaultMutableTreeNode
    */
   public void addMapChangeListener(final MapChangeListener listener)
   {
+    if (listeners == null) {
+      listeners = new ArrayList<MapChangeListener>();
+    }
     listeners.add(listener);
   }
 
@@ -148,7 +181,9 @@ public abstract class MapNode extends DefaultMutableTreeNode
    */
   public void removeMapChangeListener(final MapChangeListener listener)
   {
-    listeners.remove(listener);
+    if (listeners != null) {
+      listeners.remove(listener);
+    }
   }
 
   /**
@@ -194,6 +229,31 @@ public abstract class MapNode extends DefaultMutableTreeNode
     return resolveDfsLastDescendant();
   }
 
+  /**
+   * Resolves the links to the preceding and following node in depth
+   * first search order anew for all descendants of this node, e.g.
+   * after children have been added to a node of an already linked
+   * map.  The links to the nodes outside of this node's subtree are
+   * retained.
+   */
+  protected void resolveDfsSubtreeLinks()
+  {
+    final MapNode previousLastDescendant = getDfsLastDescendant();
+    final MapNode dfsNextNode = previousLastDescendant.dfsNextNode;
+    final MapNode lastDescendant = resolveDfsLinkedNodes(dfsPreviousNode);
+    lastDescendant.dfsNextNode = dfsNextNode;
+    if (dfsNextNode != null) {
+      dfsNextNode.dfsPreviousNode = lastDescendant;
+    }
+    TreeNode ancestor = getParent();
+    while ((ancestor instanceof FolderNode) &&
+           (((FolderNode)ancestor).getDfsLastDescendant() ==
+            previousLastDescendant)) {
+      ((FolderNode)ancestor).setDfsLastDescendant(lastDescendant);
+      ancestor = ancestor.getParent();
+    }
+  }
+
   /**
    * @return If negative, automatically determine an absolute address
    * for this node.  If non-negative, request that this node will
@@ -225,33 +285,51 @@ public abstract class MapNode extends DefaultMutableTreeNode
    */
   protected long resolveAddresses(final long nextAvailableAddress)
   {
-    final long desiredAddress = getDesiredAddress();
+    address = resolveAddress(getDesiredAddress(), nextAvailableAddress, this);
+    long result = address + getBitSize();
+    for (int i = 0; i < getChildCount(); i++) {
+      final MapNode child = (MapNode)getChildAt(i);
+      result = child.resolveAddresses(result);
+    }
+    return result;
+  }
+
+  /**
+   * Resolves the address of a single node, considering its desired
+   * address.
+   * @param desiredAddress The desired address of the node, or -1, if
+   *    the address is to be determined automatically.
+   * @param nextAvailableAddress The next absolute address that is
+   *    not yet assigned.
+   * @param node The node whose address is to be resolved, for use in
+   *    error messages.
+   * @return The resolved address.
+   * @exception RuntimeException If the desired address is lower than
+   *    the next available address.
+   */
+  protected final long resolveAddress(final long desiredAddress,
+                                      final long nextAvailableAddress,
+                                      final Object node)
+  {
     if (desiredAddress == -1) {
       // no desired address specified => use default
-      address = nextAvailableAddress;
-    } else if (nextAvailableAddress > desiredAddress) {
-      final Map map = ((AbstractDevice.MapRoot)getRoot()).getMap();
+      return nextAvailableAddress;
+    }
+    if (nextAvailableAddress > desiredAddress) {
       final AddressRepresentation addressRepresentation =
-        map.getAddressRepresentation();
+        ((AbstractDevice.MapRoot)getRoot()).getAddressRepresentation();
       final String desiredDisplayAddress =
         addressRepresentation.getDisplayAddress(desiredAddress);
       final String nextAvailableDisplayAddress =
         addressRepresentation.getDisplayAddress(nextAvailableAddress);
       throw new RuntimeException("invalid desired address " +
                                  desiredDisplayAddress +
-                                 " for node " + this + ": " +
+                                 " for node " + node + ": " +
                                  "desired address must be " +
                                  nextAvailableDisplayAddress + " or higher");
-    } else {
-      // use desired address
-      address = desiredAddress;
     }
-    long result = address + getBitSize();
-    for (int i = 0; i < getChildCount(); i++) {
-      final MapNode child = (MapNode)getChildAt(i);
-      result = child.resolveAddresses(result);
-    }
-    return result;
+    // use desired address
+    return desiredAddress;
   }
 
   abstract public int getBitSize();
@@ -263,6 +341,28 @@ public abstract class MapNode extends DefaultMutableTreeNode
    *    the address either can not be found in the map or is inaccessible.
    */
   public DataNode locate(final long address)
+  {
+    final TreeNode root = getRoot();
+    if (root instanceof AbstractDevice.MapRoot) {
+      final AddressIndex addressIndex =
+        ((AbstractDevice.MapRoot)root).getAddressIndex();
+      if (addressIndex != null) {
+        return addressIndex.locate(address);
+      }
+    }
+    return locateInSubtree(address);
+  }
+
+  /**
+   * Locates the data node that covers the specified address by
+   * walking the tree.  Only used as long as no address index is
+   * available, e.g. while addresses are being resolved.
+   * @param address The address to be located.
+   * @return The node that covers the specified address, or null, if
+   *    the address either can not be found in the map or is inaccessible.
+   * @see AddressIndex
+   */
+  private DataNode locateInSubtree(final long address)
   {
     final long fromAddress = this.address;
 
@@ -297,7 +397,7 @@ public abstract class MapNode extends DefaultMutableTreeNode
       // address not among this node or its descendants
       if ((parent != null) && (dfsNextNode != null)) {
         // try looking at sister nodes
-        return ((MapNode)parent).locate(address);
+        return ((MapNode)parent).locateInSubtree(address);
       }
       // no such address
       return null;
@@ -332,7 +432,7 @@ public abstract class MapNode extends DefaultMutableTreeNode
                                       "(child = " + child + ")");
     }
 
-    return child.locate(address);
+    return child.locateInSubtree(address);
   }
 
   protected String getTreePath()
@@ -0,0 +1,257 @@
+/*
+ * @(#)MapSnapshot.java 1.00 18/07/26
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import javax.swing.tree.TreeNode;
+
+/**
+ * Binary snapshot of all values of a map, as used for saving and
+ * loading documents.  A snapshot file consists of a fixed header
+ * followed by the numerical values of all data nodes, packed in
+ * address order:
+ *
+ * <pre>
+ *   bytes 0..3    magic "SXES"
+ *   int           format version
+ *   long          fingerprint of the device model
+ *   int           length of the device name in bytes
+ *   byte[]        device name, UTF-8 encoded
+ *   int           number of values
+ *   int[]         values
+ * </pre>
+ *
+ * All numbers are big endian.  The fingerprint covers the device
+ * name as well as the address and size of each data node, such that
+ * a snapshot is only applied to a map of exactly the same structure.
+ *
+ * Both writing and reading are performed with a single channel
+ * operation on a single buffer.  When reading, values are assigned
+ * to the data nodes within a single change transaction without
+ * notifying any data node change listeners; all values are marked
+ * as changed in the sync state, and the restored values are
+ * published to the tree model and the map change listeners at once.
+ */
+public class MapSnapshot
+{
+  /** Preferred file name extension for snapshot files. */
+  public static final String FILE_EXTENSION = "sxe";
+
+  private static final byte[] MAGIC = {'S', 'X', 'E', 'S'};
+  private static final int VERSION = 1;
+
+  private MapSnapshot()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  private static AbstractDevice.MapRoot getRoot(final Device device)
+    throws IOException
+  {
+    final TreeNode root = device.getMapRoot();
+    if (!(root instanceof AbstractDevice.MapRoot) ||
+        (((AbstractDevice.MapRoot)root).getAddressIndex() == null)) {
+      throw new IOException("map not yet built");
+    }
+    return (AbstractDevice.MapRoot)root;
+  }
+
+  /**
+   * Computes a 64 bit FNV-1a hash over the device name and the
+   * address and size of all data nodes.
+   */
+  private static long getFingerprint(final byte[] deviceName,
+                                     final AddressIndex addressIndex)
+  {
+    long hash = Fnv1aHash.OFFSET_BASIS;
+    for (final byte b : deviceName) {
+      hash = Fnv1aHash.hash(hash, b);
+    }
+    final int size = addressIndex.size();
+    hash = Fnv1aHash.hash(hash, size);
+    for (int i = 0; i < size; i++) {
+      hash = Fnv1aHash.hash(hash, addressIndex.getAddress(i));
+      hash = Fnv1aHash.hash(hash, addressIndex.getBitSize(i));
+    }
+    return hash;
+  }
+
+  /**
+   * Returns true, if the specified file starts with the magic bytes
+   * of a snapshot file.
+   */
+  public static boolean isSnapshot(final File file) throws IOException
+  {
+    try (final FileChannel channel =
+         FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+      while (magic.hasRemaining()) {
+        if (channel.read(magic) < 0) {
+          return false;
+        }
+      }
+      magic.flip();
+      return magic.equals(ByteBuffer.wrap(MAGIC));
+    }
+  }
+
+  /**
+   * Writes all values of the map of the specified device into the
+   * specified file, replacing any previous contents.
+   * @param device The device whose map to save.
+   * @param file The file to write.
+   * @exception IOException If the map has not yet been built or
+   *    writing the file fails.
+   */
+  public static void write(final Device device, final File file)
+    throws IOException
+  {
+    final AddressIndex addressIndex = getRoot(device).getAddressIndex();
+    final byte[] deviceName =
+      device.getName().getBytes(StandardCharsets.UTF_8);
+    final int size = addressIndex.size();
+    final ByteBuffer buffer =
+      ByteBuffer.allocate(MAGIC.length + 4 + 8 + 4 + deviceName.length +
+                          4 + 4 * size);
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    buffer.put(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putLong(getFingerprint(deviceName, addressIndex));
+    buffer.putInt(deviceName.length);
+    buffer.put(deviceName);
+    buffer.putInt(size);
+    final IntBuffer values = buffer.asIntBuffer();
+    for (int i = 0; i < size; i++) {
+      values.put(addressIndex.getNumericalValue(i));
+    }
+    buffer.position(buffer.limit());
+    buffer.flip();
+    try (final FileChannel channel =
+         FileChannel.open(file.toPath(),
+                          StandardOpenOption.WRITE,
+                          StandardOpenOption.CREATE,
+                          StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+  }
+
+  /**
+   * Reads all values of the specified file into the map of the
+   * specified device.  The file is completely checked before any
+   * value is assigned, such that the map remains unmodified if the
+   * file turns out to be unsuitable.
+   * @param device The device whose map to update.
+   * @param file The file to read.
+   * @exception IOException If the map has not yet been built,
+   *    reading the file fails, the file is not a snapshot file of a
+   *    supported version, or it has been saved for a map of
+   *    different structure.
+   */
+  public static void read(final Device device, final File file)
+    throws IOException
+  {
+    final AbstractDevice.MapRoot root = getRoot(device);
+    final AddressIndex addressIndex = root.getAddressIndex();
+    final int[] values;
+    final ByteBuffer buffer;
+    try (final FileChannel channel =
+         FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("file too large: " + file);
+      }
+      buffer = ByteBuffer.allocate((int)channel.size());
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          throw new IOException("unexpected end of file: " + file);
+        }
+      }
+    }
+    buffer.flip();
+    buffer.order(ByteOrder.BIG_ENDIAN);
+    try {
+      final byte[] magic = new byte[MAGIC.length];
+      buffer.get(magic);
+      if (!ByteBuffer.wrap(magic).equals(ByteBuffer.wrap(MAGIC))) {
+        throw new IOException("not a snapshot file: " + file);
+      }
+      final int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("unsupported snapshot version: " + version);
+      }
+      final long fingerprint = buffer.getLong();
+      final int deviceNameLength = buffer.getInt();
+      if ((deviceNameLength < 0) ||
+          (deviceNameLength > buffer.remaining())) {
+        throw new IOException("corrupt snapshot file: " + file);
+      }
+      final byte[] deviceName = new byte[deviceNameLength];
+      buffer.get(deviceName);
+      final byte[] expectedDeviceName =
+        device.getName().getBytes(StandardCharsets.UTF_8);
+      if (fingerprint != getFingerprint(expectedDeviceName, addressIndex)) {
+        throw new IOException("snapshot has been saved for device model " +
+                              new String(deviceName, StandardCharsets.UTF_8) +
+                              " with different map structure");
+      }
+      final int size = buffer.getInt();
+      if ((size != addressIndex.size()) ||
+          (buffer.remaining() != 4 * size)) {
+        throw new IOException("corrupt snapshot file: " + file);
+      }
+      values = new int[size];
+      buffer.asIntBuffer().get(values);
+    } catch (final BufferUnderflowException e) {
+      throw new IOException("corrupt snapshot file: " + file);
+    }
+    root.beginChanges();
+    try {
+      for (int i = 0; i < values.length; i++) {
+        if (addressIndex.isMaterialized(i) ||
+            (values[i] != addressIndex.getNumericalValue(i))) {
+          addressIndex.getNode(i).restoreNumericalValue(values[i]);
+        }
+      }
+      final SyncState syncState = device.getSyncState();
+      if (syncState != null) {
+        syncState.markAllChanged();
+      }
+    } finally {
+      root.commitChanges();
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -0,0 +1,701 @@
+/*
+ * @(#)PacketFormat.java 1.00 18/07/21
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import javax.sound.midi.SysexMessage;
+
+/**
+ * Declarative description of the bulk dump SysEx packet format of a
+ * device, as used by device models that are not hand-written, but
+ * loaded from an XML description.  A packet consists of a sequence
+ * of header bytes, an optional byte count field, the start address,
+ * the data bytes and an optional checksum.  The surrounding SysEx
+ * status bytes F0 and F7 are not part of the packet.
+ *
+ * Given a packet format, this class creates encoders that produce
+ * bulk dump streams and decoders that apply received bulk dumps to
+ * a map.  Both are driven by the map's precompiled dump plan, just
+ * like hand-written device implementations.
+ */
+public class PacketFormat implements Serializable
+{
+  private static final long serialVersionUID = -7139681256395226037L;
+
+  /**
+   * Kinds of header items.
+   */
+  public enum HeaderItem
+  {
+    /** A fixed byte value. */
+    LITERAL,
+
+    /** The device's manufacturer ID. */
+    MANUFACTURER_ID,
+
+    /** The device's model ID. */
+    MODEL_ID,
+
+    /** The MIDI device ID, plus some fixed offset. */
+    DEVICE_ID
+  }
+
+  /**
+   * Supported checksum algorithms.  All of them compute the two's
+   * complement of the 7 bit sum over the covered packet bytes, but
+   * differ in which bytes are covered.
+   */
+  public enum Checksum
+  {
+    /** No checksum. */
+    NONE,
+
+    /** Covers byte count, address and data bytes. */
+    YAMAHA,
+
+    /** Covers address and data bytes. */
+    ROLAND
+  }
+
+  private final HeaderItem[] headerItems;
+  private final int[] headerValues;
+  private final int bitsPerByte;
+  private final int byteCountWidth;
+  private final int addressWidth;
+  private final Checksum checksum;
+  private final int maxBlockSize;
+
+  private PacketFormat()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Creates a new packet format.
+   * @param headerItems The kinds of the header bytes.
+   * @param headerValues For each header item, its value: The byte
+   *    value for literals, the offset to add for the device ID, and
+   *    ignored for any other kind of item.
+   * @param bitsPerByte The number of bits per data byte, in the
+   *    range 1..7.
+   * @param byteCountWidth The number of bytes of the byte count
+   *    field, or 0, if there is no byte count field.
+   * @param addressWidth The number of bytes of the address field.
+   * @param checksum The checksum algorithm.
+   * @param maxBlockSize The maximum number of data bytes per packet.
+   * @exception IllegalArgumentException If any of the arguments is
+   *    out of range.
+   */
+  public PacketFormat(final HeaderItem[] headerItems,
+                      final int[] headerValues,
+                      final int bitsPerByte,
+                      final int byteCountWidth,
+                      final int addressWidth,
+                      final Checksum checksum,
+                      final int maxBlockSize)
+  {
+    if (headerItems.length != headerValues.length) {
+      throw new IllegalArgumentException("header items and values " +
+                                         "differ in length");
+    }
+    if ((bitsPerByte < 1) || (bitsPerByte > 7)) {
+      throw new IllegalArgumentException("bits per byte out of range: " +
+                                         bitsPerByte);
+    }
+    if ((byteCountWidth < 0) || (byteCountWidth * bitsPerByte > 31)) {
+      throw new IllegalArgumentException("byte count width out of range: " +
+                                         byteCountWidth);
+    }
+    if ((addressWidth < 1) || (addressWidth * bitsPerByte > 31)) {
+      throw new IllegalArgumentException("address width out of range: " +
+                                         addressWidth);
+    }
+    if (checksum == null) {
+      throw new NullPointerException("checksum");
+    }
+    if (maxBlockSize < 1) {
+      throw new IllegalArgumentException("non-positive max block size: " +
+                                         maxBlockSize);
+    }
+    if ((byteCountWidth > 0) &&
+        (maxBlockSize >= 1 << (byteCountWidth * bitsPerByte))) {
+      throw new IllegalArgumentException("max block size exceeds " +
+                                         "byte count field");
+    }
+    this.headerItems = headerItems.clone();
+    this.headerValues = headerValues.clone();
+    this.bitsPerByte = bitsPerByte;
+    this.byteCountWidth = byteCountWidth;
+    this.addressWidth = addressWidth;
+    this.checksum = checksum;
+    this.maxBlockSize = maxBlockSize;
+  }
+
+  public int getBitsPerByte()
+  {
+    return bitsPerByte;
+  }
+
+  public int getMaxBlockSize()
+  {
+    return maxBlockSize;
+  }
+
+  /**
+   * Creates an encoder that produces a single bulk dump packet
+   * (without F0 and F7) for the specified contiguous area of memory.
+   * @param manufacturerId The device's manufacturer ID.
+   * @param modelId The device's model ID.
+   * @param deviceId The MIDI device ID.
+   * @param addressIndex The address index of the map to dump.
+   * @param dumpPlan The dump plan of the map to dump.
+   * @param start The bit address where to start.
+   * @param end The bit address where to end before.
+   * @return A stream that delivers the bytes of the packet.
+   * @exception IOException If the area is invalid or does not fit
+   *    into a single packet.
+   */
+  public InputStream createEncoder(final byte manufacturerId,
+                                   final byte modelId,
+                                   final byte deviceId,
+                                   final AddressIndex addressIndex,
+                                   final DumpPlan dumpPlan,
+                                   final long start, final long end)
+    throws IOException
+  {
+    return new Encoder(manufacturerId, modelId, deviceId,
+                       addressIndex, dumpPlan, start, end);
+  }
+
+  /**
+   * Creates a decoder that applies received bulk dump packets to a
+   * map.  The decoder expects complete SysEx messages, including F0
+   * and F7, and skips all messages that do not match this format.
+   * @param manufacturerId The device's manufacturer ID.
+   * @param modelId The device's model ID.
+   * @param addressIndex The address index of the map to update.
+   * @param dumpPlan The dump plan of the map to update.
+   * @param syncState The sync state to update for each correctly
+   *    received message, or null, if not tracked.
+   * @return A decoder to write received MIDI bytes into.
+   */
+  public Decoder createDecoder(final byte manufacturerId,
+                               final byte modelId,
+                               final AddressIndex addressIndex,
+                               final DumpPlan dumpPlan,
+                               final SyncState syncState)
+  {
+    return new Decoder(manufacturerId, modelId, addressIndex, dumpPlan,
+                       syncState);
+  }
+
+  private int getHeaderByte(final int index, final byte manufacturerId,
+                            final byte modelId, final byte deviceId)
+  {
+    switch (headerItems[index]) {
+    case LITERAL:
+      return headerValues[index] & 0x7f;
+    case MANUFACTURER_ID:
+      return manufacturerId & 0x7f;
+    case MODEL_ID:
+      return modelId & 0x7f;
+    case DEVICE_ID:
+      return (deviceId + headerValues[index]) & 0x7f;
+    default:
+      throw new IllegalStateException("unexpected header item: " +
+                                      headerItems[index]);
+    }
+  }
+
+  private boolean matchesHeaderByte(final int index, final int data,
+                                    final byte manufacturerId,
+                                    final byte modelId)
+  {
+    switch (headerItems[index]) {
+    case LITERAL:
+      return data == (headerValues[index] & 0x7f);
+    case MANUFACTURER_ID:
+      return data == (manufacturerId & 0x7f);
+    case MODEL_ID:
+      return data == (modelId & 0x7f);
+    case DEVICE_ID:
+      // accept any device ID within the offset's 16 channel block
+      return ((data - headerValues[index]) & 0x70) == 0x00;
+    default:
+      throw new IllegalStateException("unexpected header item: " +
+                                      headerItems[index]);
+    }
+  }
+
+  /**
+   * Returns the start address of the specified bulk dump packet,
+   * without decoding any data.
+   * @param message The complete SysEx message, including the
+   *    surrounding status bytes F0 and F7, between the buffer's
+   *    position and limit.  The buffer's position is not modified.
+   * @param manufacturerId The manufacturer ID to match.
+   * @param modelId The model ID to match.
+   * @return The bit address where the data of the packet starts, or
+   *    -1, if the message does not match this packet format.
+   */
+  public long getBitAddress(final ByteBuffer message,
+                            final byte manufacturerId, final byte modelId)
+  {
+    int pos = message.position();
+    final int addressStop =
+      pos + 1 + headerItems.length + byteCountWidth + addressWidth;
+    if ((addressStop > message.limit()) ||
+        ((message.get(pos) & 0xff) != SysexMessage.SYSTEM_EXCLUSIVE)) {
+      return -1;
+    }
+    pos++;
+    for (int i = 0; i < headerItems.length; i++) {
+      if (!matchesHeaderByte(i, message.get(pos++) & 0xff,
+                             manufacturerId, modelId)) {
+        return -1;
+      }
+    }
+    pos += byteCountWidth;
+    long address = 0;
+    while (pos < addressStop) {
+      address = (address << bitsPerByte) | (message.get(pos++) & 0x7f);
+    }
+    return address * bitsPerByte;
+  }
+
+  /**
+   * Produces a single bulk dump packet.  All bytes preceding the data
+   * bytes are computed upon construction; data bytes are encoded via
+   * the dump plan directly into the caller's buffer.
+   */
+  private class Encoder extends InputStream
+  {
+    private final byte[] prefix;
+    private final int checksumStart;
+    private final AddressIndex addressIndex;
+    private final DumpPlan dumpPlan;
+    private final byte[] singleByte;
+    private int prefixPos;
+    private int planPos;
+    private int dataBytesLeft;
+    private boolean checksumPending;
+    private int checkSum;
+
+    private Encoder()
+    {
+      throw new UnsupportedOperationException("unsupported constructor");
+    }
+
+    private Encoder(final byte manufacturerId, final byte modelId,
+                    final byte deviceId,
+                    final AddressIndex addressIndex,
+                    final DumpPlan dumpPlan,
+                    final long start, final long end)
+      throws IOException
+    {
+      if (start > end)
+        throw new IOException("start > end");
+      if (start < 0)
+        throw new IOException("start < 0");
+      if (start % bitsPerByte != 0)
+        throw new IOException("start not aligned to byte boundary");
+      final long byteAddress = start / bitsPerByte;
+      final long byteCount = (end - start + bitsPerByte - 1) / bitsPerByte;
+      if (byteAddress >= 1L << (addressWidth * bitsPerByte))
+        throw new IOException("address exceeds address field");
+      if ((byteCountWidth > 0) &&
+          (byteCount >= 1L << (byteCountWidth * bitsPerByte)))
+        throw new IOException("byte count exceeds byte count field");
+      this.addressIndex = addressIndex;
+      this.dumpPlan = dumpPlan;
+      final int headerSize = headerItems.length;
+      prefix = new byte[headerSize + byteCountWidth + addressWidth];
+      for (int i = 0; i < headerSize; i++) {
+        prefix[i] =
+          (byte)getHeaderByte(i, manufacturerId, modelId, deviceId);
+      }
+      putField(byteCount, headerSize, byteCountWidth);
+      putField(byteAddress, headerSize + byteCountWidth, addressWidth);
+      checksumStart =
+        checksum == Checksum.ROLAND ?
+        headerSize + byteCountWidth :
+        headerSize;
+      singleByte = new byte[1];
+      prefixPos = 0;
+      planPos = dumpPlan.indexOf(start);
+      dataBytesLeft = (int)byteCount;
+      checksumPending = checksum != Checksum.NONE;
+      checkSum = 0x00;
+    }
+
+    private void putField(final long value, final int offset,
+                          final int width)
+    {
+      final int mask = (1 << bitsPerByte) - 1;
+      for (int i = 0; i < width; i++) {
+        final int shift = (width - 1 - i) * bitsPerByte;
+        prefix[offset + i] = (byte)((value >> shift) & mask);
+      }
+    }
+
+    public int read() throws IOException
+    {
+      final int count = read(singleByte, 0, 1);
+      return count > 0 ? singleByte[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len)
+      throws IOException
+    {
+      if (b == null)
+        throw new NullPointerException("b");
+      if ((off < 0) || (len < 0) || (len > b.length - off))
+        throw new IndexOutOfBoundsException();
+      if (len == 0)
+        return 0;
+      int count = 0;
+      while ((count < len) && (prefixPos < prefix.length)) {
+        final int data = prefix[prefixPos];
+        if (prefixPos >= checksumStart) {
+          checkSum = (checkSum + data) & 0x7f;
+        }
+        b[off + count++] = (byte)data;
+        prefixPos++;
+      }
+      if ((count < len) && (dataBytesLeft > 0)) {
+        final int dataCount = Math.min(len - count, dataBytesLeft);
+        dumpPlan.encode(addressIndex, planPos, b, off + count, dataCount);
+        for (int i = 0; i < dataCount; i++) {
+          checkSum = (checkSum + b[off + count + i]) & 0x7f;
+        }
+        count += dataCount;
+        planPos += dataCount;
+        dataBytesLeft -= dataCount;
+      }
+      if ((count < len) && (dataBytesLeft == 0) && checksumPending) {
+        b[off + count++] = (byte)((0x80 - checkSum) & 0x7f);
+        checksumPending = false;
+      }
+      return count > 0 ? count : -1;
+    }
+
+    @Override
+    public int available()
+    {
+      return
+        prefix.length - prefixPos + dataBytesLeft + (checksumPending ? 1 : 0);
+    }
+  }
+
+  /**
+   * Incremental decoder for received SysEx messages.  Bytes are fed
+   * in one at a time, such that any number of messages can be
+   * decoded in memory bounded by the size of the largest message.
+   * The data bytes of each message are collected in a block buffer
+   * and applied to the map only after the message has been received
+   * completely and its checksum has been verified, such that a
+   * corrupt or truncated message leaves the map unchanged.  If the
+   * format has no byte count field, the end of the data is
+   * recognized only by the terminating F7, such that the checksum
+   * byte (if any) is the last byte of the block.
+   */
+  public class Decoder extends OutputStream
+  {
+    private static final int STATE_IDLE = 0;
+    private static final int STATE_SKIP = 1;
+    private static final int STATE_HEADER = 2;
+    private static final int STATE_BYTE_COUNT = 3;
+    private static final int STATE_ADDRESS = 4;
+    private static final int STATE_DATA = 5;
+    private static final int STATE_CHECKSUM = 6;
+    private static final int STATE_END = 7;
+
+    private final byte manufacturerId;
+    private final byte modelId;
+    private final AddressIndex addressIndex;
+    private final DumpPlan dumpPlan;
+    private final SyncState syncState;
+    private int state;
+    private int fieldPos;
+    private int byteCount;
+    private long address;
+    private int checkSum;
+    private long pos;
+    private int planPos;
+    private byte[] block;
+    private int blockSize;
+    private int messageCount;
+    private int errorCount;
+    private String lastError;
+
+    private Decoder()
+    {
+      throw new UnsupportedOperationException("unsupported constructor");
+    }
+
+    private Decoder(final byte manufacturerId, final byte modelId,
+                    final AddressIndex addressIndex,
+                    final DumpPlan dumpPlan,
+                    final SyncState syncState)
+    {
+      this.manufacturerId = manufacturerId;
+      this.modelId = modelId;
+      this.addressIndex = addressIndex;
+      this.dumpPlan = dumpPlan;
+      this.syncState = syncState;
+      state = STATE_IDLE;
+      block = new byte[maxBlockSize + 1];
+      blockSize = 0;
+      messageCount = 0;
+      errorCount = 0;
+      lastError = null;
+    }
+
+    private void error(final String message)
+    {
+      errorCount++;
+      lastError = message;
+      state = STATE_SKIP;
+    }
+
+    private void startHeader()
+    {
+      fieldPos = 0;
+      byteCount = 0;
+      address = 0;
+      checkSum = 0x00;
+      blockSize = 0;
+      state = headerItems.length > 0 ? STATE_HEADER : nextStateAfterHeader();
+    }
+
+    private int nextStateAfterHeader()
+    {
+      fieldPos = 0;
+      return byteCountWidth > 0 ? STATE_BYTE_COUNT : STATE_ADDRESS;
+    }
+
+    private void startData()
+    {
+      if ((byteCountWidth > 0) && (byteCount == 0)) {
+        state = checksum != Checksum.NONE ? STATE_CHECKSUM : STATE_END;
+      } else {
+        state = STATE_DATA;
+      }
+    }
+
+    /**
+     * Appends a received data byte to the block buffer, growing the
+     * buffer for messages that exceed the maximum block size.
+     */
+    private void storeData(final int data)
+    {
+      if (blockSize == block.length) {
+        block = Arrays.copyOf(block, 2 * block.length);
+      }
+      block[blockSize++] = (byte)data;
+    }
+
+    /**
+     * Applies the first count bytes of the block buffer to the map.
+     */
+    private void applyBlock(final int count)
+    {
+      pos = address * bitsPerByte;
+      planPos = dumpPlan.indexOf(pos);
+      for (int i = 0; i < count; i++) {
+        applyData(block[i]);
+      }
+    }
+
+    private void applyData(final int data)
+    {
+      if ((planPos < 0) || (planPos >= dumpPlan.size()) ||
+          (dumpPlan.getByteAddress(planPos) != pos)) {
+        // address not covered by map => ignore this byte
+        planPos = dumpPlan.indexOf(pos + bitsPerByte);
+      } else {
+        dumpPlan.decode(addressIndex, planPos, data);
+        planPos++;
+      }
+      pos += bitsPerByte;
+    }
+
+    /**
+     * Counts a completely and correctly received message; the values
+     * received are now in sync with the device.
+     */
+    private void messageCompleted()
+    {
+      messageCount++;
+      if (syncState != null) {
+        syncState.markSynced(address * bitsPerByte, pos);
+      }
+    }
+
+    private void endOfMessage()
+    {
+      switch (state) {
+      case STATE_END:
+        applyBlock(blockSize);
+        messageCompleted();
+        break;
+      case STATE_DATA:
+        if (byteCountWidth > 0) {
+          error("truncated SysEx message");
+        } else if (checksum == Checksum.NONE) {
+          applyBlock(blockSize);
+          messageCompleted();
+        } else if (blockSize == 0) {
+          error("missing checksum");
+        } else {
+          for (int i = 0; i < blockSize; i++) {
+            checkSum = (checkSum + block[i]) & 0x7f;
+          }
+          if (checkSum != 0) {
+            error("checksum error in bulk dump for address 0x" +
+                  Long.toHexString(address));
+          } else {
+            applyBlock(blockSize - 1);
+            messageCompleted();
+          }
+        }
+        break;
+      case STATE_IDLE:
+      case STATE_SKIP:
+        break;
+      default:
+        error("truncated SysEx message");
+        break;
+      }
+      state = STATE_IDLE;
+    }
+
+    public void write(final int b)
+    {
+      final int data = b & 0xff;
+      if (data >= 0xf8) {
+        return; // real time messages may interleave at any time
+      }
+      if (data == SysexMessage.SYSTEM_EXCLUSIVE) {
+        endOfMessage();
+        startHeader();
+        return;
+      }
+      if (data >= 0x80) {
+        // F7 or any other status byte terminates SysEx
+        endOfMessage();
+        return;
+      }
+      switch (state) {
+      case STATE_IDLE:
+      case STATE_SKIP:
+        break;
+      case STATE_HEADER:
+        if (!matchesHeaderByte(fieldPos, data, manufacturerId, modelId)) {
+          state = STATE_SKIP; // not for us
+        } else if (++fieldPos == headerItems.length) {
+          state = nextStateAfterHeader();
+        }
+        break;
+      case STATE_BYTE_COUNT:
+        byteCount = (byteCount << bitsPerByte) | data;
+        if (checksum == Checksum.YAMAHA) {
+          checkSum = (checkSum + data) & 0x7f;
+        }
+        if (++fieldPos == byteCountWidth) {
+          fieldPos = 0;
+          state = STATE_ADDRESS;
+        }
+        break;
+      case STATE_ADDRESS:
+        address = (address << bitsPerByte) | data;
+        if (checksum != Checksum.NONE) {
+          checkSum = (checkSum + data) & 0x7f;
+        }
+        if (++fieldPos == addressWidth) {
+          startData();
+        }
+        break;
+      case STATE_DATA:
+        storeData(data);
+        if (byteCountWidth > 0) {
+          checkSum = (checkSum + data) & 0x7f;
+          if (--byteCount == 0) {
+            state = checksum != Checksum.NONE ? STATE_CHECKSUM : STATE_END;
+          }
+        }
+        break;
+      case STATE_CHECKSUM:
+        if (((checkSum + data) & 0x7f) != 0) {
+          error("checksum error in bulk dump for address 0x" +
+                Long.toHexString(address));
+        } else {
+          state = STATE_END;
+        }
+        break;
+      case STATE_END:
+        error("excess data in bulk dump for address 0x" +
+              Long.toHexString(address));
+        break;
+      default:
+        throw new IllegalStateException("invalid state: " + state);
+      }
+    }
+
+    /**
+     * Returns the number of completely received messages.
+     */
+    public int getMessageCount()
+    {
+      return messageCount;
+    }
+
+    /**
+     * Returns the number of erroneous messages.
+     */
+    public int getErrorCount()
+    {
+      return errorCount;
+    }
+
+    /**
+     * Returns a description of the most recent error, or null, if
+     * there was no error.
+     */
+    public String getLastError()
+    {
+      return lastError;
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
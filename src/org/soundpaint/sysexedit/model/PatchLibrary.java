@@ -0,0 +1,654 @@
+/*
+ * @(#)PatchLibrary.java 1.00 18/07/26
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import javax.swing.tree.TreeNode;
+
+/**
+ * A local library of patches, i.e. snapshots of the values of any
+ * folder of a map, such as a multi part or a drum setup, that can be
+ * applied to any folder of the same structure later on.
+ *
+ * The values of a patch are split into chunks, one chunk per folder
+ * of the patch's subtree, holding the values of the data nodes that
+ * are immediate children of that folder.  Chunks are addressed by
+ * the hash of their content and stored only once, such that e.g.
+ * drum notes that do not differ between thousands of drum setup
+ * variants occupy disk space only once.
+ *
+ * The library is a directory with two files: an append-only chunk
+ * store, and an index of all chunks and patches.  The index is
+ * completely read when opening the library, such that listing
+ * patches does not touch the disk, and rewritten atomically whenever
+ * a patch is stored or removed.  Chunks that are no longer
+ * referenced by any patch are not reclaimed.
+ */
+public class PatchLibrary
+{
+  /** Default library directory, relative to the user's home. */
+  public static final String DEFAULT_DIRECTORY =
+    ".sysexedit" + File.separator + "patches";
+
+  private static final String INDEX_FILE_NAME = "index.dat";
+  private static final String INDEX_TMP_FILE_NAME = "index.tmp";
+  private static final String CHUNKS_FILE_NAME = "chunks.dat";
+  private static final byte[] MAGIC = {'S', 'X', 'E', 'P'};
+  private static final int VERSION = 1;
+
+  /**
+   * Identifies a chunk by the leading 128 bits of the SHA-256 hash of
+   * its content.
+   */
+  private static class ChunkId
+  {
+    private final long high;
+    private final long low;
+
+    private ChunkId(final long high, final long low)
+    {
+      this.high = high;
+      this.low = low;
+    }
+
+    @Override
+    public boolean equals(final Object obj)
+    {
+      if (!(obj instanceof ChunkId)) {
+        return false;
+      }
+      final ChunkId other = (ChunkId)obj;
+      return (high == other.high) && (low == other.low);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Long.hashCode(high ^ low);
+    }
+  }
+
+  /**
+   * A patch stored in the library.
+   */
+  public static class Entry
+  {
+    private final String name;
+    private final String deviceName;
+    private final String folderLabel;
+    private final long creationTime;
+    private final long structure;
+    private final ChunkId[] chunkIds;
+
+    private Entry(final String name, final String deviceName,
+                  final String folderLabel, final long creationTime,
+                  final long structure, final ChunkId[] chunkIds)
+    {
+      this.name = name;
+      this.deviceName = deviceName;
+      this.folderLabel = folderLabel;
+      this.creationTime = creationTime;
+      this.structure = structure;
+      this.chunkIds = chunkIds;
+    }
+
+    public String getName()
+    {
+      return name;
+    }
+
+    /**
+     * Returns the name of the device model that the patch has been
+     * stored from.
+     */
+    public String getDeviceName()
+    {
+      return deviceName;
+    }
+
+    /**
+     * Returns the label of the folder that the patch has been stored
+     * from.
+     */
+    public String getFolderLabel()
+    {
+      return folderLabel;
+    }
+
+    /**
+     * Returns the time when the patch has been stored, in
+     * milliseconds since the epoch.
+     */
+    public long getCreationTime()
+    {
+      return creationTime;
+    }
+
+    @Override
+    public String toString()
+    {
+      return name;
+    }
+  }
+
+  private final File directory;
+  private final FileChannel chunks;
+  private final HashMap<ChunkId, Long> chunkOffsets;
+  private final List<Entry> entries;
+
+  private PatchLibrary()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Opens the library in the specified directory, creating an empty
+   * library if the directory does not yet contain any.
+   * @param directory The directory of the library.
+   * @exception IOException If the directory can not be created or
+   *    the library turns out to be corrupt.
+   */
+  public PatchLibrary(final File directory) throws IOException
+  {
+    if (directory == null) {
+      throw new NullPointerException("directory");
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("failed creating patch library directory " +
+                            directory);
+    }
+    this.directory = directory;
+    chunkOffsets = new HashMap<ChunkId, Long>();
+    entries = new ArrayList<Entry>();
+    chunks = FileChannel.open(new File(directory, CHUNKS_FILE_NAME).toPath(),
+                              StandardOpenOption.READ,
+                              StandardOpenOption.WRITE,
+                              StandardOpenOption.CREATE);
+    try {
+      final File indexFile = new File(directory, INDEX_FILE_NAME);
+      if (indexFile.exists()) {
+        readIndex(indexFile);
+      }
+    } catch (final IOException | RuntimeException e) {
+      chunks.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the directory of this library.
+   */
+  public File getDirectory()
+  {
+    return directory;
+  }
+
+  public synchronized void close() throws IOException
+  {
+    chunks.close();
+  }
+
+  /**
+   * Collects the specified folder and all of its descendant folders
+   * in depth first search order, while computing a hash over the
+   * structure of the subtree, i.e. the nesting of folders as well as
+   * the number and size of data nodes, but not their addresses.
+   * Hence, e.g. all multi parts of a device share the same structure.
+   */
+  private static long collectFolders(final FolderNode folder,
+                                     final List<FolderNode> folders,
+                                     long hash)
+  {
+    folders.add(folder);
+    final int childCount = folder.getChildCount();
+    hash = Fnv1aHash.hash(hash, childCount);
+    for (int i = 0; i < childCount; i++) {
+      final Object child = folder.getChildAt(i);
+      if (child instanceof DataNode) {
+        hash = Fnv1aHash.hash(hash, 1);
+        hash = Fnv1aHash.hash(hash, ((DataNode)child).getBitSize());
+      } else if (child instanceof FolderNode) {
+        hash = Fnv1aHash.hash(hash, 0);
+        hash = collectFolders((FolderNode)child, folders, hash);
+      }
+    }
+    return hash;
+  }
+
+  private static int getDataNodeCount(final FolderNode folder)
+  {
+    int count = 0;
+    for (int i = 0; i < folder.getChildCount(); i++) {
+      if (folder.getChildAt(i) instanceof DataNode) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Encodes the values of the data nodes that are immediate children
+   * of the specified folder as chunk record, i.e. the number of
+   * values followed by the values.
+   */
+  private static ByteBuffer createChunk(final FolderNode folder)
+  {
+    final ByteBuffer chunk =
+      ByteBuffer.allocate(4 + 4 * getDataNodeCount(folder));
+    chunk.putInt(getDataNodeCount(folder));
+    for (int i = 0; i < folder.getChildCount(); i++) {
+      final Object child = folder.getChildAt(i);
+      if (child instanceof DataNode) {
+        chunk.putInt(((DataNode)child).getNumericalValue());
+      }
+    }
+    chunk.flip();
+    return chunk;
+  }
+
+  private static ChunkId getChunkId(final MessageDigest digest,
+                                    final ByteBuffer chunk)
+  {
+    digest.reset();
+    digest.update(chunk.duplicate());
+    final ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+    return new ChunkId(hash.getLong(), hash.getLong());
+  }
+
+  private static MessageDigest createDigest()
+  {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /**
+   * Returns all patches of the library in order of storage.
+   */
+  public synchronized List<Entry> getEntries()
+  {
+    return Collections.unmodifiableList(new ArrayList<Entry>(entries));
+  }
+
+  /**
+   * Returns all patches of the library that can be applied to the
+   * specified folder.
+   */
+  public synchronized List<Entry> getApplicableEntries(final Device device,
+                                                       final FolderNode folder)
+  {
+    final long structure =
+      collectFolders(folder, new ArrayList<FolderNode>(),
+                     Fnv1aHash.OFFSET_BASIS);
+    final List<Entry> applicableEntries = new ArrayList<Entry>();
+    for (final Entry entry : entries) {
+      if (entry.deviceName.equals(device.getName()) &&
+          (entry.structure == structure)) {
+        applicableEntries.add(entry);
+      }
+    }
+    return applicableEntries;
+  }
+
+  /**
+   * Stores the current values of the specified folder and all of its
+   * descendants as patch.  Any patch of the same name and device
+   * model is replaced.  Only chunks that are not yet contained in
+   * the library are added to the chunk store.
+   * @param name The name of the patch.
+   * @param device The device model of the folder.
+   * @param folder The root of the subtree to store.
+   * @return The new library entry.
+   * @exception IOException If writing the library fails.
+   */
+  public synchronized Entry store(final String name, final Device device,
+                                  final FolderNode folder)
+    throws IOException
+  {
+    if (name == null) {
+      throw new NullPointerException("name");
+    }
+    final List<FolderNode> folders = new ArrayList<FolderNode>();
+    final long structure =
+      collectFolders(folder, folders, Fnv1aHash.OFFSET_BASIS);
+    final MessageDigest digest = createDigest();
+    final ChunkId[] chunkIds = new ChunkId[folders.size()];
+    final HashMap<ChunkId, ByteBuffer> newChunks =
+      new HashMap<ChunkId, ByteBuffer>();
+    int newChunksSize = 0;
+    for (int i = 0; i < chunkIds.length; i++) {
+      final ByteBuffer chunk = createChunk(folders.get(i));
+      final ChunkId chunkId = getChunkId(digest, chunk);
+      chunkIds[i] = chunkId;
+      if (!chunkOffsets.containsKey(chunkId) &&
+          !newChunks.containsKey(chunkId)) {
+        newChunks.put(chunkId, chunk);
+        newChunksSize += chunk.remaining();
+      }
+    }
+    if (!newChunks.isEmpty()) {
+      final long offset = chunks.size();
+      final ByteBuffer buffer = ByteBuffer.allocate(newChunksSize);
+      final HashMap<ChunkId, Long> newOffsets = new HashMap<ChunkId, Long>();
+      for (final java.util.Map.Entry<ChunkId, ByteBuffer> newChunk :
+             newChunks.entrySet()) {
+        newOffsets.put(newChunk.getKey(), offset + buffer.position());
+        buffer.put(newChunk.getValue());
+      }
+      buffer.flip();
+      long position = offset;
+      while (buffer.hasRemaining()) {
+        position += chunks.write(buffer, position);
+      }
+      chunks.force(false);
+      chunkOffsets.putAll(newOffsets);
+    }
+    final Entry entry =
+      new Entry(name, device.getName(), String.valueOf(folder.getLabel()),
+                System.currentTimeMillis(), structure, chunkIds);
+    final List<Entry> previousEntries = new ArrayList<Entry>(entries);
+    for (int i = entries.size() - 1; i >= 0; i--) {
+      final Entry other = entries.get(i);
+      if (other.name.equals(name) &&
+          other.deviceName.equals(entry.deviceName)) {
+        entries.remove(i);
+      }
+    }
+    entries.add(entry);
+    try {
+      writeIndex();
+    } catch (final IOException e) {
+      entries.clear();
+      entries.addAll(previousEntries);
+      throw e;
+    }
+    return entry;
+  }
+
+  /**
+   * Removes the specified patch from the library.
+   * @exception IOException If writing the index fails.
+   */
+  public synchronized void remove(final Entry entry) throws IOException
+  {
+    final int index = entries.indexOf(entry);
+    if (index < 0) {
+      return;
+    }
+    entries.remove(index);
+    try {
+      writeIndex();
+    } catch (final IOException e) {
+      entries.add(index, entry);
+      throw e;
+    }
+  }
+
+  /**
+   * Applies the specified patch to the specified folder.  All chunks
+   * of the patch are read before any value is assigned, such that
+   * the map remains unmodified if reading fails.  Values are copied
+   * into the data nodes block by block within a single change
+   * transaction, without notifying any data node change listeners;
+   * the affected values are marked as changed in the sync state, and
+   * the changed values are published to the tree model and the map
+   * change listeners at once.
+   * @param entry The patch to apply.
+   * @param device The device model of the folder.
+   * @param folder The root of the subtree to overwrite.
+   * @exception IOException If the patch is not applicable to the
+   *    folder or reading the chunks fails.
+   */
+  public synchronized void apply(final Entry entry, final Device device,
+                                 final FolderNode folder)
+    throws IOException
+  {
+    final List<FolderNode> folders = new ArrayList<FolderNode>();
+    final long structure =
+      collectFolders(folder, folders, Fnv1aHash.OFFSET_BASIS);
+    if (!entry.deviceName.equals(device.getName()) ||
+        (entry.structure != structure) ||
+        (entry.chunkIds.length != folders.size())) {
+      throw new IOException("patch " + entry.name + " does not fit " +
+                            folder.getLabel());
+    }
+    final int[][] values = new int[folders.size()][];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = readChunk(entry.chunkIds[i],
+                            getDataNodeCount(folders.get(i)));
+    }
+    final SyncState syncState = device.getSyncState();
+    final TreeNode root = folder.getRoot();
+    final AbstractDevice.MapRoot mapRoot =
+      root instanceof AbstractDevice.MapRoot ?
+      (AbstractDevice.MapRoot)root : null;
+    if (mapRoot != null) {
+      mapRoot.beginChanges();
+    }
+    try {
+      for (int i = 0; i < values.length; i++) {
+        final FolderNode chunkFolder = folders.get(i);
+        final int[] chunkValues = values[i];
+        int valueIndex = 0;
+        for (int j = 0; j < chunkFolder.getChildCount(); j++) {
+          final Object child = chunkFolder.getChildAt(j);
+          if (child instanceof DataNode) {
+            final DataNode node = (DataNode)child;
+            node.restoreNumericalValue(chunkValues[valueIndex++]);
+            if (syncState != null) {
+              syncState.markChanged(node);
+            }
+          }
+        }
+      }
+    } finally {
+      if (mapRoot != null) {
+        mapRoot.commitChanges();
+      }
+    }
+  }
+
+  private int[] readChunk(final ChunkId chunkId, final int count)
+    throws IOException
+  {
+    final Long offset = chunkOffsets.get(chunkId);
+    if (offset == null) {
+      throw new IOException("patch library corrupt: missing chunk");
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate(4 + 4 * count);
+    long position = offset;
+    while (buffer.hasRemaining()) {
+      final int bytesRead = chunks.read(buffer, position);
+      if (bytesRead < 0) {
+        throw new IOException("patch library corrupt: truncated chunk");
+      }
+      position += bytesRead;
+    }
+    buffer.flip();
+    if (buffer.getInt() != count) {
+      throw new IOException("patch library corrupt: chunk size mismatch");
+    }
+    final int[] values = new int[count];
+    buffer.asIntBuffer().get(values);
+    return values;
+  }
+
+  private static void putString(final ByteBuffer buffer, final byte[] bytes)
+  {
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+  }
+
+  private static String getString(final ByteBuffer buffer) throws IOException
+  {
+    final int length = buffer.getInt();
+    if ((length < 0) || (length > buffer.remaining())) {
+      throw new IOException("patch library index corrupt");
+    }
+    final byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private void writeIndex() throws IOException
+  {
+    final List<byte[][]> strings = new ArrayList<byte[][]>();
+    int size = MAGIC.length + 4 + 4 + 24 * chunkOffsets.size() + 4;
+    for (final Entry entry : entries) {
+      final byte[][] entryStrings = new byte[][] {
+        entry.name.getBytes(StandardCharsets.UTF_8),
+        entry.deviceName.getBytes(StandardCharsets.UTF_8),
+        entry.folderLabel.getBytes(StandardCharsets.UTF_8)
+      };
+      strings.add(entryStrings);
+      for (final byte[] bytes : entryStrings) {
+        size += 4 + bytes.length;
+      }
+      size += 8 + 8 + 4 + 16 * entry.chunkIds.length;
+    }
+    final ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.put(MAGIC);
+    buffer.putInt(VERSION);
+    buffer.putInt(chunkOffsets.size());
+    for (final java.util.Map.Entry<ChunkId, Long> chunkOffset :
+           chunkOffsets.entrySet()) {
+      buffer.putLong(chunkOffset.getKey().high);
+      buffer.putLong(chunkOffset.getKey().low);
+      buffer.putLong(chunkOffset.getValue());
+    }
+    buffer.putInt(entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      final Entry entry = entries.get(i);
+      for (final byte[] bytes : strings.get(i)) {
+        putString(buffer, bytes);
+      }
+      buffer.putLong(entry.creationTime);
+      buffer.putLong(entry.structure);
+      buffer.putInt(entry.chunkIds.length);
+      for (final ChunkId chunkId : entry.chunkIds) {
+        buffer.putLong(chunkId.high);
+        buffer.putLong(chunkId.low);
+      }
+    }
+    buffer.flip();
+    final File tmpFile = new File(directory, INDEX_TMP_FILE_NAME);
+    try (final FileChannel channel =
+         FileChannel.open(tmpFile.toPath(),
+                          StandardOpenOption.WRITE,
+                          StandardOpenOption.CREATE,
+                          StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(false);
+    }
+    Files.move(tmpFile.toPath(),
+               new File(directory, INDEX_FILE_NAME).toPath(),
+               StandardCopyOption.REPLACE_EXISTING,
+               StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void readIndex(final File indexFile) throws IOException
+  {
+    final ByteBuffer buffer;
+    try (final FileChannel channel =
+         FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("patch library index too large");
+      }
+      buffer = ByteBuffer.allocate((int)channel.size());
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          throw new IOException("unexpected end of patch library index");
+        }
+      }
+    }
+    buffer.flip();
+    try {
+      final byte[] magic = new byte[MAGIC.length];
+      buffer.get(magic);
+      if (!ByteBuffer.wrap(magic).equals(ByteBuffer.wrap(MAGIC))) {
+        throw new IOException("not a patch library index: " + indexFile);
+      }
+      final int version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IOException("unsupported patch library version: " +
+                              version);
+      }
+      final long chunksSize = chunks.size();
+      final int chunkCount = buffer.getInt();
+      for (int i = 0; i < chunkCount; i++) {
+        final ChunkId chunkId = new ChunkId(buffer.getLong(), buffer.getLong());
+        final long offset = buffer.getLong();
+        if ((offset < 0) || (offset >= chunksSize)) {
+          throw new IOException("patch library corrupt: chunk offset " +
+                                "out of range");
+        }
+        chunkOffsets.put(chunkId, offset);
+      }
+      final int entryCount = buffer.getInt();
+      for (int i = 0; i < entryCount; i++) {
+        final String name = getString(buffer);
+        final String deviceName = getString(buffer);
+        final String folderLabel = getString(buffer);
+        final long creationTime = buffer.getLong();
+        final long structure = buffer.getLong();
+        final int entryChunkCount = buffer.getInt();
+        if ((entryChunkCount < 0) ||
+            (entryChunkCount > buffer.remaining() / 16)) {
+          throw new IOException("patch library index corrupt");
+        }
+        final ChunkId[] chunkIds = new ChunkId[entryChunkCount];
+        for (int j = 0; j < entryChunkCount; j++) {
+          chunkIds[j] = new ChunkId(buffer.getLong(), buffer.getLong());
+        }
+        entries.add(new Entry(name, deviceName, folderLabel, creationTime,
+                              structure, chunkIds));
+      }
+    } catch (final BufferUnderflowException e) {
+      throw new IOException("patch library index corrupt");
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -0,0 +1,130 @@
+/*
+ * @(#)SelectableValues.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import org.soundpaint.sysexedit.gui.JValue;
+
+/**
+ * The values that a user may select from when editing a data node,
+ * in the order of ascending numerical value.  The values are not
+ * stored, but enumerated on access from the sparse type of the value
+ * object.  Hence, a single immutable instance of selectable values
+ * is shared among the editors of all data nodes of the same value
+ * object, and neither creating it nor opening an editor depends on
+ * the size of the domain.  Each editor keeps its own selection.
+ */
+public class SelectableValues
+{
+  private final Value value;
+  private final SparseType sparseType;
+
+  private SelectableValues()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  public SelectableValues(final Value value, final SparseType sparseType)
+  {
+    if (value == null) {
+      throw new NullPointerException("value");
+    }
+    if (sparseType == null) {
+      throw new NullPointerException("sparseType");
+    }
+    this.value = value;
+    this.sparseType = sparseType;
+  }
+
+  public Value getValue()
+  {
+    return value;
+  }
+
+  /**
+   * Returns the number of selectable values.  Values beyond
+   * Integer.MAX_VALUE are not selectable.
+   * @return The number of selectable values.
+   */
+  public int getSize()
+  {
+    return (int)Math.min(sparseType.getValueCount(), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Returns the selectable value at the specified position.  Each
+   * call creates a new, but equal JValue.
+   * @param index The position of the selectable value.
+   * @return The selectable value.
+   * @exception IndexOutOfBoundsException If index is out of range.
+   */
+  public JValue getElementAt(final int index)
+  {
+    return new JValue(value, sparseType.getValueAt(index));
+  }
+
+  /**
+   * Returns the position of the specified numerical value.
+   * @param numericalValue The numerical value.
+   * @return The position of the numerical value, or -1, if it is
+   *    not selectable.
+   */
+  public int indexOf(final int numericalValue)
+  {
+    final long index = sparseType.indexOfValue(numericalValue);
+    return index < Integer.MAX_VALUE ? (int)index : -1;
+  }
+
+  /**
+   * Returns the position of the selectable value with the specified
+   * display value, resolved through the sparse type rather than by
+   * enumerating the selectable values.
+   * @param displayValue The display value.
+   * @return The position of the lowermost selectable value with the
+   *    specified display value, or -1, if there is no such value.
+   */
+  public int indexOfDisplayValue(final String displayValue)
+  {
+    final Integer numericalValue = sparseType.valueOfDisplayValue(displayValue);
+    return numericalValue != null ? indexOf(numericalValue) : -1;
+  }
+
+  /**
+   * Returns the position of the specified selectable value.
+   * @param selectableValue The selectable value.
+   * @return The position of the selectable value, or -1, if it does
+   *    not belong to this value object or is not selectable.
+   */
+  public int indexOf(final JValue selectableValue)
+  {
+    if ((selectableValue == null) ||
+        (selectableValue.getValueType() != value)) {
+      return -1;
+    }
+    return indexOf(selectableValue.getSystemValue());
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
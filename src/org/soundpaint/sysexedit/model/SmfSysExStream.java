@@ -0,0 +1,590 @@
+/*
+ * @(#)SmfSysExStream.java 1.00 18/07/24
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Extracts SysEx messages from a Standard MIDI File (SMF) and
+ * provides them as a stream of MIDI bytes, as expected by
+ * Device.bulkRead().  Each extracted message is delivered as a
+ * complete SysEx message, i.e. starting with 0xF0 and (for well-formed
+ * files) ending with 0xF7.
+ *
+ * The file is never loaded into memory as a whole.  Instead, after
+ * scanning the chunk headers, a cursor with a small buffer is kept
+ * for each track chunk, and the tracks are merged on the fly in
+ * order of increasing tick, such that SysEx messages of all tracks
+ * are delivered in chronological order.  Messages of the same tick
+ * are delivered in track order.  Hence, for any address written
+ * multiple times, the latest message wins, and after reading the
+ * whole stream, the map reflects the state of the device at the end
+ * locator.
+ *
+ * Only SysEx messages of the specified manufacturer with a tick in
+ * the range between the start locator (inclusive) and the end
+ * locator (exclusive) are extracted.  SysEx messages that are split
+ * into multiple packets (an F0 event followed by F7 continuation
+ * events) are reassembled, even if the continuation events are
+ * located beyond the end locator.  F7 escape events that do not
+ * continue a SysEx message, as well as all channel and meta events,
+ * are skipped.
+ */
+public class SmfSysExStream extends InputStream
+{
+  private static final int CHUNK_TYPE_MTHD = 0x4d546864; // "MThd"
+  private static final int CHUNK_TYPE_MTRK = 0x4d54726b; // "MTrk"
+  private static final int CHUNK_HEADER_SIZE = 8;
+  private static final int MIN_HEADER_LENGTH = 6;
+  private static final int TRACK_BUFFER_SIZE = 4096;
+  private static final int STATUS_SYSEX = 0xf0;
+  private static final int STATUS_SYSEX_ESCAPE = 0xf7;
+  private static final int STATUS_META = 0xff;
+  private static final int META_END_OF_TRACK = 0x2f;
+
+  /**
+   * Value for the end locator to extract all SysEx messages up to
+   * the end of the file.
+   */
+  public static final long END_OF_FILE = -1;
+
+  private final FileChannel channel;
+  private final int manufacturerId;
+  private final long startTick;
+  private final long endTick;
+  private final int format;
+  private final int division;
+  private final TrackCursor[] cursors;
+
+  /** The track whose pending event is currently being delivered. */
+  private TrackCursor current;
+
+  /** The status byte still to be delivered, or -1 for none. */
+  private int pendingStatus;
+
+  /** The track of the most recent unterminated SysEx message. */
+  private TrackCursor continuing;
+
+  private SmfSysExStream()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Opens the specified Standard MIDI File for extracting SysEx
+   * messages.
+   * @param file The MIDI file to read.
+   * @param manufacturerId The manufacturer ID of the SysEx messages
+   *    to extract.
+   * @param startTick The tick of the start locator.  SysEx messages
+   *    before this tick are skipped.
+   * @param endTick The tick of the end locator.  SysEx messages at or
+   *    after this tick are skipped.  END_OF_FILE for no limit.
+   * @exception IOException If the file can not be opened or is not
+   *    a Standard MIDI File.
+   */
+  public SmfSysExStream(final File file, final byte manufacturerId,
+                        final long startTick, final long endTick)
+    throws IOException
+  {
+    if (file == null) {
+      throw new NullPointerException("file");
+    }
+    if (startTick < 0) {
+      throw new IllegalArgumentException("startTick < 0");
+    }
+    if ((endTick != END_OF_FILE) && (endTick < startTick)) {
+      throw new IllegalArgumentException("endTick < startTick");
+    }
+    this.manufacturerId = manufacturerId & 0x7f;
+    this.startTick = startTick;
+    this.endTick = endTick;
+    channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      final ByteBuffer header = readChunkHeader(0);
+      if ((header == null) || (header.getInt() != CHUNK_TYPE_MTHD)) {
+        throw new IOException("not a Standard MIDI File: " + file);
+      }
+      final long headerLength = header.getInt() & 0xffffffffL;
+      if (headerLength < MIN_HEADER_LENGTH) {
+        throw new IOException("invalid MIDI file header length: " +
+                              headerLength);
+      }
+      final ByteBuffer headerData = ByteBuffer.allocate(MIN_HEADER_LENGTH);
+      readFully(headerData, CHUNK_HEADER_SIZE);
+      headerData.flip();
+      format = headerData.getShort() & 0xffff;
+      headerData.getShort(); // number of tracks; we count them ourselves
+      division = headerData.getShort() & 0xffff;
+      cursors = scanTrackChunks(CHUNK_HEADER_SIZE + headerLength);
+      for (final TrackCursor cursor : cursors) {
+        cursor.advance();
+      }
+    } catch (final IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    current = null;
+    pendingStatus = -1;
+    continuing = null;
+  }
+
+  /**
+   * Returns true, if the specified file starts with the header chunk
+   * of a Standard MIDI File.
+   * @param file The file to check.
+   * @return True, if the file appears to be a Standard MIDI File.
+   * @exception IOException If the file can not be read.
+   */
+  public static boolean isStandardMidiFile(final File file)
+    throws IOException
+  {
+    try (final FileChannel channel =
+         FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      final ByteBuffer chunkType = ByteBuffer.allocate(4);
+      while (chunkType.hasRemaining()) {
+        if (channel.read(chunkType) < 0) {
+          return false;
+        }
+      }
+      chunkType.flip();
+      return chunkType.getInt() == CHUNK_TYPE_MTHD;
+    }
+  }
+
+  private void readFully(final ByteBuffer buffer, final long position)
+    throws IOException
+  {
+    long filePosition = position;
+    while (buffer.hasRemaining()) {
+      final int count = channel.read(buffer, filePosition);
+      if (count < 0) {
+        throw new IOException("unexpected end of MIDI file");
+      }
+      filePosition += count;
+    }
+  }
+
+  /**
+   * Reads the chunk header at the specified file position.
+   * @return The chunk header, or null, if the position is at the end
+   *    of the file.
+   */
+  private ByteBuffer readChunkHeader(final long position) throws IOException
+  {
+    if (position >= channel.size()) {
+      return null;
+    }
+    final ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+    readFully(header, position);
+    header.flip();
+    return header;
+  }
+
+  /**
+   * Scans the headers of all chunks following the header chunk and
+   * creates a cursor for each track chunk.  Chunks of unknown type
+   * are skipped, as required by the SMF specification.
+   */
+  private TrackCursor[] scanTrackChunks(final long firstChunkPosition)
+    throws IOException
+  {
+    final List<TrackCursor> trackCursors = new ArrayList<TrackCursor>();
+    final long fileSize = channel.size();
+    long position = firstChunkPosition;
+    ByteBuffer header;
+    while ((header = readChunkHeader(position)) != null) {
+      final int chunkType = header.getInt();
+      final long chunkLength = header.getInt() & 0xffffffffL;
+      final long dataPosition = position + CHUNK_HEADER_SIZE;
+      if (dataPosition + chunkLength > fileSize) {
+        throw new IOException("truncated chunk at file position " + position);
+      }
+      if (chunkType == CHUNK_TYPE_MTRK) {
+        trackCursors.add(new TrackCursor(trackCursors.size(), dataPosition,
+                                         dataPosition + chunkLength));
+      }
+      position = dataPosition + chunkLength;
+    }
+    return trackCursors.toArray(new TrackCursor[trackCursors.size()]);
+  }
+
+  /**
+   * Returns the format of the MIDI file as declared in its header
+   * chunk (0, 1 or 2).
+   */
+  public int getFormat()
+  {
+    return format;
+  }
+
+  /**
+   * Returns the number of track chunks actually found in the file.
+   */
+  public int getTrackCount()
+  {
+    return cursors.length;
+  }
+
+  /**
+   * Returns the division of the MIDI file as declared in its header
+   * chunk, i.e. the number of ticks per quarter note or, if bit 15
+   * is set, the SMPTE format and ticks per frame.
+   */
+  public int getDivision()
+  {
+    return division;
+  }
+
+  /**
+   * Reads the events of a single track chunk sequentially through a
+   * small buffer, stopping at each SysEx event to be extracted.
+   */
+  private class TrackCursor
+  {
+    private final int trackIndex;
+    private final long stopBefore;
+    private final ByteBuffer buffer;
+
+    /** File position of the next byte to be read into the buffer. */
+    private long filePosition;
+
+    private long tick;
+    private int runningStatus;
+
+    /** True, if the most recent SysEx message is unterminated. */
+    private boolean inSysEx;
+
+    /** True, if the most recent SysEx message is being skipped. */
+    private boolean skipping;
+
+    /** True, if there is a pending event to be delivered. */
+    private boolean hasEvent;
+    private long eventTick;
+    private int eventStatus;
+
+    /** Number of data bytes of the pending event not yet delivered. */
+    private long eventRemaining;
+
+    /** The first data byte of the pending event, or -1 for none. */
+    private int eventFirstByte;
+
+    private int lastDataByte;
+
+    private TrackCursor(final int trackIndex,
+                        final long start, final long stopBefore)
+    {
+      this.trackIndex = trackIndex;
+      this.stopBefore = stopBefore;
+      buffer = ByteBuffer.allocate(TRACK_BUFFER_SIZE);
+      buffer.limit(0);
+      filePosition = start;
+      tick = 0;
+      runningStatus = 0;
+      inSysEx = false;
+      skipping = false;
+      hasEvent = false;
+    }
+
+    private boolean fillBuffer() throws IOException
+    {
+      if (filePosition >= stopBefore) {
+        return false;
+      }
+      buffer.clear();
+      final long available = stopBefore - filePosition;
+      if (available < buffer.capacity()) {
+        buffer.limit((int)available);
+      }
+      readFully(buffer, filePosition);
+      filePosition += buffer.position();
+      buffer.flip();
+      return true;
+    }
+
+    private IOException error(final String message)
+    {
+      return new IOException("track " + trackIndex + ", tick " + tick +
+                             ": " + message);
+    }
+
+    private int readByte() throws IOException
+    {
+      if (!buffer.hasRemaining() && !fillBuffer()) {
+        throw error("unexpected end of track");
+      }
+      return buffer.get() & 0xff;
+    }
+
+    private long readVariableLength() throws IOException
+    {
+      long value = 0;
+      for (int i = 0; i < 4; i++) {
+        final int data = readByte();
+        value = (value << 7) | (data & 0x7f);
+        if ((data & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw error("variable length quantity exceeds 4 bytes");
+    }
+
+    private void skip(final long count) throws IOException
+    {
+      long remaining = count;
+      while (remaining > 0) {
+        if (!buffer.hasRemaining() && !fillBuffer()) {
+          throw error("unexpected end of track");
+        }
+        final int chunk = (int)Math.min(remaining, buffer.remaining());
+        buffer.position(buffer.position() + chunk);
+        remaining -= chunk;
+      }
+    }
+
+    /**
+     * Skips a SysEx packet of the specified length, keeping track of
+     * whether the SysEx message continues in subsequent packets.
+     */
+    private void skipSysExPacket(final long length) throws IOException
+    {
+      if (length > 0) {
+        skip(length - 1);
+        inSysEx = readByte() != STATUS_SYSEX_ESCAPE;
+      }
+    }
+
+    private boolean isEndOfTrack()
+    {
+      return !buffer.hasRemaining() && (filePosition >= stopBefore);
+    }
+
+    /**
+     * Reads ahead to the next event of this track to be extracted.
+     * If there is no such event, hasEvent is left false.
+     */
+    private void advance() throws IOException
+    {
+      hasEvent = false;
+      while (!isEndOfTrack()) {
+        tick += readVariableLength();
+        final int status = readByte();
+        if (status < 0x80) {
+          if (runningStatus == 0) {
+            throw error("missing status byte");
+          }
+          skip(getChannelDataLength(runningStatus) - 1);
+          continue;
+        }
+        if (status == STATUS_META) {
+          runningStatus = 0;
+          final int type = readByte();
+          final long length = readVariableLength();
+          if (type == META_END_OF_TRACK) {
+            return;
+          }
+          skip(length);
+        } else if (status == STATUS_SYSEX) {
+          runningStatus = 0;
+          final long length = readVariableLength();
+          if ((tick < startTick) ||
+              ((endTick != END_OF_FILE) && (tick >= endTick)) ||
+              (length == 0)) {
+            skipping = true;
+            inSysEx = length == 0;
+            skipSysExPacket(length);
+            continue;
+          }
+          final int firstByte = readByte();
+          if (firstByte != manufacturerId) {
+            skipping = true;
+            inSysEx = firstByte != STATUS_SYSEX_ESCAPE;
+            skipSysExPacket(length - 1);
+            continue;
+          }
+          skipping = false;
+          setEvent(STATUS_SYSEX, firstByte, length - 1);
+          return;
+        } else if (status == STATUS_SYSEX_ESCAPE) {
+          runningStatus = 0;
+          final long length = readVariableLength();
+          if (!inSysEx || skipping || (length == 0)) {
+            // escaped MIDI bytes or continuation of skipped message
+            skipSysExPacket(length);
+            continue;
+          }
+          setEvent(STATUS_SYSEX_ESCAPE, -1, length);
+          return;
+        } else if (status >= 0xf0) {
+          throw error("invalid status byte 0x" + Integer.toHexString(status));
+        } else {
+          runningStatus = status;
+          skip(getChannelDataLength(status));
+        }
+      }
+    }
+
+    private void setEvent(final int status, final int firstByte,
+                          final long remaining)
+    {
+      hasEvent = true;
+      eventTick = tick;
+      eventStatus = status;
+      eventFirstByte = firstByte;
+      eventRemaining = remaining;
+      lastDataByte = firstByte;
+    }
+
+    private boolean isContinuation()
+    {
+      return hasEvent && (eventStatus == STATUS_SYSEX_ESCAPE);
+    }
+
+    /**
+     * Copies data bytes of the pending event into the specified
+     * array.
+     * @return The number of bytes copied, or 0, if the event has
+     *    been completely delivered.
+     */
+    private int readData(final byte[] b, final int off, final int len)
+      throws IOException
+    {
+      if (eventFirstByte >= 0) {
+        b[off] = (byte)eventFirstByte;
+        eventFirstByte = -1;
+        return 1;
+      }
+      if (eventRemaining == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining() && !fillBuffer()) {
+        throw error("unexpected end of track");
+      }
+      final int count =
+        (int)Math.min(Math.min(eventRemaining, buffer.remaining()), len);
+      buffer.get(b, off, count);
+      eventRemaining -= count;
+      lastDataByte = b[off + count - 1] & 0xff;
+      return count;
+    }
+
+    /**
+     * Completes delivery of the pending event and reads ahead to the
+     * next one.
+     */
+    private void eventCompleted() throws IOException
+    {
+      inSysEx = lastDataByte != STATUS_SYSEX_ESCAPE;
+      advance();
+    }
+  }
+
+  private static int getChannelDataLength(final int status)
+  {
+    switch (status & 0xf0) {
+    case 0xc0:
+    case 0xd0:
+      return 1;
+    default:
+      return 2;
+    }
+  }
+
+  /**
+   * Selects the track whose pending event is to be delivered next.
+   * The continuation of an unterminated SysEx message takes
+   * precedence, such that packets of a message are never interleaved
+   * with other messages.
+   * @return The selected track, or null, if all tracks have been
+   *    exhausted.
+   */
+  private TrackCursor selectNext()
+  {
+    if ((continuing != null) && continuing.isContinuation()) {
+      return continuing;
+    }
+    TrackCursor next = null;
+    for (final TrackCursor cursor : cursors) {
+      if (cursor.hasEvent && !cursor.isContinuation() &&
+          ((next == null) || (cursor.eventTick < next.eventTick))) {
+        next = cursor;
+      }
+    }
+    return next;
+  }
+
+  public int read() throws IOException
+  {
+    final byte[] b = new byte[1];
+    return read(b, 0, 1) > 0 ? b[0] & 0xff : -1;
+  }
+
+  public int read(final byte[] b, final int off, final int len)
+    throws IOException
+  {
+    if (len == 0) {
+      return 0;
+    }
+    while (true) {
+      if (current == null) {
+        current = selectNext();
+        if (current == null) {
+          return -1;
+        }
+        if (current.eventStatus == STATUS_SYSEX) {
+          pendingStatus = STATUS_SYSEX;
+        }
+      }
+      if (pendingStatus >= 0) {
+        b[off] = (byte)pendingStatus;
+        pendingStatus = -1;
+        return 1;
+      }
+      final int count = current.readData(b, off, len);
+      if (count > 0) {
+        return count;
+      }
+      final TrackCursor completed = current;
+      current = null;
+      completed.eventCompleted();
+      continuing = completed.inSysEx ? completed : null;
+    }
+  }
+
+  public void close() throws IOException
+  {
+    channel.close();
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -20,8 +20,7 @@
 
 package org.soundpaint.sysexedit.model;
 
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.io.Serializable;
 import java.util.List;
 import java.util.TreeSet;
 import javax.swing.Icon;
@@ -46,9 +45,14 @@ import javax.swing.Icon;
  * values, while [0x8fff, 0x8000] equals the union of the two ranges
  * [0x8fff, 0xffffffff] and [0x0, 0x8000], that holds 32769 +
  * 4294930433 = 4294963202 values.
+ *
+ * A sparse type is frozen upon its first lookup of a value, i.e. no
+ * more value ranges can be added from then on.
  */
-public class SparseType
+public class SparseType implements Serializable
 {
+  private static final long serialVersionUID = 7439193973498436131L;
+
   /**
    * The key for an icon that is applicable as fallback for any kind
    * of data when no more specific icon is available.
@@ -74,11 +78,11 @@ public class SparseType
   private final TreeSet<ValueRange> valueRanges;
 
   /**
-   * Same as valueRanges, but with a different comparator for looking
-   * up a value range by a given numerical value, rather than for
-   * comparing different value ranges.
+   * Primitive copy of valueRanges for looking up a value range by a
+   * given numerical value.  Created upon the first lookup, which
+   * freezes this sparse type.
    */
-  private TreeSet<ValueRange> valueRangesByNumericalValue;
+  private transient volatile Lookup lookup;
 
   /**
    * The total number of valid values in this sparse type.
@@ -114,7 +118,7 @@ public class SparseType
     this.description = description;
     this.iconKey = iconKey;
     valueRanges = new TreeSet<ValueRange>();
-    valueRangesByNumericalValue = null;
+    lookup = null;
   }
 
   /**
@@ -256,12 +260,17 @@ public class SparseType
    * @exception NullPointerException If renderer equals null.
    * @exception IllegalArgumentException If the value range overlaps
    *    some already exisiting value range.
+   * @exception IllegalStateException If this sparse type is already
+   *    frozen.
    */
   public SparseType addValueRange(final String description,
                                   final int lowerBound, final int upperBound,
                                   final int displayOffset,
                                   final ValueRangeRenderer renderer)
   {
+    if (lookup != null) {
+      throw new IllegalStateException("sparse type already in use");
+    }
     final long unsigned_lb = signed_int_to_long(lowerBound);
     final long unsigned_ub = signed_int_to_long(upperBound);
     if ((lowerBound < 0) && (upperBound >= 0)) {
@@ -274,7 +283,6 @@ public class SparseType
       valueRanges.add(new ValueRange(description, unsigned_lb, unsigned_ub,
                                      displayOffset, renderer));
     }
-    valueRangesByNumericalValue = null;
     size += upperBound - lowerBound + 1;
     return this;
   }
@@ -308,58 +316,172 @@ public class SparseType
     return addSingleValue(value, new EnumRenderer(enumValue));
   }
 
-  private final static Comparator<ValueRange>
-    valueRangeContainmentComparator = new Comparator<ValueRange>() {
-        public int compare(final ValueRange r1, final ValueRange r2)
-        {
-          if ((r1.getLowerBound() <= r2.getLowerBound()) &&
-              (r1.getUpperBound() >= r2.getUpperBound())) {
-            // r1 encompasses r2
-            return 0;
-          }
-          if ((r2.getLowerBound() <= r1.getLowerBound()) &&
-              (r2.getUpperBound() >= r1.getUpperBound())) {
-            // r2 encompasses r1
-            return 0;
-          }
-          if (r1.getUpperBound() <= r2.getLowerBound()) {
-            // r1 comes before r2
-            return -1;
-          }
-          if (r2.getUpperBound() <= r1.getLowerBound()) {
-            // r2 comes before r1
-            return +1;
-          }
-          throw new ClassCastException("r1 / r2 overlap");
-        }
+  /**
+   * Sorted bounds of all value ranges of a sparse type in primitive
+   * arrays.  Looking up a value range by binary search over these
+   * arrays neither allocates any object nor requires any lock.
+   */
+  private static class Lookup
+  {
+    private final long[] lowerBounds;
+    private final long[] upperBounds;
+    private final ValueRange[] valueRanges;
+
+    /**
+     * For each value range, the number of values in all value ranges
+     * below it, i.e. the position of its lower bound in the ascending
+     * enumeration of all values.
+     */
+    private final long[] firstIndices;
+
+    private final long valueCount;
+
+    private Lookup()
+    {
+      throw new UnsupportedOperationException("unsupported constructor");
+    }
+
+    private Lookup(final TreeSet<ValueRange> valueRanges)
+    {
+      this.valueRanges = valueRanges.toArray(new ValueRange[0]);
+      lowerBounds = new long[this.valueRanges.length];
+      upperBounds = new long[this.valueRanges.length];
+      firstIndices = new long[this.valueRanges.length];
+      long valueCount = 0;
+      for (int i = 0; i < this.valueRanges.length; i++) {
+        lowerBounds[i] = this.valueRanges[i].getLowerBound();
+        upperBounds[i] = this.valueRanges[i].getUpperBound();
+        firstIndices[i] = valueCount;
+        valueCount += upperBounds[i] - lowerBounds[i] + 1;
+      }
+      this.valueCount = valueCount;
+    }
 
-        public boolean equals(final Object obj)
-        {
-          return obj == valueRangeContainmentComparator;
+    /**
+     * Returns the index of the value range that contains the
+     * specified value.  If there is no such value range, returns the
+     * index of the uppermost value range below the value or, if
+     * there is none either, the index of the lowermost value range.
+     * @param value The unsigned value to look up.
+     * @return The index of the value range, or -1, if there are no
+     *    value ranges at all.
+     */
+    private int indexOf(final long value)
+    {
+      int low = 0;
+      int high = lowerBounds.length - 1;
+      while (low <= high) {
+        final int middle = (low + high) >>> 1;
+        if (lowerBounds[middle] <= value) {
+          low = middle + 1;
+        } else {
+          high = middle - 1;
         }
-      };
+      }
+      if (high >= 0) {
+        return high;
+      }
+      return lowerBounds.length > 0 ? 0 : -1;
+    }
+  }
 
-  private ValueRange getValueRangeByNumericalValue(final int numericalValue)
+  /**
+   * Returns the number of values of this sparse type.
+   * @return The number of values.
+   */
+  public long getValueCount()
+  {
+    return getLookup().valueCount;
+  }
+
+  /**
+   * Returns the value at the specified position in the ascending
+   * enumeration of all values of this sparse type, i.e. the order of
+   * lowermost() and succ().
+   * @param index The position of the value.
+   * @return The numerical value.
+   * @exception IndexOutOfBoundsException If index is negative or not
+   *    less than the number of values.
+   */
+  public int getValueAt(final long index)
   {
-    if (valueRangesByNumericalValue == null) {
-      valueRangesByNumericalValue =
-        new TreeSet<ValueRange>(valueRangeContainmentComparator);
-      valueRangesByNumericalValue.addAll(valueRanges);
+    final Lookup lookup = getLookup();
+    if ((index < 0) || (index >= lookup.valueCount)) {
+      throw new IndexOutOfBoundsException("index: " + index);
     }
-    final ValueRange valueRange =
-      new ValueRange(numericalValue, numericalValue,
-                     IntegerRenderer.DEFAULT_RENDERER);
-    final ValueRange floor = valueRangesByNumericalValue.floor(valueRange);
-    if (floor != null) {
-      return floor;
+    int low = 0;
+    int high = lookup.firstIndices.length - 1;
+    while (low < high) {
+      final int middle = (low + high + 1) >>> 1;
+      if (lookup.firstIndices[middle] <= index) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
     }
-    final ValueRange ceiling = valueRangesByNumericalValue.ceiling(valueRange);
-    if (ceiling != null) {
-      return ceiling;
+    return (int)(lookup.lowerBounds[low] + index - lookup.firstIndices[low]);
+  }
+
+  /**
+   * Returns the position of the specified value in the ascending
+   * enumeration of all values of this sparse type.
+   * @param numericalValue The numerical value.
+   * @return The position of the value, or -1, if this sparse type
+   *    does not contain the value.
+   */
+  public long indexOfValue(final int numericalValue)
+  {
+    final Lookup lookup = getLookup();
+    final long value = signed_int_to_long(numericalValue);
+    final int index = lookup.indexOf(value);
+    if ((index < 0) ||
+        (value < lookup.lowerBounds[index]) ||
+        (value > lookup.upperBounds[index])) {
+      return -1;
+    }
+    return lookup.firstIndices[index] + value - lookup.lowerBounds[index];
+  }
+
+  /**
+   * Returns the lowermost value of this sparse type whose display
+   * value equals the specified string.  Each value range resolves
+   * the string through its renderer, such that the effort depends on
+   * the number of value ranges rather than on the number of values.
+   * @param displayValue The display value to look up.
+   * @return The numerical value or null, if no value of this sparse
+   *    type has the specified display value.
+   */
+  public Integer valueOfDisplayValue(final String displayValue)
+  {
+    if (displayValue == null) {
+      return null;
+    }
+    for (final ValueRange valueRange : getLookup().valueRanges) {
+      final Integer numericalValue =
+        valueRange.valueOfDisplayValue(displayValue);
+      if (numericalValue != null) {
+        return numericalValue;
+      }
     }
     return null;
   }
 
+  /**
+   * Returns the lookup of this sparse type, creating it upon first
+   * access.  Concurrent first accesses may create equivalent lookups
+   * each; since lookups are immutable, it does not matter which one
+   * wins.
+   */
+  private Lookup getLookup()
+  {
+    Lookup lookup = this.lookup;
+    if (lookup == null) {
+      lookup = new Lookup(valueRanges);
+      this.lookup = lookup;
+    }
+    return lookup;
+  }
+
   /**
    * Returns the minimally required bit size to code the sparse type.
    * @return The minimally required bit size in the range 0..32.
@@ -375,10 +497,15 @@ public class SparseType
    * @param numericalValue The numerical value to be checked.
    * @return True, if the value is in range.
    */
-  private synchronized boolean containsValue(final int numericalValue)
+  private boolean containsValue(final int numericalValue)
   {
-    final ValueRange valueRange = getValueRangeByNumericalValue(numericalValue);
-    return valueRange != null;
+    final Lookup lookup = getLookup();
+    final long value = signed_int_to_long(numericalValue);
+    final int index = lookup.indexOf(value);
+    return
+      (index >= 0) &&
+      (lookup.lowerBounds[index] <= value) &&
+      (value <= lookup.upperBounds[index]);
   }
 
   /**
@@ -427,15 +554,16 @@ public class SparseType
    */
   public Integer succ(final int numericalValue)
   {
-    final ValueRange valueRange = getValueRangeByNumericalValue(numericalValue);
-    if (valueRange == null)
+    final Lookup lookup = getLookup();
+    final long value = signed_int_to_long(numericalValue);
+    final int index = lookup.indexOf(value);
+    if (index < 0)
       return null;
-    if (numericalValue < valueRange.getUpperBound())
+    if (value < lookup.upperBounds[index])
       return numericalValue + 1;
-    final ValueRange nextValueRange = valueRanges.higher(valueRange);
-    if (nextValueRange == null)
+    if (index + 1 >= lookup.lowerBounds.length)
       return null;
-    return (int)nextValueRange.getLowerBound();
+    return (int)lookup.lowerBounds[index + 1];
   }
 
   /**
@@ -448,15 +576,16 @@ public class SparseType
    */
   public Integer pred(final int numericalValue)
   {
-    final ValueRange valueRange = getValueRangeByNumericalValue(numericalValue);
-    if (valueRange == null)
+    final Lookup lookup = getLookup();
+    final long value = signed_int_to_long(numericalValue);
+    final int index = lookup.indexOf(value);
+    if (index < 0)
       return null;
-    if (numericalValue > valueRange.getLowerBound())
+    if (value > lookup.lowerBounds[index])
       return numericalValue - 1;
-    final ValueRange previousValueRange = valueRanges.lower(valueRange);
-    if (previousValueRange == null)
+    if (index == 0)
       return null;
-    return (int)previousValueRange.getUpperBound();
+    return (int)lookup.upperBounds[index - 1];
   }
 
   /**
@@ -470,10 +599,11 @@ public class SparseType
    */
   public String getDisplayValue(final int numericalValue)
   {
-    final ValueRange valueRange = getValueRangeByNumericalValue(numericalValue);
-    if (valueRange == null)
+    final Lookup lookup = getLookup();
+    final int index = lookup.indexOf(signed_int_to_long(numericalValue));
+    if (index < 0)
       return null;
-    return valueRange.getDisplayValue(numericalValue);
+    return lookup.valueRanges[index].getDisplayValue(numericalValue);
   }
 
   /**
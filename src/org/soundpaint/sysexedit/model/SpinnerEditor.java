@@ -23,7 +23,6 @@ package org.soundpaint.sysexedit.model;
 import java.awt.event.KeyListener;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Vector;
 import javax.swing.JFormattedTextField;
 import javax.swing.JSpinner;
 import javax.swing.event.ChangeEvent;
@@ -48,7 +47,7 @@ public class SpinnerEditor extends JSpinner
     addChangeListener(this);
   }
 
-  public void setSelectableValues(final Vector<JValue> values)
+  public void setSelectableValues(final SelectableValues values)
   {
     model = new SpinnerStringModel(values);
     setModel(model);
@@ -75,17 +74,8 @@ public class SpinnerEditor extends JSpinner
     if (model == null) {
       throw new NullPointerException("no model set on spinner editor");
     }
-    int selectedIndex = -1;
-    if (numericalValue != null) {
-      for (int index = 0; index < model.getSize(); index++) {
-        final JValue value = model.getElementAt(index);
-        if (value.getSystemValue() == numericalValue) {
-          selectedIndex = index;
-          break;
-        }
-      }
-    }
-    setSelectedIndex(selectedIndex);
+    setSelectedIndex(numericalValue != null ?
+                     model.indexOf(numericalValue) : -1);
   }
 
   @Override
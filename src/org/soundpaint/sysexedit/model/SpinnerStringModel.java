@@ -22,7 +22,6 @@ package org.soundpaint.sysexedit.model;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Vector;
 import javax.swing.SpinnerModel;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -31,15 +30,14 @@ import org.soundpaint.sysexedit.gui.JValue;
 
 public class SpinnerStringModel implements SpinnerModel
 {
-  private final List<JValue> selectableValues;
+  private final SelectableValues selectableValues;
   private final List<ChangeListener> listeners;
   private final ChangeEvent changeEvent;
   private int index;
 
-  public SpinnerStringModel(final Vector<JValue> selectableValues)
+  public SpinnerStringModel(final SelectableValues selectableValues)
   {
-    this.selectableValues = new ArrayList<JValue>();
-    this.selectableValues.addAll(selectableValues);
+    this.selectableValues = selectableValues;
     listeners = new ArrayList<ChangeListener>();
     changeEvent = new ChangeEvent(this);
     index = -1;
@@ -47,35 +45,24 @@ public class SpinnerStringModel implements SpinnerModel
 
   public int getSize()
   {
-    return selectableValues.size();
+    return selectableValues.getSize();
   }
 
   public JValue getElementAt(final int index)
   {
-    return selectableValues.get(index);
+    return selectableValues.getElementAt(index);
   }
 
-  public void clear()
+  public int indexOf(final int numericalValue)
   {
-    while (selectableValues.size() > 0) {
-      selectableValues.remove(selectableValues.size() - 1);
-    }
-    index = -1;
-    fireStateChanged();
-  }
-
-  public void addSelectableValue(final JValue value)
-  {
-    index = 0;
-    selectableValues.add(value);
-    fireStateChanged();
+    return selectableValues.indexOf(numericalValue);
   }
 
   public void setIndex(final int index)
   {
-    if ((index < 0) || (index >= selectableValues.size())) {
+    if ((index < -1) || (index >= selectableValues.getSize())) {
       throw new IndexOutOfBoundsException("!(" + -1 + "<=" + index + "<" +
-                                          selectableValues.size());
+                                          selectableValues.getSize());
     }
     this.index = index;
     fireStateChanged();
@@ -86,7 +73,7 @@ public class SpinnerStringModel implements SpinnerModel
     if (index < 0) {
       return null;
     }
-    return selectableValues.get(index);
+    return selectableValues.getElementAt(index);
   }
 
   /**
@@ -95,16 +82,19 @@ public class SpinnerStringModel implements SpinnerModel
    * text field's string representation to the setValue() method of
    * this model (rather than the original JValue object).  To
    * compensate, we have to look up the index by string representation
-   * comparison rather than by object comparison.
+   * rather than by object comparison.  The string is resolved through
+   * the renderers of the value's sparse type, such that the lookup
+   * does not depend on the size of the domain.
    */
   private int indexOfString(final String displayValue)
   {
-    for (int index = 0; index < selectableValues.size(); index++) {
-      if (displayValue.equals(selectableValues.get(index).toString())) {
-        return index;
-      }
+    final JValue value = getValue();
+    if ((value != null) && displayValue.equals(value.toString())) {
+      // shortcut for the usual case of the text field just committing
+      // the display value of the current value
+      return index;
     }
-    return -1;
+    return selectableValues.indexOfDisplayValue(displayValue);
   }
 
   public void setValue(final Object value)
@@ -113,32 +103,47 @@ public class SpinnerStringModel implements SpinnerModel
       if (value instanceof String) {
         index = indexOfString((String)value);
       } else {
-        index = selectableValues.indexOf(value);
+        index = value instanceof JValue ?
+          selectableValues.indexOf((JValue)value) : -1;
       }
     }
     //fireStateChanged(); // already handled internally by JSpinner
   }
 
-  public JValue getNextValue()
+  /**
+   * Makes the specified numerical value the current value.
+   * @return The new current value, or null, if numericalValue is null
+   *    or not selectable.
+   */
+  private JValue select(final Integer numericalValue)
   {
-    if (index < selectableValues.size() - 1) {
-      index++;
-      fireStateChanged();
-      return selectableValues.get(index);
-      //return index;
+    if (numericalValue == null) {
+      return null;
     }
-    return null;
+    final int index = selectableValues.indexOf(numericalValue);
+    if (index < 0) {
+      return null;
+    }
+    this.index = index;
+    fireStateChanged();
+    return selectableValues.getElementAt(index);
+  }
+
+  public JValue getNextValue()
+  {
+    final Value value = selectableValues.getValue();
+    return select(index >= 0 ?
+                  value.succ(getValue().getSystemValue()) :
+                  value.lowermost());
   }
 
   public JValue getPreviousValue()
   {
-    if (index > 0) {
-      index--;
-      fireStateChanged();
-      return selectableValues.get(index);
-      //return index;
+    if (index < 0) {
+      return null;
     }
-    return null;
+    final Value value = selectableValues.getValue();
+    return select(value.pred(getValue().getSystemValue()));
   }
 
   public void addChangeListener(final ChangeListener listener)
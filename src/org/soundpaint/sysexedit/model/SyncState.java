@@ -0,0 +1,170 @@
+/*
+ * @(#)SyncState.java 1.00 18/07/22
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.util.BitSet;
+
+/**
+ * Keeps track of which data nodes of a map have changed since they
+ * have been last synchronized with the MIDI device, i.e. since their
+ * value has been last successfully dumped to or received from the
+ * device.  Data nodes are identified by their position in the
+ * address index, such that the state of the whole map fits into a
+ * single bit vector.
+ *
+ * Initially, the state of the device is unknown, and hence all data
+ * nodes are considered changed.
+ *
+ * All methods are thread-safe, since dumps are transmitted in the
+ * background while the user may continue editing.
+ */
+public class SyncState
+{
+  private final AddressIndex addressIndex;
+
+  /** Set bits mark positions of changed data nodes. */
+  private final BitSet changed;
+
+  private SyncState()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Creates a new sync state with all data nodes marked as changed.
+   * @param addressIndex The index of all data nodes to track.
+   */
+  public SyncState(final AddressIndex addressIndex)
+  {
+    if (addressIndex == null) {
+      throw new NullPointerException("addressIndex");
+    }
+    this.addressIndex = addressIndex;
+    changed = new BitSet(addressIndex.size());
+    changed.set(0, addressIndex.size());
+  }
+
+  /**
+   * Marks the specified data node as changed.
+   * @param node The data node whose value has changed.
+   */
+  public synchronized void markChanged(final DataNode node)
+  {
+    final int index = addressIndex.indexOf(node.getAddress());
+    if ((index >= 0) && (addressIndex.getNode(index) == node)) {
+      changed.set(index);
+    }
+  }
+
+  /**
+   * Marks all data nodes that overlap the specified address range as
+   * changed.
+   * @param start The first bit address of the range.
+   * @param stopBefore The bit address following the range.
+   */
+  public synchronized void markChanged(final long start,
+                                       final long stopBefore)
+  {
+    final int fromIndex = addressIndex.firstIndexAtOrAfter(start);
+    int toIndex = fromIndex;
+    while ((toIndex < addressIndex.size()) &&
+           (addressIndex.getAddress(toIndex) < stopBefore)) {
+      toIndex++;
+    }
+    if ((fromIndex > 0) &&
+        (addressIndex.getStopBeforeAddress(fromIndex - 1) > start)) {
+      changed.set(fromIndex - 1);
+    }
+    changed.set(fromIndex, toIndex);
+  }
+
+  /**
+   * Marks all data nodes that are completely contained in the
+   * specified address range as synchronized with the device.  Data
+   * nodes that only partially overlap the range remain unchanged.
+   * @param start The first bit address of the range.
+   * @param stopBefore The bit address following the range.
+   */
+  public synchronized void markSynced(final long start,
+                                      final long stopBefore)
+  {
+    final int fromIndex = addressIndex.firstIndexAtOrAfter(start);
+    int toIndex = fromIndex;
+    while ((toIndex < addressIndex.size()) &&
+           (addressIndex.getStopBeforeAddress(toIndex) <= stopBefore)) {
+      toIndex++;
+    }
+    changed.clear(fromIndex, toIndex);
+  }
+
+  /**
+   * Marks all data nodes as changed, e.g. when the device may have
+   * been reset or replaced.
+   */
+  public synchronized void markAllChanged()
+  {
+    changed.set(0, addressIndex.size());
+  }
+
+  /**
+   * Returns true, if the specified data node has changed since it
+   * has been last synchronized.
+   * @param node The data node to check.
+   * @return True, if the node has changed or is not tracked at all.
+   */
+  public synchronized boolean isChanged(final DataNode node)
+  {
+    final int index = addressIndex.indexOf(node.getAddress());
+    if ((index < 0) || (addressIndex.getNode(index) != node)) {
+      return true;
+    }
+    return changed.get(index);
+  }
+
+  /**
+   * Returns true, if the data node at the specified position of the
+   * address index has changed since it has been last synchronized.
+   * Unlike isChanged(DataNode), this method does not require the
+   * data node to be created.
+   * @param index The position of the data node in the address index.
+   * @return True, if the node has changed.
+   */
+  public synchronized boolean isChanged(final int index)
+  {
+    return changed.get(index);
+  }
+
+  /**
+   * Returns the number of changed data nodes.
+   * @return The number of changed data nodes.
+   */
+  public synchronized int getChangedCount()
+  {
+    return changed.cardinality();
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -0,0 +1,173 @@
+/*
+ * @(#)SysExExport.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.swing.tree.TreeNode;
+
+/**
+ * Exports the values of the map of a device as a sequence of SysEx
+ * bulk dump messages into a stream, e.g. a file of raw SysEx
+ * messages, as opposed to sending them to the device itself.
+ * Encoding is left to Device.bulkDump().  Contiguous values are
+ * combined into as few messages as the device accepts.
+ *
+ * The map is walked via its address index, such that exporting
+ * creates neither nodes of lazy folders nor the tree component of
+ * the map.  Since the device does not see the exported values, the
+ * sync state is left unmodified.
+ */
+public class SysExExport
+{
+  private static final int BUFFER_SIZE = 0x1000;
+
+  /**
+   * The number of bits per byte of a bulk dump for devices without
+   * a dump plan, as conveyed by MIDI data bytes.
+   */
+  private static final int MIDI_DATA_BITS = 7;
+
+  private SysExExport()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  private static AbstractDevice.MapRoot getRoot(final Device device)
+    throws IOException
+  {
+    final TreeNode root = device.getMapRoot();
+    if (!(root instanceof AbstractDevice.MapRoot) ||
+        (((AbstractDevice.MapRoot)root).getAddressIndex() == null)) {
+      throw new IOException("map not yet built");
+    }
+    return (AbstractDevice.MapRoot)root;
+  }
+
+  /**
+   * Writes bulk dump messages for the values of the map of the
+   * specified device into the specified stream.  Each message is
+   * written completely, including the surrounding status bytes F0
+   * and F7.
+   * @param device The device whose map to export.
+   * @param deviceId The MIDI device ID.  Valid range is 0x00..0x7f.
+   * @param changesOnly If true, only values that have changed since
+   *    they have been last dumped to or received from the device are
+   *    exported.  Otherwise, all values are exported.
+   * @param out The stream to write the messages to.
+   * @return The number of messages written.
+   * @exception IOException If the map has not yet been built, the
+   *    device does not support bulk dumps, or writing to the stream
+   *    fails.
+   */
+  public static int exportSysEx(final Device device, final byte deviceId,
+                                final boolean changesOnly,
+                                final OutputStream out)
+    throws IOException
+  {
+    if (out == null) {
+      throw new NullPointerException("out");
+    }
+    final AddressIndex addressIndex = getRoot(device).getAddressIndex();
+    final SyncState syncState = changesOnly ? device.getSyncState() : null;
+    final DumpPlan dumpPlan =
+      device instanceof AbstractDevice ?
+      ((AbstractDevice)device).getDumpPlan() : null;
+    final int bitsPerByte =
+      dumpPlan != null ? dumpPlan.getBitsPerByte() : MIDI_DATA_BITS;
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    final int size = addressIndex.size();
+    int messageCount = 0;
+    long start = -1;
+    long stopBefore = -1;
+    for (int i = 0; i < size; i++) {
+      if ((syncState != null) && !syncState.isChanged(i)) {
+        continue; // in sync => skip
+      }
+      final long address = addressIndex.getAddress(i);
+      if (address != stopBefore) {
+        if (start >= 0) {
+          messageCount +=
+            writeBulkArea(device, deviceId, addressIndex, bitsPerByte,
+                          start, stopBefore, buffer, out);
+        }
+        start = address;
+      }
+      stopBefore = address + addressIndex.getBitSize(i);
+    }
+    if (start >= 0) {
+      messageCount +=
+        writeBulkArea(device, deviceId, addressIndex, bitsPerByte,
+                      start, stopBefore, buffer, out);
+    }
+    return messageCount;
+  }
+
+  /**
+   * Writes a contiguous area of memory, split into as many messages
+   * as needed for not exceeding the maximum bulk dump size of the
+   * device.  Messages are split only at boundaries between data
+   * nodes that fall on byte boundaries.
+   * @return The number of messages written.
+   */
+  private static int writeBulkArea(final Device device, final byte deviceId,
+                                   final AddressIndex addressIndex,
+                                   final int bitsPerByte,
+                                   final long start, final long stopBefore,
+                                   final byte[] buffer,
+                                   final OutputStream out)
+    throws IOException
+  {
+    final long maxBitSize = device.getMaxBulkDumpBitSize();
+    int messageCount = 0;
+    long messageStart = start;
+    while (messageStart < stopBefore) {
+      final long messageStopBefore =
+        stopBefore - messageStart > maxBitSize ?
+        addressIndex.getSplitAddress(messageStart, messageStart + maxBitSize,
+                                     bitsPerByte) :
+        stopBefore;
+      final InputStream bulkDump =
+        device.bulkDump(deviceId, messageStart, messageStopBefore);
+      if (bulkDump == null) {
+        throw new IOException("bulk dump not supported by device " +
+                              device.getName());
+      }
+      out.write(0xf0);
+      int count;
+      while ((count = bulkDump.read(buffer)) >= 0) {
+        out.write(buffer, 0, count);
+      }
+      out.write(0xf7);
+      messageCount++;
+      messageStart = messageStopBefore;
+    }
+    return messageCount;
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -0,0 +1,156 @@
+/*
+ * @(#)SysExImport.java 1.00 18/07/24
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.swing.tree.TreeNode;
+
+/**
+ * Imports SysEx messages from a file into the map of a device, as
+ * opposed to receiving them from the device itself.  Decoding is
+ * left to Device.bulkRead(); this class takes care of resolving
+ * collisions with values already present in the map and of keeping
+ * the sync state correct: since the device has not seen the
+ * imported values, any value changed by the import is marked as
+ * changed rather than synced.
+ *
+ * Beyond the map itself, memory consumption is constant, such that
+ * arbitrarily long streams can be imported.
+ */
+public class SysExImport
+{
+  private SysExImport()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  private static AbstractDevice.MapRoot getRoot(final Device device)
+    throws IOException
+  {
+    final TreeNode root = device.getMapRoot();
+    if (!(root instanceof AbstractDevice.MapRoot) ||
+        (((AbstractDevice.MapRoot)root).getAddressIndex() == null)) {
+      throw new IOException("map not yet built");
+    }
+    return (AbstractDevice.MapRoot)root;
+  }
+
+  /**
+   * Imports all SysEx messages of the specified stream into the map
+   * of the specified device.  Even if the stream turns out to be
+   * partially corrupt, collisions are resolved for all values that
+   * have been imported so far.  All changes are published at once
+   * after the import, as a single change transaction.
+   * @param device The device whose map to update.
+   * @param in The stream of SysEx messages to import.
+   * @param strategy How to resolve collisions with values that are
+   *    already present in the map.
+   * @exception IOException If reading from the stream fails or any
+   *    of the messages turns out to be corrupt.
+   */
+  public static void importSysEx(final Device device, final InputStream in,
+                                 final CollisionStrategy strategy)
+    throws IOException
+  {
+    if (strategy == null) {
+      throw new NullPointerException("strategy");
+    }
+    final AbstractDevice.MapRoot root = getRoot(device);
+    final AddressIndex addressIndex = root.getAddressIndex();
+    final SyncState syncState = device.getSyncState();
+    final int size = addressIndex.size();
+    final int[] previousValues = new int[size];
+    final boolean[] previouslyChanged = new boolean[size];
+    for (int i = 0; i < size; i++) {
+      previousValues[i] = addressIndex.getNumericalValue(i);
+      previouslyChanged[i] = (syncState == null) || syncState.isChanged(i);
+    }
+    root.beginChanges();
+    try {
+      device.bulkRead(in);
+    } finally {
+      try {
+        resolveCollisions(addressIndex, syncState, strategy,
+                          previousValues, previouslyChanged);
+      } finally {
+        root.commitChanges();
+      }
+    }
+  }
+
+  private static void resolveCollisions(final AddressIndex addressIndex,
+                                        final SyncState syncState,
+                                        final CollisionStrategy strategy,
+                                        final int[] previousValues,
+                                        final boolean[] previouslyChanged)
+  {
+    final int size = addressIndex.size();
+    for (int i = 0; i < size; i++) {
+      if (!addressIndex.isMaterialized(i)) {
+        // value not modified by the import; however, any message that
+        // has addressed it has marked it synced, although the device
+        // has never seen it
+        if ((syncState != null) &&
+            (previouslyChanged[i] ||
+             (addressIndex.getNumericalValue(i) != previousValues[i]))) {
+          syncState.markChanged(addressIndex.getAddress(i),
+                                addressIndex.getStopBeforeAddress(i));
+        }
+        continue;
+      }
+      final DataNode node = addressIndex.getNode(i);
+      if (keepsPreviousValue(strategy, node, previousValues[i])) {
+        node.setNumericalValue(previousValues[i]);
+      }
+      if (syncState != null) {
+        final long start = node.getAddress();
+        if (previouslyChanged[i] ||
+            (node.getNumericalValue() != previousValues[i])) {
+          syncState.markChanged(node);
+        } else {
+          syncState.markSynced(start, start + node.getBitSize());
+        }
+      }
+    }
+  }
+
+  private static boolean keepsPreviousValue(final CollisionStrategy strategy,
+                                            final DataNode node,
+                                            final int previousValue)
+  {
+    switch (strategy) {
+    case OVERWRITE:
+      return false;
+    case KEEP_NON_DEFAULT:
+      return previousValue != node.getDefaultValue();
+    default:
+      throw new IllegalStateException("unexpected strategy: " + strategy);
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -0,0 +1,316 @@
+/*
+ * @(#)SysExLibrary.java 1.00 18/07/25
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Random access view of a file of concatenated raw SysEx messages,
+ * such as a .syx library with many dumps.  The file is memory-mapped
+ * rather than read, and a single pass over the mapped buffer indexes
+ * the boundaries of all SysEx messages (F0 … F7) as well as the
+ * first header bytes of each message.  Afterwards, any message can be
+ * accessed as a read-only slice of the mapped buffer without copying
+ * and decoded straight into a map.
+ *
+ * Bytes outside of SysEx messages, as well as system real time bytes
+ * within them, are ignored.  A message that is interrupted by any
+ * other status byte or by the end of the file is indexed as being
+ * unterminated.
+ */
+public class SysExLibrary
+{
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int STATUS_SYSEX = 0xf0;
+  private static final int STATUS_END_OF_SYSEX = 0xf7;
+  private static final int HEADER_SIZE = 3;
+
+  private final MappedByteBuffer buffer;
+
+  /** Offset of the F0 status byte of each message. */
+  private int[] starts;
+
+  /**
+   * Offset following the last byte of each message, i.e. following
+   * the F7 status byte for terminated messages.
+   */
+  private int[] stops;
+
+  /**
+   * The three bytes following F0 of each message, with terminated
+   * messages flagged in bit 31.  For most manufacturers, these are
+   * the manufacturer ID, the device ID and the model ID.  Bytes
+   * beyond the end of a short message are 0.
+   */
+  private int[] headers;
+
+  private int count;
+
+  private SysExLibrary()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Memory-maps and indexes the specified file.
+   * @param file The file of raw SysEx messages.
+   * @exception IOException If the file can not be mapped.
+   */
+  public SysExLibrary(final File file) throws IOException
+  {
+    if (file == null) {
+      throw new NullPointerException("file");
+    }
+    try (final FileChannel channel =
+         FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("SysEx file too large: " + file);
+      }
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    starts = new int[INITIAL_CAPACITY];
+    stops = new int[INITIAL_CAPACITY];
+    headers = new int[INITIAL_CAPACITY];
+    count = 0;
+    index();
+  }
+
+  private void index()
+  {
+    final int limit = buffer.limit();
+    int start = -1;
+    int header = 0;
+    for (int pos = 0; pos < limit; pos++) {
+      final int data = buffer.get(pos) & 0xff;
+      if (data < 0x80) {
+        final int headerPos = pos - start - 1;
+        if ((start >= 0) && (headerPos < HEADER_SIZE)) {
+          header |= data << (8 * (HEADER_SIZE - 1 - headerPos));
+        }
+      } else if (data >= 0xf8) {
+        // real time messages may interleave at any time
+      } else {
+        if (start >= 0) {
+          if (data == STATUS_END_OF_SYSEX) {
+            add(start, pos + 1, header | 0x80000000);
+            start = -1;
+            continue;
+          }
+          add(start, pos, header); // unterminated message
+        }
+        if (data == STATUS_SYSEX) {
+          start = pos;
+          header = 0;
+        } else {
+          start = -1;
+        }
+      }
+    }
+    if (start >= 0) {
+      add(start, limit, header);
+    }
+  }
+
+  private void add(final int start, final int stop, final int header)
+  {
+    if (count == starts.length) {
+      final int capacity = 2 * count;
+      starts = Arrays.copyOf(starts, capacity);
+      stops = Arrays.copyOf(stops, capacity);
+      headers = Arrays.copyOf(headers, capacity);
+    }
+    starts[count] = start;
+    stops[count] = stop;
+    headers[count] = header;
+    count++;
+  }
+
+  /**
+   * Returns the number of SysEx messages in the library.
+   */
+  public int getMessageCount()
+  {
+    return count;
+  }
+
+  private void checkIndex(final int index)
+  {
+    if ((index < 0) || (index >= count)) {
+      throw new IndexOutOfBoundsException("message index: " + index);
+    }
+  }
+
+  /**
+   * Returns the specified message as a read-only view of the mapped
+   * file, including the F0 and (if present) F7 status bytes.
+   * @param index The index of the message, starting with 0.
+   * @return A buffer whose remaining bytes are the message.
+   */
+  public ByteBuffer getMessage(final int index)
+  {
+    checkIndex(index);
+    final ByteBuffer message = buffer.asReadOnlyBuffer();
+    message.limit(stops[index]);
+    message.position(starts[index]);
+    return message.slice();
+  }
+
+  /**
+   * Returns the length of the specified message in bytes.
+   */
+  public int getLength(final int index)
+  {
+    checkIndex(index);
+    return stops[index] - starts[index];
+  }
+
+  /**
+   * Returns true, if the specified message is terminated by F7.
+   */
+  public boolean isTerminated(final int index)
+  {
+    checkIndex(index);
+    return headers[index] < 0;
+  }
+
+  /**
+   * Returns the byte following F0 of the specified message, which
+   * usually is the manufacturer ID.
+   */
+  public int getManufacturerId(final int index)
+  {
+    checkIndex(index);
+    return (headers[index] >> 16) & 0x7f;
+  }
+
+  /**
+   * Returns the second byte following F0 of the specified message,
+   * which for most manufacturers carries the device ID.
+   */
+  public int getDeviceIdByte(final int index)
+  {
+    checkIndex(index);
+    return (headers[index] >> 8) & 0x7f;
+  }
+
+  /**
+   * Returns the third byte following F0 of the specified message,
+   * which for most manufacturers is the model ID.
+   */
+  public int getModelIdByte(final int index)
+  {
+    checkIndex(index);
+    return headers[index] & 0x7f;
+  }
+
+  /**
+   * Returns the address that the specified message writes to, as
+   * understood by the specified device.
+   * @param index The index of the message.
+   * @param device The device to interpret the message header.
+   * @return The bit address in the device's memory map, or -1, if
+   *    the message is not meant for the device.
+   * @see Device#getBulkDumpAddress
+   */
+  public long getAddress(final int index, final Device device)
+  {
+    if (getManufacturerId(index) != (device.getManufacturerId() & 0x7f)) {
+      return -1;
+    }
+    return device.getBulkDumpAddress(getMessage(index));
+  }
+
+  /**
+   * Returns a stream that delivers the specified messages in the
+   * specified order straight from the mapped file, e.g. for decoding
+   * them into a map via Device.bulkRead().
+   * @param indices The indices of the messages to deliver.
+   * @return A stream of the bytes of the messages.
+   */
+  public InputStream createInputStream(final int[] indices)
+  {
+    for (final int index : indices) {
+      checkIndex(index);
+    }
+    return new MessageStream(indices.clone());
+  }
+
+  private class MessageStream extends InputStream
+  {
+    private final int[] indices;
+    private int next;
+    private ByteBuffer message;
+
+    private MessageStream(final int[] indices)
+    {
+      this.indices = indices;
+      next = 0;
+      message = null;
+    }
+
+    /**
+     * Advances to the next message with remaining bytes.
+     * @return False, if all messages have been delivered.
+     */
+    private boolean ensureMessage()
+    {
+      while ((message == null) || !message.hasRemaining()) {
+        if (next >= indices.length) {
+          return false;
+        }
+        message = getMessage(indices[next++]);
+      }
+      return true;
+    }
+
+    public int read()
+    {
+      return ensureMessage() ? message.get() & 0xff : -1;
+    }
+
+    public int read(final byte[] b, final int off, final int len)
+    {
+      if (len == 0) {
+        return 0;
+      }
+      if (!ensureMessage()) {
+        return -1;
+      }
+      final int count = Math.min(len, message.remaining());
+      message.get(b, off, count);
+      return count;
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -0,0 +1,146 @@
+/*
+ * @(#)TransmitPacing.java 1.00 18/07/20
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.model;
+
+import java.io.Serializable;
+
+/**
+ * Immutable specification of how fast MIDI messages may be sent to a
+ * device.  Many devices, especially older ones, can not process
+ * SysEx data at the full speed of the MIDI wire and silently drop
+ * data if bulk dump messages follow too closely upon each other.
+ * Therefore, transmission is paced by limiting the rate of bytes per
+ * second and by inserting a gap after each message.
+ */
+public class TransmitPacing implements Serializable
+{
+  private static final long serialVersionUID = 409696253631029451L;
+
+  /**
+   * The transmission rate of a MIDI 1.0 wire: 31250 baud with 10 bits
+   * per byte (start bit, 8 data bits, stop bit).
+   */
+  public static final int MIDI_WIRE_BYTES_PER_SECOND = 3125;
+
+  /**
+   * No pacing at all.  Messages are sent as fast as possible.
+   */
+  public static final TransmitPacing UNLIMITED = new TransmitPacing(0, 0);
+
+  /**
+   * Pacing at the speed of the MIDI wire, without any additional gap
+   * between subsequent messages.
+   */
+  public static final TransmitPacing MIDI_WIRE =
+    new TransmitPacing(MIDI_WIRE_BYTES_PER_SECOND, 0);
+
+  private final int bytesPerSecond;
+  private final int messageGap;
+
+  private TransmitPacing()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Creates a new pacing specification.
+   * @param bytesPerSecond The maximum number of bytes to transmit per
+   *    second, or 0 for not limiting the rate.
+   * @param messageGap The number of milliseconds to wait after each
+   *    message before sending the next one.
+   * @exception IllegalArgumentException If any of the arguments is
+   *    negative.
+   */
+  public TransmitPacing(final int bytesPerSecond, final int messageGap)
+  {
+    if (bytesPerSecond < 0) {
+      throw new IllegalArgumentException("bytesPerSecond < 0");
+    }
+    if (messageGap < 0) {
+      throw new IllegalArgumentException("messageGap < 0");
+    }
+    this.bytesPerSecond = bytesPerSecond;
+    this.messageGap = messageGap;
+  }
+
+  /**
+   * Returns the maximum number of bytes to transmit per second.
+   * @return The maximum number of bytes to transmit per second, or 0,
+   *    if the rate is not limited.
+   */
+  public int getBytesPerSecond()
+  {
+    return bytesPerSecond;
+  }
+
+  /**
+   * Returns the gap to insert after each message.
+   * @return The gap in milliseconds.
+   */
+  public int getMessageGap()
+  {
+    return messageGap;
+  }
+
+  /**
+   * Returns the time that the specified number of bytes occupies the
+   * transmission line, including the gap that follows the message.
+   * @param byteCount The length of the message in bytes.
+   * @return The time in microseconds until the next message may be
+   *    sent.
+   */
+  public long getOccupationTime(final int byteCount)
+  {
+    final long transmitTime =
+      bytesPerSecond > 0 ? 1000000L * byteCount / bytesPerSecond : 0;
+    return transmitTime + 1000L * messageGap;
+  }
+
+  public boolean equals(final Object obj)
+  {
+    if (!(obj instanceof TransmitPacing)) {
+      return false;
+    }
+    final TransmitPacing other = (TransmitPacing)obj;
+    return
+      (bytesPerSecond == other.bytesPerSecond) &&
+      (messageGap == other.messageGap);
+  }
+
+  public int hashCode()
+  {
+    return 31 * bytesPerSecond + messageGap;
+  }
+
+  public String toString()
+  {
+    return
+      (bytesPerSecond > 0 ? bytesPerSecond + " bytes/s" : "unlimited") +
+      ", " + messageGap + " ms gap";
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -41,6 +41,14 @@ public interface Value
    */
   Editor createEditor();
 
+  /**
+   * Returns the values that the user may select from for this Value
+   * object.  The returned object is shared among all editors of this
+   * Value object.
+   * @return The selectable values.
+   */
+  SelectableValues getSelectableValues();
+
   /**
    * Returns a String that represents the specified numerical, or
    * null, if the specified numerical value is out of range.
@@ -20,11 +20,6 @@
 
 package org.soundpaint.sysexedit.model;
 
-import java.awt.Component;
-import java.util.Vector;
-
-import org.soundpaint.sysexedit.gui.JValue;
-
 /**
  * This class holds the structural information and actual value, based
  * on a sparse type of a single entry in the target device's model.
@@ -34,6 +29,8 @@ import org.soundpaint.sysexedit.gui.JValue;
  */
 public class ValueImpl extends AbstractValue
 {
+  private static final long serialVersionUID = -8601669593549101171L;
+
   /**
    * The minimally required size of this value.  Memory locations are
    * typically distributed sparse in the address space of the device;
@@ -45,6 +42,13 @@ public class ValueImpl extends AbstractValue
   /** The effective size of this value in bits (0..32). */
   private byte bitSize;
 
+  /**
+   * Values with more selectable values than this are edited with a
+   * spinner rather than a drop-down list, since a drop-down list lays
+   * out all of its values.
+   */
+  private static final long MAX_DROP_DOWN_SIZE = 256;
+
   public ValueImpl(final SparseType sparseType, final int defaultValue)
   {
     this(null, sparseType, defaultValue);
@@ -186,25 +190,10 @@ public class ValueImpl extends AbstractValue
 
   public Editor createEditor()
   {
-    int index = -1;
-    Integer numericalValue = sparseType.lowermost();
-    final Vector<JValue> values = new Vector<JValue>();
-    while (numericalValue != null) {
-      final String displayValue = sparseType.getDisplayValue(numericalValue);
-      final EnumRenderer enumRenderer =
-        new EnumRenderer(new String[] { displayValue });
-      final SparseType editorSparseType =
-        new SparseType(sparseType.getIconKey(),
-                       numericalValue, numericalValue, enumRenderer);
-      final JValue value = new JValue(this, numericalValue);
-      values.add(value);
-      index++;
-      numericalValue = sparseType.succ(numericalValue);
-    }
-    // TODO: Editor can also be a SpinnerEditor or anything else,
-    // depending on the underlying SparseType.
-    final Editor editor = new DropDownEditor();
-    editor.setSelectableValues(values);
+    final Editor editor =
+      sparseType.getValueCount() > MAX_DROP_DOWN_SIZE ?
+      new SpinnerEditor() : new DropDownEditor();
+    editor.setSelectableValues(getSelectableValues());
     editor.setSelectionByNumericalValue(getDefaultValue());
     return editor;
   }
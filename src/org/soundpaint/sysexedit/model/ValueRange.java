@@ -20,14 +20,32 @@
 
 package org.soundpaint.sysexedit.model;
 
-public class ValueRange implements Comparable<ValueRange>
+import java.io.Serializable;
+
+public class ValueRange implements Comparable<ValueRange>, Serializable
 {
+  private static final long serialVersionUID = -1388397602100747232L;
+
+  /**
+   * Value ranges with at most this number of values keep a table of
+   * their display values.  Display values of larger value ranges are
+   * created on demand.
+   */
+  private static final long MAX_DISPLAY_VALUE_TABLE_SIZE = 256;
+
   private final String description;
   private final long lowerBound;
   private final long upperBound;
   private final long displayOffset;
   private final ValueRangeRenderer renderer;
 
+  /**
+   * The interned display values of all values of this value range,
+   * in ascending order, or null, if not yet created or if this value
+   * range is too large.
+   */
+  private transient volatile String[] displayValues;
+
   private ValueRange()
   {
     throw new UnsupportedOperationException("unsupported constructor");
@@ -148,16 +166,62 @@ public class ValueRange implements Comparable<ValueRange>
 
   /**
    * Returns a String that represents the numerical value according to
-   * the specification of the underlying renderer.
+   * the specification of the underlying renderer.  For small value
+   * ranges, the display value is taken from a table of all display
+   * values that is created upon first access.
    * @param numericalValue The numerical value to render.
    */
   public String getDisplayValue(final int numericalValue)
+  {
+    final long index = numericalValue - lowerBound;
+    final long size = upperBound - lowerBound + 1;
+    if ((index < 0) || (index >= size) ||
+        (size > MAX_DISPLAY_VALUE_TABLE_SIZE)) {
+      return renderDisplayValue(numericalValue);
+    }
+    String[] displayValues = this.displayValues;
+    if (displayValues == null) {
+      // concurrent first accesses may create equal tables; then, any
+      // of them will do
+      displayValues = new String[(int)size];
+      for (int i = 0; i < displayValues.length; i++) {
+        final String displayValue =
+          renderDisplayValue((int)(lowerBound + i));
+        displayValues[i] = displayValue != null ? displayValue.intern() : null;
+      }
+      this.displayValues = displayValues;
+    }
+    return displayValues[(int)index];
+  }
+
+  private String renderDisplayValue(final int numericalValue)
   {
     return
       renderer.
       getDisplayValue((int)(numericalValue - lowerBound + displayOffset));
   }
 
+  /**
+   * Returns the lowermost numerical value of this value range whose
+   * display value equals the specified string, as resolved by the
+   * underlying renderer.
+   * @param displayValue The display value to look up.
+   * @return The numerical value or null, if no value of this value
+   * range has the specified display value.
+   */
+  public Integer valueOfDisplayValue(final String displayValue)
+  {
+    final Integer rendererValue = renderer.valueOfDisplayValue(displayValue);
+    if (rendererValue == null) {
+      return null;
+    }
+    final long numericalValue = rendererValue - displayOffset + lowerBound;
+    if ((numericalValue < lowerBound) || (numericalValue > upperBound)) {
+      return null;
+    }
+    return (int)numericalValue;
+  }
+
   /**
    * Compares this value range topographically to another one,
    * considering only the upper and lower bound and ignoring the
@@ -20,6 +20,8 @@
 
 package org.soundpaint.sysexedit.model;
 
+import java.io.Serializable;
+
 /**
  * A class that implements this interface represents the type of a
  * contiguous, finite range of integer values.  For each integer value
@@ -27,8 +29,11 @@ package org.soundpaint.sysexedit.model;
  * representation for human display, called "display value".  The
  * display value should be unique among all values of the value range
  * type.
+ *
+ * The display value of an integer value must not change over time,
+ * since value ranges may cache display values once created.
  */
-public interface ValueRangeRenderer
+public interface ValueRangeRenderer extends Serializable
 {
   /**
    * Default display value for an integer value out of range.  This
@@ -54,6 +59,15 @@ public interface ValueRangeRenderer
    * integer value.
    */
   String getDisplayValue(final int value);
+
+  /**
+   * Returns the integer value whose display value equals the
+   * specified string, i.e. the inverse of getDisplayValue().
+   * @param displayValue A display value of this value range type.
+   * @return The lowermost integer value that is associated with the
+   * specified display value, or null, if there is no such value.
+   */
+  Integer valueOfDisplayValue(final String displayValue);
 }
 
 /*
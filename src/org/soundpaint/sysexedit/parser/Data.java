@@ -24,6 +24,8 @@ import org.soundpaint.sysexedit.model.Value;
 
 public class Data implements ParserNode
 {
+  private static final long serialVersionUID = -3920064057824671326L;
+
   private final Value value;
   private final long desiredAddress;
 
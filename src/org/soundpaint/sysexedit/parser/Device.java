@@ -21,13 +21,22 @@
 package org.soundpaint.sysexedit.parser;
 
 import java.io.InputStream;
+import java.io.IOException;
+import java.io.Serializable;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import javax.swing.tree.TreeNode;
 
 import org.soundpaint.sysexedit.model.AbstractDevice;
+import org.soundpaint.sysexedit.model.AddressIndex;
 import org.soundpaint.sysexedit.model.AddressRepresentation;
 import org.soundpaint.sysexedit.model.DataNode;
+import org.soundpaint.sysexedit.model.DumpPlan;
 import org.soundpaint.sysexedit.model.FolderNode;
+import org.soundpaint.sysexedit.model.LazyFolderNode;
 import org.soundpaint.sysexedit.model.MapNode;
+import org.soundpaint.sysexedit.model.PacketFormat;
+import org.soundpaint.sysexedit.model.TransmitPacing;
 import org.soundpaint.sysexedit.model.Value;
 
 /**
@@ -35,6 +44,9 @@ import org.soundpaint.sysexedit.model.Value;
  */
 public class Device extends AbstractDevice
 {
+  /** Size of the chunks in which bulk read input is consumed. */
+  private static final int BULK_READ_BUFFER_SIZE = 0x400;
+
   private final Folder parserRoot;
   private final String name;
   private final byte manufacturerId;
@@ -42,6 +54,8 @@ public class Device extends AbstractDevice
   private final Value deviceIdType;
   private final String enteredBy;
   private final AddressRepresentation addressRepresentation;
+  private final PacketFormat packetFormat;
+  private final TransmitPacing transmitPacing;
 
   private Device()
   {
@@ -52,6 +66,8 @@ public class Device extends AbstractDevice
                  final byte modelId, final Value deviceIdType,
                  final String enteredBy,
                  final AddressRepresentation addressRepresentation,
+                 final PacketFormat packetFormat,
+                 final TransmitPacing transmitPacing,
                  final Folder parserRoot)
   {
     this.name = name;
@@ -60,35 +76,40 @@ public class Device extends AbstractDevice
     this.deviceIdType = deviceIdType;
     this.enteredBy = enteredBy;
     this.addressRepresentation = addressRepresentation;
+    this.packetFormat = packetFormat;
+    this.transmitPacing = transmitPacing;
     this.parserRoot = parserRoot;
   }
 
-  public static Device create(final URL deviceDescriptionUrl)
-    throws ParseException
+  private Device(final DeviceModelCache.CompiledModel model)
   {
-    final DeviceModelParser parser =
-      new DeviceModelParser(deviceDescriptionUrl);
-    return create(parser);
+    this(model.name, model.manufacturerId, model.modelId,
+         model.deviceIdType, model.enteredBy, model.addressRepresentation,
+         model.packetFormat, model.transmitPacing, model.root);
   }
 
-  public static Device create(final String deviceName)
+  /**
+   * Creates a device from the specified device description.  The
+   * compiled device model is taken from the device model cache, if
+   * available.
+   * @see DeviceModelCache
+   */
+  public static Device create(final URL deviceDescriptionUrl)
     throws ParseException
   {
-    final DeviceModelParser parser =
-      new DeviceModelParser(deviceName);
-    return create(parser);
+    return
+      new Device(DeviceModelCache.getDefault().load(deviceDescriptionUrl));
   }
 
-  private static Device create(final DeviceModelParser parser)
+  public static Device create(final String deviceName)
     throws ParseException
   {
-    return new Device(parser.getDeviceName(),
-                      parser.getManufacturerId(),
-                      parser.getModelId(),
-                      parser.getDeviceId(),
-                      parser.getEnteredBy(),
-                      parser.getAddressRepresentation(),
-                      parser.getRoot());
+    final URL deviceDescriptionUrl =
+      Device.class.getResource("/devices/" + deviceName + ".xml");
+    if (deviceDescriptionUrl == null) {
+      throw new ParseException("no such device model found: " + deviceName);
+    }
+    return create(deviceDescriptionUrl);
   }
 
   public String getName()
@@ -121,29 +142,138 @@ public class Device extends AbstractDevice
     return addressRepresentation;
   }
 
-  private void addFolder(final FolderNode mapFolder, final Folder parseFolder)
+  /**
+   * The loop indices of a folder instance and all of its enclosing
+   * folder instances, as captured when creating the folder instance,
+   * such that the index variables evaluate the same when the
+   * folder's contents are created later on.
+   */
+  private static class LoopState implements Serializable
+  {
+    private static final long serialVersionUID = 5297466318416403785L;
+
+    private final LoopState enclosing;
+    private final Folder folder;
+    private final int index;
+    private final long incrementedDesiredAddress;
+
+    private LoopState()
+    {
+      throw new UnsupportedOperationException("unsupported constructor");
+    }
+
+    private LoopState(final LoopState enclosing, final Folder folder,
+                      final int index)
+    {
+      this.enclosing = enclosing;
+      this.folder = folder;
+      this.index = index;
+      incrementedDesiredAddress = folder.getIncrementedDesiredAddress();
+    }
+
+    private void restore()
+    {
+      if (enclosing != null) {
+        enclosing.restore();
+      }
+      folder.restoreLoopIndex(index, incrementedDesiredAddress);
+    }
+  }
+
+  /**
+   * A single instance of a folder of the device description.  Its
+   * contents are created not before they are accessed.  Until then,
+   * address resolution and the address index rely on the virtual
+   * layout, which walks the device description just like creating
+   * the contents would, but without creating any node.
+   */
+  private static class VirtualFolderNode extends LazyFolderNode
+  {
+    private static final long serialVersionUID = -3318412645950726581L;
+
+    private final Folder parseFolder;
+    private final LoopState loopState;
+
+    private VirtualFolderNode(final Folder parseFolder,
+                              final LoopState loopState)
+    {
+      super(parseFolder.getDescription(), parseFolder.getLabel().evaluate(),
+            parseFolder.getIncrementedDesiredAddress());
+      this.parseFolder = parseFolder;
+      this.loopState = loopState;
+    }
+
+    protected long layOutContents(final long address,
+                                  final LayoutListener listener)
+    {
+      loopState.restore();
+      return layOutContents(parseFolder, address, listener);
+    }
+
+    private long layOutContents(final Folder folder, long address,
+                                final LayoutListener listener)
+    {
+      for (final ParserNode node : folder.getContents()) {
+        if (node instanceof Folder) {
+          final Folder childFolder = (Folder)node;
+          childFolder.resetLoopIndex();
+          for (int index = 0; index < childFolder.getMultiplicity();
+               index++) {
+            address =
+              resolveAddress(childFolder.getIncrementedDesiredAddress(),
+                             address, this);
+            address = layOutContents(childFolder, address, listener);
+            childFolder.incrementLoopIndex();
+          }
+        } else if (node instanceof Data) {
+          final Data data = (Data)node;
+          final Value value = data.getValue();
+          address = resolveAddress(data.getDesiredAddress(), address,
+                                   value.getLabel());
+          if (listener != null) {
+            listener.dataLaidOut(address, value.getBitSize(),
+                                 value.getDefaultValue());
+          }
+          address += value.getBitSize();
+        } else {
+          throw new IllegalStateException("unknown node type: " +
+                                          node.getClass());
+        }
+      }
+      return address;
+    }
+
+    protected void createContents()
+    {
+      loopState.restore();
+      for (final ParserNode node : parseFolder.getContents()) {
+        addNode(this, node, loopState);
+      }
+    }
+  }
+
+  private static void addFolder(final FolderNode mapFolder,
+                                final Folder parseFolder,
+                                final LoopState enclosing)
   {
-    final String description = parseFolder.getDescription();
-    final StringExpression label = parseFolder.getLabel();
     final IndexVariable variable = parseFolder.getIndexVariable();
     parseFolder.resetLoopIndex();
     for (int index = 0; index < parseFolder.getMultiplicity(); index++) {
       variable.setValue(index);
-      final FolderNode mapChildFolder =
-        new FolderNode(description, label.evaluate(),
-                       parseFolder.getIncrementedDesiredAddress());
-      mapFolder.add(mapChildFolder);
-      for (final ParserNode node : parseFolder.getContents()) {
-        addNode(mapChildFolder, node);
-      }
+      mapFolder.add(new VirtualFolderNode(parseFolder,
+                                          new LoopState(enclosing,
+                                                        parseFolder,
+                                                        index)));
       parseFolder.incrementLoopIndex();
     }
   }
 
-  private void addNode(final FolderNode mapFolder, final ParserNode node)
+  private static void addNode(final FolderNode mapFolder,
+                              final ParserNode node,
+                              final LoopState enclosing)
   {
     if (node instanceof Folder) {
-      addFolder(mapFolder, (Folder)node);
+      addFolder(mapFolder, (Folder)node, enclosing);
     } else if (node instanceof Data) {
       final Data data = (Data)node;
       mapFolder.add(new DataNode(data.getValue(), data.getDesiredAddress()));
@@ -152,24 +282,130 @@ public class Device extends AbstractDevice
     }
   }
 
+  /**
+   * Creates the folders of the map without their contents.  The
+   * contents of each folder instance are created on demand.
+   * @see LazyFolderNode
+   */
   public void buildMap(final MapRoot root)
   {
     for (final ParserNode node : parserRoot.getContents()) {
-      addNode(root, node);
+      addNode(root, node, null);
     }
   }
 
+  @Override
+  protected int getBitsPerByte()
+  {
+    return
+      packetFormat != null ?
+      packetFormat.getBitsPerByte() :
+      super.getBitsPerByte();
+  }
+
+  @Override
+  public long getMaxBulkDumpBitSize()
+  {
+    return
+      packetFormat != null ?
+      (long)packetFormat.getBitsPerByte() * packetFormat.getMaxBlockSize() :
+      super.getMaxBulkDumpBitSize();
+  }
+
+  @Override
+  public TransmitPacing getTransmitPacing()
+  {
+    return
+      transmitPacing != null ? transmitPacing : super.getTransmitPacing();
+  }
+
+  private AddressIndex getAddressIndex(final MapNode root)
+  {
+    final TreeNode mapRoot = root.getRoot();
+    final AddressIndex addressIndex =
+      mapRoot instanceof MapRoot ?
+      ((MapRoot)mapRoot).getAddressIndex() :
+      null;
+    return addressIndex != null ? addressIndex : new AddressIndex(root);
+  }
+
+  /**
+   * Returns a stream of a single bulk dump packet according to the
+   * packet format declared by the device model, or null, if the
+   * device model does not declare any packet format.
+   */
   public InputStream bulkDump(final byte deviceId,
                               final MapNode root,
                               final long start, final long end)
   {
-    // TODO
-    return null;
+    if (packetFormat == null) {
+      return null;
+    }
+    final AddressIndex addressIndex = getAddressIndex(root);
+    final DumpPlan devicePlan = getDumpPlan();
+    final DumpPlan dumpPlan =
+      (devicePlan != null) && devicePlan.isApplicableTo(addressIndex) ?
+      devicePlan :
+      new DumpPlan(addressIndex, packetFormat.getBitsPerByte());
+    try {
+      return packetFormat.createEncoder(manufacturerId, modelId, deviceId,
+                                        addressIndex, dumpPlan, start, end);
+    } catch (final IOException e) {
+      throw new IllegalStateException("failed creating bulk stream: " +
+                                      e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Given an InputStream that represents a sequence of SysEx messages
+   * from the MIDI device, decodes all bulk dump packets that match
+   * the packet format declared by the device model and updates the
+   * memory map accordingly.
+   * @param in The InputStream of MIDI bytes to be interpreted.
+   * @exception IOException If the device model does not declare any
+   *    packet format, if reading from the stream fails or if any of
+   *    the messages turns out to be corrupt.
+   */
+  public void bulkRead(final InputStream in) throws IOException
+  {
+    if (packetFormat == null) {
+      throw new IOException("device model " + name +
+                            " does not declare a packet format");
+    }
+    if ((root == null) || (getDumpPlan() == null)) {
+      throw new IOException("map not yet built");
+    }
+    final PacketFormat.Decoder decoder =
+      packetFormat.createDecoder(manufacturerId, modelId,
+                                 root.getAddressIndex(), getDumpPlan(),
+                                 root.getSyncState());
+    final byte[] buffer = new byte[BULK_READ_BUFFER_SIZE];
+    root.beginChanges();
+    try {
+      int count;
+      while ((count = in.read(buffer)) >= 0) {
+        decoder.write(buffer, 0, count);
+      }
+      decoder.close();
+    } finally {
+      root.commitChanges();
+    }
+    if (decoder.getErrorCount() > 0) {
+      throw new IOException(decoder.getErrorCount() + " of " +
+                            (decoder.getMessageCount() +
+                             decoder.getErrorCount()) +
+                            " SysEx messages corrupt; last error: " +
+                            decoder.getLastError());
+    }
   }
 
-  public void bulkRead(final InputStream in)
+  @Override
+  public long getBulkDumpAddress(final ByteBuffer message)
   {
-    // TODO
+    if (packetFormat == null) {
+      return -1;
+    }
+    return packetFormat.getBitAddress(message, manufacturerId, modelId);
   }
 
   public String toString()
@@ -0,0 +1,364 @@
+/*
+ * @(#)DeviceModelCache.java 1.00 18/07/26
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.soundpaint.sysexedit.model.AddressRepresentation;
+import org.soundpaint.sysexedit.model.PacketFormat;
+import org.soundpaint.sysexedit.model.TransmitPacing;
+import org.soundpaint.sysexedit.model.Value;
+
+/**
+ * Cache of compiled device models.  Parsing a device model requires
+ * streaming over the device description while validating it against
+ * the XML schema, which dominates the startup time of the
+ * application.  Therefore, the result of parsing, i.e. the device
+ * meta data together with the tree of folders, data, types, ranges
+ * and renderers, is serialized into a cache file.  Subsequent loads
+ * of the same device description deserialize the compiled model
+ * straight from the cache file, skipping XML parsing and schema
+ * validation entirely.
+ *
+ * Each cache file is keyed by a SHA-256 hash over the cache format
+ * version, the device description and the XML schema.  If the key
+ * stored in the cache file does not match, or if the cache file can
+ * not be deserialized, e.g. since the model classes have changed
+ * incompatibly, the cache entry is considered stale, and the device
+ * description is parsed anew and the cache file rewritten.  Failing
+ * to access the cache is never fatal; the device description is
+ * then just parsed as usual.
+ */
+public class DeviceModelCache
+{
+  /** Default cache directory, relative to the user's home. */
+  public static final String DEFAULT_DIRECTORY =
+    ".sysexedit" + File.separator + "cache";
+
+  /**
+   * Version of the cache format.  Must be incremented whenever any
+   * class of the compiled model changes incompatibly.
+   */
+  private static final int VERSION = 1;
+
+  private static final byte[] MAGIC = {'S', 'X', 'E', 'M'};
+  private static final String SCHEMA_RESOURCE_NAME =
+    "/devices/device-schema.xsd";
+  private static final String CACHE_FILE_SUFFIX = ".model";
+  private static final String TMP_FILE_SUFFIX = ".tmp";
+  private static final int KEY_SIZE = 32;
+  private static final int BUFFER_SIZE = 0x4000;
+
+  /**
+   * Only classes of the compiled model may be deserialized from a
+   * cache file.
+   */
+  private static final String DESERIALIZATION_FILTER =
+    "maxdepth=1000;" +
+    "org.soundpaint.sysexedit.parser.*;" +
+    "org.soundpaint.sysexedit.model.*;" +
+    "java.lang.*;java.util.*;!*";
+
+  private static DeviceModelCache defaultCache;
+
+  /**
+   * The result of parsing a device description.
+   */
+  static class CompiledModel implements Serializable
+  {
+    private static final long serialVersionUID = -6116412738009385826L;
+
+    final String name;
+    final byte manufacturerId;
+    final byte modelId;
+    final Value deviceIdType;
+    final String enteredBy;
+    final AddressRepresentation addressRepresentation;
+    final PacketFormat packetFormat;
+    final TransmitPacing transmitPacing;
+    final Folder root;
+
+    private CompiledModel(final DeviceModelParser parser)
+    {
+      name = parser.getDeviceName();
+      manufacturerId = parser.getManufacturerId();
+      modelId = parser.getModelId();
+      deviceIdType = parser.getDeviceId();
+      enteredBy = parser.getEnteredBy();
+      addressRepresentation = parser.getAddressRepresentation();
+      packetFormat = parser.getPacketFormat();
+      transmitPacing = parser.getTransmitPacing();
+      root = parser.getRoot();
+    }
+  }
+
+  private final File directory;
+
+  private DeviceModelCache()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  /**
+   * Creates a cache that keeps its files in the specified directory.
+   * The directory is created upon first write.
+   */
+  public DeviceModelCache(final File directory)
+  {
+    if (directory == null) {
+      throw new NullPointerException("directory");
+    }
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the cache in the default directory.
+   */
+  public static synchronized DeviceModelCache getDefault()
+  {
+    if (defaultCache == null) {
+      defaultCache =
+        new DeviceModelCache(new File(System.getProperty("user.home"),
+                                      DEFAULT_DIRECTORY));
+    }
+    return defaultCache;
+  }
+
+  private static byte[] readFully(final URL url) throws IOException
+  {
+    try (final InputStream in = url.openStream()) {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      int count;
+      while ((count = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, count);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  private static MessageDigest createDigest()
+  {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (final NoSuchAlgorithmException e) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /**
+   * Computes the key of the compiled model of the specified device
+   * description.
+   */
+  private static byte[] computeKey(final URL deviceUrl) throws IOException
+  {
+    final URL schemaUrl =
+      DeviceModelCache.class.getResource(SCHEMA_RESOURCE_NAME);
+    if (schemaUrl == null) {
+      throw new IOException("failed locating device model XML schema");
+    }
+    final MessageDigest digest = createDigest();
+    digest.update(ByteBuffer.allocate(4).putInt(VERSION).array());
+    final byte[] deviceXml = readFully(deviceUrl);
+    digest.update(ByteBuffer.allocate(4).putInt(deviceXml.length).array());
+    digest.update(deviceXml);
+    digest.update(readFully(schemaUrl));
+    return digest.digest();
+  }
+
+  /**
+   * Returns the cache file for the specified device description.
+   * The file name is derived from the description's URL, such that
+   * a changed description overwrites its stale cache entry rather
+   * than accumulating further entries.
+   */
+  private File getCacheFile(final URL deviceUrl)
+  {
+    final String path = deviceUrl.getPath();
+    final String baseName =
+      path.substring(path.lastIndexOf('/') + 1).replaceAll("[^\\w.-]", "_");
+    final byte[] urlHash =
+      createDigest().digest(deviceUrl.toExternalForm().
+                            getBytes(StandardCharsets.UTF_8));
+    final StringBuilder fileName = new StringBuilder(baseName);
+    fileName.append('-');
+    for (int i = 0; i < 8; i++) {
+      fileName.append(String.format("%02x", urlHash[i]));
+    }
+    fileName.append(CACHE_FILE_SUFFIX);
+    return new File(directory, fileName.toString());
+  }
+
+  /**
+   * Reads the compiled model from the specified cache file.
+   * @return The compiled model, or null, if there is no cache entry
+   *    or if it is stale.
+   */
+  private static CompiledModel read(final File cacheFile, final byte[] key)
+  {
+    if (!cacheFile.isFile()) {
+      return null;
+    }
+    try {
+      final ByteBuffer buffer;
+      try (final FileChannel channel =
+           FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ)) {
+        if (channel.size() > Integer.MAX_VALUE) {
+          return null;
+        }
+        buffer = ByteBuffer.allocate((int)channel.size());
+        while (buffer.hasRemaining()) {
+          if (channel.read(buffer) < 0) {
+            return null;
+          }
+        }
+      }
+      buffer.flip();
+      if (buffer.remaining() < MAGIC.length + 4 + KEY_SIZE) {
+        return null;
+      }
+      final byte[] magic = new byte[MAGIC.length];
+      buffer.get(magic);
+      final int version = buffer.getInt();
+      final byte[] storedKey = new byte[KEY_SIZE];
+      buffer.get(storedKey);
+      if (!Arrays.equals(magic, MAGIC) || (version != VERSION) ||
+          !Arrays.equals(storedKey, key)) {
+        return null;
+      }
+      try (final ObjectInputStream in =
+           new ObjectInputStream(new ByteArrayInputStream(buffer.array(),
+                                                          buffer.position(),
+                                                          buffer.remaining()))) {
+        in.setObjectInputFilter(ObjectInputFilter.Config.
+                                createFilter(DESERIALIZATION_FILTER));
+        return (CompiledModel)in.readObject();
+      }
+    } catch (final IOException | ClassNotFoundException |
+             ClassCastException e) {
+      System.out.println("[discarding stale device model cache " +
+                         cacheFile + ": " + e + "]");
+      return null;
+    }
+  }
+
+  /**
+   * Writes the compiled model into the specified cache file.  The
+   * file is replaced atomically, such that concurrently starting
+   * instances of the application never see a partially written file.
+   */
+  private void write(final File cacheFile, final byte[] key,
+                     final CompiledModel model)
+    throws IOException
+  {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("failed creating cache directory " + directory);
+    }
+    final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    try (final ObjectOutputStream out = new ObjectOutputStream(payload)) {
+      out.writeObject(model);
+    }
+    final ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 4 + KEY_SIZE);
+    header.put(MAGIC);
+    header.putInt(VERSION);
+    header.put(key);
+    header.flip();
+    final ByteBuffer body = ByteBuffer.wrap(payload.toByteArray());
+    final File tmpFile = new File(cacheFile.getPath() + TMP_FILE_SUFFIX);
+    try (final FileChannel channel =
+         FileChannel.open(tmpFile.toPath(),
+                          StandardOpenOption.WRITE,
+                          StandardOpenOption.CREATE,
+                          StandardOpenOption.TRUNCATE_EXISTING)) {
+      final ByteBuffer[] buffers = {header, body};
+      while (body.hasRemaining()) {
+        channel.write(buffers);
+      }
+    }
+    Files.move(tmpFile.toPath(), cacheFile.toPath(),
+               StandardCopyOption.REPLACE_EXISTING,
+               StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Returns the compiled model of the specified device description,
+   * either from the cache or, if not available, by parsing the
+   * device description and storing the result in the cache.
+   * @param deviceUrl The URL of the device description.
+   * @return The compiled model.
+   * @exception ParseException If the device description needs to be
+   *    parsed and turns out to be invalid.
+   */
+  CompiledModel load(final URL deviceUrl) throws ParseException
+  {
+    byte[] key;
+    try {
+      key = computeKey(deviceUrl);
+    } catch (final IOException e) {
+      key = null; // let the parser report the problem
+    }
+    final File cacheFile = getCacheFile(deviceUrl);
+    if (key != null) {
+      final CompiledModel cachedModel = read(cacheFile, key);
+      if (cachedModel != null) {
+        System.out.println("[using cached device model: " + cacheFile + "]");
+        return cachedModel;
+      }
+    }
+    final CompiledModel model =
+      new CompiledModel(new DeviceModelParser(deviceUrl));
+    if (key != null) {
+      try {
+        write(cacheFile, key, model);
+      } catch (final IOException e) {
+        System.out.println("[WARNING: failed writing device model cache " +
+                           cacheFile + ": " + e + "]");
+      }
+    }
+    return model;
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
@@ -21,22 +21,21 @@
 package org.soundpaint.sysexedit.parser;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import org.w3c.dom.Comment;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Entity;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.Notation;
-import org.w3c.dom.ProcessingInstruction;
-import org.w3c.dom.Text;
-
-import org.soundpaint.sysexedit.SysExEdit;
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+import org.xml.sax.SAXException;
+
 import org.soundpaint.sysexedit.model.AbstractDevice;
 import org.soundpaint.sysexedit.model.AddressRepresentation;
 import org.soundpaint.sysexedit.model.BitMaskRenderer;
@@ -45,7 +44,9 @@ import org.soundpaint.sysexedit.model.EnumRenderer;
 import org.soundpaint.sysexedit.model.FolderNode;
 import org.soundpaint.sysexedit.model.IntegerRenderer;
 import org.soundpaint.sysexedit.model.MapNode;
+import org.soundpaint.sysexedit.model.PacketFormat;
 import org.soundpaint.sysexedit.model.SparseType;
+import org.soundpaint.sysexedit.model.TransmitPacing;
 import org.soundpaint.sysexedit.model.Value;
 import org.soundpaint.sysexedit.model.ValueImpl;
 import org.soundpaint.sysexedit.model.ValueRange;
@@ -108,25 +109,28 @@ public class DeviceModelParser
     "bit-address-increment";
   private static final String TAG_NAME_ADDRESS = "address";
   private static final String TAG_NAME_ADDRESS_INCREMENT = "address-increment";
-
-  private static Document loadXml(final URL deviceXmlUrl)
-    throws ParseException
-  {
-    final URL schemaUrl =
-      DeviceModelParser.class.getResource(SCHEMA_RESOURCE_NAME);
-    if (schemaUrl == null) {
-      throw new ParseException("failed locating device model XML schema");
-    }
-    System.out.println("[using device model XML schema: " + schemaUrl + "]");
-    return LineNumberXmlParser.parse(deviceXmlUrl, schemaUrl);
-  }
-
-  private static Document loadXml(final String deviceName)
+  private static final String TAG_NAME_PACKET_FORMAT = "packet-format";
+  private static final String TAG_NAME_HEADER = "header";
+  private static final String TAG_NAME_LITERAL = "literal";
+  private static final String TAG_NAME_BITS_PER_BYTE = "bits-per-byte";
+  private static final String TAG_NAME_BYTE_COUNT_WIDTH = "byte-count-width";
+  private static final String TAG_NAME_ADDRESS_WIDTH = "address-width";
+  private static final String TAG_NAME_CHECKSUM = "checksum";
+  private static final String TAG_NAME_MAX_BLOCK_SIZE = "max-block-size";
+  private static final String TAG_NAME_TRANSMIT_PACING = "transmit-pacing";
+  private static final String TAG_NAME_BYTES_PER_SECOND = "bytes-per-second";
+  private static final String TAG_NAME_MESSAGE_GAP = "message-gap";
+  private static final String ATTR_NAME_OFFSET = "offset";
+
+  private static URL getDeviceXmlUrl(final String deviceName)
     throws ParseException
   {
     final URL deviceXmlUrl =
-      SysExEdit.class.getResource("/devices/" + deviceName + ".xml");
-    return loadXml(deviceXmlUrl);
+      DeviceModelParser.class.getResource("/devices/" + deviceName + ".xml");
+    if (deviceXmlUrl == null) {
+      throw new ParseException("no such device model found: " + deviceName);
+    }
+    return deviceXmlUrl;
   }
 
   private static boolean startsWithHexPrefix(final String value)
@@ -147,7 +151,8 @@ public class DeviceModelParser
       value.substring(2);
   }
 
-  private static byte parseByte(final Element location, final String value)
+  private static byte parseByte(final SourceLocation location,
+                                final String value)
     throws ParseException
   {
     final String trimmedValue = value.trim();
@@ -165,7 +170,8 @@ public class DeviceModelParser
     }
   }
 
-  private static int parseInt(final Element location, final String value)
+  private static int parseInt(final SourceLocation location,
+                              final String value)
     throws ParseException
   {
     final String trimmedValue = value.trim();
@@ -183,7 +189,8 @@ public class DeviceModelParser
     }
   }
 
-  private static long parseLong(final Element location, final String value)
+  private static long parseLong(final SourceLocation location,
+                                final String value)
     throws ParseException
   {
     final String trimmedValue = value.trim();
@@ -201,6 +208,8 @@ public class DeviceModelParser
     }
   }
 
+  private final URL deviceUrl;
+  private XMLStreamReader reader;
   private Scope scope;
   private Symbol<AddressRepresentation> addressRepresentationSymbol;
   private Symbol<DefaultDataSize> defaultDataSizeSymbol;
@@ -210,6 +219,8 @@ public class DeviceModelParser
   private Symbol<Byte> modelIdSymbol;
   private Symbol<? extends Data> deviceIdSymbol;
   private Symbol<String> enteredBySymbol;
+  private Symbol<PacketFormat> packetFormatSymbol;
+  private Symbol<TransmitPacing> transmitPacingSymbol;
   private SymbolTable<ValueRange> rangeSymbols;
   private SymbolTable<ValueRangeRenderer> rendererSymbols;
   private SymbolTable<Data> dataSymbols;
@@ -217,23 +228,18 @@ public class DeviceModelParser
   public DeviceModelParser(final URL deviceUrl)
     throws ParseException
   {
-    this(loadXml(deviceUrl));
+    this.deviceUrl = deviceUrl;
+    scope = new Scope();
+    rangeSymbols = new SymbolTable<ValueRange>();
+    rendererSymbols = new SymbolTable<ValueRangeRenderer>();
+    dataSymbols = new SymbolTable<Data>();
+    parse();
   }
 
   public DeviceModelParser(final String deviceName)
     throws ParseException
   {
-    this(loadXml(deviceName));
-  }
-
-  private DeviceModelParser(final Document document)
-    throws ParseException
-  {
-    scope = new Scope();
-    rangeSymbols = new SymbolTable<ValueRange>();
-    rendererSymbols = new SymbolTable<ValueRangeRenderer>();
-    dataSymbols = new SymbolTable<Data>();
-    parse(document);
+    this(getDeviceXmlUrl(deviceName));
   }
 
   public String getDeviceClass()
@@ -271,26 +277,45 @@ public class DeviceModelParser
     return addressRepresentationSymbol.getValue();
   }
 
-  private void checkRoot(final Element documentElement)
+  /**
+   * Returns the packet format for bulk dumps, or null, if the device
+   * model does not declare any.
+   */
+  public PacketFormat getPacketFormat()
+  {
+    return packetFormatSymbol != null ? packetFormatSymbol.getValue() : null;
+  }
+
+  /**
+   * Returns the transmit pacing for MIDI messages, or null, if the
+   * device model does not declare any.
+   */
+  public TransmitPacing getTransmitPacing()
+  {
+    return
+      transmitPacingSymbol != null ? transmitPacingSymbol.getValue() : null;
+  }
+
+  private void checkRoot(final SourceLocation documentLocation)
     throws ParseException
   {
     final Symbol<? extends Folder> rootSymbol =
       scope.lookupFolder(Identifier.ROOT_ID);
     if (rootSymbol == null) {
-      throw new ParseException(documentElement,
+      throw new ParseException(documentLocation,
                                "no global folder node found that is marked as '#root'");
     }
-    final Element rootElement = (Element)(rootSymbol.getLocation());
-    if (rootElement == null) {
-      throw new ParseException(documentElement,
+    final SourceLocation rootLocation = rootSymbol.getLocation();
+    if (rootLocation == null) {
+      throw new ParseException(documentLocation,
                                "root folder element without location info");
     }
     final Folder root = rootSymbol.getValue();
     if (root == null) {
-      throw new ParseException(rootElement, "invalid root folder element");
+      throw new ParseException(rootLocation, "invalid root folder element");
     }
     if (root.getMultiplicity() != 1) {
-      throw new ParseException(rootElement, "multiplicity of root folder must be 1");
+      throw new ParseException(rootLocation, "multiplicity of root folder must be 1");
     }
   }
 
@@ -301,282 +326,407 @@ public class DeviceModelParser
     return rootSymbol.getValue();
   }
 
-  private static boolean isIgnorableNodeType(final Node node)
+  /**
+   * Returns the location of the current event of the XML stream.
+   * For a start tag, this is the location right after the tag.
+   */
+  private SourceLocation getLocation()
   {
-    return
-      (node instanceof Comment) ||
-      (node instanceof Entity) ||
-      (node instanceof Notation) ||
-      (node instanceof ProcessingInstruction);
+    final Location location = reader.getLocation();
+    return new SourceLocation(deviceUrl,
+                              location.getLineNumber(),
+                              location.getColumnNumber());
   }
 
-  private static boolean isWhiteSpace(final Node node)
+  /**
+   * Advances the XML stream to the start tag of the next child
+   * element of the current element, skipping white space, comments,
+   * processing instructions and the like.
+   * @return True, if the stream is positioned at the start tag of
+   *    the next child element, or false, if the stream is positioned
+   *    at the end tag of the current element (or at the end of the
+   *    document, if there is no current element).
+   */
+  private boolean nextChildElement() throws ParseException
+  {
+    try {
+      while (true) {
+        final int eventType = reader.next();
+        switch (eventType) {
+        case XMLStreamConstants.START_ELEMENT:
+          return true;
+        case XMLStreamConstants.END_ELEMENT:
+        case XMLStreamConstants.END_DOCUMENT:
+          return false;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if (!reader.isWhiteSpace()) {
+            throw new ParseException(getLocation(), "unsupported node");
+          }
+          // ignore white space
+          break;
+        case XMLStreamConstants.COMMENT:
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        case XMLStreamConstants.ENTITY_REFERENCE:
+        case XMLStreamConstants.DTD:
+          // ignore comments, entities, etc.
+          break;
+        default:
+          throw new ParseException(getLocation(), "unsupported node");
+        }
+      }
+    } catch (final XMLStreamException e) {
+      throw new ParseException(getLocation(), e);
+    }
+  }
+
+  /**
+   * Reads the text content of the current element and advances the
+   * XML stream to the element's end tag.
+   */
+  private String readText() throws ParseException
+  {
+    try {
+      return reader.getElementText();
+    } catch (final XMLStreamException e) {
+      throw new ParseException(getLocation(), e);
+    }
+  }
+
+  /**
+   * Advances the XML stream to the end tag of the current element,
+   * ignoring its contents.
+   */
+  private void skipElement() throws ParseException
   {
-    if (!(node instanceof Text)) {
-      return false;
+    try {
+      int depth = 1;
+      while (depth > 0) {
+        final int eventType = reader.next();
+        if (eventType == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+        } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+      }
+    } catch (final XMLStreamException e) {
+      throw new ParseException(getLocation(), e);
     }
-    final Text text = (Text)node;
-    return text.getData().trim().isEmpty();
   }
 
-  private void checkAddressRepresentationExists(final Element documentElement)
+  /**
+   * Returns the value of the specified attribute of the current
+   * element, or null, if there is no such attribute.
+   */
+  private String getAttribute(final String name)
+  {
+    return reader.getAttributeValue(null, name);
+  }
+
+  private boolean hasAttribute(final String name)
+  {
+    return getAttribute(name) != null;
+  }
+
+  private void
+    checkAddressRepresentationExists(final SourceLocation documentLocation)
     throws ParseException
   {
     final AddressRepresentation addressRepresentation =
       getAddressRepresentation();
     if (addressRepresentation == null) {
-      throw new ParseException(documentElement,
+      throw new ParseException(documentLocation,
                                "no global address representation definition found");
     }
   }
 
-  private void parse(final Document document) throws ParseException
+  /**
+   * Creates a validator handler for the device model XML schema.
+   * Since the device description refers to the schema via its
+   * schema location hint, the handler is created from a generic
+   * schema, with the hint being resolved to the schema resource.
+   */
+  private static ValidatorHandler createValidatorHandler()
+    throws ParseException
   {
-    final Element documentElement = document.getDocumentElement();
-    final String documentName = documentElement.getTagName();
+    final URL schemaUrl =
+      DeviceModelParser.class.getResource(SCHEMA_RESOURCE_NAME);
+    if (schemaUrl == null) {
+      throw new ParseException("failed locating device model XML schema");
+    }
+    System.out.println("[using device model XML schema: " + schemaUrl + "]");
+    // TODO: Support for XSD 1.1
+    // ("http://www.w3.org/XML/XMLSchema/v1.1").
+    final SchemaFactory schemaFactory =
+      SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+    final Schema schema;
+    try {
+      schema = schemaFactory.newSchema();
+    } catch (final SAXException e) {
+      throw new ParseException("generating new XSD instance failed", e);
+    }
+    final ValidatorHandler validatorHandler = schema.newValidatorHandler();
+    validatorHandler.setResourceResolver(new XsdResourceResolver(schemaUrl));
+    return validatorHandler;
+  }
+
+  /**
+   * Creates a reader that validates the XML stream against the
+   * schema while it is being read.
+   */
+  private static XMLStreamReader createReader(final URL deviceXmlUrl,
+                                              final InputStream in)
+    throws ParseException, XMLStreamException
+  {
+    final XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                        false);
+    final String systemId = deviceXmlUrl.toString();
+    return
+      new ValidatingStreamReader(factory.createXMLStreamReader(systemId, in),
+                                 createValidatorHandler(), systemId);
+  }
+
+  /**
+   * Parses the device description in a single pass over the XML
+   * stream, validating it and directly building folders, data,
+   * types, ranges and renderers and entering them into the symbol
+   * tables, without ever creating a document tree.
+   */
+  private void parse() throws ParseException
+  {
+    try (final InputStream in = deviceUrl.openStream()) {
+      reader = createReader(deviceUrl, in);
+      try {
+        parseDocument();
+      } finally {
+        reader.close();
+      }
+    } catch (final IOException e) {
+      throw new ParseException("failed reading device model XML", e);
+    } catch (final XMLStreamException e) {
+      throw new ParseException("failed parsing device model XML", e);
+    }
+  }
+
+  private void parseDocument() throws ParseException
+  {
+    if (!nextChildElement()) {
+      throw new ParseException(getLocation(), "missing document element");
+    }
+    final SourceLocation documentLocation = getLocation();
+    final String documentName = reader.getLocalName();
     if (!documentName.equals(TAG_NAME_SYSEXEDIT)) {
-      throw new ParseException("expected document element '" +
+      throw new ParseException(documentLocation,
+                               "expected document element '" +
                                TAG_NAME_SYSEXEDIT + "', but found " +
                                documentName);
     }
-    Element meta = null;
-    Element contents = null;
-    final NodeList childNodes = documentElement.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_META)) {
-          if (meta != null) {
-            final Throwable cause =
-              new ParseException(meta, "first definition here");
-            cause.fillInStackTrace();
-            throwDuplicateException(childElement, TAG_NAME_META, cause);
-          }
-          parseMeta(childElement);
-          meta = childElement;
-        } else if (childElementName.equals(TAG_NAME_CONTENTS)) {
-          if (contents != null) {
-            final Throwable cause =
-              new ParseException(contents, "first definition here");
-            cause.fillInStackTrace();
-            throwDuplicateException(childElement, TAG_NAME_CONTENTS, cause);
-          }
-          parseContents(childElement);
-          contents = childElement;
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
+    SourceLocation meta = null;
+    SourceLocation contents = null;
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_META)) {
+        if (meta != null) {
+          final Throwable cause =
+            new ParseException(meta, "first definition here");
+          cause.fillInStackTrace();
+          throwDuplicateException(childLocation, TAG_NAME_META, cause);
+        }
+        parseMeta();
+        meta = childLocation;
+      } else if (childElementName.equals(TAG_NAME_CONTENTS)) {
+        if (contents != null) {
+          final Throwable cause =
+            new ParseException(contents, "first definition here");
+          cause.fillInStackTrace();
+          throwDuplicateException(childLocation, TAG_NAME_CONTENTS, cause);
         }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+        parseContents();
+        contents = childLocation;
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
-    checkAddressRepresentationExists(documentElement);
-    checkRoot(documentElement);
+    // pull the end of the document, thereby completing validation
+    if (nextChildElement()) {
+      throw new ParseException(getLocation(),
+                               "unexpected element after document element");
+    }
+    checkAddressRepresentationExists(documentLocation);
+    checkRoot(documentLocation);
   }
 
-  private void throwDuplicateException(final Element element,
+  private void throwDuplicateException(final SourceLocation location,
                                        final String tagName,
                                        final Throwable cause)
     throws ParseException
   {
-    throw new ParseException(element, "duplicate '" + tagName + "' definition",
+    throw new ParseException(location, "duplicate '" + tagName + "' definition",
                              cause);
   }
 
-  private void throwDuplicateException(final Element element,
+  private void throwDuplicateException(final SourceLocation location,
                                        final String tagName)
     throws ParseException
   {
-    throw new ParseException(element, "duplicate '" + tagName + "' definition");
+    throw new ParseException(location, "duplicate '" + tagName + "' definition");
   }
 
-  private void throwDuplicateException(final Element element,
+  private void throwDuplicateException(final SourceLocation location,
                                        final String tagName1,
                                        final String tagName2)
     throws ParseException
   {
-    throw new ParseException(element, "can define only one of '" +
+    throw new ParseException(location, "can define only one of '" +
                              tagName1 + "' and '" + tagName2 + "', " +
                              "but not both");
   }
 
-  private Identifier parseRef(final Element element) throws ParseException
+  private Identifier parseRef() throws ParseException
   {
-    final Identifier identifier;
-    if (!element.hasAttribute(ATTR_NAME_REF)) {
+    if (!hasAttribute(ATTR_NAME_REF)) {
+      throw new ParseException(getLocation(),
+                               "missing attribute '" + ATTR_NAME_REF + "'");
     }
-    return Identifier.fromString(element.getAttribute(ATTR_NAME_REF));
+    final Identifier identifier =
+      Identifier.fromString(getAttribute(ATTR_NAME_REF));
+    skipElement();
+    return identifier;
   }
 
-  private void parseMeta(final Element element) throws ParseException
+  private void parseMeta() throws ParseException
   {
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_ADDRESS_MODEL)) {
-          parseAddressModel(childElement);
-        } else if (childElementName.equals(TAG_NAME_ENTERED_BY)) {
-          parseEnteredBy(childElement);
-        } else if (childElementName.equals(TAG_NAME_DEVICE_CLASS)) {
-          parseDeviceClass(childElement);
-        } else if (childElementName.equals(TAG_NAME_DEVICE_NAME)) {
-          parseDeviceName(childElement);
-        } else if (childElementName.equals(TAG_NAME_MAN_ID)) {
-          parseManufacturerId(childElement);
-        } else if (childElementName.equals(TAG_NAME_MODEL_ID)) {
-          parseModelId(childElement);
-        } else if (childElementName.equals(TAG_NAME_DEVICE_ID)) {
-          parseDeviceId(childElement);
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
-        }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_ADDRESS_MODEL)) {
+        parseAddressModel();
+      } else if (childElementName.equals(TAG_NAME_ENTERED_BY)) {
+        parseEnteredBy();
+      } else if (childElementName.equals(TAG_NAME_DEVICE_CLASS)) {
+        parseDeviceClass();
+      } else if (childElementName.equals(TAG_NAME_DEVICE_NAME)) {
+        parseDeviceName();
+      } else if (childElementName.equals(TAG_NAME_MAN_ID)) {
+        parseManufacturerId();
+      } else if (childElementName.equals(TAG_NAME_MODEL_ID)) {
+        parseModelId();
+      } else if (childElementName.equals(TAG_NAME_DEVICE_ID)) {
+        parseDeviceId();
+      } else if (childElementName.equals(TAG_NAME_PACKET_FORMAT)) {
+        parsePacketFormat();
+      } else if (childElementName.equals(TAG_NAME_TRANSMIT_PACING)) {
+        parseTransmitPacing();
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
   }
 
-  private void parseContents(final Element element) throws ParseException
+  private void parseContents() throws ParseException
   {
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_ENUM)) {
-          parseEnum(childElement, true);
-        } else if (childElementName.equals(TAG_NAME_INTEGER)) {
-          parseInteger(childElement, true);
-        } else if (childElementName.equals(TAG_NAME_BIT_MASK)) {
-          parseBitMask(childElement, true);
-        } else if (childElementName.equals(TAG_NAME_TYPE)) {
-          parseType(childElement, true);
-        } else if (childElementName.equals(TAG_NAME_RANGE)) {
-          parseRange(childElement, true);
-        } else if (childElementName.equals(TAG_NAME_FOLDER)) {
-          parseFolder(childElement, true);
-        } else if (childElementName.equals(TAG_NAME_DATA)) {
-          parseData(childElement, true);
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
-        }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_ENUM)) {
+        parseEnum(true);
+      } else if (childElementName.equals(TAG_NAME_INTEGER)) {
+        parseInteger(true);
+      } else if (childElementName.equals(TAG_NAME_BIT_MASK)) {
+        parseBitMask(true);
+      } else if (childElementName.equals(TAG_NAME_TYPE)) {
+        parseType(true);
+      } else if (childElementName.equals(TAG_NAME_RANGE)) {
+        parseRange(true);
+      } else if (childElementName.equals(TAG_NAME_FOLDER)) {
+        parseFolder(true);
+      } else if (childElementName.equals(TAG_NAME_DATA)) {
+        parseData(true);
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
   }
 
-  private void parseAddressModel(final Element element) throws ParseException
+  private void parseAddressModel() throws ParseException
   {
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_REPRESENTATION)) {
-          parseRepresentation(childElement);
-        } else if (childElementName.equals(TAG_NAME_DEFAULT_DATA_SIZE)) {
-          parseDefaultDataSize(childElement);
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
-        }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_REPRESENTATION)) {
+        parseRepresentation();
+      } else if (childElementName.equals(TAG_NAME_DEFAULT_DATA_SIZE)) {
+        parseDefaultDataSize();
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
   }
 
-  private void parseDefaultDataSize(final Element element)
+  private void parseDefaultDataSize()
     throws ParseException
   {
+    final SourceLocation location = getLocation();
     if (defaultDataSizeSymbol != null) {
       final Throwable cause =
         new ParseException(defaultDataSizeSymbol.getLocation(),
                            "first definition here");
       cause.fillInStackTrace();
-      throwDuplicateException(element, TAG_NAME_DEFAULT_DATA_SIZE, cause);
+      throwDuplicateException(location, TAG_NAME_DEFAULT_DATA_SIZE, cause);
     }
     Byte multipleOfBits = null;
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_MULTIPLE_OF_BITS)) {
-          if (multipleOfBits != null) {
-            throwDuplicateException(childElement, TAG_NAME_MULTIPLE_OF_BITS);
-          }
-          multipleOfBits =
-            parseByte(childElement, childElement.getTextContent());
-          if (multipleOfBits < 1) {
-            throw new ParseException(childElement,
-                                     "'multiple-of-bits' must be a " +
-                                     "positive value > 0");
-          }
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_MULTIPLE_OF_BITS)) {
+        if (multipleOfBits != null) {
+          throwDuplicateException(childLocation, TAG_NAME_MULTIPLE_OF_BITS);
+        }
+        multipleOfBits =
+          parseByte(childLocation, readText());
+        if (multipleOfBits < 1) {
+          throw new ParseException(childLocation,
+                                   "'multiple-of-bits' must be a " +
+                                   "positive value > 0");
         }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
     if (multipleOfBits == null) {
-      throw new ParseException(element, "'multiple-of-bits' expected");
+      throw new ParseException(location, "'multiple-of-bits' expected");
     }
     final DefaultDataSize defaultDataSize =
       DefaultDataSize.fromMultipleOfBits(multipleOfBits);
     defaultDataSizeSymbol =
-      new Symbol<DefaultDataSize>(element, defaultDataSize);
+      new Symbol<DefaultDataSize>(location, defaultDataSize);
   }
 
   private static final String ADDRESS_REPRESENTATION_CLASS_NAME =
     "org.soundpaint.sysexedit.model.AddressRepresentation";
 
-  private void parseRepresentation(final Element element)
+  private void parseRepresentation()
     throws ParseException
   {
+    final SourceLocation location = getLocation();
     if (addressRepresentationSymbol != null) {
       final Throwable cause =
         new ParseException(addressRepresentationSymbol.getLocation(),
                            "first definition here");
       cause.fillInStackTrace();
-      throwDuplicateException(element, TAG_NAME_REPRESENTATION, cause);
+      throwDuplicateException(location, TAG_NAME_REPRESENTATION, cause);
     }
     final String className =
-      ADDRESS_REPRESENTATION_CLASS_NAME + "$" + element.getTextContent();
+      ADDRESS_REPRESENTATION_CLASS_NAME + "$" + readText();
     final Class<? extends AddressRepresentation> clazz;
     try {
       clazz = (Class<? extends AddressRepresentation>)Class.forName(className);
@@ -598,140 +748,342 @@ public class DeviceModelParser
                            className, e);
     }
     addressRepresentationSymbol =
-      new Symbol<AddressRepresentation>(element, value);
+      new Symbol<AddressRepresentation>(location, value);
   }
 
-  private void parseDeviceClass(final Element element) throws ParseException
+  private void parseDeviceClass() throws ParseException
   {
+    final SourceLocation location = getLocation();
     if (deviceClassSymbol != null) {
       final Throwable cause =
         new ParseException(deviceClassSymbol.getLocation(),
                            "first definition here");
       cause.fillInStackTrace();
-      throwDuplicateException(element, TAG_NAME_DEVICE_CLASS, cause);
+      throwDuplicateException(location, TAG_NAME_DEVICE_CLASS, cause);
     }
-    final String value = element.getTextContent();
-    deviceClassSymbol = new Symbol<String>(element, value);
+    final String value = readText();
+    deviceClassSymbol = new Symbol<String>(location, value);
   }
 
-  private void parseDeviceName(final Element element) throws ParseException
+  private void parseDeviceName() throws ParseException
   {
+    final SourceLocation location = getLocation();
     if (deviceNameSymbol != null) {
       final Throwable cause =
         new ParseException(deviceNameSymbol.getLocation(),
                            "first definition here");
       cause.fillInStackTrace();
-      throwDuplicateException(element, TAG_NAME_DEVICE_NAME, cause);
+      throwDuplicateException(location, TAG_NAME_DEVICE_NAME, cause);
     }
-    final String value = element.getTextContent();
-    deviceNameSymbol = new Symbol<String>(element, value);
+    final String value = readText();
+    deviceNameSymbol = new Symbol<String>(location, value);
   }
 
-  private void parseManufacturerId(final Element element) throws ParseException
+  private void parseManufacturerId() throws ParseException
   {
+    final SourceLocation location = getLocation();
     if (manufacturerIdSymbol != null) {
       final Throwable cause =
         new ParseException(manufacturerIdSymbol.getLocation(),
                            "first definition here");
       cause.fillInStackTrace();
-      throwDuplicateException(element, TAG_NAME_MAN_ID, cause);
+      throwDuplicateException(location, TAG_NAME_MAN_ID, cause);
     }
-    final byte value = parseByte(element, element.getTextContent());
-    manufacturerIdSymbol = new Symbol<Byte>(element, value);
+    final byte value = parseByte(location, readText());
+    manufacturerIdSymbol = new Symbol<Byte>(location, value);
   }
 
-  private void parseModelId(final Element element) throws ParseException
+  private void parseModelId() throws ParseException
   {
+    final SourceLocation location = getLocation();
     if (modelIdSymbol != null) {
       final Throwable cause =
         new ParseException(modelIdSymbol.getLocation(),
                            "first definition here");
       cause.fillInStackTrace();
-      throwDuplicateException(element, TAG_NAME_MODEL_ID, cause);
+      throwDuplicateException(location, TAG_NAME_MODEL_ID, cause);
     }
-    final byte value = parseByte(element, element.getTextContent());
-    modelIdSymbol = new Symbol<Byte>(element, value);
+    final byte value = parseByte(location, readText());
+    modelIdSymbol = new Symbol<Byte>(location, value);
   }
 
-  private void parseDeviceId(final Element element) throws ParseException
+  private void parseDeviceId() throws ParseException
   {
+    final SourceLocation location = getLocation();
     Identifier dataId = null;
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_DATA)) {
-          if (dataId != null) {
-            throwDuplicateException(childElement, TAG_NAME_DATA);
-          }
-          dataId = parseData(childElement, false);
-          final Symbol<? extends Data> dataSymbol =
-            dataSymbols.lookupSymbol(dataId);
-          if (dataSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve data reference '" +
-                                     dataId + "'");
-          }
-          deviceIdSymbol = dataSymbol;
-        } else if (childElementName.equals(TAG_NAME_DATA_REF)) {
-          if (dataId != null) {
-            throwDuplicateException(childElement, TAG_NAME_DATA);
-          }
-          dataId = parseRef(childElement);
-          final Symbol<? extends Data> dataSymbol =
-            dataSymbols.lookupSymbol(dataId);
-          if (dataSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve data reference '" +
-                                     dataId + "'");
-          }
-          deviceIdSymbol = dataSymbol;
-        } else if (isWhiteSpace(childNode)) {
-          // ignore white space
-        } else if (isIgnorableNodeType(childNode)) {
-          // ignore comments, entities, etc.
-        } else {
-          throw new ParseException(childNode, "unsupported node");
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_DATA)) {
+        if (dataId != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DATA);
+        }
+        dataId = parseData(false);
+        final Symbol<? extends Data> dataSymbol =
+          dataSymbols.lookupSymbol(dataId);
+        if (dataSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve data reference '" +
+                                   dataId + "'");
+        }
+        deviceIdSymbol = dataSymbol;
+      } else if (childElementName.equals(TAG_NAME_DATA_REF)) {
+        if (dataId != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DATA);
         }
+        dataId = parseRef();
+        final Symbol<? extends Data> dataSymbol =
+          dataSymbols.lookupSymbol(dataId);
+        if (dataSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve data reference '" +
+                                   dataId + "'");
+        }
+        deviceIdSymbol = dataSymbol;
+      } else {
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
     if (dataId == null) {
-      throw new ParseException(element,
+      throw new ParseException(location,
                                "missing '" + TAG_NAME_DATA + "' declaration");
     }
   }
 
-  private void parseEnteredBy(final Element element) throws ParseException
+  private void parseEnteredBy() throws ParseException
   {
+    final SourceLocation location = getLocation();
     if (enteredBySymbol != null) {
       final Throwable cause =
         new ParseException(enteredBySymbol.getLocation(),
                            "first definition here");
       cause.fillInStackTrace();
-      throwDuplicateException(element, TAG_NAME_ENTERED_BY, cause);
+      throwDuplicateException(location, TAG_NAME_ENTERED_BY, cause);
+    }
+    final String value = readText();
+    enteredBySymbol = new Symbol<String>(location, value);
+  }
+
+  private void parsePacketFormat() throws ParseException
+  {
+    final SourceLocation location = getLocation();
+    if (packetFormatSymbol != null) {
+      final Throwable cause =
+        new ParseException(packetFormatSymbol.getLocation(),
+                           "first definition here");
+      cause.fillInStackTrace();
+      throwDuplicateException(location, TAG_NAME_PACKET_FORMAT, cause);
+    }
+    final List<PacketFormat.HeaderItem> headerItems =
+      new ArrayList<PacketFormat.HeaderItem>();
+    final List<Integer> headerValues = new ArrayList<Integer>();
+    SourceLocation header = null;
+    Integer bitsPerByte = null;
+    Integer byteCountWidth = null;
+    Integer addressWidth = null;
+    PacketFormat.Checksum checksum = null;
+    Integer maxBlockSize = null;
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_HEADER)) {
+        if (header != null) {
+          throwDuplicateException(childLocation, TAG_NAME_HEADER);
+        }
+        parsePacketHeader(headerItems, headerValues);
+        header = childLocation;
+      } else if (childElementName.equals(TAG_NAME_BITS_PER_BYTE)) {
+        if (bitsPerByte != null) {
+          throwDuplicateException(childLocation, TAG_NAME_BITS_PER_BYTE);
+        }
+        bitsPerByte = parseInt(childLocation, readText());
+        if ((bitsPerByte < 1) || (bitsPerByte > 7)) {
+          throw new ParseException(childLocation,
+                                   "bits per byte out of range 1..7");
+        }
+      } else if (childElementName.equals(TAG_NAME_BYTE_COUNT_WIDTH)) {
+        if (byteCountWidth != null) {
+          throwDuplicateException(childLocation, TAG_NAME_BYTE_COUNT_WIDTH);
+        }
+        byteCountWidth =
+          parseInt(childLocation, readText());
+        if (byteCountWidth < 0) {
+          throw new ParseException(childLocation,
+                                   "negative byte count width");
+        }
+      } else if (childElementName.equals(TAG_NAME_ADDRESS_WIDTH)) {
+        if (addressWidth != null) {
+          throwDuplicateException(childLocation, TAG_NAME_ADDRESS_WIDTH);
+        }
+        addressWidth = parseInt(childLocation, readText());
+        if (addressWidth < 1) {
+          throw new ParseException(childLocation,
+                                   "non-positive address width");
+        }
+      } else if (childElementName.equals(TAG_NAME_CHECKSUM)) {
+        if (checksum != null) {
+          throwDuplicateException(childLocation, TAG_NAME_CHECKSUM);
+        }
+        final String value = readText().trim();
+        try {
+          checksum = PacketFormat.Checksum.valueOf(value.toUpperCase());
+        } catch (final IllegalArgumentException e) {
+          throw new ParseException(childLocation,
+                                   "unsupported checksum algorithm: " +
+                                   value);
+        }
+      } else if (childElementName.equals(TAG_NAME_MAX_BLOCK_SIZE)) {
+        if (maxBlockSize != null) {
+          throwDuplicateException(childLocation, TAG_NAME_MAX_BLOCK_SIZE);
+        }
+        maxBlockSize = parseInt(childLocation, readText());
+        if (maxBlockSize < 1) {
+          throw new ParseException(childLocation,
+                                   "non-positive max block size");
+        }
+      } else {
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
+      }
+    }
+    if (header == null) {
+      throw new ParseException(location, "'" + TAG_NAME_HEADER + "' expected");
+    }
+    if (addressWidth == null) {
+      throw new ParseException(location,
+                               "'" + TAG_NAME_ADDRESS_WIDTH + "' expected");
+    }
+    if (maxBlockSize == null) {
+      throw new ParseException(location,
+                               "'" + TAG_NAME_MAX_BLOCK_SIZE + "' expected");
+    }
+    final int[] values = new int[headerValues.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = headerValues.get(i);
+    }
+    final PacketFormat packetFormat;
+    try {
+      packetFormat =
+        new PacketFormat(headerItems.toArray(new PacketFormat.HeaderItem[0]),
+                         values,
+                         bitsPerByte != null ? bitsPerByte : 7,
+                         byteCountWidth != null ? byteCountWidth : 0,
+                         addressWidth,
+                         checksum != null ?
+                         checksum : PacketFormat.Checksum.NONE,
+                         maxBlockSize);
+    } catch (final IllegalArgumentException e) {
+      throw new ParseException(location, "invalid packet format", e);
+    }
+    packetFormatSymbol = new Symbol<PacketFormat>(location, packetFormat);
+  }
+
+  private void parsePacketHeader(final List<PacketFormat.HeaderItem> items,
+                                 final List<Integer> values)
+    throws ParseException
+  {
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_LITERAL)) {
+        final int value = parseInt(childLocation, readText());
+        if ((value < 0) || (value > 0x7f)) {
+          throw new ParseException(childLocation,
+                                   "literal out of range 0x00..0x7f");
+        }
+        items.add(PacketFormat.HeaderItem.LITERAL);
+        values.add(value);
+      } else if (childElementName.equals(TAG_NAME_MAN_ID)) {
+        skipElement();
+        items.add(PacketFormat.HeaderItem.MANUFACTURER_ID);
+        values.add(0);
+      } else if (childElementName.equals(TAG_NAME_MODEL_ID)) {
+        skipElement();
+        items.add(PacketFormat.HeaderItem.MODEL_ID);
+        values.add(0);
+      } else if (childElementName.equals(TAG_NAME_DEVICE_ID)) {
+        final int offset;
+        if (hasAttribute(ATTR_NAME_OFFSET)) {
+          offset = parseInt(childLocation, getAttribute(ATTR_NAME_OFFSET));
+        } else {
+          offset = 0;
+        }
+        skipElement();
+        items.add(PacketFormat.HeaderItem.DEVICE_ID);
+        values.add(offset);
+      } else {
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
+      }
+    }
+  }
+
+  private void parseTransmitPacing()
+    throws ParseException
+  {
+    final SourceLocation location = getLocation();
+    if (transmitPacingSymbol != null) {
+      final Throwable cause =
+        new ParseException(transmitPacingSymbol.getLocation(),
+                           "first definition here");
+      cause.fillInStackTrace();
+      throwDuplicateException(location, TAG_NAME_TRANSMIT_PACING, cause);
     }
-    final String value = element.getTextContent();
-    enteredBySymbol = new Symbol<String>(element, value);
+    Integer bytesPerSecond = null;
+    Integer messageGap = null;
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_BYTES_PER_SECOND)) {
+        if (bytesPerSecond != null) {
+          throwDuplicateException(childLocation, TAG_NAME_BYTES_PER_SECOND);
+        }
+        bytesPerSecond =
+          parseInt(childLocation, readText());
+        if (bytesPerSecond < 0) {
+          throw new ParseException(childLocation,
+                                   "negative bytes per second");
+        }
+      } else if (childElementName.equals(TAG_NAME_MESSAGE_GAP)) {
+        if (messageGap != null) {
+          throwDuplicateException(childLocation, TAG_NAME_MESSAGE_GAP);
+        }
+        messageGap = parseInt(childLocation, readText());
+        if (messageGap < 0) {
+          throw new ParseException(childLocation, "negative message gap");
+        }
+      } else {
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
+      }
+    }
+    final TransmitPacing transmitPacing =
+      new TransmitPacing(bytesPerSecond != null ?
+                         bytesPerSecond :
+                         TransmitPacing.MIDI_WIRE_BYTES_PER_SECOND,
+                         messageGap != null ? messageGap : 0);
+    transmitPacingSymbol =
+      new Symbol<TransmitPacing>(location, transmitPacing);
   }
 
   private static final String[] EMPTY_STRING_ARRAY = new String[0];
 
-  private Identifier parseId(final Element element, final boolean requireId)
+  private Identifier parseId(final boolean requireId)
     throws ParseException
   {
+    final SourceLocation location = getLocation();
     final Identifier identifier;
-    if (element.hasAttribute(ATTR_NAME_REF)) {
-      identifier = Identifier.fromString(element.getAttribute(ATTR_NAME_REF));
-      if (element.hasAttribute(ATTR_NAME_ID)) {
-        throw new ParseException(element, "element may declare at most one of the attributes 'id' and 'ref'");
+    if (hasAttribute(ATTR_NAME_REF)) {
+      identifier = Identifier.fromString(getAttribute(ATTR_NAME_REF));
+      if (hasAttribute(ATTR_NAME_ID)) {
+        throw new ParseException(location, "element may declare at most one of the attributes 'id' and 'ref'");
       }
-    } else if (element.hasAttribute(ATTR_NAME_ID)) {
-      identifier = Identifier.fromString(element.getAttribute(ATTR_NAME_ID));
+    } else if (hasAttribute(ATTR_NAME_ID)) {
+      identifier = Identifier.fromString(getAttribute(ATTR_NAME_ID));
     } else {
       if (requireId) {
-        throw new ParseException(element,
+        throw new ParseException(location,
                                  "missing attribute '" + ATTR_NAME_ID + "'");
       }
       identifier = Identifier.createAnonymousIdentifier();
@@ -739,110 +1091,90 @@ public class DeviceModelParser
     return identifier;
   }
 
-  private Identifier parseEnum(final Element element,
-                               final boolean requireId)
+  private Identifier parseEnum(final boolean requireId)
     throws ParseException
   {
-    final Identifier identifier = parseId(element, requireId);
+    final SourceLocation location = getLocation();
+    final Identifier identifier = parseId(requireId);
     String description = null;
     List<String> values = null;
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_DESCRIPTION)) {
-          if (description != null) {
-            throwDuplicateException(childElement, TAG_NAME_DESCRIPTION);
-          }
-          description = childElement.getTextContent();
-        } else if (childElementName.equals(TAG_NAME_VALUES)) {
-          if (values != null) {
-            throwDuplicateException(childElement, TAG_NAME_VALUES);
-          }
-          values = new ArrayList<String>();
-          parseValues(childElement, values);
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_DESCRIPTION)) {
+        if (description != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DESCRIPTION);
+        }
+        description = readText();
+      } else if (childElementName.equals(TAG_NAME_VALUES)) {
+        if (values != null) {
+          throwDuplicateException(childLocation, TAG_NAME_VALUES);
         }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+        values = new ArrayList<String>();
+        parseValues(values);
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
     if (values == null) {
-      throw new ParseException(element,
+      throw new ParseException(location,
                                "missing '" + TAG_NAME_VALUES + "' declaration");
     }
     final String[] strValues = values.toArray(EMPTY_STRING_ARRAY);
     if (strValues.length == 0) {
-      throw new ParseException(element,
+      throw new ParseException(location,
                                "empty '" + TAG_NAME_VALUES + "' declaration");
     }
     final EnumRenderer renderer = new EnumRenderer(description, strValues);
     final Symbol<EnumRenderer> symbol =
-      new Symbol<EnumRenderer>(element, renderer);
+      new Symbol<EnumRenderer>(location, renderer);
     rendererSymbols.enterSymbol(identifier, symbol);
     return identifier;
   }
 
-  private Identifier parseInteger(final Element element,
-                                  final boolean requireId)
+  private Identifier parseInteger(final boolean requireId)
     throws ParseException
   {
-    final Identifier identifier = parseId(element, requireId);
+    final SourceLocation location = getLocation();
+    final Identifier identifier = parseId(requireId);
     Integer radix = null;
     Boolean fillWithLeadingZeros = null;
     String displayPrefix = null;
     String displaySuffix = null;
     Byte displayMinWidth = null;
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_RADIX)) {
-          if (radix != null) {
-            throwDuplicateException(childElement, TAG_NAME_RADIX);
-          }
-          radix = parseInt(childElement, childElement.getTextContent());
-        } else if (childElementName.equals(TAG_NAME_FILL_WITH_LEADING_ZEROS)) {
-          if (fillWithLeadingZeros != null) {
-            throwDuplicateException(childElement, TAG_NAME_FILL_WITH_LEADING_ZEROS);
-          }
-          fillWithLeadingZeros = Boolean.parseBoolean(childElement.getTextContent());
-        } else if (childElementName.equals(TAG_NAME_DISPLAY_PREFIX)) {
-          if (displayPrefix != null) {
-            throwDuplicateException(childElement, TAG_NAME_DISPLAY_PREFIX);
-          }
-          displayPrefix = childElement.getTextContent().trim();
-        } else if (childElementName.equals(TAG_NAME_DISPLAY_SUFFIX)) {
-          if (displaySuffix != null) {
-            throwDuplicateException(childElement, TAG_NAME_DISPLAY_SUFFIX);
-          }
-          displaySuffix = childElement.getTextContent().trim();
-        } else if (childElementName.equals(TAG_NAME_DISPLAY_MIN_WIDTH)) {
-          if (displayMinWidth != null) {
-            throwDuplicateException(childElement, TAG_NAME_DISPLAY_MIN_WIDTH);
-          }
-          displayMinWidth =
-            parseByte(childElement, childElement.getTextContent());
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_RADIX)) {
+        if (radix != null) {
+          throwDuplicateException(childLocation, TAG_NAME_RADIX);
+        }
+        radix = parseInt(childLocation, readText());
+      } else if (childElementName.equals(TAG_NAME_FILL_WITH_LEADING_ZEROS)) {
+        if (fillWithLeadingZeros != null) {
+          throwDuplicateException(childLocation, TAG_NAME_FILL_WITH_LEADING_ZEROS);
+        }
+        fillWithLeadingZeros = Boolean.parseBoolean(readText());
+      } else if (childElementName.equals(TAG_NAME_DISPLAY_PREFIX)) {
+        if (displayPrefix != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DISPLAY_PREFIX);
+        }
+        displayPrefix = readText().trim();
+      } else if (childElementName.equals(TAG_NAME_DISPLAY_SUFFIX)) {
+        if (displaySuffix != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DISPLAY_SUFFIX);
         }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+        displaySuffix = readText().trim();
+      } else if (childElementName.equals(TAG_NAME_DISPLAY_MIN_WIDTH)) {
+        if (displayMinWidth != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DISPLAY_MIN_WIDTH);
+        }
+        displayMinWidth =
+          parseByte(childLocation, readText());
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
     final IntegerRenderer renderer =
@@ -852,260 +1184,232 @@ public class DeviceModelParser
                           displaySuffix != null ? displaySuffix : "",
                           displayMinWidth != null ? displayMinWidth : 0);
     final Symbol<IntegerRenderer> symbol =
-      new Symbol<IntegerRenderer>(element, renderer);
+      new Symbol<IntegerRenderer>(location, renderer);
     rendererSymbols.enterSymbol(identifier, symbol);
     return identifier;
   }
 
-  private Identifier parseBitMask(final Element element,
-                                  final boolean requireId)
+  private Identifier parseBitMask(final boolean requireId)
     throws ParseException
   {
-    final Identifier identifier = parseId(element, requireId);
+    final SourceLocation location = getLocation();
+    final Identifier identifier = parseId(requireId);
     Integer bitStringSize = null;
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_BIT_STRING_SIZE)) {
-          if (bitStringSize != null) {
-            throwDuplicateException(childElement, TAG_NAME_BIT_STRING_SIZE);
-          }
-          bitStringSize = parseInt(childElement, childElement.getTextContent());
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_BIT_STRING_SIZE)) {
+        if (bitStringSize != null) {
+          throwDuplicateException(childLocation, TAG_NAME_BIT_STRING_SIZE);
         }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+        bitStringSize = parseInt(childLocation, readText());
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
     final BitMaskRenderer renderer =
       new BitMaskRenderer(bitStringSize != null ? bitStringSize : 8);
     final Symbol<BitMaskRenderer> symbol =
-      new Symbol<BitMaskRenderer>(element, renderer);
+      new Symbol<BitMaskRenderer>(location, renderer);
     rendererSymbols.enterSymbol(identifier, symbol);
     return identifier;
   }
 
-  private Identifier parseType(final Element element, final boolean requireId)
+  private Identifier parseType(final boolean requireId)
     throws ParseException
   {
-    final Identifier identifier = parseId(element, requireId);
+    final SourceLocation location = getLocation();
+    final Identifier identifier = parseId(requireId);
     String description = null;
     Identifier iconId = null;
     final List<ValueRange> ranges = new ArrayList<ValueRange>();
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_DESCRIPTION)) {
-          if (description != null) {
-            throwDuplicateException(childElement, TAG_NAME_DESCRIPTION);
-          }
-          description = childElement.getTextContent();
-        } else if (childElementName.equals(TAG_NAME_ICON)) {
-          if (iconId != null) {
-            throwDuplicateException(childElement, TAG_NAME_ICON);
-          }
-          iconId = Identifier.fromString(childElement.getTextContent());
-        } else if (childElementName.equals(TAG_NAME_RANGE)) {
-          final Identifier rangeId = parseRange(childElement, false);
-          final Symbol<? extends ValueRange> rangeSymbol =
-            rangeSymbols.lookupSymbol(rangeId);
-          if (rangeSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve range reference '" +
-                                     rangeId + "'");
-          }
-          ranges.add(rangeSymbol.getValue());
-        } else if (childElementName.equals(TAG_NAME_RANGE_REF)) {
-          final Identifier rangeId = parseRef(childElement);
-          final Symbol<? extends ValueRange> rangeSymbol =
-            rangeSymbols.lookupSymbol(rangeId);
-          if (rangeSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve range reference '" +
-                                     rangeId + "'");
-          }
-          ranges.add(rangeSymbol.getValue());
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_DESCRIPTION)) {
+        if (description != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DESCRIPTION);
+        }
+        description = readText();
+      } else if (childElementName.equals(TAG_NAME_ICON)) {
+        if (iconId != null) {
+          throwDuplicateException(childLocation, TAG_NAME_ICON);
+        }
+        iconId = Identifier.fromString(readText());
+      } else if (childElementName.equals(TAG_NAME_RANGE)) {
+        final Identifier rangeId = parseRange(false);
+        final Symbol<? extends ValueRange> rangeSymbol =
+          rangeSymbols.lookupSymbol(rangeId);
+        if (rangeSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve range reference '" +
+                                   rangeId + "'");
         }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+        ranges.add(rangeSymbol.getValue());
+      } else if (childElementName.equals(TAG_NAME_RANGE_REF)) {
+        final Identifier rangeId = parseRef();
+        final Symbol<? extends ValueRange> rangeSymbol =
+          rangeSymbols.lookupSymbol(rangeId);
+        if (rangeSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve range reference '" +
+                                   rangeId + "'");
+        }
+        ranges.add(rangeSymbol.getValue());
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
     final SparseType type =
       new SparseType(description,
                      iconId != null ? iconId.toString() : null,
                      ranges);
-    final Symbol<SparseType> symbol = new Symbol<SparseType>(element, type);
+    final Symbol<SparseType> symbol = new Symbol<SparseType>(location, type);
     scope.enterType(symbol, identifier);
     return identifier;
   }
 
-  private void throwDuplicateRendererException(final Element element,
+  private void throwDuplicateRendererException(final SourceLocation location,
                                                final String tagName)
     throws ParseException
   {
-    throw new ParseException(element, "duplicate '" + tagName +
+    throw new ParseException(location, "duplicate '" + tagName +
                              "' renderer definition");
   }
 
-  private Identifier parseRange(final Element element, final boolean requireId)
+  private Identifier parseRange(final boolean requireId)
     throws ParseException
   {
-    final Identifier identifier = parseId(element, requireId);
+    final SourceLocation location = getLocation();
+    final Identifier identifier = parseId(requireId);
     String description = null;
     Long lowerBound = null;
     Long upperBound = null;
     Long displayOffset = null;
     Symbol<? extends ValueRangeRenderer> rendererSymbol = null;
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_DESCRIPTION)) {
-          if (description != null) {
-            throwDuplicateException(childElement, TAG_NAME_DESCRIPTION);
-          }
-          description = childElement.getTextContent();
-        } else if (childElementName.equals(TAG_NAME_LOWER_BOUND)) {
-          if (lowerBound != null) {
-            throwDuplicateException(childElement, TAG_NAME_LOWER_BOUND);
-          }
-          lowerBound = parseLong(childElement, childElement.getTextContent());
-        } else if (childElementName.equals(TAG_NAME_UPPER_BOUND)) {
-          if (upperBound != null) {
-            throwDuplicateException(childElement, TAG_NAME_UPPER_BOUND);
-          }
-          upperBound = parseLong(childElement, childElement.getTextContent());
-        } else if (childElementName.equals(TAG_NAME_DISPLAY_OFFSET)) {
-          if (displayOffset != null) {
-            throwDuplicateException(childElement, TAG_NAME_DISPLAY_OFFSET);
-          }
-          displayOffset =
-            parseLong(childElement, childElement.getTextContent());
-        } else if (childElementName.equals(TAG_NAME_ENUM)) {
-          if (rendererSymbol != null) {
-            final Throwable cause =
-              new ParseException(rendererSymbol.getLocation(),
-                                 "first definition here");
-            cause.fillInStackTrace();
-            throwDuplicateRendererException(childElement, TAG_NAME_ENUM);
-          }
-          final Identifier rendererId = parseEnum(childElement, false);
-          rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
-          if (rendererSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve renderer reference '" +
-                                     rendererId + "'");
-          }
-        } else if (childElementName.equals(TAG_NAME_ENUM_REF)) {
-          if (rendererSymbol != null) {
-            final Throwable cause =
-              new ParseException(rendererSymbol.getLocation(),
-                                 "first definition here");
-            cause.fillInStackTrace();
-            throwDuplicateRendererException(childElement, TAG_NAME_ENUM);
-          }
-          final Identifier rendererId = parseRef(childElement);
-          rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
-          if (rendererSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve renderer reference '" +
-                                     rendererId + "'");
-          }
-        } else if (childElementName.equals(TAG_NAME_INTEGER)) {
-          if (rendererSymbol != null) {
-            final Throwable cause =
-              new ParseException(rendererSymbol.getLocation(),
-                                 "first definition here");
-            cause.fillInStackTrace();
-            throwDuplicateRendererException(childElement, TAG_NAME_INTEGER);
-          }
-          final Identifier rendererId = parseInteger(childElement, false);
-          rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
-          if (rendererSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve renderer reference '" +
-                                     rendererId + "'");
-          }
-        } else if (childElementName.equals(TAG_NAME_INTEGER_REF)) {
-          if (rendererSymbol != null) {
-            final Throwable cause =
-              new ParseException(rendererSymbol.getLocation(),
-                                 "first definition here");
-            cause.fillInStackTrace();
-            throwDuplicateRendererException(childElement, TAG_NAME_INTEGER);
-          }
-          final Identifier rendererId = parseRef(childElement);
-          rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
-          if (rendererSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve renderer reference '" +
-                                     rendererId + "'");
-          }
-        } else if (childElementName.equals(TAG_NAME_BIT_MASK)) {
-          if (rendererSymbol != null) {
-            final Throwable cause =
-              new ParseException(rendererSymbol.getLocation(),
-                                 "first definition here");
-            cause.fillInStackTrace();
-            throwDuplicateRendererException(childElement, TAG_NAME_BIT_MASK);
-          }
-          final Identifier rendererId = parseBitMask(childElement, true);
-          rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
-          if (rendererSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve renderer reference '" +
-                                     rendererId + "'");
-          }
-        } else if (childElementName.equals(TAG_NAME_BIT_MASK_REF)) {
-          if (rendererSymbol != null) {
-            final Throwable cause =
-              new ParseException(rendererSymbol.getLocation(),
-                                 "first definition here");
-            cause.fillInStackTrace();
-            throwDuplicateRendererException(childElement, TAG_NAME_BIT_MASK);
-          }
-          final Identifier rendererId = parseRef(childElement);
-          rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
-          if (rendererSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve renderer reference '" +
-                                     rendererId + "'");
-          }
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_DESCRIPTION)) {
+        if (description != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DESCRIPTION);
+        }
+        description = readText();
+      } else if (childElementName.equals(TAG_NAME_LOWER_BOUND)) {
+        if (lowerBound != null) {
+          throwDuplicateException(childLocation, TAG_NAME_LOWER_BOUND);
+        }
+        lowerBound = parseLong(childLocation, readText());
+      } else if (childElementName.equals(TAG_NAME_UPPER_BOUND)) {
+        if (upperBound != null) {
+          throwDuplicateException(childLocation, TAG_NAME_UPPER_BOUND);
+        }
+        upperBound = parseLong(childLocation, readText());
+      } else if (childElementName.equals(TAG_NAME_DISPLAY_OFFSET)) {
+        if (displayOffset != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DISPLAY_OFFSET);
+        }
+        displayOffset =
+          parseLong(childLocation, readText());
+      } else if (childElementName.equals(TAG_NAME_ENUM)) {
+        if (rendererSymbol != null) {
+          final Throwable cause =
+            new ParseException(rendererSymbol.getLocation(),
+                               "first definition here");
+          cause.fillInStackTrace();
+          throwDuplicateRendererException(childLocation, TAG_NAME_ENUM);
+        }
+        final Identifier rendererId = parseEnum(false);
+        rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
+        if (rendererSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve renderer reference '" +
+                                   rendererId + "'");
+        }
+      } else if (childElementName.equals(TAG_NAME_ENUM_REF)) {
+        if (rendererSymbol != null) {
+          final Throwable cause =
+            new ParseException(rendererSymbol.getLocation(),
+                               "first definition here");
+          cause.fillInStackTrace();
+          throwDuplicateRendererException(childLocation, TAG_NAME_ENUM);
+        }
+        final Identifier rendererId = parseRef();
+        rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
+        if (rendererSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve renderer reference '" +
+                                   rendererId + "'");
+        }
+      } else if (childElementName.equals(TAG_NAME_INTEGER)) {
+        if (rendererSymbol != null) {
+          final Throwable cause =
+            new ParseException(rendererSymbol.getLocation(),
+                               "first definition here");
+          cause.fillInStackTrace();
+          throwDuplicateRendererException(childLocation, TAG_NAME_INTEGER);
+        }
+        final Identifier rendererId = parseInteger(false);
+        rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
+        if (rendererSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve renderer reference '" +
+                                   rendererId + "'");
+        }
+      } else if (childElementName.equals(TAG_NAME_INTEGER_REF)) {
+        if (rendererSymbol != null) {
+          final Throwable cause =
+            new ParseException(rendererSymbol.getLocation(),
+                               "first definition here");
+          cause.fillInStackTrace();
+          throwDuplicateRendererException(childLocation, TAG_NAME_INTEGER);
+        }
+        final Identifier rendererId = parseRef();
+        rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
+        if (rendererSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve renderer reference '" +
+                                   rendererId + "'");
+        }
+      } else if (childElementName.equals(TAG_NAME_BIT_MASK)) {
+        if (rendererSymbol != null) {
+          final Throwable cause =
+            new ParseException(rendererSymbol.getLocation(),
+                               "first definition here");
+          cause.fillInStackTrace();
+          throwDuplicateRendererException(childLocation, TAG_NAME_BIT_MASK);
+        }
+        final Identifier rendererId = parseBitMask(true);
+        rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
+        if (rendererSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve renderer reference '" +
+                                   rendererId + "'");
+        }
+      } else if (childElementName.equals(TAG_NAME_BIT_MASK_REF)) {
+        if (rendererSymbol != null) {
+          final Throwable cause =
+            new ParseException(rendererSymbol.getLocation(),
+                               "first definition here");
+          cause.fillInStackTrace();
+          throwDuplicateRendererException(childLocation, TAG_NAME_BIT_MASK);
+        }
+        final Identifier rendererId = parseRef();
+        rendererSymbol = rendererSymbols.lookupSymbol(rendererId);
+        if (rendererSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve renderer reference '" +
+                                   rendererId + "'");
         }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
     if (rendererSymbol == null) {
-      throw new ParseException(element, "one of '" + TAG_NAME_ENUM +
+      throw new ParseException(location, "one of '" + TAG_NAME_ENUM +
                                "', '" + TAG_NAME_INTEGER +
                                "', '" + TAG_NAME_BIT_MASK +
                                "' must be specified");
@@ -1125,12 +1429,12 @@ public class DeviceModelParser
                      upperBound != null ? upperBound : 0,
                      renderer);
       */
-    final Symbol<ValueRange> symbol = new Symbol<ValueRange>(element, range);
+    final Symbol<ValueRange> symbol = new Symbol<ValueRange>(location, range);
     rangeSymbols.enterSymbol(identifier, symbol);
     return identifier;
   }
 
-  private long parseAddress(final Element location,
+  private long parseAddress(final SourceLocation location,
                             final String text) throws ParseException
   {
     try {
@@ -1140,56 +1444,58 @@ public class DeviceModelParser
     }
   }
 
-  private long parseAddress(final Element element) throws ParseException
+  private long parseAddress(final SourceLocation location)
+    throws ParseException
   {
     if (addressRepresentationSymbol == null) {
-      throw new ParseException(element, "need address representation be defined prior to parsing display address");
+      throw new ParseException(location, "need address representation be defined prior to parsing display address");
     }
-    return parseAddress(element, element.getTextContent());
+    return parseAddress(location, readText());
   }
 
-  private Identifier parseFolder(final Element element, final boolean requireId)
+  private Identifier parseFolder(final boolean requireId)
     throws ParseException
   {
-    final Identifier identifier = parseId(element, requireId);
+    final SourceLocation location = getLocation();
+    final Identifier identifier = parseId(requireId);
     final Folder folder = new Folder();
-    final Symbol<Folder> symbol = new Symbol<Folder>(element, folder);
+    final Symbol<Folder> symbol = new Symbol<Folder>(location, folder);
     scope.enterFolder(identifier, symbol);
 
     scope.enterScope();
 
     final String unparsedLabel;
-    if (element.hasAttribute(ATTR_NAME_LABEL)) {
-      unparsedLabel = element.getAttribute(ATTR_NAME_LABEL);
+    if (hasAttribute(ATTR_NAME_LABEL)) {
+      unparsedLabel = getAttribute(ATTR_NAME_LABEL);
     } else {
       unparsedLabel = null;
     }
 
     final Integer multiplicity;
-    if (element.hasAttribute(ATTR_NAME_MULTIPLICITY)) {
+    if (hasAttribute(ATTR_NAME_MULTIPLICITY)) {
       multiplicity =
-        parseInt(element, element.getAttribute(ATTR_NAME_MULTIPLICITY));
+        parseInt(location, getAttribute(ATTR_NAME_MULTIPLICITY));
       if (multiplicity < 1) {
-        throw new ParseException(element, "non-positive folder multiplicity");
+        throw new ParseException(location, "non-positive folder multiplicity");
       }
     } else {
       multiplicity = 1;
     }
 
     final Identifier indexVarId;
-    if (element.hasAttribute(ATTR_NAME_INDEX_VAR)) {
+    if (hasAttribute(ATTR_NAME_INDEX_VAR)) {
       indexVarId =
-        Identifier.fromString(element.getAttribute(ATTR_NAME_INDEX_VAR));
+        Identifier.fromString(getAttribute(ATTR_NAME_INDEX_VAR));
     } else {
       indexVarId = Identifier.createAnonymousIdentifier();
     }
     final IndexVariable indexVar = new IndexVariable(indexVarId);
     final Symbol<IndexVariable> indexVarSymbol =
-      new Symbol<IndexVariable>(element, indexVar);
+      new Symbol<IndexVariable>(location, indexVar);
     scope.enterIndexVariable(indexVarSymbol);
 
     final StringExpression label =
-      StringExpression.parse(element, unparsedLabel, scope);
+      StringExpression.parse(location, unparsedLabel, scope);
 
     String description = null;
     Long bitAddress = null;
@@ -1198,138 +1504,128 @@ public class DeviceModelParser
     Long addressIncrement = null;
     Identifier relativeToId = null;
     final List<ParserNode> contents = new ArrayList<ParserNode>();
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_DESCRIPTION)) {
-          if (description != null) {
-            throwDuplicateException(childElement, TAG_NAME_DESCRIPTION);
-          }
-          description = childElement.getTextContent();
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_DESCRIPTION)) {
+        if (description != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DESCRIPTION);
+        }
+        description = readText();
 
-        } else if (childElementName.equals(TAG_NAME_BIT_ADDRESS)) {
-          if (address != null) {
-            throwDuplicateException(childElement,
-                                    TAG_NAME_ADDRESS, TAG_NAME_BIT_ADDRESS);
-          }
-          if (bitAddress != null) {
-            throwDuplicateException(childElement, TAG_NAME_BIT_ADDRESS);
-          }
-          bitAddress = parseLong(childElement, childElement.getTextContent());
-          if (bitAddress < 0) {
-            throw new ParseException(childElement, "negative bit address");
-          }
-          if (childElement.hasAttribute(ATTR_NAME_RELATIVE_TO)) {
-            relativeToId =
-              Identifier.fromString(childElement.getAttribute(ATTR_NAME_RELATIVE_TO));
-          }
-        } else if (childElementName.equals(TAG_NAME_ADDRESS)) {
-          if (bitAddress != null) {
-            throwDuplicateException(childElement,
-                                    TAG_NAME_BIT_ADDRESS, TAG_NAME_ADDRESS);
-          }
-          if (address != null) {
-            throwDuplicateException(childElement, TAG_NAME_ADDRESS);
-          }
-          address = parseAddress(childElement);
-          if (address < 0) {
-            throw new ParseException(childElement, "negative address");
-          }
-          if (childElement.hasAttribute(ATTR_NAME_RELATIVE_TO)) {
-            relativeToId =
-              Identifier.fromString(childElement.getAttribute(ATTR_NAME_RELATIVE_TO));
-          }
-        } else if (childElementName.equals(TAG_NAME_BIT_ADDRESS_INCREMENT)) {
-          if (addressIncrement != null) {
-            throwDuplicateException(childElement,
-                                    TAG_NAME_ADDRESS_INCREMENT,
-                                    TAG_NAME_BIT_ADDRESS_INCREMENT);
-          }
-          if (bitAddressIncrement != null) {
-            throwDuplicateException(childElement,
-                                    TAG_NAME_BIT_ADDRESS_INCREMENT);
-          }
-          bitAddressIncrement =
-            parseLong(childElement, childElement.getTextContent());
-          if (bitAddressIncrement < 1) {
-            throw new ParseException(childElement,
-                                     "non-positive bit address increment");
-          }
-        } else if (childElementName.equals(TAG_NAME_ADDRESS_INCREMENT)) {
-          if (bitAddressIncrement != null) {
-            throwDuplicateException(childElement,
-                                    TAG_NAME_BIT_ADDRESS_INCREMENT,
-                                    TAG_NAME_ADDRESS_INCREMENT);
-          }
-          if (addressIncrement != null) {
-            throwDuplicateException(childElement, TAG_NAME_ADDRESS_INCREMENT);
-          }
-          addressIncrement = parseAddress(childElement);
-          if (addressIncrement < 1) {
-            throw new ParseException(childElement,
-                                     "non-positive address increment");
-          }
-        } else if (childElementName.equals(TAG_NAME_FOLDER)) {
-          final Identifier folderId = parseFolder(childElement, false);
-          final Symbol<? extends Folder> folderSymbol =
-            scope.lookupFolder(folderId);
-          if (folderSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve folder reference '" +
-                                     folderId + "'");
-          }
-          if (folderId == Identifier.ROOT_ID) {
-            throw new ParseException(element,
-                                     "can not put root beneath other node");
-          }
-          contents.add(folderSymbol.getValue());
-        } else if (childElementName.equals(TAG_NAME_FOLDER_REF)) {
-          final Identifier folderId = parseRef(childElement);
-          final Symbol<? extends Folder> folderSymbol =
-            scope.lookupFolder(folderId);
-          if (folderSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve folder reference '" +
-                                     folderId + "'");
-          }
-          if (folderId == Identifier.ROOT_ID) {
-            throw new ParseException(element,
-                                     "can not put root beneath other node");
-          }
-          contents.add(folderSymbol.getValue());
-        } else if (childElementName.equals(TAG_NAME_DATA)) {
-          final Identifier dataId = parseData(childElement, false);
-          final Symbol<? extends Data> dataSymbol =
-            dataSymbols.lookupSymbol(dataId);
-          if (dataSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve data reference '" +
-                                     dataId + "'");
-          }
-          contents.add(dataSymbol.getValue());
-        } else if (childElementName.equals(TAG_NAME_DATA_REF)) {
-          final Identifier dataId = parseRef(childElement);
-          final Symbol<? extends Data> dataSymbol =
-            dataSymbols.lookupSymbol(dataId);
-          if (dataSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve data reference '" +
-                                     dataId + "'");
-          }
-          contents.add(dataSymbol.getValue());
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
+      } else if (childElementName.equals(TAG_NAME_BIT_ADDRESS)) {
+        if (address != null) {
+          throwDuplicateException(childLocation,
+                                  TAG_NAME_ADDRESS, TAG_NAME_BIT_ADDRESS);
+        }
+        if (bitAddress != null) {
+          throwDuplicateException(childLocation, TAG_NAME_BIT_ADDRESS);
+        }
+        if (hasAttribute(ATTR_NAME_RELATIVE_TO)) {
+          relativeToId =
+            Identifier.fromString(getAttribute(ATTR_NAME_RELATIVE_TO));
+        }
+        bitAddress = parseLong(childLocation, readText());
+        if (bitAddress < 0) {
+          throw new ParseException(childLocation, "negative bit address");
+        }
+      } else if (childElementName.equals(TAG_NAME_ADDRESS)) {
+        if (bitAddress != null) {
+          throwDuplicateException(childLocation,
+                                  TAG_NAME_BIT_ADDRESS, TAG_NAME_ADDRESS);
+        }
+        if (address != null) {
+          throwDuplicateException(childLocation, TAG_NAME_ADDRESS);
+        }
+        if (hasAttribute(ATTR_NAME_RELATIVE_TO)) {
+          relativeToId =
+            Identifier.fromString(getAttribute(ATTR_NAME_RELATIVE_TO));
+        }
+        address = parseAddress(childLocation);
+        if (address < 0) {
+          throw new ParseException(childLocation, "negative address");
+        }
+      } else if (childElementName.equals(TAG_NAME_BIT_ADDRESS_INCREMENT)) {
+        if (addressIncrement != null) {
+          throwDuplicateException(childLocation,
+                                  TAG_NAME_ADDRESS_INCREMENT,
+                                  TAG_NAME_BIT_ADDRESS_INCREMENT);
+        }
+        if (bitAddressIncrement != null) {
+          throwDuplicateException(childLocation,
+                                  TAG_NAME_BIT_ADDRESS_INCREMENT);
         }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+        bitAddressIncrement =
+          parseLong(childLocation, readText());
+        if (bitAddressIncrement < 1) {
+          throw new ParseException(childLocation,
+                                   "non-positive bit address increment");
+        }
+      } else if (childElementName.equals(TAG_NAME_ADDRESS_INCREMENT)) {
+        if (bitAddressIncrement != null) {
+          throwDuplicateException(childLocation,
+                                  TAG_NAME_BIT_ADDRESS_INCREMENT,
+                                  TAG_NAME_ADDRESS_INCREMENT);
+        }
+        if (addressIncrement != null) {
+          throwDuplicateException(childLocation, TAG_NAME_ADDRESS_INCREMENT);
+        }
+        addressIncrement = parseAddress(childLocation);
+        if (addressIncrement < 1) {
+          throw new ParseException(childLocation,
+                                   "non-positive address increment");
+        }
+      } else if (childElementName.equals(TAG_NAME_FOLDER)) {
+        final Identifier folderId = parseFolder(false);
+        final Symbol<? extends Folder> folderSymbol =
+          scope.lookupFolder(folderId);
+        if (folderSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve folder reference '" +
+                                   folderId + "'");
+        }
+        if (folderId == Identifier.ROOT_ID) {
+          throw new ParseException(location,
+                                   "can not put root beneath other node");
+        }
+        contents.add(folderSymbol.getValue());
+      } else if (childElementName.equals(TAG_NAME_FOLDER_REF)) {
+        final Identifier folderId = parseRef();
+        final Symbol<? extends Folder> folderSymbol =
+          scope.lookupFolder(folderId);
+        if (folderSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve folder reference '" +
+                                   folderId + "'");
+        }
+        if (folderId == Identifier.ROOT_ID) {
+          throw new ParseException(location,
+                                   "can not put root beneath other node");
+        }
+        contents.add(folderSymbol.getValue());
+      } else if (childElementName.equals(TAG_NAME_DATA)) {
+        final Identifier dataId = parseData(false);
+        final Symbol<? extends Data> dataSymbol =
+          dataSymbols.lookupSymbol(dataId);
+        if (dataSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve data reference '" +
+                                   dataId + "'");
+        }
+        contents.add(dataSymbol.getValue());
+      } else if (childElementName.equals(TAG_NAME_DATA_REF)) {
+        final Identifier dataId = parseRef();
+        final Symbol<? extends Data> dataSymbol =
+          dataSymbols.lookupSymbol(dataId);
+        if (dataSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve data reference '" +
+                                   dataId + "'");
+        }
+        contents.add(dataSymbol.getValue());
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
 
@@ -1341,13 +1637,13 @@ public class DeviceModelParser
       (addressIncrement != null ?
        addressIncrement : -1);
     if ((desiredAddressIncrement != -1) && (desiredAddress == -1)) {
-      throw new ParseException(element, "can not declare address increment " +
+      throw new ParseException(location, "can not declare address increment " +
                                "if no address is declared");
     }
 
     if ((multiplicity > 1) && (desiredAddress > -1)) {
       if (addressIncrement == null) {
-        throw new ParseException(element,
+        throw new ParseException(location,
                                  "since this folder's multiplicity is " +
                                  "greater than 1 and a desired address has " +
                                  "been explicitly specified, you also need " +
@@ -1360,7 +1656,7 @@ public class DeviceModelParser
       final Symbol<? extends Folder> folderSymbol =
         scope.lookupFolder(relativeToId);
       if (folderSymbol == null) {
-        throw new ParseException(element,
+        throw new ParseException(location,
                                  "can not resolve folder reference '" +
                                  relativeToId + "'");
       }
@@ -1382,36 +1678,27 @@ public class DeviceModelParser
     return identifier;
   }
 
-  private void parseValues(final Element element, final List<String> values)
+  private void parseValues(final List<String> values)
     throws ParseException
   {
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_VALUE)) {
-          final String value = childElement.getTextContent();
-          values.add(value);
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
-        }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_VALUE)) {
+        final String value = readText();
+        values.add(value);
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
   }
 
-  private Identifier parseData(final Element element, final boolean requireId)
+  private Identifier parseData(final boolean requireId)
     throws ParseException
   {
-    final Identifier identifier = parseId(element, requireId);
+    final SourceLocation location = getLocation();
+    final Identifier identifier = parseId(requireId);
     String description = null;
     SparseType type = null;
     Identifier iconId = null;
@@ -1421,99 +1708,89 @@ public class DeviceModelParser
     Long bitAddress = null;
 
     final String label;
-    if (element.hasAttribute(ATTR_NAME_LABEL)) {
-      label = element.getAttribute(ATTR_NAME_LABEL);
+    if (hasAttribute(ATTR_NAME_LABEL)) {
+      label = getAttribute(ATTR_NAME_LABEL);
     } else {
       label = null;
     }
 
-    final NodeList childNodes = element.getChildNodes();
-    for (int index = 0; index < childNodes.getLength(); index++) {
-      final Node childNode = childNodes.item(index);
-      if (childNode instanceof Element) {
-        final Element childElement = (Element)childNode;
-        final String childElementName = childElement.getTagName();
-        if (childElementName.equals(TAG_NAME_DESCRIPTION)) {
-          if (description != null) {
-            throwDuplicateException(childElement, TAG_NAME_DESCRIPTION);
-          }
-          description = childElement.getTextContent();
-        } else if (childElementName.equals(TAG_NAME_TYPE)) {
-          if (type != null) {
-            throwDuplicateException(childElement, TAG_NAME_TYPE);
-          }
-          final Identifier typeId = parseType(childElement, false);
-          final Symbol<? extends SparseType> typeSymbol =
-            scope.lookupType(typeId);
-          if (typeSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve type reference '" +
-                                     typeId + "'");
-          }
-          type = typeSymbol.getValue();
-        } else if (childElementName.equals(TAG_NAME_TYPE_REF)) {
-          if (type != null) {
-            throwDuplicateException(childElement, TAG_NAME_TYPE_REF);
-          }
-          final Identifier typeId = parseRef(childElement);
-          final Symbol<? extends SparseType> typeSymbol =
-            scope.lookupType(typeId);
-          if (typeSymbol == null) {
-            throw new ParseException(element,
-                                     "can not resolve type reference '" +
-                                     typeId + "'");
-          }
-          type = typeSymbol.getValue();
-        } else if (childElementName.equals(TAG_NAME_ICON)) {
-          if (iconId != null) {
-            throwDuplicateException(childElement, TAG_NAME_ICON);
-          }
-          iconId = Identifier.fromString(childElement.getTextContent());
-        } else if (childElementName.equals(TAG_NAME_BIT_SIZE)) {
-          if (bitSize != null) {
-            throwDuplicateException(childElement, TAG_NAME_BIT_SIZE);
-          }
-          bitSize = parseByte(childElement, childElement.getTextContent());
-          if ((bitSize < 0) || (bitSize > 32)) {
-            throw new ParseException("invalid bit size; valid range: 0..32");
-          }
-        } else if (childElementName.equals(TAG_NAME_DEFAULT_VALUE)) {
-          if (defaultValue != null) {
-            throwDuplicateException(childElement, TAG_NAME_DEFAULT_VALUE);
-          }
-          defaultValue = parseInt(childElement, childElement.getTextContent());
-        } else if (childElementName.equals(TAG_NAME_ADDRESS)) {
-          if (bitAddress != null) {
-            throwDuplicateException(childElement,
-                                    TAG_NAME_BIT_ADDRESS, TAG_NAME_ADDRESS);
-          }
-          if (address != null) {
-            throwDuplicateException(childElement, TAG_NAME_ADDRESS);
-          }
-          address = parseAddress(childElement);
-        } else if (childElementName.equals(TAG_NAME_BIT_ADDRESS)) {
-          if (address != null) {
-            throwDuplicateException(childElement,
-                                    TAG_NAME_ADDRESS, TAG_NAME_BIT_ADDRESS);
-          }
-          if (bitAddress != null) {
-            throwDuplicateException(childElement, TAG_NAME_BIT_ADDRESS);
-          }
-          bitAddress = parseLong(childElement, childElement.getTextContent());
-        } else {
-          throw new ParseException(childElement, "unexpected element: " +
-                                   childElementName);
+    while (nextChildElement()) {
+      final SourceLocation childLocation = getLocation();
+      final String childElementName = reader.getLocalName();
+      if (childElementName.equals(TAG_NAME_DESCRIPTION)) {
+        if (description != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DESCRIPTION);
+        }
+        description = readText();
+      } else if (childElementName.equals(TAG_NAME_TYPE)) {
+        if (type != null) {
+          throwDuplicateException(childLocation, TAG_NAME_TYPE);
+        }
+        final Identifier typeId = parseType(false);
+        final Symbol<? extends SparseType> typeSymbol =
+          scope.lookupType(typeId);
+        if (typeSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve type reference '" +
+                                   typeId + "'");
+        }
+        type = typeSymbol.getValue();
+      } else if (childElementName.equals(TAG_NAME_TYPE_REF)) {
+        if (type != null) {
+          throwDuplicateException(childLocation, TAG_NAME_TYPE_REF);
+        }
+        final Identifier typeId = parseRef();
+        final Symbol<? extends SparseType> typeSymbol =
+          scope.lookupType(typeId);
+        if (typeSymbol == null) {
+          throw new ParseException(location,
+                                   "can not resolve type reference '" +
+                                   typeId + "'");
+        }
+        type = typeSymbol.getValue();
+      } else if (childElementName.equals(TAG_NAME_ICON)) {
+        if (iconId != null) {
+          throwDuplicateException(childLocation, TAG_NAME_ICON);
+        }
+        iconId = Identifier.fromString(readText());
+      } else if (childElementName.equals(TAG_NAME_BIT_SIZE)) {
+        if (bitSize != null) {
+          throwDuplicateException(childLocation, TAG_NAME_BIT_SIZE);
+        }
+        bitSize = parseByte(childLocation, readText());
+        if ((bitSize < 0) || (bitSize > 32)) {
+          throw new ParseException("invalid bit size; valid range: 0..32");
+        }
+      } else if (childElementName.equals(TAG_NAME_DEFAULT_VALUE)) {
+        if (defaultValue != null) {
+          throwDuplicateException(childLocation, TAG_NAME_DEFAULT_VALUE);
+        }
+        defaultValue = parseInt(childLocation, readText());
+      } else if (childElementName.equals(TAG_NAME_ADDRESS)) {
+        if (bitAddress != null) {
+          throwDuplicateException(childLocation,
+                                  TAG_NAME_BIT_ADDRESS, TAG_NAME_ADDRESS);
+        }
+        if (address != null) {
+          throwDuplicateException(childLocation, TAG_NAME_ADDRESS);
+        }
+        address = parseAddress(childLocation);
+      } else if (childElementName.equals(TAG_NAME_BIT_ADDRESS)) {
+        if (address != null) {
+          throwDuplicateException(childLocation,
+                                  TAG_NAME_ADDRESS, TAG_NAME_BIT_ADDRESS);
+        }
+        if (bitAddress != null) {
+          throwDuplicateException(childLocation, TAG_NAME_BIT_ADDRESS);
         }
-      } else if (isWhiteSpace(childNode)) {
-        // ignore white space
-      } else if (isIgnorableNodeType(childNode)) {
-        // ignore comments, entities, etc.
+        bitAddress = parseLong(childLocation, readText());
       } else {
-        throw new ParseException(childNode, "unsupported node");
+        throw new ParseException(childLocation, "unexpected element: " +
+                                 childElementName);
       }
     }
     if (type == null) {
-      throw new ParseException(element,
+      throw new ParseException(location,
                                "missing '" + TAG_NAME_TYPE + "' declaration");
     }
     final long desiredAddress =
@@ -1532,13 +1809,13 @@ public class DeviceModelParser
         bitSize = requiredBitSize;
       }
     } else if (bitSize < requiredBitSize) {
-      throw new ParseException(element, "declared bit size (" + bitSize +
+      throw new ParseException(location, "declared bit size (" + bitSize +
                                ") must be greater than or equal to " +
                                "required bit size (" + requiredBitSize + ")");
     }
     value.setBitSize(bitSize);
     final Data data = new Data(value, desiredAddress);
-    final Symbol<Data> dataSymbol = new Symbol<Data>(element, data);
+    final Symbol<Data> dataSymbol = new Symbol<Data>(location, data);
     dataSymbols.enterSymbol(identifier, dataSymbol);
     return identifier;
   }
@@ -1550,8 +1827,8 @@ public class DeviceModelParser
   {
     final Device device = Device.create("db50xg");
     System.out.println("[created device=" + device + "]");
-    device.buildMap(null, null);
-    System.out.println("[map=" + device.getMap() + "]");
+    device.buildMap();
+    System.out.println("[map=" + device.getMapRoot() + "]");
   }
 }
 
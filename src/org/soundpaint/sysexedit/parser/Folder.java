@@ -26,6 +26,8 @@ import java.util.List;
 
 public class Folder implements ParserNode
 {
+  private static final long serialVersionUID = -4850146950211549037L;
+
   private final List<ParserNode> contents;
   private String description;
   private StringExpression label;
@@ -124,6 +126,19 @@ public class Folder implements ParserNode
     }
   }
 
+  /**
+   * Restores the loop state of a specific iteration, as previously
+   * captured via the index variable's value and
+   * getIncrementedDesiredAddress(), e.g. for creating the contents
+   * of a folder instance later on.
+   */
+  public void restoreLoopIndex(final int index,
+                               final long incrementedDesiredAddress)
+  {
+    variable.setValue(index);
+    this.incrementedDesiredAddress = incrementedDesiredAddress;
+  }
+
   public long getIncrementedDesiredAddress()
   {
     return incrementedDesiredAddress;
@@ -20,11 +20,14 @@
 
 package org.soundpaint.sysexedit.parser;
 
+import java.io.Serializable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-public class Identifier
+public class Identifier implements Serializable
 {
+  private static final long serialVersionUID = -6456182590794855936L;
+
   private static final String ROOT_ID_STR = "#root";
   public static final Identifier ROOT_ID = new Identifier(ROOT_ID_STR);
 
@@ -20,8 +20,12 @@
 
 package org.soundpaint.sysexedit.parser;
 
-public class IndexVariable
+import java.io.Serializable;
+
+public class IndexVariable implements Serializable
 {
+  private static final long serialVersionUID = -6467049530100730122L;
+
   private Identifier identifier;
   private int value;
 
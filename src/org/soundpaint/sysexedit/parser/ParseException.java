@@ -20,21 +20,18 @@
 
 package org.soundpaint.sysexedit.parser;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-
 public class ParseException extends Exception
 {
   private static final long serialVersionUID = 8748895015695309559L;
 
-  private final Node location;
+  private final SourceLocation location;
 
   public ParseException()
   {
-    this((Node)null);
+    this((SourceLocation)null);
   }
 
-  public ParseException(final Node location)
+  public ParseException(final SourceLocation location)
   {
     this.location = location;
   }
@@ -44,7 +41,7 @@ public class ParseException extends Exception
     this(null, message);
   }
 
-  public ParseException(final Node location, final String message)
+  public ParseException(final SourceLocation location, final String message)
   {
     super(message);
     this.location = location;
@@ -55,7 +52,7 @@ public class ParseException extends Exception
     this(null, message, cause);
   }
 
-  public ParseException(final Node location,
+  public ParseException(final SourceLocation location,
                         final String message, final Throwable cause)
   {
     super(concatMessages(message, cause), cause);
@@ -64,16 +61,16 @@ public class ParseException extends Exception
 
   public ParseException(final Throwable cause)
   {
-    this((Node)null, cause);
+    this((SourceLocation)null, cause);
   }
 
-  public ParseException(final Node location, final Throwable cause)
+  public ParseException(final SourceLocation location, final Throwable cause)
   {
     super(cause.getMessage(), cause);
     this.location = location;
   }
 
-  public Node getLocation()
+  public SourceLocation getLocation()
   {
     return location;
   }
@@ -94,34 +91,9 @@ public class ParseException extends Exception
     return message + ": " + causeMessage;
   }
 
-  private static String formatLocation(final Node location)
+  private static String formatLocation(final SourceLocation location)
   {
-    if (location == null) {
-      return null;
-    }
-    final Document document = location.getOwnerDocument();
-    final Object inputSourceInfo =
-      document.getUserData(LineNumberXmlParser.KEY_XML_URL);
-    final Object columnInfo =
-      location.getUserData(LineNumberXmlParser.KEY_COLUMN_NUMBER);
-    final Object lineInfo =
-      location.getUserData(LineNumberXmlParser.KEY_LINE_NUMBER);
-    final String strInputSource =
-      inputSourceInfo != null ? "" + inputSourceInfo : "";
-    final String strColumn = columnInfo != null ? "column " + columnInfo : "";
-    final String strLine = lineInfo != null ? "line " + lineInfo : "";
-    final String strInputPosition =
-      strColumn +
-      ((columnInfo != null) && (lineInfo != null) ? ", " : "") +
-      strLine;
-    final String strLocation =
-      strInputPosition + (!strInputPosition.isEmpty() ? " " : "") +
-      (!strInputSource.isEmpty() ? "in " : "") +
-      strInputSource;
-    final String strDocumentPosition =
-      "document position: " + document.compareDocumentPosition(location);
-    return
-      strLocation + (!strLocation.isEmpty() ? ", " : "") + strDocumentPosition;
+    return location != null ? location.toString() : null;
   }
 
   public String getMessage()
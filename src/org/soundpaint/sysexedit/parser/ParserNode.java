@@ -20,7 +20,9 @@
 
 package org.soundpaint.sysexedit.parser;
 
-public interface ParserNode
+import java.io.Serializable;
+
+public interface ParserNode extends Serializable
 {
 }
 
@@ -0,0 +1,86 @@
+/*
+ * @(#)SourceLocation.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.parser;
+
+import java.net.URL;
+
+/**
+ * Position within a device description, as captured from the XML
+ * stream while parsing.  Line and column numbers start with 1; a
+ * negative value means that the number is not available.
+ */
+public class SourceLocation
+{
+  private final URL url;
+  private final int lineNumber;
+  private final int columnNumber;
+
+  private SourceLocation()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  public SourceLocation(final URL url,
+                        final int lineNumber, final int columnNumber)
+  {
+    this.url = url;
+    this.lineNumber = lineNumber;
+    this.columnNumber = columnNumber;
+  }
+
+  public URL getUrl()
+  {
+    return url;
+  }
+
+  public int getLineNumber()
+  {
+    return lineNumber;
+  }
+
+  public int getColumnNumber()
+  {
+    return columnNumber;
+  }
+
+  public String toString()
+  {
+    final String strColumn =
+      columnNumber >= 0 ? "column " + columnNumber : "";
+    final String strLine = lineNumber >= 0 ? "line " + lineNumber : "";
+    final String strInputPosition =
+      strColumn +
+      (!strColumn.isEmpty() && !strLine.isEmpty() ? ", " : "") +
+      strLine;
+    final String strInputSource = url != null ? "in " + url : "";
+    return
+      strInputPosition +
+      (!strInputPosition.isEmpty() && !strInputSource.isEmpty() ? " " : "") +
+      strInputSource;
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */
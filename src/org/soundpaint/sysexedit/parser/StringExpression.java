@@ -20,23 +20,27 @@
 
 package org.soundpaint.sysexedit.parser;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
-import org.w3c.dom.Node;
 
 import org.soundpaint.sysexedit.model.SparseType;
 
-public class StringExpression
+public class StringExpression implements Serializable
 {
+  private static final long serialVersionUID = 3110240212527949209L;
+
   private List<StringFactor> factors;
 
-  private interface StringFactor
+  private interface StringFactor extends Serializable
   {
     String evaluate();
   }
 
   private class StringConstant implements StringFactor
   {
+    private static final long serialVersionUID = -8399545251377600024L;
+
     private final String stringLiteral;
 
     private StringConstant()
@@ -60,6 +64,8 @@ public class StringExpression
 
   private class StringVariable implements StringFactor
   {
+    private static final long serialVersionUID = 763324541607060709L;
+
     private IndexVariable variable;
     private SparseType type;
 
@@ -143,7 +149,7 @@ public class StringExpression
       throw new UnsupportedOperationException("unsupported constructor");
     }
 
-    public SEParseException(final Node location,
+    public SEParseException(final SourceLocation location,
                             final String parseInput,
                             final int charPos,
                             final String message)
@@ -162,7 +168,7 @@ public class StringExpression
     }
   }
 
-  private void addVariable(final Node location, final String parseInput,
+  private void addVariable(final SourceLocation location, final String parseInput,
                            final int charPos, final String variableId,
                            final String typeId, final Scope scope)
     throws ParseException
@@ -185,7 +191,7 @@ public class StringExpression
     add(variableSymbol.getValue(), typeSymbol.getValue());
   }
 
-  public static StringExpression parse(final Node location,
+  public static StringExpression parse(final SourceLocation location,
                                        final String parseInput,
                                        final Scope scope)
     throws ParseException
@@ -20,11 +20,9 @@
 
 package org.soundpaint.sysexedit.parser;
 
-import org.w3c.dom.Node;
-
 public class Symbol<Type>
 {
-  private final Node location;
+  private final SourceLocation location;
   private final Type value;
 
   private Symbol()
@@ -32,13 +30,13 @@ public class Symbol<Type>
     throw new RuntimeException("unsupported constructor");
   }
 
-  public Symbol(final Node location, final Type value)
+  public Symbol(final SourceLocation location, final Type value)
   {
     this.location = location;
     this.value = value;
   }
 
-  public Node getLocation()
+  public SourceLocation getLocation()
   {
     return location;
   }
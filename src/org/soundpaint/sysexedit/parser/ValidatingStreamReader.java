@@ -0,0 +1,242 @@
+/*
+ * @(#)ValidatingStreamReader.java 1.00 18/07/27
+ *
+ * Copyright (C) 2018 Jürgen Reuter
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 675 Mass Ave, Cambridge, MA 02139, USA.
+ */
+
+package org.soundpaint.sysexedit.parser;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.validation.ValidatorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * XML stream reader that validates the stream while it is being
+ * read.  Each event pulled from the underlying reader is pushed into
+ * a schema validator handler, such that the input is read and
+ * validated in a single pass, without building any document tree.
+ * A validation error is reported as XMLStreamException from the
+ * method that pulled the offending event.
+ */
+class ValidatingStreamReader extends StreamReaderDelegate
+{
+  private final ValidatorHandler handler;
+  private final String systemId;
+  private final AttributesImpl attributes;
+
+  private ValidatingStreamReader()
+  {
+    throw new UnsupportedOperationException("unsupported constructor");
+  }
+
+  public ValidatingStreamReader(final XMLStreamReader reader,
+                                final ValidatorHandler handler,
+                                final String systemId)
+    throws XMLStreamException
+  {
+    super(reader);
+    this.handler = handler;
+    this.systemId = systemId;
+    attributes = new AttributesImpl();
+    handler.setDocumentLocator(new StreamLocator());
+    try {
+      handler.startDocument();
+    } catch (final SAXException e) {
+      throw new XMLStreamException(e.getMessage(), e);
+    }
+  }
+
+  private class StreamLocator implements Locator
+  {
+    public String getPublicId()
+    {
+      return null;
+    }
+
+    public String getSystemId()
+    {
+      return systemId;
+    }
+
+    public int getLineNumber()
+    {
+      return getLocation().getLineNumber();
+    }
+
+    public int getColumnNumber()
+    {
+      return getLocation().getColumnNumber();
+    }
+  }
+
+  private static String toQualifiedName(final String prefix,
+                                        final String localName)
+  {
+    return
+      (prefix == null) || prefix.isEmpty() ?
+      localName : prefix + ":" + localName;
+  }
+
+  private void startElement() throws SAXException
+  {
+    final int namespaceCount = getNamespaceCount();
+    for (int index = 0; index < namespaceCount; index++) {
+      final String prefix = getNamespacePrefix(index);
+      handler.startPrefixMapping(prefix != null ? prefix : "",
+                                 getNamespaceURI(index));
+    }
+    attributes.clear();
+    final int attributeCount = getAttributeCount();
+    for (int index = 0; index < attributeCount; index++) {
+      final QName name = getAttributeName(index);
+      attributes.addAttribute(name.getNamespaceURI(), name.getLocalPart(),
+                              toQualifiedName(name.getPrefix(),
+                                              name.getLocalPart()),
+                              getAttributeType(index),
+                              getAttributeValue(index));
+    }
+    final String namespaceUri = getNamespaceURI();
+    handler.startElement(namespaceUri != null ? namespaceUri : "",
+                         getLocalName(),
+                         toQualifiedName(getPrefix(), getLocalName()),
+                         attributes);
+  }
+
+  private void endElement() throws SAXException
+  {
+    final String namespaceUri = getNamespaceURI();
+    handler.endElement(namespaceUri != null ? namespaceUri : "",
+                       getLocalName(),
+                       toQualifiedName(getPrefix(), getLocalName()));
+    final int namespaceCount = getNamespaceCount();
+    for (int index = 0; index < namespaceCount; index++) {
+      final String prefix = getNamespacePrefix(index);
+      handler.endPrefixMapping(prefix != null ? prefix : "");
+    }
+  }
+
+  private void forward(final int eventType) throws SAXException
+  {
+    switch (eventType) {
+    case XMLStreamConstants.START_ELEMENT:
+      startElement();
+      break;
+    case XMLStreamConstants.END_ELEMENT:
+      endElement();
+      break;
+    case XMLStreamConstants.CHARACTERS:
+    case XMLStreamConstants.CDATA:
+    case XMLStreamConstants.SPACE:
+      handler.characters(getTextCharacters(), getTextStart(),
+                         getTextLength());
+      break;
+    case XMLStreamConstants.END_DOCUMENT:
+      handler.endDocument();
+      break;
+    default:
+      // comments, processing instructions, etc. are irrelevant for
+      // validation
+      break;
+    }
+  }
+
+  @Override
+  public int next() throws XMLStreamException
+  {
+    final int eventType = super.next();
+    try {
+      forward(eventType);
+    } catch (final SAXException e) {
+      throw new XMLStreamException(e.getMessage(), e);
+    }
+    return eventType;
+  }
+
+  /**
+   * Reimplemented on top of this reader's next() method, since the
+   * underlying reader would otherwise consume the element's text
+   * without passing it to the validator.
+   */
+  @Override
+  public String getElementText() throws XMLStreamException
+  {
+    if (getEventType() != XMLStreamConstants.START_ELEMENT) {
+      throw new XMLStreamException("not positioned at start tag");
+    }
+    final StringBuilder text = new StringBuilder();
+    while (true) {
+      final int eventType = next();
+      switch (eventType) {
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+      case XMLStreamConstants.ENTITY_REFERENCE:
+        text.append(getText());
+        break;
+      case XMLStreamConstants.COMMENT:
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        return text.toString();
+      default:
+        throw new XMLStreamException("text only element expected");
+      }
+    }
+  }
+
+  /**
+   * Reimplemented on top of this reader's next() method, such that
+   * all skipped events are passed to the validator.
+   */
+  @Override
+  public int nextTag() throws XMLStreamException
+  {
+    while (true) {
+      final int eventType = next();
+      switch (eventType) {
+      case XMLStreamConstants.START_ELEMENT:
+      case XMLStreamConstants.END_ELEMENT:
+        return eventType;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+        if (!isWhiteSpace()) {
+          throw new XMLStreamException("start or end tag expected");
+        }
+        break;
+      case XMLStreamConstants.COMMENT:
+      case XMLStreamConstants.PROCESSING_INSTRUCTION:
+        break;
+      default:
+        throw new XMLStreamException("start or end tag expected");
+      }
+    }
+  }
+}
+
+/*
+ * Local Variables:
+ *   coding:utf-8
+ *   mode:java
+ * End:
+ */